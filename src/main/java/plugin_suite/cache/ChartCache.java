@@ -0,0 +1,213 @@
+package plugin_suite.cache;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import plugin_suite.charts.ChartSeries;
+import plugin_suite.charts.RenderedChart;
+
+/**
+ * Cache of rendered charts, keyed by a fingerprint of everything that determines the image:
+ * the normalized data series, the size, the date interval and range, the labels and the day
+ * the chart is rendered on (which sets the upper bound of the time axis). Charts are evicted
+ * in least recently used order once either the entry count or the memory cap is exceeded.
+ */
+public class ChartCache {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
+	private static final int DEFAULT_MAX_ENTRIES = 256;
+	private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;		// 32 MB
+	
+	private static final ChartCache instance = new ChartCache(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+	
+	private final int maxEntries;
+	private final long maxBytes;
+	private final LinkedHashMap<String, RenderedChart> charts;
+	private long totalBytes;
+	
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	
+	public ChartCache(int maxEntries, long maxBytes) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.charts = new LinkedHashMap<String, RenderedChart>(16, 0.75f, true);		// Access order, for LRU eviction
+	}
+	
+	/**
+	 * Gets the chart cache shared by every resource of the plugin.
+	 * 
+	 * @return Shared chart cache.
+	 */
+	public static ChartCache getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Gets the chart with the given fingerprint, rendering and caching it using the loader 
+	 * if it is not cached yet.
+	 * 
+	 * @param fingerprint - Fingerprint of the chart.
+	 * @param loader - Renders the chart on a miss.
+	 * @return Cached or freshly rendered chart.
+	 */
+	public RenderedChart get(String fingerprint, ResultCache.Loader<RenderedChart> loader) {
+		RenderedChart chart = getIfPresent(fingerprint);
+		if (chart != null)
+			return chart;
+		
+		// Renders outside of the lock, so a slow render does not block other lookups
+		misses.incrementAndGet();
+		chart = loader.load();
+		put(fingerprint, chart);
+		return chart;
+	}
+	
+	/**
+	 * Gets the chart with the given fingerprint, if cached.
+	 * 
+	 * @param fingerprint - Fingerprint of the chart.
+	 * @return Cached chart, or null if there is none.
+	 */
+	public synchronized RenderedChart getIfPresent(String fingerprint) {
+		RenderedChart chart = charts.get(fingerprint);
+		if (chart != null)
+			hits.incrementAndGet();
+		return chart;
+	}
+	
+	public synchronized void clear() {
+		charts.clear();
+		totalBytes = 0;
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	public synchronized int getSize() {
+		return charts.size();
+	}
+	
+	public synchronized long getBytes() {
+		return totalBytes;
+	}
+	
+	/**
+	 * Adds a chart, evicting the least recently used charts until the cache is within its 
+	 * limits again.
+	 */
+	private synchronized void put(String fingerprint, RenderedChart chart) {
+		RenderedChart previous = charts.put(fingerprint, chart);
+		if (previous != null)
+			totalBytes -= previous.getSize();
+		totalBytes += chart.getSize();
+		
+		Iterator<RenderedChart> iterator = charts.values().iterator();
+		while ((charts.size() > maxEntries || totalBytes > maxBytes) && iterator.hasNext()) {
+			RenderedChart eldest = iterator.next();
+			if (eldest == chart)
+				break;		// Never evicts the chart just added
+			totalBytes -= eldest.getSize();
+			iterator.remove();
+			evictions.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Computes the fingerprint of a time trending chart. The series is normalized first, by 
+	 * sorting it by date and summing the counts of repeated dates, so that equivalent requests 
+	 * share the same fingerprint regardless of the order of their data points.
+	 * 
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param dateInterval - Number of days between each date on the axis.
+	 * @param dataRange - Range of data (in days) represented by the axis.
+	 * @param upperBound - Upper bound of the axis (today's date), in milliseconds since 1/1/1970.
+	 * @param series - Dates and counts of the chart.
+	 * @param labels - Title and axis labels.
+	 * @return Hexadecimal fingerprint.
+	 */
+	public static String fingerprint(int width, int height, int dateInterval, int dataRange, long upperBound, 
+			ChartSeries series, String... labels) {
+		StringBuilder builder = appendSettings(new StringBuilder(), width, height, dateInterval, dataRange, 
+				upperBound, labels);
+		appendSeries(builder, series);
+		return digest(builder.toString());
+	}
+	
+	/**
+	 * Computes the fingerprint of a chart with several named series (such as the statuses of a 
+	 * cumulative flow diagram). Every series is normalized the same way as a single series, and 
+	 * is identified by its name.
+	 * 
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param dateInterval - Number of days between each date on the axis.
+	 * @param dataRange - Range of data (in days) represented by the axis.
+	 * @param upperBound - Upper bound of the axis (today's date), in milliseconds since 1/1/1970.
+	 * @param series - Names, dates and counts of every series, in the order they are drawn.
+	 * @param labels - Chart type, title and axis labels.
+	 * @return Hexadecimal fingerprint.
+	 */
+	public static String fingerprint(int width, int height, int dateInterval, int dataRange, long upperBound, 
+			List<ChartSeries> series, String... labels) {
+		StringBuilder builder = appendSettings(new StringBuilder(), width, height, dateInterval, dataRange, 
+				upperBound, labels);
+		for (ChartSeries namedSeries : series) {
+			builder.append('\u0001').append(namedSeries.getName());
+			appendSeries(builder, namedSeries);
+		}
+		return digest(builder.toString());
+	}
+	
+	private static StringBuilder appendSettings(StringBuilder builder, int width, int height, int dateInterval, 
+			int dataRange, long upperBound, String... labels) {
+		builder.append(width).append(',').append(height).append(',').append(dateInterval).append(',')
+				.append(dataRange).append(',').append(upperBound);
+		for (String label : labels)
+			builder.append('\u0000').append(label);
+		return builder;
+	}
+	
+	private static void appendSeries(StringBuilder builder, ChartSeries series) {
+		ChartSeries normalized = series.normalize();
+		long[] dates = normalized.getDates();
+		long[] counts = normalized.getCounts();
+		for (int i = 0; i < dates.length; i++)
+			builder.append(';').append(dates[i]).append('=').append(counts[i]);
+	}
+	
+	/**
+	 * Hashes the given text with SHA-1 and returns the hexadecimal digest.
+	 */
+	private static String digest(String text) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-1").digest(text.getBytes(UTF8));
+			char[] hex = new char[hash.length * 2];
+			for (int i = 0; i < hash.length; i++) {
+				hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+				hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+}
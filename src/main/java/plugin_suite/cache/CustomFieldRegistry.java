@@ -0,0 +1,262 @@
+package plugin_suite.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.customfields.CustomFieldType;
+import com.atlassian.jira.issue.fields.CustomField;
+
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.CustomFieldRestResourceModel.CustomFieldDataContainer;
+
+/**
+ * Plugin-wide registry of every custom field, grouped by type key and by category. Like the
+ * project catalog, the registry is an immutable snapshot that is built once and shared by
+ * every request until a custom field is created, updated or deleted, so looking up the fields
+ * of a type costs a single map lookup.
+ */
+public class CustomFieldRegistry {
+	// Categories of the field types, as accepted by the custom field resource
+	public static final String DATE = "date";
+	public static final String DATETIME = "datetime";
+	public static final String NUMBER = "number";
+	public static final String USER = "user";
+	public static final String SELECT = "select";
+	public static final String OTHER = "other";
+	public static final List<String> CATEGORIES = Collections.unmodifiableList(Arrays.asList(
+			DATE, DATETIME, NUMBER, USER, SELECT, OTHER));
+
+	// Prefix of the id of every custom field, ahead of its numeric id
+	private static final String ID_PREFIX = "customfield_";
+
+	// Category of every system field type
+	private static final String TYPE_PREFIX = "com.atlassian.jira.plugin.system.customfieldtypes:";
+	private static final Map<String, String> SYSTEM_CATEGORIES = new HashMap<String, String>();
+	static {
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "datepicker", DATE);
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "datetime", DATETIME);
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "float", NUMBER);
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "userpicker", USER);
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "multiuserpicker", USER);
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "select", SELECT);
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "multiselect", SELECT);
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "radiobuttons", SELECT);
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "multicheckboxes", SELECT);
+		SYSTEM_CATEGORIES.put(TYPE_PREFIX + "cascadingselect", SELECT);
+	}
+
+	private static final CustomFieldRegistry instance = new CustomFieldRegistry();
+
+	// Distinguishes the snapshots of this plugin instance from those served before a restart
+	private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+	private final AtomicLong versions = new AtomicLong();
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Gets the registry shared by every resource of the plugin.
+	 *
+	 * @return Shared custom field registry.
+	 */
+	public static CustomFieldRegistry getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Gets the current snapshot, building it if the registry was invalidated since.
+	 *
+	 * @return Current snapshot.
+	 */
+	public Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		if (current == null) {
+			synchronized (this) {
+				current = snapshot;
+				if (current == null) {
+					current = new Snapshot(instanceId + "-" + versions.incrementAndGet(), loadFields());
+					snapshot = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Discards the current snapshot, so that the next request builds a new one.
+	 */
+	public synchronized void invalidate() {
+		snapshot = null;
+	}
+
+	/**
+	 * Determines the category of a field type. Types other than the system ones are counted as
+	 * dates if their name says so, as the date field list has always done.
+	 *
+	 * @param typeKey - Key of the field type.
+	 * @param typeName - Name of the field type.
+	 * @return Category of the type.
+	 */
+	public static String getCategory(String typeKey, String typeName) {
+		String category = SYSTEM_CATEGORIES.get(typeKey);
+		if (category != null)
+			return category;
+		return typeName != null && typeName.contains("Date") ? DATE : OTHER;
+	}
+
+	/**
+	 * Reads the data of every custom field in Jira.
+	 */
+	private static List<CustomFieldDataContainer> loadFields() {
+		List<CustomFieldDataContainer> fields = new ArrayList<CustomFieldDataContainer>();
+		for (CustomField field : ComponentAccessor.getCustomFieldManager().getCustomFieldObjects()) {
+			CustomFieldType type = field.getCustomFieldType();
+			String typeKey = type != null ? type.getKey() : null;
+			String typeName = type != null ? type.getName() : null;
+			fields.add(new CustomFieldDataContainer(FieldSet.ALL, field.getId(), field.getFieldName(), typeKey,
+					typeName, getCategory(typeKey, typeName)));
+		}
+		return fields;
+	}
+
+
+	/**
+	 * Immutable snapshot of the registry. Lists of fields restricted to a set of attributes are
+	 * built on first use and then kept along with the snapshot.
+	 */
+	public static class Snapshot {
+		private final String version;
+		private final List<CustomFieldDataContainer> fields;
+		private final Map<String, CustomFieldDataContainer> fieldsById;
+		private final Map<String, List<CustomFieldDataContainer>> fieldsByType;
+
+		private final Map<String, List<CustomFieldDataContainer>> projections =
+				new ConcurrentHashMap<String, List<CustomFieldDataContainer>>();
+
+		/**
+		 * @param version - Version of the snapshot, which changes whenever the registry is rebuilt.
+		 * @param fields - Data of every custom field, with every attribute set.
+		 */
+		public Snapshot(String version, List<CustomFieldDataContainer> fields) {
+			this.version = version;
+
+			List<CustomFieldDataContainer> sorted = new ArrayList<CustomFieldDataContainer>(fields);
+			Collections.sort(sorted);
+			this.fields = Collections.unmodifiableList(sorted);
+
+			// Indexes every field by id, and by both its type key and its category
+			Map<String, CustomFieldDataContainer> byId = new HashMap<String, CustomFieldDataContainer>();
+			Map<String, List<CustomFieldDataContainer>> byType = new HashMap<String, List<CustomFieldDataContainer>>();
+			for (CustomFieldDataContainer field : sorted) {
+				byId.put(field.getId(), field);
+				addToType(byType, field.getTypeKey(), field);
+				addToType(byType, field.getCategory(), field);
+			}
+			this.fieldsById = Collections.unmodifiableMap(byId);
+			this.fieldsByType = byType;
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		/**
+		 * Gets the custom field with the given id.
+		 *
+		 * @param id - Id of the custom field (e.g. customfield_10000).
+		 * @return Custom field data, or null if there is no such field.
+		 */
+		public CustomFieldDataContainer getField(String id) {
+			return id != null ? fieldsById.get(id) : null;
+		}
+
+		/**
+		 * Gets the custom field with the given numeric id.
+		 *
+		 * @param id - Numeric id of the custom field (e.g. 10000).
+		 * @return Custom field data, or null if there is no such field.
+		 */
+		public CustomFieldDataContainer getField(long id) {
+			return fieldsById.get(ID_PREFIX + id);
+		}
+
+		/**
+		 * Gets the custom fields of the given types, restricted to the given attributes.
+		 *
+		 * @param types - Type keys and/or categories of the fields (null/empty value means every
+		 * field).
+		 * @param fieldSet - Attributes to fill.
+		 * @return Unmodifiable list of custom field data, sorted by name.
+		 */
+		public List<CustomFieldDataContainer> getFields(Collection<String> types, FieldSet fieldSet) {
+			// Unknown types match no field and are left out of the key, so that requests can't 
+			// add projections beyond those of the known types
+			Set<String> knownTypes = getKnownTypes(types);
+			String projectionKey = (knownTypes != null ? knownTypes.toString() : "") + fieldSet.toString();
+			List<CustomFieldDataContainer> projection = projections.get(projectionKey);
+			if (projection == null) {
+				List<CustomFieldDataContainer> selected = new ArrayList<CustomFieldDataContainer>();
+				for (CustomFieldDataContainer field : getFields(knownTypes))
+					selected.add(field.select(fieldSet));
+				projection = Collections.unmodifiableList(selected);
+				projections.put(projectionKey, projection);
+			}
+			return projection;
+		}
+
+		/**
+		 * Gets the known types among the given ones, in a fixed order.
+		 *
+		 * @param types - Type keys and/or categories (null/empty value means every field).
+		 * @return Sorted known types, or null if every field is requested.
+		 */
+		private Set<String> getKnownTypes(Collection<String> types) {
+			if (types == null || types.isEmpty())
+				return null;
+
+			Set<String> knownTypes = new TreeSet<String>();
+			for (String type : types) {
+				if (fieldsByType.containsKey(type))
+					knownTypes.add(type);
+			}
+			return knownTypes;
+		}
+
+		/**
+		 * Gets the distinct custom fields of the given known types sorted by name, with every 
+		 * attribute set.
+		 */
+		private Collection<CustomFieldDataContainer> getFields(Set<String> knownTypes) {
+			if (knownTypes == null)
+				return fields;
+
+			Set<CustomFieldDataContainer> matches = new LinkedHashSet<CustomFieldDataContainer>();
+			for (String type : knownTypes)
+				matches.addAll(fieldsByType.get(type));
+			List<CustomFieldDataContainer> sorted = new ArrayList<CustomFieldDataContainer>(matches);
+			Collections.sort(sorted);
+			return sorted;
+		}
+
+		private static void addToType(Map<String, List<CustomFieldDataContainer>> byType, String type,
+				CustomFieldDataContainer field) {
+			if (type == null)
+				return;
+			List<CustomFieldDataContainer> typeFields = byType.get(type);
+			if (typeFields == null) {
+				typeFields = new ArrayList<CustomFieldDataContainer>();
+				byType.put(type, typeFields);
+			}
+			typeFields.add(field);
+		}
+	}
+}
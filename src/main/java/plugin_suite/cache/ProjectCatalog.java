@@ -0,0 +1,218 @@
+package plugin_suite.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectCategory;
+
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.ProjectRestResourceModel.ProjectDataContainer;
+
+/**
+ * Plugin-wide catalog of every project. The catalog is an immutable snapshot of the project
+ * data, indexed by key, by id and by the prefixes of keys and names, that is built once and
+ * then shared by every request until a project is created, updated or deleted. Readers never
+ * lock; only building a new snapshot is synchronized.
+ */
+public class ProjectCatalog {
+	private static final ProjectCatalog instance = new ProjectCatalog();
+
+	// Distinguishes the snapshots of this plugin instance from those served before a restart
+	private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+	private final AtomicLong versions = new AtomicLong();
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Gets the catalog shared by every resource of the plugin.
+	 *
+	 * @return Shared project catalog.
+	 */
+	public static ProjectCatalog getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Gets the current snapshot, building it if the catalog was invalidated since.
+	 *
+	 * @return Current snapshot.
+	 */
+	public Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		if (current == null) {
+			synchronized (this) {
+				current = snapshot;
+				if (current == null) {
+					current = new Snapshot(instanceId + "-" + versions.incrementAndGet(), loadProjects());
+					snapshot = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Discards the current snapshot, so that the next request builds a new one. Waits for any
+	 * snapshot being built, so that a change is never hidden by a build that read it too early.
+	 */
+	public synchronized void invalidate() {
+		snapshot = null;
+	}
+
+	/**
+	 * Reads the data of every project in Jira.
+	 */
+	private static List<ProjectDataContainer> loadProjects() {
+		List<ProjectDataContainer> projects = new ArrayList<ProjectDataContainer>();
+		for (Project project : ComponentAccessor.getProjectManager().getProjectObjects()) {
+			ProjectCategory category = project.getProjectCategoryObject();
+			projects.add(new ProjectDataContainer(project.getKey(), project.getId(), project.getName(),
+					project.getLeadUserName(), category != null ? category.getName() : "N/A"));
+		}
+		return projects;
+	}
+
+
+	/**
+	 * Immutable snapshot of the catalog. Lists of projects restricted to a set of attributes
+	 * are built on first use and then kept along with the snapshot.
+	 */
+	public static class Snapshot {
+		private final String version;
+		private final List<ProjectDataContainer> projects;
+		private final Map<String, ProjectDataContainer> projectsByKey;
+		private final Map<Long, ProjectDataContainer> projectsById;
+
+		// Lower case keys and names in ascending order, along with the index of their project
+		private final String[] terms;
+		private final int[] termProjects;
+
+		private final Map<String, List<ProjectDataContainer>> projections =
+				new ConcurrentHashMap<String, List<ProjectDataContainer>>();
+
+		/**
+		 * @param version - Version of the snapshot, which changes whenever the catalog is rebuilt.
+		 * @param projects - Data of every project, with every attribute set.
+		 */
+		public Snapshot(String version, List<ProjectDataContainer> projects) {
+			this.version = version;
+
+			List<ProjectDataContainer> sorted = new ArrayList<ProjectDataContainer>(projects);
+			Collections.sort(sorted);
+			this.projects = Collections.unmodifiableList(sorted);
+
+			Map<String, ProjectDataContainer> byKey = new HashMap<String, ProjectDataContainer>();
+			Map<Long, ProjectDataContainer> byId = new HashMap<Long, ProjectDataContainer>();
+			final String[] allTerms = new String[sorted.size() * 2];
+			Integer[] order = new Integer[allTerms.length];
+			for (int i = 0; i < sorted.size(); i++) {
+				ProjectDataContainer project = sorted.get(i);
+				byKey.put(project.getKey(), project);
+				byId.put(project.getId(), project);
+				allTerms[2 * i] = toTerm(project.getKey());
+				allTerms[2 * i + 1] = toTerm(project.getName());
+				order[2 * i] = 2 * i;
+				order[2 * i + 1] = 2 * i + 1;
+			}
+			this.projectsByKey = Collections.unmodifiableMap(byKey);
+			this.projectsById = Collections.unmodifiableMap(byId);
+
+			// Sorts the terms, keeping track of the project each one belongs to
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer first, Integer second) {
+					return allTerms[first].compareTo(allTerms[second]);
+				}
+			});
+			this.terms = new String[order.length];
+			this.termProjects = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				terms[i] = allTerms[order[i]];
+				termProjects[i] = order[i] / 2;
+			}
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		/**
+		 * Gets the project with the given key.
+		 *
+		 * @param key - Project key.
+		 * @return Project data, or null if there is no such project.
+		 */
+		public ProjectDataContainer getProject(String key) {
+			return key != null ? projectsByKey.get(key) : null;
+		}
+
+		/**
+		 * Gets the project with the given id.
+		 *
+		 * @param id - Project id.
+		 * @return Project data, or null if there is no such project.
+		 */
+		public ProjectDataContainer getProject(long id) {
+			return projectsById.get(id);
+		}
+
+		/**
+		 * Gets every project, restricted to the given attributes.
+		 *
+		 * @param fieldSet - Attributes to fill.
+		 * @return Unmodifiable list of project data, sorted by name.
+		 */
+		public List<ProjectDataContainer> getProjects(FieldSet fieldSet) {
+			String projectionKey = fieldSet.toString();
+			List<ProjectDataContainer> projection = projections.get(projectionKey);
+			if (projection == null) {
+				List<ProjectDataContainer> selected = new ArrayList<ProjectDataContainer>(projects.size());
+				for (ProjectDataContainer project : projects)
+					selected.add(project.select(fieldSet));
+				projection = Collections.unmodifiableList(selected);
+				projections.put(projectionKey, projection);
+			}
+			return projection;
+		}
+
+		/**
+		 * Finds the projects whose key or name starts with the given prefix, ignoring case.
+		 *
+		 * @param prefix - Prefix to search for.
+		 * @param limit - Maximum number of projects to return.
+		 * @return Matching projects, sorted by name.
+		 */
+		public List<ProjectDataContainer> search(String prefix, int limit) {
+			String term = toTerm(prefix);
+
+			// Finds the first term at or after the prefix, then reads every term starting with it
+			int index = Arrays.binarySearch(terms, term);
+			if (index < 0)
+				index = -index - 1;
+			Set<Integer> matches = new LinkedHashSet<Integer>();
+			for (int i = index; i < terms.length && terms[i].startsWith(term); i++)
+				matches.add(termProjects[i]);
+
+			List<Integer> sortedMatches = new ArrayList<Integer>(matches);
+			Collections.sort(sortedMatches);
+			List<ProjectDataContainer> results = new ArrayList<ProjectDataContainer>();
+			for (int i = 0; i < sortedMatches.size() && i < limit; i++)
+				results.add(projects.get(sortedMatches.get(i)));
+			return results;
+		}
+
+		private static String toTerm(String value) {
+			return value != null ? value.toLowerCase(Locale.ENGLISH) : "";
+		}
+	}
+}
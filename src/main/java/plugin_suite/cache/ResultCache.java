@@ -0,0 +1,399 @@
+package plugin_suite.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.user.ApplicationUser;
+
+/**
+ * Plugin-wide, bounded cache of REST results. Entries are keyed by region (the endpoint),
+ * project, the current user and the normalized query parameters, and are evicted in least
+ * recently used order once either the entry count or the total weight (the number of records
+ * held) exceeds its limit. Entries also expire after a fixed time to live, which covers changes
+ * that are not announced by any event. Concurrent misses for the same key are coalesced, so
+ * that the result is computed once and handed to every caller waiting for it.
+ */
+public class ResultCache {
+	// Regions, one per cached endpoint
+	public static final String ISSUES = "issues";
+	public static final String CHANGE_HISTORY = "changehistory";
+
+	private static final int DEFAULT_MAX_ENTRIES = 500;
+	private static final long DEFAULT_MAX_WEIGHT = 250000L;
+	private static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000L;		// 5 minutes
+
+	private static final ResultCache instance = new ResultCache(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT,
+			DEFAULT_TIME_TO_LIVE);
+
+	private final int maxEntries;
+	private final long maxWeight;
+	private final long timeToLive;
+	private final LinkedHashMap<String, Entry> entries;
+	private final Map<String, Load> loads = new HashMap<String, Load>();		// Results being computed
+	private long totalWeight;
+	private long generation;		// Incremented whenever the whole cache is cleared
+	private final Map<String, Long> generations = new HashMap<String, Long>();		// Per region and project
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Callback that computes a result when it is not found within the cache.
+	 */
+	public interface Loader<T> {
+		T load();
+	}
+
+	public ResultCache(int maxEntries, long maxWeight, long timeToLive) {
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.timeToLive = timeToLive;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);		// Access order, for LRU eviction
+	}
+
+	/**
+	 * Gets the cache shared by every resource of the plugin.
+	 *
+	 * @return Shared result cache.
+	 */
+	public static ResultCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Gets the cached result for the given region, project and parameters, or computes and
+	 * caches it using the loader if no live entry exists. The current user is always part of
+	 * the key, since results depend on what the user is permitted to see.
+	 *
+	 * @param region - Region (endpoint) of the result.
+	 * @param projectKey - Key of the project the result belongs to (can be null).
+	 * @param parameters - Query parameters identifying the result (can contain nulls).
+	 * @param loader - Computes the result on a miss.
+	 * @return Cached or freshly computed result.
+	 */
+	public <T> T get(String region, String projectKey, List<?> parameters, Loader<T> loader) {
+		return get(region, projectKey, getPermissionContext(), parameters, loader);
+	}
+
+	/**
+	 * Gets the cached result for the given region, project, permission context and parameters,
+	 * or computes and caches it using the loader if no live entry exists. If the same result is
+	 * already being computed by another request, waits for that computation instead.
+	 *
+	 * @param region - Region (endpoint) of the result.
+	 * @param projectKey - Key of the project the result belongs to (can be null).
+	 * @param permissionContext - Identifies what the requesting user is permitted to see.
+	 * @param parameters - Query parameters identifying the result (can contain nulls).
+	 * @param loader - Computes the result on a miss.
+	 * @return Cached or freshly computed result.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String region, String projectKey, String permissionContext, List<?> parameters,
+			Loader<T> loader) {
+		String key = buildKey(region, projectKey, permissionContext, parameters);
+		long loadGeneration;
+		Load load;
+		boolean joined;
+
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && !entry.isExpired(System.currentTimeMillis(), timeToLive)) {
+				hits.incrementAndGet();
+				return (T) entry.value;
+			} else if (entry != null) {
+				remove(key);
+			}
+
+			// Joins the computation of the same result, if one is running
+			load = loads.get(key);
+			joined = load != null;
+			if (joined) {
+				coalesced.incrementAndGet();
+			} else {
+				load = new Load(region, projectKey);
+				loads.put(key, load);
+			}
+			loadGeneration = getGeneration(region, projectKey);
+		}
+		if (joined)
+			return (T) load.await();
+
+		// Computes outside of the lock, so a slow computation does not block other lookups
+		misses.incrementAndGet();
+		T value = null;
+		boolean loaded = false;
+		try {
+			value = loader.load();
+			loaded = true;
+		} finally {
+			// Skips caching if the result was invalidated meanwhile, since the value may be stale
+			synchronized (this) {
+				if (loads.get(key) == load)
+					loads.remove(key);
+				if (loaded && loadGeneration == getGeneration(region, projectKey))
+					put(key, new Entry(region, projectKey, value));
+			}
+			load.complete(value, loaded);
+		}
+		return value;
+	}
+
+	/**
+	 * Removes every entry of the given region that belongs to the given project (or to no
+	 * specific project). Results of the same region and project that are being computed are
+	 * not cached once done, while other results are not affected.
+	 *
+	 * @param region - Region to invalidate.
+	 * @param projectKey - Project key (null value means every project).
+	 */
+	public synchronized void invalidate(String region, String projectKey) {
+		if (projectKey == null) {
+			increment(region);
+		} else {
+			increment(region + '\u0000' + projectKey);
+			increment(region + '\u0000');		// Counts the invalidations that affect results of no specific project
+		}
+		
+		// Later requests must not join computations that may be stale
+		for (Iterator<Load> iterator = loads.values().iterator(); iterator.hasNext();) {
+			if (iterator.next().matches(region, projectKey))
+				iterator.remove();
+		}
+		for (Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator(); iterator.hasNext();) {
+			Entry entry = iterator.next().getValue();
+			if (entry.region.equals(region)
+					&& (projectKey == null || entry.projectKey == null || projectKey.equals(entry.projectKey))) {
+				totalWeight -= entry.weight;
+				iterator.remove();
+				invalidations.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Removes every entry within the cache.
+	 */
+	public synchronized void clear() {
+		generation++;
+		loads.clear();
+		invalidations.addAndGet(entries.size());
+		entries.clear();
+		totalWeight = 0;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the number of requests that waited for a computation already running for another
+	 * request, rather than computing the same result again.
+	 *
+	 * @return Number of coalesced requests.
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	public synchronized int getLoading() {
+		return loads.size();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return totalWeight;
+	}
+
+	/**
+	 * Adds an entry, evicting the least recently used entries until the cache is within its
+	 * limits again. An entry heavier than the whole cache is not added at all, since it would
+	 * flush every other entry only to exceed the limit by itself.
+	 */
+	private void put(String key, Entry entry) {
+		remove(key);
+		if (entry.weight > maxWeight)
+			return;
+		entries.put(key, entry);
+		totalWeight += entry.weight;
+
+		Iterator<Entry> iterator = entries.values().iterator();
+		while ((entries.size() > maxEntries || totalWeight > maxWeight) && iterator.hasNext()) {
+			Entry eldest = iterator.next();
+			if (eldest == entry)
+				break;		// Never evicts the entry just added
+			totalWeight -= eldest.weight;
+			iterator.remove();
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Gets the generation of the results of the given region and project, which changes 
+	 * whenever they are invalidated. Generations only ever grow, so their sum changes whenever 
+	 * any of them does.
+	 */
+	private long getGeneration(String region, String projectKey) {
+		return generation + getCount(region) + getCount(region + '\u0000' + (projectKey != null ? projectKey : ""));
+	}
+
+	private long getCount(String key) {
+		Long count = generations.get(key);
+		return count != null ? count : 0;
+	}
+
+	private void increment(String key) {
+		generations.put(key, getCount(key) + 1);
+	}
+
+	private void remove(String key) {
+		Entry previous = entries.remove(key);
+		if (previous != null)
+			totalWeight -= previous.weight;
+	}
+
+	/**
+	 * Builds the cache key from its parts. List parameters are sorted and null parameters are
+	 * treated as empty, so that equivalent queries share the same entry.
+	 */
+	private static String buildKey(String region, String projectKey, String permissionContext,
+			List<?> parameters) {
+		StringBuilder builder = new StringBuilder(region);
+		builder.append('\u0000').append(projectKey);
+		builder.append('\u0000').append(permissionContext);
+		for (Object parameter : parameters) {
+			builder.append('\u0000');
+			if (parameter instanceof Collection && !((Collection<?>) parameter).isEmpty()) {
+				List<String> values = new ArrayList<String>();
+				for (Object value : (Collection<?>) parameter)
+					values.add(String.valueOf(value));
+				Collections.sort(values);
+				builder.append(values);
+			} else if (parameter != null && !(parameter instanceof Collection)) {
+				builder.append(parameter);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Gets the permission context of the current request, which is the key of the logged in
+	 * user (or an empty value for anonymous access).
+	 */
+	private static String getPermissionContext() {
+		ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+		return user != null ? user.getKey() : "";
+	}
+
+	/**
+	 * Weighs a result by the number of records it holds.
+	 */
+	private static long weigh(Object value) {
+		if (value instanceof Collection)
+			return Math.max(1, ((Collection<?>) value).size());
+		else if (value instanceof Map)
+			return Math.max(1, ((Map<?, ?>) value).size());
+		else
+			return 1;
+	}
+
+
+	/**
+	 * Single cached result, along with the data needed to invalidate and expire it.
+	 */
+	private static class Entry {
+		private final String region;
+		private final String projectKey;
+		private final Object value;
+		private final long weight;
+		private final long created;
+
+		private Entry(String region, String projectKey, Object value) {
+			this.region = region;
+			this.projectKey = projectKey;
+			this.value = value;
+			this.weight = weigh(value);
+			this.created = System.currentTimeMillis();
+		}
+
+		private boolean isExpired(long now, long timeToLive) {
+			return now - created > timeToLive;
+		}
+	}
+
+	/**
+	 * Computation of a result that is running for one request, which other requests for the
+	 * same result can join and wait for.
+	 */
+	private static class Load {
+		private final String region;
+		private final String projectKey;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Object value;
+		private volatile boolean loaded;
+
+		private Load(String region, String projectKey) {
+			this.region = region;
+			this.projectKey = projectKey;
+		}
+
+		/**
+		 * Determines whether an invalidation of the given region and project affects this
+		 * computation.
+		 */
+		private boolean matches(String region, String projectKey) {
+			return this.region.equals(region)
+					&& (projectKey == null || this.projectKey == null || projectKey.equals(this.projectKey));
+		}
+
+		private void complete(Object value, boolean loaded) {
+			this.value = value;
+			this.loaded = loaded;
+			done.countDown();
+		}
+
+		/**
+		 * Waits for the computation to finish.
+		 *
+		 * @return Computed result.
+		 * @throws IllegalStateException if the computation failed or the wait was interrupted.
+		 */
+		private Object await() {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a result being computed.", e);
+			}
+			if (!loaded)
+				throw new IllegalStateException("The computation of a result this request waited for failed.");
+			return value;
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package plugin_suite.charts;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Data series of a time trending chart, held as parallel primitive arrays of dates (in 
+ * milliseconds since 1/1/1970) and counts.
+ * 
+ * Besides the repeated query parameters of the chart resource, a series can be read from a JSON 
+ * body of the form {"dates": [...], "counts": [...]} (or several named series, as 
+ * {"series": [{"name": ..., "dates": [...], "counts": [...]}, ...]}), or from the compact 
+ * binary format below, 
+ * where every number is a zigzag encoded variable length integer:
+ * 
+ *   version (1), number of points, date deltas (first date relative to 0), counts
+ */
+public class ChartSeries {
+	public static final String BINARY_MEDIA_TYPE = "application/octet-stream";
+	
+	// Largest number of points accepted from a request body
+	public static final int MAX_POINTS = 100000;
+	
+	// Largest number of series accepted from a request body
+	public static final int MAX_SERIES = 20;
+	
+	private static final int BINARY_VERSION = 1;
+	
+	private final String name;		// Null value means the chart's default series name
+	private final long[] dates;
+	private final long[] counts;
+	
+	/**
+	 * Constructor that accepts the dates and counts. Should be equal in length, but the longer 
+	 * array is truncated to the length of the shorter one, if they aren't equal.
+	 * 
+	 * @param dates - Dates, in milliseconds since 1/1/1970.
+	 * @param counts - Counts associated with the dates.
+	 */
+	public ChartSeries(long[] dates, long[] counts) {
+		this(null, dates, counts);
+	}
+	
+	/**
+	 * Constructor that accepts the name of the series, shown in the chart's legend, along with 
+	 * its dates and counts.
+	 * 
+	 * @param name - Name of the series (can be null).
+	 * @param dates - Dates, in milliseconds since 1/1/1970.
+	 * @param counts - Counts associated with the dates.
+	 */
+	public ChartSeries(String name, long[] dates, long[] counts) {
+		this.name = name;
+		int length = Math.min(dates.length, counts.length);
+		this.dates = dates.length == length ? dates : Arrays.copyOf(dates, length);
+		this.counts = counts.length == length ? counts : Arrays.copyOf(counts, length);
+	}
+	
+	/**
+	 * Creates a series from the boxed lists bound from query parameters.
+	 * 
+	 * @param dates - Dates, in milliseconds since 1/1/1970 (can be null).
+	 * @param counts - Counts associated with the dates (can be null).
+	 * @return Series of the given points.
+	 */
+	public static ChartSeries fromLists(List<Long> dates, List<Long> counts) {
+		int length = dates == null || counts == null ? 0 : Math.min(dates.size(), counts.size());
+		long[] dateArray = new long[length];
+		long[] countArray = new long[length];
+		for (int i = 0; i < length; i++) {
+			dateArray[i] = dates.get(i);
+			countArray[i] = counts.get(i);
+		}
+		return new ChartSeries(dateArray, countArray);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int size() {
+		return dates.length;
+	}
+	
+	public long[] getDates() {
+		return dates;
+	}
+	
+	public long[] getCounts() {
+		return counts;
+	}
+	
+	/**
+	 * Gets the equivalent series sorted by date, with the counts of repeated dates summed.
+	 * 
+	 * @return Normalized series (this series, if already normalized).
+	 */
+	public ChartSeries normalize() {
+		boolean normalized = true;
+		for (int i = 1; i < dates.length && normalized; i++)
+			normalized = dates[i - 1] < dates[i];
+		if (normalized)
+			return this;
+		
+		// Gets the distinct dates in order
+		long[] sorted = Arrays.copyOf(dates, dates.length);
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[distinct - 1])
+				sorted[distinct++] = sorted[i];
+		}
+		long[] distinctDates = Arrays.copyOf(sorted, distinct);
+		
+		// Sums the counts of every distinct date
+		long[] sums = new long[distinct];
+		for (int i = 0; i < dates.length; i++)
+			sums[Arrays.binarySearch(distinctDates, dates[i])] += counts[i];
+		
+		return new ChartSeries(name, distinctDates, sums);
+	}
+	
+	/**
+	 * Reads a series from a JSON object holding "dates" and "counts" arrays. Any other member 
+	 * is skipped.
+	 * 
+	 * @param input - Stream holding the JSON object.
+	 * @return Series read from the stream.
+	 * @throws IOException If the JSON is malformed or holds too many points.
+	 */
+	public static ChartSeries readJson(InputStream input) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(input, Charset.forName("UTF-8")));
+		long[] dates = new long[0];
+		long[] counts = new long[0];
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("dates"))
+				dates = readLongArray(reader);
+			else if (name.equals("counts"))
+				counts = readLongArray(reader);
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+		
+		return new ChartSeries(dates, counts);
+	}
+	
+	/**
+	 * Reads one or more series from a JSON object, which either holds a "series" array of named 
+	 * series or the "dates" and "counts" arrays of a single unnamed series.
+	 * 
+	 * @param input - Stream holding the JSON object.
+	 * @return Series read from the stream, in the order given.
+	 * @throws IOException If the JSON is malformed or holds too many series or points.
+	 */
+	public static List<ChartSeries> readJsonSeries(InputStream input) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(input, Charset.forName("UTF-8")));
+		List<ChartSeries> series = new ArrayList<ChartSeries>();
+		long[] dates = null;
+		long[] counts = null;
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("series")) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					if (series.size() == MAX_SERIES)
+						throw new IOException("Chart must hold at most " + MAX_SERIES + " series.");
+					series.add(readNamedSeries(reader));
+				}
+				reader.endArray();
+			} else if (name.equals("dates")) {
+				dates = readLongArray(reader);
+			} else if (name.equals("counts")) {
+				counts = readLongArray(reader);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		if (series.isEmpty())
+			series.add(new ChartSeries(dates != null ? dates : new long[0], counts != null ? counts : new long[0]));
+		return series;
+	}
+	
+	/**
+	 * Reads a series from its compact binary encoding.
+	 * 
+	 * @param input - Stream holding the encoded series.
+	 * @return Series read from the stream.
+	 * @throws IOException If the encoding is malformed or holds too many points.
+	 */
+	public static ChartSeries readBinary(InputStream input) throws IOException {
+		long version = readVarLong(input);
+		if (version != BINARY_VERSION)
+			throw new IOException("Unsupported series encoding version: " + version);
+		
+		long length = readVarLong(input);
+		if (length < 0 || length > MAX_POINTS)
+			throw new IOException("Series must hold between 0 and " + MAX_POINTS + " points.");
+		
+		long[] dates = new long[(int) length];
+		long previous = 0;
+		for (int i = 0; i < dates.length; i++) {
+			previous += readVarLong(input);
+			dates[i] = previous;
+		}
+		
+		long[] counts = new long[(int) length];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = readVarLong(input);
+		
+		return new ChartSeries(dates, counts);
+	}
+	
+	/**
+	 * Writes this series using its compact binary encoding.
+	 * 
+	 * @param output - Stream receiving the encoded series.
+	 * @throws IOException
+	 */
+	public void writeBinary(OutputStream output) throws IOException {
+		writeVarLong(output, BINARY_VERSION);
+		writeVarLong(output, dates.length);
+		
+		long previous = 0;
+		for (long date : dates) {
+			writeVarLong(output, date - previous);
+			previous = date;
+		}
+		for (long count : counts)
+			writeVarLong(output, count);
+		
+		output.flush();
+	}
+	
+	/**
+	 * Reads a single named series object of a "series" array.
+	 */
+	private static ChartSeries readNamedSeries(JsonReader reader) throws IOException {
+		String seriesName = null;
+		long[] dates = new long[0];
+		long[] counts = new long[0];
+		
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("name") && reader.peek() != JsonToken.NULL)
+				seriesName = reader.nextString();
+			else if (name.equals("dates"))
+				dates = readLongArray(reader);
+			else if (name.equals("counts"))
+				counts = readLongArray(reader);
+			else
+				reader.skipValue();
+		}
+		reader.endObject();
+		
+		return new ChartSeries(seriesName, dates, counts);
+	}
+	
+	/**
+	 * Reads a JSON array of numbers into a primitive array, growing it as needed.
+	 */
+	private static long[] readLongArray(JsonReader reader) throws IOException {
+		long[] values = new long[64];
+		int length = 0;
+		
+		reader.beginArray();
+		while (reader.hasNext()) {
+			if (length == MAX_POINTS)
+				throw new IOException("Series must hold at most " + MAX_POINTS + " points.");
+			if (length == values.length)
+				values = Arrays.copyOf(values, Math.min(values.length * 2, MAX_POINTS));
+			
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				values[length++] = 0;
+			} else {
+				values[length++] = reader.nextLong();
+			}
+		}
+		reader.endArray();
+		
+		return Arrays.copyOf(values, length);
+	}
+	
+	/**
+	 * Reads a zigzag encoded variable length integer.
+	 */
+	private static long readVarLong(InputStream input) throws IOException {
+		long raw = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = input.read();
+			if (b < 0)
+				throw new EOFException("Series encoding ended unexpectedly.");
+			raw |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return (raw >>> 1) ^ -(raw & 1);
+		}
+		throw new IOException("Malformed variable length integer.");
+	}
+	
+	/**
+	 * Writes a zigzag encoded variable length integer.
+	 */
+	private static void writeVarLong(OutputStream output, long value) throws IOException {
+		long raw = (value << 1) ^ (value >> 63);
+		while ((raw & ~0x7FL) != 0) {
+			output.write((int) ((raw & 0x7F) | 0x80));
+			raw >>>= 7;
+		}
+		output.write((int) raw);
+	}
+}
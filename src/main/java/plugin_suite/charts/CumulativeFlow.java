@@ -0,0 +1,168 @@
+package plugin_suite.charts;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import plugin_suite.history.StatusTransition;
+import plugin_suite.models.CumulativeFlowRestResourceModel;
+import plugin_suite.models.CumulativeFlowRestResourceModel.StatusSeriesContainer;
+
+/**
+ * Computes the status occupancy of a project's issues (the number of issues in each status at 
+ * the end of every axis day) for a cumulative flow diagram, in a single sweep over the issues' 
+ * transitions. Rather than counting the issues of every day, each event records a delta on the 
+ * day it happened: a created issue enters its initial status, and a transition moves an issue 
+ * from its old status to its new one. The occupancy of an axis day is then the running sum of 
+ * the deltas up to it, so the work grows with the number of transitions and statuses rather 
+ * than with the length of the history times the number of issues.
+ *
+ * Issues must be added before their transitions, and the transitions of every issue must be 
+ * added in order of change time. Instances aren't thread-safe and are meant to be used by a 
+ * single request.
+ */
+public class CumulativeFlow {
+	private final DateBucketer bucketer;
+	private final TimeZone timeZone;
+	private final long lowerBoundDay;
+	
+	// Occupancy deltas of every status, by epoch day (days before the axis count towards its first day)
+	private final Map<String, DayCounter> deltas = new HashMap<String, DayCounter>();
+	
+	// Names of the statuses seen in transitions, in order of first appearance
+	private final Map<String, String> statusNames = new LinkedHashMap<String, String>();
+	
+	// Creation day and current status of every issue, by issue id
+	private final Map<Long, IssueState> issues = new HashMap<Long, IssueState>();
+	
+	/**
+	 * @param bucketer - Bucketer of the axis, whose upper bound is the last axis day.
+	 * @param dataRange - Number of days represented by the axis.
+	 */
+	public CumulativeFlow(DateBucketer bucketer, int dataRange) {
+		this.bucketer = bucketer;
+		this.timeZone = bucketer.getTimeZone();
+		this.lowerBoundDay = bucketer.getLowerBoundDay(dataRange);
+	}
+	
+	/**
+	 * Adds an issue, which is in its initial status from its creation until its first 
+	 * transition (or in its current status, if it has none).
+	 * 
+	 * @param issueId - Id of the issue.
+	 * @param created - Creation time of the issue, in milliseconds since 1/1/1970.
+	 * @param statusId - Id of the issue's current status.
+	 */
+	public void addIssue(long issueId, long created, String statusId) {
+		issues.put(issueId, new IssueState(toEpochDay(created), statusId));
+	}
+	
+	/**
+	 * Adds a single transition, moving its issue from the old status to the new one. An issue 
+	 * that wasn't added is taken to be created on the day of its first transition.
+	 * 
+	 * @param transition - Status transition.
+	 */
+	public void addTransition(StatusTransition transition) {
+		long day = toEpochDay(transition.getChangeTime());
+		IssueState issue = issues.get(transition.getIssueId());
+		if (issue == null) {
+			issue = new IssueState(day, null);
+			issues.put(transition.getIssueId(), issue);
+		}
+		
+		// Places the issue in the status it left on its first transition, from its creation on
+		if (!issue.transitioned) {
+			addDelta(transition.getOldStatusId(), issue.createdDay, 1);
+			issue.transitioned = true;
+		}
+		addDelta(transition.getOldStatusId(), day, -1);
+		addDelta(transition.getNewStatusId(), day, 1);
+		
+		if (!statusNames.containsKey(transition.getOldStatusId()))
+			statusNames.put(transition.getOldStatusId(), transition.getOldStatus());
+		if (!statusNames.containsKey(transition.getNewStatusId()))
+			statusNames.put(transition.getNewStatusId(), transition.getNewStatus());
+	}
+	
+	/**
+	 * Gets the occupancy of every status with any issues within the axis. Must be called only 
+	 * once, after every issue and transition has been added.
+	 * 
+	 * @param statuses - Ids and names of the known statuses, in workflow order. Statuses missing 
+	 * from it are returned after these, named as in their transitions.
+	 * @return Resource model holding one series per status.
+	 */
+	public CumulativeFlowRestResourceModel getModel(Map<String, String> statuses) {
+		// Places the issues that never changed status in their current status
+		for (IssueState issue : issues.values()) {
+			if (!issue.transitioned && issue.statusId != null)
+				addDelta(issue.statusId, issue.createdDay, 1);
+		}
+		
+		List<Long> dates = new ArrayList<Long>();
+		for (long axisDay = lowerBoundDay; axisDay <= bucketer.getUpperBoundDay(); axisDay += bucketer.getDateInterval())
+			dates.add(bucketer.toMillis(axisDay));
+		
+		Map<String, String> names = new LinkedHashMap<String, String>(statuses);
+		for (Map.Entry<String, String> status : statusNames.entrySet()) {
+			if (!names.containsKey(status.getKey()))
+				names.put(status.getKey(), status.getValue());
+		}
+		
+		List<StatusSeriesContainer> series = new ArrayList<StatusSeriesContainer>();
+		for (Map.Entry<String, String> status : names.entrySet()) {
+			DayCounter statusDeltas = deltas.get(status.getKey());
+			if (statusDeltas == null)
+				continue;
+			
+			// Sums the deltas up to the end of every axis day
+			long[] days = statusDeltas.getSortedKeys();
+			List<Long> counts = new ArrayList<Long>(dates.size());
+			long occupancy = 0;
+			boolean occupied = false;
+			int index = 0;
+			for (long axisDay = lowerBoundDay; axisDay <= bucketer.getUpperBoundDay(); axisDay += bucketer.getDateInterval()) {
+				while (index < days.length && days[index] <= axisDay)
+					occupancy += statusDeltas.get(days[index++]);
+				counts.add(occupancy);
+				occupied |= occupancy != 0;
+			}
+			
+			if (occupied)
+				series.add(new StatusSeriesContainer(status.getKey(), status.getValue(), counts));
+		}
+		return new CumulativeFlowRestResourceModel(dates, series);
+	}
+	
+	private void addDelta(String statusId, long day, long delta) {
+		DayCounter statusDeltas = deltas.get(statusId);
+		if (statusDeltas == null) {
+			statusDeltas = new DayCounter();
+			deltas.put(statusId, statusDeltas);
+		}
+		statusDeltas.add(Math.max(day, lowerBoundDay), delta);
+	}
+	
+	private long toEpochDay(long millis) {
+		return DateBucketer.toEpochDay(millis, timeZone);
+	}
+	
+	
+	/**
+	 * Creation day and current status of a single issue.
+	 */
+	private static class IssueState {
+		private final long createdDay;
+		private final String statusId;
+		private boolean transitioned;
+		
+		private IssueState(long createdDay, String statusId) {
+			this.createdDay = createdDay;
+			this.statusId = statusId;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package plugin_suite.charts;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.jfree.data.time.Day;
+import org.jfree.data.time.TimeTableXYDataset;
+
+import com.atlassian.jira.charts.Chart;
+
+import plugin_suite.models.ChartDataRestResourceModel;
+import plugin_suite.models.ChartDataRestResourceModel.SeriesDataContainer;
+import plugin_suite.models.CumulativeFlowRestResourceModel;
+import plugin_suite.models.CumulativeFlowRestResourceModel.StatusSeriesContainer;
+
+/**
+ * Cumulative flow diagram: the number of issues in each status over time, stacked as areas on 
+ * the same time axis as the trending chart.
+ */
+public class CumulativeFlowChart extends TimeTrendingChart {
+	public CumulativeFlowChart(String title, String timeAxisLabel, String valueAxisLabel) {
+		super(title, timeAxisLabel, valueAxisLabel);
+	}
+	
+	/**
+	 * Generates the diagram of the given status occupancy.
+	 * 
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param dateInterval - Number of days between each date within the time-based axis of the chart.
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param flow - Number of issues in each status at every axis date.
+	 * @param bucketer - Bucketer the axis dates were computed with.
+	 * @return Chart object generated using the given parameters.
+	 */
+	public Chart generateChart(int width, int height, int dateInterval, int dataRange, 
+			CumulativeFlowRestResourceModel flow, DateBucketer bucketer) {
+		TimeZone timeZone = bucketer.getTimeZone();
+		TimeTableXYDataset dataset = new TimeTableXYDataset(timeZone);
+		
+		// Stacks the statuses from the end of the workflow up, so that finished work forms the base
+		List<Long> dates = flow.getDates();
+		List<StatusSeriesContainer> statuses = flow.getStatuses();
+		for (int i = statuses.size() - 1; i >= 0; i--) {
+			StatusSeriesContainer status = statuses.get(i);
+			String seriesName = status.getName() != null ? status.getName() : status.getId();
+			for (int j = 0; j < dates.size() && j < status.getCounts().size(); j++)
+				dataset.add(new Day(new Date(dates.get(j)), timeZone), status.getCounts().get(j), seriesName, false);
+		}
+		
+		Date upperBound = new Date(bucketer.toMillis(bucketer.getUpperBoundDay()));
+		return renderChart(dataset, true, width, height, dateInterval, dataRange, upperBound, timeZone);
+	}
+	
+	/**
+	 * Gets the data of the diagram of the given status occupancy, without rendering it. The 
+	 * series are listed in the order they are stacked, from the base up.
+	 * 
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param flow - Number of issues in each status at every axis date.
+	 * @param bucketer - Bucketer the axis dates were computed with.
+	 * @return Stacked series, labels and axis ticks of the diagram.
+	 */
+	public ChartDataRestResourceModel getChartData(int dataRange, CumulativeFlowRestResourceModel flow, 
+			DateBucketer bucketer) {
+		List<SeriesDataContainer> series = new ArrayList<SeriesDataContainer>();
+		List<StatusSeriesContainer> statuses = flow.getStatuses();
+		for (int i = statuses.size() - 1; i >= 0; i--) {
+			StatusSeriesContainer status = statuses.get(i);
+			String seriesName = status.getName() != null ? status.getName() : status.getId();
+			series.add(new SeriesDataContainer(seriesName, flow.getDates(), status.getCounts()));
+		}
+		return toChartData(bucketer, dataRange, true, series);
+	}
+}
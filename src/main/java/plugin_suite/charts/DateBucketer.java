@@ -0,0 +1,165 @@
+package plugin_suite.charts;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Groups dates into the axis dates of a time trending chart. Dates are handled as epoch days 
+ * (the number of days since 1/1/1970 in the bucketer's time zone), so bucketing is plain long 
+ * arithmetic, isn't affected by daylight saving shifts, and allocates nothing per date.
+ * 
+ * Instances are immutable, so a single bucketer can be shared by any number of request threads.
+ */
+public class DateBucketer {
+	public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	
+	private final TimeZone timeZone;
+	private final long upperBoundDay;
+	private final int dateInterval;
+	
+	/**
+	 * Constructor that accepts the time zone, the upper bound and the date interval of the axis.
+	 * 
+	 * @param timeZone - Time zone in which days start and end.
+	 * @param upperBoundDay - Highest date on the axis, as an epoch day.
+	 * @param dateInterval - Number of days between each date on the axis.
+	 */
+	public DateBucketer(TimeZone timeZone, long upperBoundDay, int dateInterval) {
+		if (dateInterval <= 0)
+			throw new IllegalArgumentException("Date interval must be positive.");
+		
+		// Copies the time zone, since TimeZone objects are mutable
+		this.timeZone = (TimeZone) timeZone.clone();
+		this.upperBoundDay = upperBoundDay;
+		this.dateInterval = dateInterval;
+	}
+	
+	/**
+	 * Creates a bucketer whose axis ends today.
+	 * 
+	 * @param timeZone - Time zone in which days start and end.
+	 * @param dateInterval - Number of days between each date on the axis.
+	 * @return Bucketer for an axis ending today.
+	 */
+	public static DateBucketer forToday(TimeZone timeZone, int dateInterval) {
+		return new DateBucketer(timeZone, toEpochDay(System.currentTimeMillis(), timeZone), dateInterval);
+	}
+	
+	/**
+	 * Converts an instant into the epoch day it falls on within the given time zone.
+	 * 
+	 * @param millis - Instant, in milliseconds since 1/1/1970.
+	 * @param timeZone - Time zone of the day.
+	 * @return Number of days since 1/1/1970.
+	 */
+	public static long toEpochDay(long millis, TimeZone timeZone) {
+		long localMillis = millis + timeZone.getOffset(millis);
+		long day = localMillis / MILLIS_PER_DAY;
+		return localMillis % MILLIS_PER_DAY < 0 ? day - 1 : day;		// Rounds down for dates before 1970
+	}
+	
+	/**
+	 * Converts an epoch day into the instant it starts at within the given time zone.
+	 * 
+	 * @param epochDay - Number of days since 1/1/1970.
+	 * @param timeZone - Time zone of the day.
+	 * @return Start of the day, in milliseconds since 1/1/1970.
+	 */
+	public static long toMillis(long epochDay, TimeZone timeZone) {
+		long localMillis = epochDay * MILLIS_PER_DAY;
+		return localMillis - timeZone.getOffset(localMillis - timeZone.getOffset(localMillis));
+	}
+	
+	/**
+	 * Removes the time component from the given instant.
+	 * 
+	 * @param millis - Instant, in milliseconds since 1/1/1970.
+	 * @param timeZone - Time zone of the day.
+	 * @return Start of the day the instant falls on, in milliseconds since 1/1/1970.
+	 */
+	public static long startOfDay(long millis, TimeZone timeZone) {
+		return toMillis(toEpochDay(millis, timeZone), timeZone);
+	}
+	
+	/**
+	 * Determines the axis day corresponding to the given day, which is always equal to the 
+	 * upper bound minus the date interval multiplied by some integer.
+	 * 
+	 * @param epochDay - Day to be associated with an axis day.
+	 * @return Axis day, as an epoch day.
+	 */
+	public long getAxisDay(long epochDay) {
+		return epochDay + (upperBoundDay - epochDay) % dateInterval;
+	}
+	
+	/**
+	 * Determines the axis day corresponding to the given instant.
+	 * 
+	 * @param millis - Instant, in milliseconds since 1/1/1970.
+	 * @return Axis day, as an epoch day.
+	 */
+	public long getAxisDayOf(long millis) {
+		return getAxisDay(toEpochDay(millis, timeZone));
+	}
+	
+	/**
+	 * Determines the axis day corresponding to the given date.
+	 * 
+	 * @param date - Date to be associated with an axis day.
+	 * @return Axis day, as an epoch day.
+	 */
+	public long getAxisDayOf(Date date) {
+		return getAxisDayOf(date.getTime());
+	}
+	
+	/**
+	 * Determines the first day on the axis, which lies the data range before the upper bound. 
+	 * The range is extended to a multiple of the date interval, so that the upper bound is 
+	 * always one of the axis days.
+	 * 
+	 * @param dataRange - Range of data (in days) represented by the axis.
+	 * @return Lowest axis day, as an epoch day.
+	 */
+	public long getLowerBoundDay(int dataRange) {
+		int offset = dataRange % dateInterval != 0 ? dateInterval - dataRange % dateInterval : 0;
+		return upperBoundDay - dataRange - offset;
+	}
+	
+	/**
+	 * Gets the dates of the axis ticks, which are the same ones the chart's date axis marks: 
+	 * every axis day from the lower bound up to the upper bound.
+	 * 
+	 * @param dataRange - Range of data (in days) represented by the axis.
+	 * @return Start of every axis day, in milliseconds since 1/1/1970, in ascending order.
+	 */
+	public List<Long> getAxisTicks(int dataRange) {
+		List<Long> ticks = new ArrayList<Long>();
+		for (long axisDay = getLowerBoundDay(dataRange); axisDay <= upperBoundDay; axisDay += dateInterval)
+			ticks.add(toMillis(axisDay));
+		return ticks;
+	}
+	
+	/**
+	 * Converts an epoch day into the instant it starts at within this bucketer's time zone.
+	 * 
+	 * @param epochDay - Number of days since 1/1/1970.
+	 * @return Start of the day, in milliseconds since 1/1/1970.
+	 */
+	public long toMillis(long epochDay) {
+		return toMillis(epochDay, timeZone);
+	}
+	
+	public TimeZone getTimeZone() {
+		return (TimeZone) timeZone.clone();
+	}
+	
+	public long getUpperBoundDay() {
+		return upperBoundDay;
+	}
+	
+	public int getDateInterval() {
+		return dateInterval;
+	}
+}
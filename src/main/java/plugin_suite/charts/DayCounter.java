@@ -0,0 +1,106 @@
+package plugin_suite.charts;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates counts per day (or any other long key) in primitive arrays, using open addressing, 
+ * so that counting allocates no objects per data point.
+ * 
+ * Instances aren't thread-safe and are meant to be used by a single request.
+ */
+public class DayCounter {
+	private static final int DEFAULT_CAPACITY = 64;		// Must be a power of two
+	
+	private long[] keys;
+	private long[] counts;
+	private boolean[] used;
+	private int size;
+	
+	public DayCounter() {
+		keys = new long[DEFAULT_CAPACITY];
+		counts = new long[DEFAULT_CAPACITY];
+		used = new boolean[DEFAULT_CAPACITY];
+	}
+	
+	/**
+	 * Adds the given amount to the count of the given key.
+	 * 
+	 * @param key - Key to count under (typically an epoch day).
+	 * @param amount - Amount to add.
+	 */
+	public void add(long key, long amount) {
+		int slot = findSlot(keys, used, key);
+		if (!used[slot]) {
+			if ((size + 1) * 4 > keys.length * 3) {
+				// Keeps the load factor below 0.75
+				resize(keys.length * 2);
+				slot = findSlot(keys, used, key);
+			}
+			used[slot] = true;
+			keys[slot] = key;
+			size++;
+		}
+		counts[slot] += amount;
+	}
+	
+	/**
+	 * Gets the count of the given key.
+	 * 
+	 * @param key - Key to look up.
+	 * @return Count of the key (0 if nothing was counted under it).
+	 */
+	public long get(long key) {
+		int slot = findSlot(keys, used, key);
+		return used[slot] ? counts[slot] : 0;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets every key counted so far.
+	 * 
+	 * @return Keys, in ascending order.
+	 */
+	public long[] getSortedKeys() {
+		long[] sorted = new long[size];
+		int index = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (used[i])
+				sorted[index++] = keys[i];
+		}
+		Arrays.sort(sorted);
+		return sorted;
+	}
+	
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldCounts = counts;
+		boolean[] oldUsed = used;
+		
+		keys = new long[capacity];
+		counts = new long[capacity];
+		used = new boolean[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int slot = findSlot(keys, used, oldKeys[i]);
+				used[slot] = true;
+				keys[slot] = oldKeys[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+	
+	/**
+	 * Finds the slot holding the given key, or the empty slot it should be stored in.
+	 */
+	private static int findSlot(long[] keys, boolean[] used, long key) {
+		int mask = keys.length - 1;
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (hash ^ (hash >>> 32)) & mask;
+		while (used[slot] && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+}
@@ -0,0 +1,81 @@
+package plugin_suite.charts;
+
+/**
+ * Immutable result of rendering a chart: the PNG image along with the image map and base 64 
+ * representation served to gadgets.
+ */
+public class RenderedChart {
+	private final String fingerprint;
+	private final String location;
+	private final String imageMap;
+	private final String imageMapName;
+	private final int width;
+	private final int height;
+	private final String base64Image;
+	private final byte[] pngBytes;
+	private final String owner;
+	
+	/**
+	 * @param owner - Key of the user the chart was rendered for (empty value for anonymous access).
+	 */
+	public RenderedChart(String fingerprint, String location, String imageMap, String imageMapName, 
+			int width, int height, String base64Image, byte[] pngBytes, String owner) {
+		this.fingerprint = fingerprint;
+		this.location = location;
+		this.imageMap = imageMap;
+		this.imageMapName = imageMapName;
+		this.width = width;
+		this.height = height;
+		this.base64Image = base64Image;
+		this.pngBytes = pngBytes;
+		this.owner = owner;
+	}
+	
+	public String getFingerprint() {
+		return fingerprint;
+	}
+	
+	public String getLocation() {
+		return location;
+	}
+	
+	public String getImageMap() {
+		return imageMap;
+	}
+	
+	public String getImageMapName() {
+		return imageMapName;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public String getBase64Image() {
+		return base64Image;
+	}
+	
+	public byte[] getPngBytes() {
+		return pngBytes;
+	}
+	
+	public String getOwner() {
+		return owner;
+	}
+	
+	/**
+	 * Estimates the memory held by this chart, in bytes.
+	 * 
+	 * @return Approximate size in bytes.
+	 */
+	public long getSize() {
+		long size = pngBytes != null ? pngBytes.length : 0;
+		size += 2L * (base64Image != null ? base64Image.length() : 0);
+		size += 2L * (imageMap != null ? imageMap.length() : 0);
+		return size;
+	}
+}
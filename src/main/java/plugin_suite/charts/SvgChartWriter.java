@@ -0,0 +1,247 @@
+package plugin_suite.charts;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import plugin_suite.models.ChartDataRestResourceModel;
+import plugin_suite.models.ChartDataRestResourceModel.SeriesDataContainer;
+
+/**
+ * Renders chart data as a compact SVG image: one line per series (or one filled area per series,
+ * if stacked), the date axis with the same ticks as the rendered PNG chart, a value axis and a
+ * legend once there is more than one series. The markup is written as plain text, so nothing is
+ * rasterized on the server and the browser scales the image to any size.
+ */
+public class SvgChartWriter {
+	public static final String MEDIA_TYPE = "image/svg+xml";
+
+	// Series colors, in the order the PNG chart assigns them
+	private static final String[] COLORS = { "#FF5555", "#5555FF", "#55FF55", "#FFFF55", "#FF55FF", "#55FFFF",
+			"#FFAFAF", "#808080", "#C00000", "#0000C0", "#00C000", "#C0C000" };
+
+	// Space around the plot, holding the title, the axis labels and the legend
+	private static final int MARGIN_LEFT = 60;
+	private static final int MARGIN_RIGHT = 20;
+	private static final int MARGIN_TOP = 30;
+	private static final int MARGIN_BOTTOM = 90;
+	private static final int LEGEND_HEIGHT = 20;
+
+	// Approximate number of ticks on the value axis
+	private static final int VALUE_TICKS = 5;
+
+	/**
+	 * Writes the SVG image of the given chart data.
+	 *
+	 * @param chart - Data of the chart.
+	 * @param width - Width of the image.
+	 * @param height - Height of the image.
+	 * @return SVG markup.
+	 */
+	public static String write(ChartDataRestResourceModel chart, int width, int height) {
+		List<Long> ticks = chart.getTicks();
+		List<SeriesDataContainer> seriesList = chart.getSeries();
+		boolean useLegend = seriesList.size() > 1;
+
+		// Determines the plot area, which is never smaller than a single pixel
+		int plotLeft = MARGIN_LEFT;
+		int plotTop = MARGIN_TOP;
+		int plotRight = Math.max(plotLeft + 1, width - MARGIN_RIGHT);
+		int plotBottom = Math.max(plotTop + 1, height - MARGIN_BOTTOM - (useLegend ? LEGEND_HEIGHT : 0));
+
+		// Spans the time axis one day beyond its first and last ticks, as the PNG chart does
+		long minX = ticks.isEmpty() ? 0 : ticks.get(0) - DateBucketer.MILLIS_PER_DAY;
+		long maxX = ticks.isEmpty() ? 1 : ticks.get(ticks.size() - 1) + DateBucketer.MILLIS_PER_DAY;
+
+		// Gets the base of every stacked series, and the highest value drawn
+		List<List<Long>> bases = new ArrayList<List<Long>>();
+		Map<Long, Long> stackHeights = new HashMap<Long, Long>();
+		long maxValue = 0;
+		for (SeriesDataContainer series : seriesList) {
+			List<Long> base = new ArrayList<Long>();
+			for (int i = 0; i < series.getDates().size(); i++) {
+				long value = series.getCounts().get(i);
+				if (chart.isStacked()) {
+					Long stackHeight = stackHeights.get(series.getDates().get(i));
+					base.add(stackHeight != null ? stackHeight : 0L);
+					value += base.get(i);
+					stackHeights.put(series.getDates().get(i), value);
+				}
+				maxValue = Math.max(maxValue, value);
+			}
+			bases.add(base);
+		}
+		long valueStep = getValueStep(maxValue);
+		long maxY = Math.max(1, (maxValue + valueStep - 1) / valueStep) * valueStep;
+		Scale scale = new Scale(minX, maxX, maxY, plotLeft, plotRight, plotTop, plotBottom);
+
+		StringBuilder svg = new StringBuilder(4096);
+		svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width).append("\" height=\"")
+				.append(height).append("\" viewBox=\"0 0 ").append(width).append(' ').append(height)
+				.append("\" font-family=\"sans-serif\" font-size=\"10\">");
+		svg.append("<rect width=\"100%\" height=\"100%\" fill=\"#FFFFFF\"/>");
+		appendText(svg, width / 2, 18, "middle", "font-size=\"14\" font-weight=\"bold\"", chart.getTitle());
+
+		// Draws the value axis grid and labels
+		for (long value = 0; value <= maxY; value += valueStep) {
+			int y = scale.y(value);
+			svg.append("<line x1=\"").append(plotLeft).append("\" y1=\"").append(y).append("\" x2=\"")
+					.append(plotRight).append("\" y2=\"").append(y).append("\" stroke=\"#E0E0E0\"/>");
+			appendText(svg, plotLeft - 4, y + 3, "end", null, String.valueOf(value));
+		}
+
+		// Draws the date axis ticks, with vertical labels as on the PNG chart
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		dateFormat.setTimeZone(chart.getTimeZone() != null
+				? TimeZone.getTimeZone(chart.getTimeZone()) : TimeZone.getDefault());
+		for (long tick : ticks) {
+			int x = scale.x(tick);
+			svg.append("<line x1=\"").append(x).append("\" y1=\"").append(plotBottom).append("\" x2=\"").append(x)
+					.append("\" y2=\"").append(plotBottom + 4).append("\" stroke=\"#808080\"/>");
+			svg.append("<text transform=\"translate(").append(x + 3).append(',').append(plotBottom + 8)
+					.append(") rotate(-90)\" text-anchor=\"end\">").append(dateFormat.format(new Date(tick)))
+					.append("</text>");
+		}
+		svg.append("<path d=\"M").append(plotLeft).append(' ').append(plotTop).append("V").append(plotBottom)
+				.append("H").append(plotRight).append("\" fill=\"none\" stroke=\"#808080\"/>");
+
+		// Draws every series, either as a line or as the area between its base and its top
+		for (int i = 0; i < seriesList.size(); i++) {
+			SeriesDataContainer series = seriesList.get(i);
+			String color = COLORS[i % COLORS.length];
+			List<Long> dates = series.getDates();
+			List<Long> counts = series.getCounts();
+			StringBuilder points = new StringBuilder();
+			if (chart.isStacked()) {
+				List<Long> base = bases.get(i);
+				for (int j = 0; j < dates.size(); j++)
+					appendPoint(points, scale.x(dates.get(j)), scale.y(base.get(j) + counts.get(j)));
+				for (int j = dates.size() - 1; j >= 0; j--)
+					appendPoint(points, scale.x(dates.get(j)), scale.y(base.get(j)));
+				svg.append("<polygon points=\"").append(points).append("\" fill=\"").append(color).append("\"/>");
+			} else {
+				for (int j = 0; j < dates.size(); j++)
+					appendPoint(points, scale.x(dates.get(j)), scale.y(counts.get(j)));
+				svg.append("<polyline points=\"").append(points).append("\" fill=\"none\" stroke=\"").append(color)
+						.append("\" stroke-width=\"2\"/>");
+			}
+		}
+
+		// Labels the axes
+		appendText(svg, (plotLeft + plotRight) / 2, plotBottom + MARGIN_BOTTOM - 6, "middle", "font-size=\"12\"",
+				chart.getTimeAxisLabel());
+		svg.append("<text transform=\"translate(14,").append((plotTop + plotBottom) / 2)
+				.append(") rotate(-90)\" text-anchor=\"middle\" font-size=\"12\">")
+				.append(escape(chart.getValueAxisLabel())).append("</text>");
+
+		// Lists every series below the chart
+		if (useLegend) {
+			int x = plotLeft;
+			int y = height - 8;
+			for (int i = 0; i < seriesList.size(); i++) {
+				String name = seriesList.get(i).getName();
+				svg.append("<rect x=\"").append(x).append("\" y=\"").append(y - 9).append("\" width=\"10\" height=\"10\" fill=\"")
+						.append(COLORS[i % COLORS.length]).append("\"/>");
+				appendText(svg, x + 14, y, null, null, name);
+				x += 24 + (name != null ? name.length() : 0) * 6;
+			}
+		}
+
+		return svg.append("</svg>").toString();
+	}
+
+	/**
+	 * Gets the step between the ticks of the value axis: the smallest of 1, 2 or 5 times a power
+	 * of ten that divides the axis into at most the intended number of ticks.
+	 *
+	 * @param maxValue - Highest value on the axis.
+	 * @return Positive step.
+	 */
+	public static long getValueStep(long maxValue) {
+		long rawStep = Math.max(1, (maxValue + VALUE_TICKS - 1) / VALUE_TICKS);
+		long magnitude = 1;
+		while (magnitude <= rawStep / 10)
+			magnitude *= 10;
+
+		long[] multipliers = { 1, 2, 5, 10 };
+		for (long multiplier : multipliers) {
+			if (magnitude * multiplier >= rawStep)
+				return magnitude * multiplier;
+		}
+		return magnitude * 10;
+	}
+
+	private static void appendPoint(StringBuilder points, int x, int y) {
+		if (points.length() > 0)
+			points.append(' ');
+		points.append(x).append(',').append(y);
+	}
+
+	private static void appendText(StringBuilder svg, int x, int y, String anchor, String attributes, String text) {
+		if (text == null || text.isEmpty())
+			return;
+		svg.append("<text x=\"").append(x).append("\" y=\"").append(y).append('"');
+		if (anchor != null)
+			svg.append(" text-anchor=\"").append(anchor).append('"');
+		if (attributes != null)
+			svg.append(' ').append(attributes);
+		svg.append('>').append(escape(text)).append("</text>");
+	}
+
+	/**
+	 * Escapes the characters of the given text that aren't allowed within XML text or attributes.
+	 */
+	private static String escape(String text) {
+		if (text == null)
+			return "";
+
+		StringBuilder escaped = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '&': escaped.append("&amp;"); break;
+				case '<': escaped.append("&lt;"); break;
+				case '>': escaped.append("&gt;"); break;
+				case '"': escaped.append("&quot;"); break;
+				default: escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+
+	/**
+	 * Maps dates and values onto the pixels of the plot area.
+	 */
+	private static class Scale {
+		private final long minX;
+		private final long maxX;
+		private final long maxY;
+		private final int left;
+		private final int right;
+		private final int top;
+		private final int bottom;
+
+		private Scale(long minX, long maxX, long maxY, int left, int right, int top, int bottom) {
+			this.minX = minX;
+			this.maxX = Math.max(maxX, minX + 1);
+			this.maxY = maxY;
+			this.left = left;
+			this.right = right;
+			this.top = top;
+			this.bottom = bottom;
+		}
+
+		private int x(long date) {
+			return left + (int) Math.round((double) (date - minX) * (right - left) / (maxX - minX));
+		}
+
+		private int y(long value) {
+			return bottom - (int) Math.round((double) value * (bottom - top) / maxY);
+		}
+	}
+}
@@ -1,23 +1,30 @@
 package plugin_suite.charts;
 
-import java.sql.Timestamp;
-import java.util.Calendar;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 
+import org.jfree.chart.ChartUtilities;
 import org.jfree.data.time.Day;
 import org.jfree.data.time.TimeSeries;
 import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.data.xy.XYDataset;
 
 import com.atlassian.jira.charts.Chart;
 import com.atlassian.jira.charts.jfreechart.ChartHelper;
 import com.atlassian.jira.charts.util.ChartUtils;
 import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.timezone.TimeZoneManager;
 import com.atlassian.jira.util.I18nHelper;
 
+import plugin_suite.models.ChartDataRestResourceModel;
+import plugin_suite.models.ChartDataRestResourceModel.SeriesDataContainer;
+
 public class TimeTrendingChart {
 	private String title;
 	private String seriesName;
@@ -42,52 +49,135 @@ public class TimeTrendingChart {
 	}
 	
 	public Chart generateChart(int width, int height, int dateInterval, int dataRange, List<Long> dates, List<Long> counts) {
+		ChartSeries chartSeries = ChartSeries.fromLists(dates, counts);
+		return generateChart(width, height, dateInterval, dataRange, chartSeries.getDates(), chartSeries.getCounts());
+	}
+	
+	public Chart generateChart(int width, int height, int dateInterval, int dataRange, long[] dates, long[] counts) {
+		// Should be equal in length, but will take the smaller length of the two, if they aren't equal
+		return generateChart(width, height, dateInterval, dataRange, 
+				Collections.singletonList(new ChartSeries(dates, counts)));
+	}
+	
+	/**
+	 * Generates a chart with one line per series, all of which are bucketed into the same axis 
+	 * dates and drawn into a single image. A legend is shown once there is more than one series.
+	 * 
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param dateInterval - Number of days between each date within the time-based axis of the chart.
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param seriesList - Series of the chart, in the order they are drawn. Unnamed series are 
+	 * given the default series name.
+	 * @return Chart object generated using the given parameters.
+	 */
+	public Chart generateChart(int width, int height, int dateInterval, int dataRange, List<ChartSeries> seriesList) {
 		// Initializes data set for the chart
 		final TimeSeriesCollection dataset = new TimeSeriesCollection();
-		final TimeSeries series = new TimeSeries(seriesName);
-		
-		// Should be equal in length, but will take the smaller length of the two, if they aren't equal
-		int length = dates.size() <= counts.size() ? dates.size() : counts.size();
 		
-		// Gets upper bound of chart - today's date
-		Date upperBound = TimeTrendingChartGenerator.removeDateTime(new Date());
+		// Gets bucketer for the axis, which ends at today's date in the user's time zone
+		TimeZone timeZone = getUserTimeZone();
+		DateBucketer bucketer = DateBucketer.forToday(timeZone, dateInterval);
+		Date upperBound = new Date(bucketer.toMillis(bucketer.getUpperBoundDay()));
 		
-		// Initializes map of days to counts
-		Map<Day, Long> map = new HashMap<Day, Long>();
+		for (SeriesDataContainer bucketed : bucket(bucketer, seriesList)) {
+			final TimeSeries series = new TimeSeries(bucketed.getName());
+			for (int i = 0; i < bucketed.getDates().size(); i++)
+				series.add(new Day(new Date(bucketed.getDates().get(i)), timeZone), bucketed.getCounts().get(i));
+			dataset.addSeries(series);
+		}
 		
-		// Obtains the data points for the chart
-		Calendar calendar = new GregorianCalendar();
-		for (int i = 0; i < length; i++) {
-			// Gets date based on list of milliseconds
-			Date date = new Timestamp(dates.get(i));
-			
-			// Gets the axis date and sets it within the calendar
-			calendar.setTime(getAxisDate(date, upperBound, dateInterval));
+		return renderChart(dataset, false, width, height, dateInterval, dataRange, upperBound, timeZone);
+	}
+	
+	/**
+	 * Gets the data of the chart that would be generated for the given series, bucketed the same 
+	 * way, without rendering it.
+	 * 
+	 * @param dateInterval - Number of days between each date within the time-based axis of the chart.
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param seriesList - Series of the chart, in the order they are drawn.
+	 * @return Bucketed series, labels and axis ticks of the chart.
+	 */
+	public ChartDataRestResourceModel getChartData(int dateInterval, int dataRange, List<ChartSeries> seriesList) {
+		DateBucketer bucketer = DateBucketer.forToday(getUserTimeZone(), dateInterval);
+		return toChartData(bucketer, dataRange, false, bucket(bucketer, seriesList));
+	}
+	
+	/**
+	 * Sums the counts of every series by axis day, in a single pass over each series.
+	 * 
+	 * @param bucketer - Bucketer of the axis.
+	 * @param seriesList - Series to bucket.
+	 * @return Bucketed series, with distinct names and their axis dates in ascending order.
+	 */
+	private List<SeriesDataContainer> bucket(DateBucketer bucketer, List<ChartSeries> seriesList) {
+		List<SeriesDataContainer> bucketed = new ArrayList<SeriesDataContainer>();
+		List<String> names = new ArrayList<String>();
+		for (ChartSeries chartSeries : seriesList) {
+			// Series must have distinct names, so that each one is drawn and listed in the legend
+			String name = chartSeries.getName() != null ? chartSeries.getName() : seriesName;
+			if (names.contains(name))
+				name += " (" + (names.size() + 1) + ")";
+			names.add(name);
 			
-			// Gets parameters
-			int day = calendar.get(Calendar.DAY_OF_MONTH);
-			int month = calendar.get(Calendar.MONTH) + 1;
-			int year = calendar.get(Calendar.YEAR);
+			// Sums the counts of every axis day
+			long[] dates = chartSeries.getDates();
+			long[] counts = chartSeries.getCounts();
+			DayCounter counter = new DayCounter();
+			for (int i = 0; i < dates.length; i++)
+				counter.add(bucketer.getAxisDayOf(dates[i]), counts[i]);
 			
-			// Gets Day object then either maps count or updates existing count
-			Day axisDay = new Day(day, month, year);
-			if (!map.containsKey(axisDay))
-				map.put(axisDay, counts.get(i));
-			else
-				map.put(axisDay, map.get(axisDay) + counts.get(i));
+			// Lists each count, in order of axis day
+			long[] axisDays = counter.getSortedKeys();
+			List<Long> axisDates = new ArrayList<Long>(axisDays.length);
+			List<Long> axisCounts = new ArrayList<Long>(axisDays.length);
+			for (long axisDay : axisDays) {
+				axisDates.add(bucketer.toMillis(axisDay));
+				axisCounts.add(counter.get(axisDay));
+			}
+			bucketed.add(new SeriesDataContainer(name, axisDates, axisCounts));
 		}
-		
-		// Iterates through map and adds each count to the series
-		for (Day axisDay : map.keySet())
-			series.add(axisDay, map.get(axisDay));
-		
-		// Adds final series to the data set
-		dataset.addSeries(series);
-		
+		return bucketed;
+	}
+	
+	/**
+	 * Wraps the given bucketed series into the chart's data, along with its labels and ticks.
+	 * 
+	 * @param bucketer - Bucketer of the axis.
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param stacked - Whether the series are stacked as areas rather than drawn as lines.
+	 * @param series - Bucketed series, in the order they are drawn.
+	 * @return Chart data.
+	 */
+	protected ChartDataRestResourceModel toChartData(DateBucketer bucketer, int dataRange, boolean stacked, 
+			List<SeriesDataContainer> series) {
+		return new ChartDataRestResourceModel(title, timeAxisLabel, valueAxisLabel, bucketer.getTimeZone().getID(), 
+				stacked, bucketer.getAxisTicks(dataRange), series);
+	}
+	
+	/**
+	 * Renders a chart of the given data set over the time axis.
+	 * 
+	 * @param dataset - Data set of the chart, whose x values are the axis dates.
+	 * @param stackedArea - Whether the series are stacked as areas rather than drawn as lines. 
+	 * Requires a table data set, whose series share the same dates.
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param dateInterval - Number of days between each date within the time-based axis of the chart.
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param upperBound - Last date on the time axis.
+	 * @param timeZone - Time zone the axis dates are in.
+	 * @return Chart object holding the rendered image.
+	 */
+	protected Chart renderChart(XYDataset dataset, boolean stackedArea, int width, int height, int dateInterval, 
+			int dataRange, Date upperBound, TimeZone timeZone) {
     	// Creates initial generator responsible for generating a Time Trending Chart
 		TimeTrendingChartGenerator generator = new TimeTrendingChartGenerator(
 				title, dataset, timeAxisLabel, valueAxisLabel, width, height, dateInterval, 
-				dataRange, upperBound, getI18nHelper());
+				dataRange, upperBound, timeZone, getI18nHelper());
+		generator.setStackedArea(stackedArea);
+		generator.setUseLegend(dataset.getSeriesCount() > 1);
 		
 		// Gets the chart helper and uses it to generate the time trending chart
 		ChartHelper helper = generator.generateChart();
@@ -110,29 +200,26 @@ public class TimeTrendingChart {
 	    	e.printStackTrace();
 	    }
 	    
+	    // Sets encoded PNG image, so that the rendered chart can be cached and served as is
+	    try {
+	    	params.put("imageBytes", ChartUtilities.encodeAsPNG(helper.getImage()));
+	    } catch (IOException e) {
+	    	e.printStackTrace();
+	    }
+	    
 	    return new Chart(helper.getLocation(), helper.getImageMap(), helper.getImageMapName(), params); 
 	}
 	
 	/**
-	 * Determines the axis date corresponding to the given date, based on the upper bound and 
-	 * date interval.
+	 * Gets the time zone of the logged in user, which determines where each day of the chart 
+	 * starts and ends.
 	 * 
-	 * @param date - Date to be associated with the axis date.
-	 * @param upperBound - Highest date on the axis.
-	 * @param dateInterval - Number of days between each date on the axis.
-	 * @return Axis date associated with the given date and is always equal to the upper bound date
-	 * minus the date interval multiplied by some integer.
+	 * @return User's time zone, or the server's default time zone if it can't be determined.
 	 */
-	private Date getAxisDate(Date date, Date upperBound, int dateInterval) {
-		Date timelessDate = TimeTrendingChartGenerator.removeDateTime(date);
-		long diffMilli = upperBound.getTime() - timelessDate.getTime();
-		long diffDays = (long) Math.ceil(diffMilli / (1000*60*60*24));
-		
-		// Calculates offset (in milliseconds)
-		long offset = (diffDays % dateInterval) * (1000*60*60*24);
-		
-		// Offsets date by given number of days
-		return new Date(timelessDate.getTime() + offset);
+	public static TimeZone getUserTimeZone() {
+		TimeZoneManager timeZoneManager = ComponentAccessor.getComponent(TimeZoneManager.class);
+		TimeZone timeZone = timeZoneManager != null ? timeZoneManager.getLoggedInUserTimeZone() : null;
+		return timeZone != null ? timeZone : TimeZone.getDefault();
 	}
 	
 	private I18nHelper getI18nHelper() {
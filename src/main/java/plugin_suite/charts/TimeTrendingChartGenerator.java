@@ -8,16 +8,18 @@ import com.atlassian.jira.util.I18nHelper;
 import java.awt.Color;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.TimeZone;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.DateAxis;
 import org.jfree.chart.axis.DateTickUnit;
 import org.jfree.chart.axis.DateTickUnitType;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.xy.TableXYDataset;
 import org.jfree.data.xy.XYDataset;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,22 +39,21 @@ public class TimeTrendingChartGenerator implements ChartGenerator {
 	private int dataRange;
 	private Date lowerBound;
 	private Date upperBound;
+	private TimeZone timeZone;
 	private I18nHelper i18nHelper;
 	
 	private boolean useLegend;
+	private boolean stackedArea;
 	private boolean generateTooltips;
 	private boolean generateUrls;
 	private Color backgroundPaint;
 	
-	// Static variable for the class to use
-	private static Calendar cal = new GregorianCalendar();
-	
 	/**
 	 * Sets the default parameters for any charts generator by this class.
 	 */
 	public TimeTrendingChartGenerator(String title, XYDataset dataset, String timeAxisLabel, 
 			String valueAxisLabel, int width, int height, int dateInterval, int dataRange, Date upperBound, 
-			I18nHelper i18nHelper) {
+			TimeZone timeZone, I18nHelper i18nHelper) {
 		// Parameters passed by constructor
 		this.title = title;
 		this.dataset = dataset;
@@ -64,15 +65,35 @@ public class TimeTrendingChartGenerator implements ChartGenerator {
 		this.dataRange = dataRange;
 		this.lowerBound = getLowerBound(this.dataRange, this.dateInterval, upperBound);
 		this.upperBound = upperBound;
+		this.timeZone = timeZone;
 		this.i18nHelper = i18nHelper;
 		
 		// Parameters set by default
 		useLegend = false;
+		stackedArea = false;
 		generateTooltips = true;
 		generateUrls = true;
 		backgroundPaint = Color.WHITE;
 	}
 	
+	/**
+	 * Sets whether the series are stacked as areas rather than drawn as lines.
+	 * 
+	 * @param stackedArea - True to stack the series, which requires a table data set.
+	 */
+	public void setStackedArea(boolean stackedArea) {
+		this.stackedArea = stackedArea;
+	}
+	
+	/**
+	 * Sets whether a legend naming every series is shown below the chart.
+	 * 
+	 * @param useLegend - True to show the legend.
+	 */
+	public void setUseLegend(boolean useLegend) {
+		this.useLegend = useLegend;
+	}
+	
 	/**
 	 * Generates time trending chart and returns the helper object for it.
 	 * 
@@ -108,32 +129,40 @@ public class TimeTrendingChartGenerator implements ChartGenerator {
      * @param lastDate - Last date on the axis of the line chart.
      */
     private JFreeChart createLineChart() {
-    	// Creates initial line chart
-    	JFreeChart chart = ChartFactory.createTimeSeriesChart(title, timeAxisLabel, valueAxisLabel, 
-    			dataset, useLegend, generateTooltips, generateUrls);
+    	// Creates initial line chart, or stacked area chart
+    	JFreeChart chart;
+    	if (stackedArea)
+    		chart = ChartFactory.createStackedXYAreaChart(title, timeAxisLabel, valueAxisLabel, 
+    				(TableXYDataset) dataset, PlotOrientation.VERTICAL, useLegend, generateTooltips, generateUrls);
+    	else
+    		chart = ChartFactory.createTimeSeriesChart(title, timeAxisLabel, valueAxisLabel, 
+    				dataset, useLegend, generateTooltips, generateUrls);
     	
     	// Sets background of the chart
     	chart.setBackgroundPaint(backgroundPaint);
     	
     	// Sets the x axis formatting
     	final XYPlot plot = chart.getXYPlot();
-    	final DateAxis axis = (DateAxis) plot.getDomainAxis();
+    	final ValueAxis axis = plot.getDomainAxis();
     	IntervalDateAxis newAxis = new IntervalDateAxis(axis.getLabel(), lowerBound, dateInterval);
-    	newAxis.setDateFormatOverride(new SimpleDateFormat("yyyy-MM-dd"));
+    	SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    	dateFormat.setTimeZone(timeZone);
+    	newAxis.setDateFormatOverride(dateFormat);
     	newAxis.setTickUnit(new DateTickUnit(DateTickUnitType.DAY, dateInterval));
     	newAxis.setVerticalTickLabels(true);
     	newAxis.setTickMarksVisible(true);
     	newAxis.setMinorTickMarksVisible(true);
     	
     	// Set formatting options of new axis based on original axis
-    	newAxis.setTimeZone(axis.getTimeZone());
+    	newAxis.setTimeZone(timeZone);		// Same time zone the data was bucketed in
     	newAxis.setLabelPaint(axis.getLabelPaint());
     	newAxis.setLabelInsets(axis.getLabelInsets());
     	newAxis.setLabelPaint(axis.getLabelPaint());
     	newAxis.setTickLabelFont(axis.getTickLabelFont());
     	newAxis.setTickLabelInsets(axis.getTickLabelInsets());
     	newAxis.setTickLabelPaint(axis.getTickLabelPaint());
-    	newAxis.setTickMarkPosition(axis.getTickMarkPosition());
+    	if (axis instanceof DateAxis)
+    		newAxis.setTickMarkPosition(((DateAxis) axis).getTickMarkPosition());
     	newAxis.setFixedDimension(axis.getFixedDimension());
     	
     	
@@ -169,18 +198,26 @@ public class TimeTrendingChartGenerator implements ChartGenerator {
     }
     
     /**
-	 * Removes time component from the given date and returns result.
+	 * Removes time component from the given date and returns result, using the server's 
+	 * default time zone.
 	 * 
 	 * @param date - Date to remove time from.
 	 * @return Date object without time components.
 	 */
 	public static Date removeDateTime(Date date) {
-		cal.setTime(date);
-	    cal.clear(Calendar.MILLISECOND);
-	    cal.clear(Calendar.SECOND);
-	    cal.clear(Calendar.MINUTE);
-	    cal.set(Calendar.HOUR_OF_DAY, 0);
-	    return cal.getTime();
+		return removeDateTime(date, TimeZone.getDefault());
+	}
+	
+	/**
+	 * Removes time component from the given date and returns result. Safe to call from 
+	 * concurrent requests, since no calendar is shared.
+	 * 
+	 * @param date - Date to remove time from.
+	 * @param timeZone - Time zone in which the day starts.
+	 * @return Date object without time components.
+	 */
+	public static Date removeDateTime(Date date, TimeZone timeZone) {
+		return new Date(DateBucketer.startOfDay(date.getTime(), timeZone));
 	}
     
     /**
@@ -216,7 +253,7 @@ public class TimeTrendingChartGenerator implements ChartGenerator {
     	
     	@Override
     	protected Date previousStandardDate(Date date, DateTickUnit unit) {
-    		Date prevDate = removeDateTime(getOffsetDate(firstDate, -1 * interval));
+    		Date prevDate = removeDateTime(getOffsetDate(firstDate, -1 * interval), timeZone);
     		Date standardDate = getOffsetDate(prevDate, interval);
     		
     		// Increments dates by the day-based interval until date <= standard date
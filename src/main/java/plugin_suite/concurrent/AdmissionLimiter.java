@@ -0,0 +1,269 @@
+package plugin_suite.concurrent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for the expensive resources of the plugin. Every resource has a limiter of 
+ * its own, which lets a bounded number of requests run at once and a bounded number wait for 
+ * them, each for a bounded time. Requests beyond that are turned away at once rather than 
+ * piling up threads and memory, and a single user may only have a share of the limiter's 
+ * slots, so one busy dashboard can't lock everybody else out. Only admitted requests count 
+ * toward a user's share; a waiting request of a user who holds their whole share keeps waiting 
+ * until one of the user's requests is done. Every anonymous request counts toward a single share.
+ * 
+ * Limits are read from system properties named after the limiter (for example 
+ * plugin.suite.changehistory.maxConcurrent), falling back to the defaults below.
+ */
+public class AdmissionLimiter {
+	// Limiters, one per guarded resource
+	public static final String ISSUES = "issues";
+	public static final String CHANGE_HISTORY = "changehistory";
+	public static final String CHARTS = "charts";
+	
+	private static final String PROPERTY_PREFIX = "plugin.suite.";
+	private static final Map<String, AdmissionLimiter> limiters = new LinkedHashMap<String, AdmissionLimiter>();
+	static {
+		// Change history scans are the most expensive, so fewer of them run at once
+		register(ISSUES, 4, 16, 8, 10000L);
+		register(CHANGE_HISTORY, 2, 8, 4, 15000L);
+		register(CHARTS, 4, 16, 8, 10000L);
+	}
+	
+	/**
+	 * Outcome of a request for admission.
+	 */
+	public enum Decision {
+		ADMITTED,
+		USER_LIMIT,		// The user already has as many requests admitted as allowed
+		QUEUE_FULL,		// As many requests are waiting as allowed
+		TIMED_OUT		// The request waited for its turn for too long
+	}
+	
+	private final String name;
+	private final int maxConcurrent;
+	private final int maxQueued;
+	private final int maxPerUser;
+	private final long queueTimeout;
+	
+	// Guarded by this
+	private int running;
+	private int queued;
+	private final Map<String, Integer> userCounts = new LinkedHashMap<String, Integer>();
+	
+	private final AtomicLong admitted = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	
+	/**
+	 * @param name - Name of the limiter.
+	 * @param maxConcurrent - Number of requests running at once.
+	 * @param maxQueued - Number of requests waiting for their turn.
+	 * @param maxPerUser - Number of requests a single user may have running.
+	 * @param queueTimeout - Time a request may wait for its turn, in milliseconds.
+	 */
+	public AdmissionLimiter(String name, int maxConcurrent, int maxQueued, int maxPerUser, long queueTimeout) {
+		this.name = name;
+		this.maxConcurrent = Math.max(1, maxConcurrent);
+		this.maxQueued = Math.max(0, maxQueued);
+		this.maxPerUser = Math.max(1, maxPerUser);
+		this.queueTimeout = Math.max(0, queueTimeout);
+	}
+	
+	/**
+	 * Gets the limiter of the given resource.
+	 * 
+	 * @param name - Name of the limiter.
+	 * @return Shared limiter.
+	 */
+	public static AdmissionLimiter get(String name) {
+		AdmissionLimiter limiter = limiters.get(name);
+		if (limiter == null)
+			throw new IllegalArgumentException("Unknown admission limiter: " + name);
+		return limiter;
+	}
+	
+	/**
+	 * Gets every limiter of the plugin.
+	 * 
+	 * @return Limiters, in a fixed order.
+	 */
+	public static Collection<AdmissionLimiter> getAll() {
+		return Collections.unmodifiableCollection(limiters.values());
+	}
+	
+	/**
+	 * Asks for the admission of a request, waiting for a running request to finish if the 
+	 * limiter is full and the queue isn't.
+	 * 
+	 * @param user - Key of the requesting user (can be null for anonymous access, in which case 
+	 * the request counts toward the share of every anonymous request).
+	 * @return Permit, which must be released once the request is done if it was admitted.
+	 */
+	public Permit acquire(String user) {
+		String userKey = user != null ? user : "";
+		long deadline = System.currentTimeMillis() + queueTimeout;
+		boolean interrupted = false;
+		
+		synchronized (this) {
+			if (getUserCount(userKey) >= maxPerUser)
+				return reject(Decision.USER_LIMIT);
+			if (running >= maxConcurrent && queued >= maxQueued)
+				return reject(Decision.QUEUE_FULL);
+			
+			if (running >= maxConcurrent) {
+				queued++;
+				try {
+					long remaining = deadline - System.currentTimeMillis();
+					while (!canRun(userKey) && remaining > 0 && !interrupted) {
+						try {
+							wait(remaining);
+						} catch (InterruptedException e) {
+							interrupted = true;
+						}
+						remaining = deadline - System.currentTimeMillis();
+					}
+				} finally {
+					queued--;
+				}
+				
+				if (!canRun(userKey)) {
+					if (interrupted)
+						Thread.currentThread().interrupt();
+					return reject(Decision.TIMED_OUT);
+				}
+			}
+			running++;
+			userCounts.put(userKey, getUserCount(userKey) + 1);
+		}
+		
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		admitted.incrementAndGet();
+		return new Permit(this, userKey, Decision.ADMITTED);
+	}
+	
+	/**
+	 * Estimates how long a rejected client should wait before trying again: about as long 
+	 * as the queue is allowed to wait, and at least a second.
+	 * 
+	 * @return Delay, in seconds.
+	 */
+	public int getRetryAfterSeconds() {
+		return (int) Math.max(1, (queueTimeout + 999) / 1000);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+	
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+	
+	public int getMaxPerUser() {
+		return maxPerUser;
+	}
+	
+	public synchronized int getRunning() {
+		return running;
+	}
+	
+	public synchronized int getQueued() {
+		return queued;
+	}
+	
+	public long getAdmitted() {
+		return admitted.get();
+	}
+	
+	public long getRejected() {
+		return rejected.get();
+	}
+	
+	private Permit reject(Decision decision) {
+		rejected.incrementAndGet();
+		return new Permit(this, null, decision);
+	}
+	
+	/**
+	 * Determines whether a request of the given user may take a slot now. Guarded by this.
+	 */
+	private boolean canRun(String userKey) {
+		return running < maxConcurrent && getUserCount(userKey) < maxPerUser;
+	}
+	
+	private int getUserCount(String userKey) {
+		Integer userCount = userCounts.get(userKey);
+		return userCount != null ? userCount : 0;
+	}
+	
+	private synchronized void release(String userKey) {
+		running--;
+		releaseUser(userKey);
+		// Wakes every waiting request, since the freed slot may only be taken by some of them
+		notifyAll();
+	}
+	
+	private void releaseUser(String userKey) {
+		Integer userCount = userCounts.get(userKey);
+		if (userCount == null || userCount <= 1)
+			userCounts.remove(userKey);
+		else
+			userCounts.put(userKey, userCount - 1);
+	}
+	
+	private static void register(String name, int maxConcurrent, int maxQueued, int maxPerUser, long queueTimeout) {
+		String prefix = PROPERTY_PREFIX + name + ".";
+		limiters.put(name, new AdmissionLimiter(name, 
+				Integer.getInteger(prefix + "maxConcurrent", maxConcurrent), 
+				Integer.getInteger(prefix + "maxQueued", maxQueued), 
+				Integer.getInteger(prefix + "maxPerUser", maxPerUser), 
+				Long.getLong(prefix + "queueTimeout", queueTimeout)));
+	}
+	
+	
+	/**
+	 * Outcome of a request for admission. An admitted request holds one of the limiter's slots 
+	 * until its permit is released; releasing a permit more than once has no further effect.
+	 */
+	public static class Permit {
+		private final AdmissionLimiter limiter;
+		private final String userKey;
+		private final Decision decision;
+		private final AtomicBoolean released = new AtomicBoolean();
+		
+		private Permit(AdmissionLimiter limiter, String userKey, Decision decision) {
+			this.limiter = limiter;
+			this.userKey = userKey;
+			this.decision = decision;
+		}
+		
+		public boolean isAdmitted() {
+			return decision == Decision.ADMITTED;
+		}
+		
+		public Decision getDecision() {
+			return decision;
+		}
+		
+		public AdmissionLimiter getLimiter() {
+			return limiter;
+		}
+		
+		/**
+		 * Frees the slot held by the request, letting a waiting request run.
+		 */
+		public void release() {
+			if (isAdmitted() && released.compareAndSet(false, true))
+				limiter.release(userKey);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package plugin_suite.concurrent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical requests that run at the same time. The first request for a key does
+ * the work, and every request for the same key that arrives while it runs waits on its future
+ * and gets the same result, instead of repeating the work. Nothing is kept once the work is
+ * done, so unlike a cache, a request never gets a result computed before it arrived.
+ */
+public class SingleFlight {
+	// Flights, one per coalesced resource
+	public static final String ISSUES = "issues";
+	public static final String CHARTS = "charts";
+
+	private static final Map<String, SingleFlight> flights = new LinkedHashMap<String, SingleFlight>();
+	static {
+		flights.put(ISSUES, new SingleFlight(ISSUES));
+		flights.put(CHARTS, new SingleFlight(CHARTS));
+	}
+
+	private final String name;
+	private final ConcurrentMap<String, FutureTask<?>> running = new ConcurrentHashMap<String, FutureTask<?>>();
+
+	private final AtomicLong executed = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * @param name - Name of the flight.
+	 */
+	public SingleFlight(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the flight of the given resource.
+	 *
+	 * @param name - Name of the flight.
+	 * @return Shared flight.
+	 */
+	public static SingleFlight get(String name) {
+		SingleFlight flight = flights.get(name);
+		if (flight == null)
+			throw new IllegalArgumentException("Unknown single flight: " + name);
+		return flight;
+	}
+
+	/**
+	 * Gets every flight of the plugin.
+	 *
+	 * @return Flights, in a fixed order.
+	 */
+	public static Collection<SingleFlight> getAll() {
+		return Collections.unmodifiableCollection(flights.values());
+	}
+
+	/**
+	 * Runs the given work, unless work with the same key is already running, in which case
+	 * waits for that work to finish and returns its result.
+	 *
+	 * @param key - Identifies the work, including everything its result depends on (such as
+	 * the requesting user).
+	 * @param work - Work to run.
+	 * @return Result of the work, computed either by this call or by the call it joined.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String key, Callable<T> work) {
+		FutureTask<T> task = new FutureTask<T>(work);
+		FutureTask<T> current = (FutureTask<T>) running.putIfAbsent(key, task);
+		if (current == null) {
+			executed.incrementAndGet();
+			try {
+				task.run();
+			} finally {
+				running.remove(key, task);
+			}
+			current = task;
+		} else {
+			coalesced.incrementAndGet();
+		}
+
+		try {
+			return current.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for an identical request.", e);
+		} catch (ExecutionException e) {
+			// Rethrows the failure of the work, as the caller would have seen it if it had run the work
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Builds the key of a request from its parts. Null parts are treated as empty, while the
+	 * order of list parts is kept, since it may matter to the request (e.g. the first project
+	 * key of a list).
+	 *
+	 * @param parts - Parts identifying the request (can contain nulls).
+	 * @return Key of the request.
+	 */
+	public static String key(Object... parts) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0)
+				builder.append('\u0000');
+			if (parts[i] != null)
+				builder.append(parts[i]);
+		}
+		return builder.toString();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of requests that ran their work.
+	 */
+	public long getExecuted() {
+		return executed.get();
+	}
+
+	/**
+	 * Gets the number of requests that waited for an identical request instead of running
+	 * their work.
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	/**
+	 * Gets the number of requests currently running their work.
+	 */
+	public int getRunning() {
+		return running.size();
+	}
+}
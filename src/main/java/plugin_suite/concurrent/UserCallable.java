@@ -0,0 +1,42 @@
+package plugin_suite.concurrent;
+
+import java.util.concurrent.Callable;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+
+/**
+ * Task that runs on behalf of the user who created it. Jira keeps the logged in user per 
+ * thread, so a task running on a worker thread would otherwise search and check permissions 
+ * (and key its cached results) as nobody.
+ */
+public abstract class UserCallable<T> implements Callable<T> {
+	private final ApplicationUser user;
+	
+	/**
+	 * Captures the user currently logged in on the calling thread.
+	 */
+	protected UserCallable() {
+		this.user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+	}
+	
+	public final T call() throws Exception {
+		JiraAuthenticationContext authenticationContext = ComponentAccessor.getJiraAuthenticationContext();
+		ApplicationUser previousUser = authenticationContext.getUser();
+		authenticationContext.setLoggedInUser(user);
+		try {
+			return callAsUser();
+		} finally {
+			authenticationContext.setLoggedInUser(previousUser);
+		}
+	}
+	
+	/**
+	 * Runs the task while the creating user is logged in.
+	 * 
+	 * @return Result of the task.
+	 * @throws Exception If the task failed.
+	 */
+	protected abstract T callAsUser() throws Exception;
+}
@@ -0,0 +1,78 @@
+package plugin_suite.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Named;
+
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Fixed pool of worker threads shared by every resource of the plugin. Requests split their 
+ * work into tasks and wait for all of them, so the work of a single request runs in parallel 
+ * while the number of threads stays bounded however many requests run at once.
+ */
+@Named("workerPool")
+public class WorkerPool implements DisposableBean {
+	// Number of threads, kept small since the pool shares the server with Jira itself
+	private static final int DEFAULT_POOL_SIZE = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+	
+	private final ExecutorService executor;
+	
+	public WorkerPool() {
+		this(DEFAULT_POOL_SIZE);
+	}
+	
+	public WorkerPool(int poolSize) {
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "plugin-suite-worker-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Runs the given tasks and waits for all of them to complete. A single task is run on the 
+	 * calling thread, saving the hand-off.
+	 * 
+	 * @param tasks - Tasks to run.
+	 * @return Results of the tasks, in the order the tasks were given.
+	 * @throws InterruptedException If the calling thread was interrupted while waiting, in 
+	 * which case unfinished tasks are cancelled.
+	 * @throws ExecutionException If any task failed.
+	 */
+	public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+		List<T> results = new ArrayList<T>(tasks.size());
+		if (tasks.size() == 1) {
+			try {
+				results.add(tasks.get(0).call());
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new ExecutionException(e);
+			}
+			return results;
+		}
+		
+		for (Future<T> future : executor.invokeAll(tasks))
+			results.add(future.get());
+		return results;
+	}
+	
+	/**
+	 * Stops the worker threads once the plugin is disabled.
+	 */
+	public void destroy() throws Exception {
+		executor.shutdownNow();
+	}
+}
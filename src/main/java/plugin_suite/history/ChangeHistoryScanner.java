@@ -0,0 +1,159 @@
+package plugin_suite.history;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.search.SearchException;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.query.Query;
+
+import plugin_suite.search.IssueReference;
+import plugin_suite.search.IssueSearchHelper;
+
+/**
+ * Reads the status transitions of a project on behalf of the logged in user. Transitions are 
+ * read from the transition log once the project is backfilled, and otherwise from the change 
+ * histories in bounded batches of issues. Either way, the transitions of every issue are passed 
+ * in order of change date.
+ */
+public class ChangeHistoryScanner {
+	// Number of issues whose change histories are loaded at once
+	private static final int HISTORY_BATCH_SIZE = 200;
+	
+	/**
+	 * Callback invoked once for every status transition read for a project.
+	 */
+	public interface TransitionHandler {
+		void handle(Project project, IssueReference issue, StatusTransition transition);
+	}
+	
+	private final TransitionEventStore transitionStore;
+	
+	/**
+	 * @param transitionStore - Transition log (null value means change histories are always read).
+	 */
+	public ChangeHistoryScanner(TransitionEventStore transitionStore) {
+		this.transitionStore = transitionStore;
+	}
+	
+	/**
+	 * Passes every status transition of the given project that matches the filters to the 
+	 * given handler.
+	 * 
+	 * @param project - Project whose transitions are read.
+	 * @param newStatusIds - List of allowable new status ids from transitions (can be null).
+	 * @param issueTypeIds - List of ids for allowable issue types (can be null).
+	 * @param date - Earliest allowable transition (can be null).
+	 * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
+	 * @param handler - Handler receiving every status transition.
+	 * @return True if the transitions were passed in order of change date across the project.
+	 */
+	public boolean scan(Project project, List<String> newStatusIds, List<String> issueTypeIds, Date date, 
+			List<String> excludeCurrStatusIds, TransitionHandler handler) {
+		try {
+			return scanOrThrow(project, newStatusIds, issueTypeIds, date, excludeCurrStatusIds, handler);
+		} catch (SearchException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	/**
+	 * Passes every status transition of the given project that matches the filters to the 
+	 * given handler, failing if the issues can't be searched rather than passing only part of 
+	 * the transitions (see {@link #scan(Project, List, List, Date, List, TransitionHandler)}).
+	 * 
+	 * @param project - Project whose transitions are read.
+	 * @param newStatusIds - List of allowable new status ids from transitions (can be null).
+	 * @param issueTypeIds - List of ids for allowable issue types (can be null).
+	 * @param date - Earliest allowable transition (can be null).
+	 * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
+	 * @param handler - Handler receiving every status transition.
+	 * @return True if the transitions were passed in order of change date across the project.
+	 * @throws SearchException If the issues can't be searched.
+	 */
+	public boolean scanOrThrow(Project project, List<String> newStatusIds, List<String> issueTypeIds, Date date, 
+			List<String> excludeCurrStatusIds, TransitionHandler handler) throws SearchException {
+		// Gets current logged in user
+		ApplicationUser appUser = ComponentAccessor.getJiraAuthenticationContext().getUser();
+		User user = appUser.getDirectoryUser();
+		
+		// Reads the logged transitions as a single range scan, once the project's log is complete
+		if (transitionStore != null && transitionStore.isReady(project.getId())) {
+			scanTransitionLog(user, appUser, project, newStatusIds, issueTypeIds, date, excludeCurrStatusIds, handler);
+			return true;
+		}
+		
+		// Pushes the issue type, current status and updated date filters into the index search
+		String jqlQuery = IssueSearchHelper.buildJqlQuery(project, issueTypeIds);
+		if (excludeCurrStatusIds != null && !excludeCurrStatusIds.isEmpty())
+			jqlQuery += " AND status NOT IN (" + IssueSearchHelper.getIdListStr(excludeCurrStatusIds) + ")";
+		if (date != null)
+			jqlQuery += " AND updated >= " + IssueSearchHelper.getQueryStr(new SimpleDateFormat("yyyy-MM-dd").format(date));
+		Query query = IssueSearchHelper.parseQuery(user, jqlQuery);
+		
+		// Gets references to the candidate issues only, then reads their status transitions
+		StatusTransitionReader transitionReader = new StatusTransitionReader();
+		List<IssueReference> candidates = IssueSearchHelper.searchIssueReferences(user, query);
+		
+		// Reads the status transitions of the candidate issues with one query per batch
+		for (int start = 0; start < candidates.size(); start += HISTORY_BATCH_SIZE) {
+			Map<Long, IssueReference> batch = new HashMap<Long, IssueReference>();
+			for (IssueReference candidate : candidates.subList(start, Math.min(start + HISTORY_BATCH_SIZE, candidates.size())))
+				batch.put(candidate.getId(), candidate);
+			
+			for (StatusTransition transition : transitionReader.getTransitions(batch.keySet(), date, newStatusIds)) {
+				handler.handle(project, batch.get(transition.getIssueId()), transition);
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Passes every logged status transition of a project to the given handler, in order of 
+	 * change time. The log isn't filtered by permissions, so unless the user can see every 
+	 * issue of the project (and no current statuses are excluded), the transitions are 
+	 * restricted to the issues returned by an index search.
+	 */
+	private void scanTransitionLog(User user, ApplicationUser appUser, final Project project, 
+			List<String> newStatusIds, List<String> issueTypeIds, Date date, List<String> excludeCurrStatusIds, 
+			final TransitionHandler handler) throws SearchException {
+		final Set<Long> allowedIds;
+		if (IssueSearchHelper.canSeeAllIssues(project, appUser) 
+				&& (excludeCurrStatusIds == null || excludeCurrStatusIds.isEmpty())) {
+			allowedIds = null;
+		} else {
+			String jqlQuery = IssueSearchHelper.buildJqlQuery(project, issueTypeIds);
+			if (excludeCurrStatusIds != null && !excludeCurrStatusIds.isEmpty())
+				jqlQuery += " AND status NOT IN (" + IssueSearchHelper.getIdListStr(excludeCurrStatusIds) + ")";
+			
+			allowedIds = new HashSet<Long>();
+			for (IssueReference reference : IssueSearchHelper.searchIssueReferences(user, 
+					IssueSearchHelper.parseQuery(user, jqlQuery)))
+				allowedIds.add(reference.getId());
+		}
+		
+		transitionStore.scan(project.getId(), date, newStatusIds, issueTypeIds, 
+				new TransitionEventStore.TransitionVisitor() {
+			public void visit(TransitionEvent event) {
+				if (allowedIds != null && !allowedIds.contains(event.getIssueId()))
+					return;
+				
+				IssueReference issue = new IssueReference(event.getIssueId(), event.getIssueKey(), 
+						event.getIssueTypeId());
+				StatusTransition transition = new StatusTransition(event.getIssueId(), event.getChangeItemId(), 
+						event.getChangeTime(), event.getOldStatusId(), event.getOldStatus(), 
+						event.getNewStatusId(), event.getNewStatus());
+				handler.handle(project, issue, transition);
+			}
+		});
+	}
+}
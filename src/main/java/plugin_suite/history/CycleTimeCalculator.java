@@ -0,0 +1,271 @@
+package plugin_suite.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import plugin_suite.concurrent.WorkerPool;
+import plugin_suite.models.CycleTimeRestResourceModel;
+import plugin_suite.models.CycleTimeRestResourceModel.DurationDataContainer;
+import plugin_suite.models.CycleTimeRestResourceModel.IssueTypeDataContainer;
+
+/**
+ * Reconstructs the status timeline of every issue from its transitions, and measures the time 
+ * spent in each status and the cycle time between a set of start and end statuses. The 
+ * durations are summarized per issue type by their percentiles.
+ *
+ * The cycle of an issue starts when it first enters a start status (or with its first 
+ * transition, if no start status is given), and ends when it next enters an end status. Only 
+ * stays in a status that have ended are measured, since the time an issue entered its initial 
+ * status isn't part of its transitions.
+ *
+ * If an earliest date is given, only cycles and stays that end on or after it are measured, and 
+ * only issues with a transition on or after it are counted. The transitions before it must still 
+ * be added, since a cycle or stay may have started before it.
+ *
+ * Transitions are added by a single thread, and the transitions of every issue must be added 
+ * in order of change time. The issues are then measured in parallel.
+ */
+public class CycleTimeCalculator {
+	// Number of issues measured by a single task
+	private static final int ISSUES_PER_TASK = 256;
+	
+	// Percentiles returned for every set of durations
+	private static final int[] PERCENTILES = { 50, 85, 95 };
+	
+	private final List<String> startStatusIds;		// Null value means the first transition starts the cycle
+	private final List<String> endStatusIds;
+	private final long earliestTime;				// Long.MIN_VALUE means every cycle and stay is measured
+	
+	// Transitions of every issue, by issue id
+	private final Map<Long, IssueTimeline> timelines = new LinkedHashMap<Long, IssueTimeline>();
+	
+	// Names of the issue types and statuses seen so far, in order of first appearance
+	private final Map<String, String> issueTypeNames = new LinkedHashMap<String, String>();
+	private final Map<String, String> statusNames = new LinkedHashMap<String, String>();
+	
+	/**
+	 * @param startStatusIds - Ids of the statuses that start a cycle (null/empty value means a 
+	 * cycle starts with the issue's first transition).
+	 * @param endStatusIds - Ids of the statuses that end a cycle (at least one).
+	 */
+	public CycleTimeCalculator(List<String> startStatusIds, List<String> endStatusIds) {
+		this(startStatusIds, endStatusIds, null);
+	}
+	
+	/**
+	 * @param startStatusIds - Ids of the statuses that start a cycle (null/empty value means a 
+	 * cycle starts with the issue's first transition).
+	 * @param endStatusIds - Ids of the statuses that end a cycle (at least one).
+	 * @param earliestDate - Earliest date a measured cycle or stay may end on (can be null).
+	 */
+	public CycleTimeCalculator(List<String> startStatusIds, List<String> endStatusIds, Date earliestDate) {
+		if (endStatusIds == null || endStatusIds.isEmpty())
+			throw new IllegalArgumentException("At least one end status is required.");
+		
+		this.startStatusIds = startStatusIds != null && !startStatusIds.isEmpty() ? startStatusIds : null;
+		this.endStatusIds = endStatusIds;
+		this.earliestTime = earliestDate != null ? earliestDate.getTime() : Long.MIN_VALUE;
+	}
+	
+	/**
+	 * Adds a single transition to the timeline of its issue.
+	 *
+	 * @param issueTypeId - Id of the issue's type.
+	 * @param issueTypeName - Name of the issue's type.
+	 * @param transition - Status transition.
+	 */
+	public void add(String issueTypeId, String issueTypeName, StatusTransition transition) {
+		IssueTimeline timeline = timelines.get(transition.getIssueId());
+		if (timeline == null) {
+			timeline = new IssueTimeline(issueTypeId);
+			timelines.put(transition.getIssueId(), timeline);
+			if (!issueTypeNames.containsKey(issueTypeId))
+				issueTypeNames.put(issueTypeId, issueTypeName);
+		}
+		timeline.transitions.add(transition);
+		
+		if (!statusNames.containsKey(transition.getNewStatusId()))
+			statusNames.put(transition.getNewStatusId(), transition.getNewStatus());
+	}
+	
+	/**
+	 * Measures every issue added so far and summarizes the durations per issue type. The issues 
+	 * are measured by the worker pool, a batch of issues per task, and then every issue type is 
+	 * summarized by a task of its own.
+	 *
+	 * @param workerPool - Pool running the tasks.
+	 * @return Resource model holding the percentiles of every issue type, in order of first 
+	 * appearance.
+	 * @throws InterruptedException If the calling thread was interrupted while waiting.
+	 * @throws ExecutionException If measuring any issue failed.
+	 */
+	public CycleTimeRestResourceModel getModel(WorkerPool workerPool) throws InterruptedException, ExecutionException {
+		// Measures the issues in parallel
+		final List<IssueTimeline> issues = new ArrayList<IssueTimeline>(timelines.values());
+		List<Callable<List<IssueDurations>>> measureTasks = new ArrayList<Callable<List<IssueDurations>>>();
+		for (int start = 0; start < issues.size(); start += ISSUES_PER_TASK) {
+			final List<IssueTimeline> batch = issues.subList(start, Math.min(start + ISSUES_PER_TASK, issues.size()));
+			measureTasks.add(new Callable<List<IssueDurations>>() {
+				public List<IssueDurations> call() {
+					List<IssueDurations> durations = new ArrayList<IssueDurations>(batch.size());
+					for (IssueTimeline timeline : batch)
+						durations.add(measure(timeline));
+					return durations;
+				}
+			});
+		}
+		
+		// Groups the durations by issue type
+		Map<String, DurationSamples> samplesByType = new LinkedHashMap<String, DurationSamples>();
+		for (String issueTypeId : issueTypeNames.keySet())
+			samplesByType.put(issueTypeId, new DurationSamples());
+		for (List<IssueDurations> batch : workerPool.invokeAll(measureTasks)) {
+			for (IssueDurations durations : batch) {
+				if (durations != null)
+					samplesByType.get(durations.issueTypeId).add(durations);
+			}
+		}
+		
+		// Summarizes the issue types in parallel, since each of them sorts its own samples
+		List<Callable<IssueTypeDataContainer>> summaryTasks = new ArrayList<Callable<IssueTypeDataContainer>>();
+		for (final Map.Entry<String, DurationSamples> entry : samplesByType.entrySet()) {
+			if (entry.getValue().issueCount == 0)
+				continue;
+			summaryTasks.add(new Callable<IssueTypeDataContainer>() {
+				public IssueTypeDataContainer call() {
+					return summarize(entry.getKey(), entry.getValue());
+				}
+			});
+		}
+		
+		return new CycleTimeRestResourceModel(startStatusIds, endStatusIds, workerPool.invokeAll(summaryTasks));
+	}
+	
+	/**
+	 * Measures the cycle time of a single issue and the time it spent in each status.
+	 * 
+	 * @return Durations of the issue, or null if it has no transition on or after the earliest 
+	 * date.
+	 */
+	private IssueDurations measure(IssueTimeline timeline) {
+		List<StatusTransition> transitions = timeline.transitions;
+		if (transitions.get(transitions.size() - 1).getChangeTime() < earliestTime)
+			return null;
+		
+		IssueDurations durations = new IssueDurations(timeline.issueTypeId);
+		long cycleStart = -1;
+		boolean cycleEnded = false;
+		StatusTransition previous = null;
+		for (StatusTransition transition : transitions) {
+			boolean inRange = transition.getChangeTime() >= earliestTime;
+			
+			// Ends the stay in the status entered by the previous transition
+			if (previous != null && inRange) {
+				Long statusTime = durations.statusTimes.get(previous.getNewStatusId());
+				durations.statusTimes.put(previous.getNewStatusId(), 
+						(statusTime != null ? statusTime : 0) + transition.getChangeTime() - previous.getChangeTime());
+			}
+			
+			// Only the first cycle is measured, even if it ended before the earliest date
+			if (!cycleEnded) {
+				if (cycleStart < 0 && (startStatusIds == null || startStatusIds.contains(transition.getNewStatusId())))
+					cycleStart = transition.getChangeTime();
+				if (cycleStart >= 0 && endStatusIds.contains(transition.getNewStatusId())) {
+					cycleEnded = true;
+					if (inRange)
+						durations.cycleTime = transition.getChangeTime() - cycleStart;
+				}
+			}
+			previous = transition;
+		}
+		return durations;
+	}
+	
+	/**
+	 * Summarizes the durations of a single issue type by their percentiles.
+	 */
+	private IssueTypeDataContainer summarize(String issueTypeId, DurationSamples samples) {
+		List<DurationDataContainer> statuses = new ArrayList<DurationDataContainer>();
+		for (Map.Entry<String, String> status : statusNames.entrySet()) {
+			List<Long> statusTimes = samples.statusTimes.get(status.getKey());
+			if (statusTimes != null)
+				statuses.add(getPercentiles(status.getKey(), status.getValue(), statusTimes));
+		}
+		
+		DurationDataContainer cycleTime = !samples.cycleTimes.isEmpty() 
+				? getPercentiles(null, null, samples.cycleTimes) : null;
+		return new IssueTypeDataContainer(issueTypeId, issueTypeNames.get(issueTypeId), samples.issueCount, 
+				cycleTime, statuses);
+	}
+	
+	/**
+	 * Gets the percentiles of the given durations, using the nearest-rank method.
+	 */
+	private static DurationDataContainer getPercentiles(String id, String name, List<Long> durations) {
+		long[] sorted = new long[durations.size()];
+		for (int i = 0; i < sorted.length; i++)
+			sorted[i] = durations.get(i);
+		Arrays.sort(sorted);
+		
+		long[] values = new long[PERCENTILES.length];
+		for (int i = 0; i < PERCENTILES.length; i++)
+			values[i] = sorted[Math.max((PERCENTILES[i] * sorted.length + 99) / 100 - 1, 0)];
+		return new DurationDataContainer(id, name, sorted.length, values[0], values[1], values[2]);
+	}
+	
+	
+	/**
+	 * Transitions of a single issue, in order of change time.
+	 */
+	private static class IssueTimeline {
+		private final String issueTypeId;
+		private final List<StatusTransition> transitions = new ArrayList<StatusTransition>();
+		
+		private IssueTimeline(String issueTypeId) {
+			this.issueTypeId = issueTypeId;
+		}
+	}
+	
+	/**
+	 * Durations measured for a single issue.
+	 */
+	private static class IssueDurations {
+		private final String issueTypeId;
+		private long cycleTime = -1;		// Negative value means the issue hasn't completed a cycle
+		private final Map<String, Long> statusTimes = new HashMap<String, Long>();
+		
+		private IssueDurations(String issueTypeId) {
+			this.issueTypeId = issueTypeId;
+		}
+	}
+	
+	/**
+	 * Durations measured for the issues of a single issue type.
+	 */
+	private static class DurationSamples {
+		private int issueCount;
+		private final List<Long> cycleTimes = new ArrayList<Long>();
+		private final Map<String, List<Long>> statusTimes = new HashMap<String, List<Long>>();
+		
+		private void add(IssueDurations durations) {
+			issueCount++;
+			if (durations.cycleTime >= 0)
+				cycleTimes.add(durations.cycleTime);
+			for (Map.Entry<String, Long> entry : durations.statusTimes.entrySet()) {
+				List<Long> times = statusTimes.get(entry.getKey());
+				if (times == null) {
+					times = new ArrayList<Long>();
+					statusTimes.put(entry.getKey(), times);
+				}
+				times.add(entry.getValue());
+			}
+		}
+	}
+}
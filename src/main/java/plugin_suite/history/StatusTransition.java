@@ -0,0 +1,69 @@
+package plugin_suite.history;
+
+import java.util.Date;
+
+/**
+ * Lightweight record of a single status change of an issue.
+ */
+public class StatusTransition implements Comparable<StatusTransition> {
+	private final long issueId;
+	private final long changeItemId;
+	private final long changeTime;		// Milliseconds since 1/1/1970
+	private final String oldStatusId;
+	private final String oldStatus;
+	private final String newStatusId;
+	private final String newStatus;
+	
+	public StatusTransition(long issueId, long changeItemId, long changeTime, String oldStatusId, 
+			String oldStatus, String newStatusId, String newStatus) {
+		this.issueId = issueId;
+		this.changeItemId = changeItemId;
+		this.changeTime = changeTime;
+		this.oldStatusId = oldStatusId;
+		this.oldStatus = oldStatus;
+		this.newStatusId = newStatusId;
+		this.newStatus = newStatus;
+	}
+	
+	public long getIssueId() {
+		return issueId;
+	}
+	
+	/**
+	 * Gets the id of the change item the transition was read from, which increases with every 
+	 * change made within Jira.
+	 * 
+	 * @return Change item id.
+	 */
+	public long getChangeItemId() {
+		return changeItemId;
+	}
+	
+	public long getChangeTime() {
+		return changeTime;
+	}
+	
+	public Date getChangeDate() {
+		return new Date(changeTime);
+	}
+	
+	public String getOldStatusId() {
+		return oldStatusId;
+	}
+	
+	public String getOldStatus() {
+		return oldStatus;
+	}
+	
+	public String getNewStatusId() {
+		return newStatusId;
+	}
+	
+	public String getNewStatus() {
+		return newStatus;
+	}
+	
+	public int compareTo(StatusTransition transition) {
+		return changeTime < transition.changeTime ? -1 : (changeTime == transition.changeTime ? 0 : 1);
+	}
+}
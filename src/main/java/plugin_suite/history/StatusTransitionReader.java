@@ -0,0 +1,123 @@
+package plugin_suite.history;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.ofbiz.core.entity.EntityCondition;
+import org.ofbiz.core.entity.EntityConditionList;
+import org.ofbiz.core.entity.EntityExpr;
+import org.ofbiz.core.entity.EntityOperator;
+import org.ofbiz.core.entity.GenericValue;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.ofbiz.OfBizDelegator;
+
+/**
+ * Reads status transitions straight from the change item store. Rather than materializing 
+ * the full change history of every issue, only the status change items of the requested 
+ * issues are selected, in a single query per batch of issues.
+ */
+public class StatusTransitionReader {
+	// View joining change groups (issue, created) with their change items (field, values)
+	private static final String CHANGE_ITEM_VIEW = "ChangeGroupChangeItemView";
+	private static final List<String> SELECTED_FIELDS = Arrays.asList(
+			"issue", "changeitemid", "created", "oldvalue", "oldstring", "newvalue", "newstring");
+	private static final List<String> ORDER_BY = Arrays.asList("created ASC", "changeitemid ASC");
+	
+	private final OfBizDelegator delegator;
+	
+	public StatusTransitionReader() {
+		this(ComponentAccessor.getOfBizDelegator());
+	}
+	
+	public StatusTransitionReader(OfBizDelegator delegator) {
+		this.delegator = delegator;
+	}
+	
+	/**
+	 * Gets the status transitions of the given issues, in order of change date.
+	 * 
+	 * @param issueIds - Ids of the issues whose transitions are read. Callers should keep 
+	 * this to a bounded batch, since the ids are passed to a single IN condition.
+	 * @param earliestDate - Earliest allowable transition (can be null).
+	 * @param newStatusIds - Allowable new status ids (null/empty value means all statuses 
+	 * are acceptable).
+	 * @return List of status transitions.
+	 */
+	public List<StatusTransition> getTransitions(Collection<Long> issueIds, Date earliestDate, 
+			Collection<String> newStatusIds) {
+		List<StatusTransition> transitions = new ArrayList<StatusTransition>();
+		if (issueIds == null || issueIds.isEmpty())
+			return transitions;
+		
+		// Builds condition selecting only the status items of the given issues
+		List<EntityCondition> conditions = new ArrayList<EntityCondition>();
+		conditions.add(new EntityExpr("issue", EntityOperator.IN, issueIds));
+		conditions.add(new EntityExpr("fieldtype", EntityOperator.EQUALS, "jira"));
+		conditions.add(new EntityExpr("field", EntityOperator.EQUALS, "status"));
+		if (earliestDate != null)
+			conditions.add(new EntityExpr("created", EntityOperator.GREATER_THAN_EQUAL_TO, 
+					new Timestamp(earliestDate.getTime())));
+		if (newStatusIds != null && !newStatusIds.isEmpty())
+			conditions.add(new EntityExpr("newvalue", EntityOperator.IN, newStatusIds));
+		
+		List<GenericValue> changeItems = delegator.findByCondition(CHANGE_ITEM_VIEW, 
+				new EntityConditionList(conditions, EntityOperator.AND), SELECTED_FIELDS, ORDER_BY);
+		
+		for (GenericValue changeItem : changeItems) {
+			transitions.add(new StatusTransition(
+					changeItem.getLong("issue"),
+					changeItem.getLong("changeitemid"),
+					changeItem.getTimestamp("created").getTime(),
+					changeItem.getString("oldvalue"),
+					changeItem.getString("oldstring"),
+					changeItem.getString("newvalue"),
+					changeItem.getString("newstring")));
+		}
+		
+		return transitions;
+	}
+	
+	/**
+	 * Gets the status transitions within a single change, as announced by an issue event, 
+	 * without reading anything from the change item store.
+	 * 
+	 * @param issueId - Id of the changed issue.
+	 * @param changeLog - Change group of the change.
+	 * @param changeItems - Change items of the change.
+	 * @return List of status transitions, empty if the change didn't touch the status.
+	 */
+	public static List<StatusTransition> getTransitions(long issueId, GenericValue changeLog, 
+			List<GenericValue> changeItems) {
+		List<StatusTransition> transitions = new ArrayList<StatusTransition>();
+		for (GenericValue changeItem : changeItems) {
+			if (!isStatusChange(changeItem))
+				continue;
+			
+			transitions.add(new StatusTransition(
+					issueId,
+					changeItem.getLong("id"),
+					changeLog.getTimestamp("created").getTime(),
+					changeItem.getString("oldvalue"),
+					changeItem.getString("oldstring"),
+					changeItem.getString("newvalue"),
+					changeItem.getString("newstring")));
+		}
+		return transitions;
+	}
+	
+	/**
+	 * Determines whether the given change item changes the status of its issue.
+	 * 
+	 * @param changeItem - Change item to check.
+	 * @return True if the item is a status change.
+	 */
+	public static boolean isStatusChange(GenericValue changeItem) {
+		return "jira".equalsIgnoreCase(changeItem.getString("fieldtype")) 
+				&& "status".equalsIgnoreCase(changeItem.getString("field"));
+	}
+}
@@ -0,0 +1,203 @@
+package plugin_suite.history;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import plugin_suite.charts.DateBucketer;
+import plugin_suite.charts.DayCounter;
+import plugin_suite.models.AggregateRestResourceModel;
+import plugin_suite.models.AggregateRestResourceModel.AggregateDataContainer;
+
+/**
+ * Aggregates status transitions by one or more dimensions in a single pass. The values of a
+ * group's dimensions are packed into one long key, so that every metric is accumulated in
+ * primitive arrays rather than in a map of boxed keys per group.
+ *
+ * The time in status of a transition is the time until the issue's following transition, so
+ * the transitions of every issue must be added in order of change time. Stays that haven't
+ * ended yet are not counted.
+ *
+ * Instances aren't thread-safe and are meant to be used by a single request.
+ */
+public class TransitionAggregator {
+	// Dimensions
+	public static final String NEW_STATUS = "newStatus";
+	public static final String OLD_STATUS = "oldStatus";
+	public static final String ISSUE_TYPE = "issueType";
+	public static final String WEEK = "week";
+	public static final List<String> DIMENSIONS = Collections.unmodifiableList(Arrays.asList(
+			NEW_STATUS, OLD_STATUS, ISSUE_TYPE, WEEK));
+
+	// Metrics
+	public static final String COUNT = "count";
+	public static final String AVG_TIME_IN_STATUS = "avgTimeInStatus";
+
+	// Number of bits each dimension takes up within a packed key
+	private static final int DIMENSION_BITS = 15;
+	private static final long DIMENSION_MASK = (1L << DIMENSION_BITS) - 1;
+
+	// Offset added to epoch weeks, so that weeks within about 300 years of 1970 are packed as positive values
+	private static final long WEEK_OFFSET = 1L << (DIMENSION_BITS - 1);
+
+	// Epoch day 0 (1/1/1970) is a Thursday, so weeks starting on Monday begin 3 days earlier
+	private static final long WEEK_START_SHIFT = 3;
+
+	private final List<String> groupBy;
+	private final String metric;
+	private final TimeZone timeZone;
+	private final Collection<String> newStatusIds;
+
+	// Accumulators, by packed group key
+	private final DayCounter counts = new DayCounter();
+	private final DayCounter durations = new DayCounter();
+
+	// Ids and names of the statuses and issue types seen so far, by ordinal
+	private final Dictionary statuses = new Dictionary();
+	private final Dictionary issueTypes = new Dictionary();
+
+	// Last transition of every issue whose current stay is still open: issue id > {change time, group key}
+	private final Map<Long, long[]> openStays = new HashMap<Long, long[]>();
+
+	/**
+	 * @param groupBy - Distinct dimensions to group by, in the order they are returned (at least one).
+	 * @param metric - Metric to compute.
+	 * @param timeZone - Time zone weeks are determined in.
+	 * @param newStatusIds - Allowable new status ids (null/empty value means all statuses are
+	 * acceptable).
+	 */
+	public TransitionAggregator(List<String> groupBy, String metric, TimeZone timeZone,
+			Collection<String> newStatusIds) {
+		if (groupBy.isEmpty() || groupBy.size() > DIMENSIONS.size() || !DIMENSIONS.containsAll(groupBy))
+			throw new IllegalArgumentException("Unknown dimensions: " + groupBy);
+		if (!COUNT.equals(metric) && !AVG_TIME_IN_STATUS.equals(metric))
+			throw new IllegalArgumentException("Unknown metric: " + metric);
+
+		this.groupBy = groupBy;
+		this.metric = metric;
+		this.timeZone = timeZone;
+		this.newStatusIds = newStatusIds != null && !newStatusIds.isEmpty() ? newStatusIds : null;
+	}
+
+	/**
+	 * Adds a single transition.
+	 *
+	 * @param issueTypeId - Id of the issue's type.
+	 * @param issueTypeName - Name of the issue's type.
+	 * @param transition - Status transition.
+	 */
+	public void add(String issueTypeId, String issueTypeName, StatusTransition transition) {
+		// Ends the stay in the status entered by the issue's previous transition
+		if (AVG_TIME_IN_STATUS.equals(metric)) {
+			long[] openStay = openStays.remove(transition.getIssueId());
+			if (openStay != null) {
+				counts.add(openStay[1], 1);
+				durations.add(openStay[1], transition.getChangeTime() - openStay[0]);
+			}
+		}
+
+		if (newStatusIds != null && !newStatusIds.contains(transition.getNewStatusId()))
+			return;
+
+		long key = getKey(issueTypeId, issueTypeName, transition);
+		if (COUNT.equals(metric))
+			counts.add(key, 1);
+		else
+			openStays.put(transition.getIssueId(), new long[] { transition.getChangeTime(), key });
+	}
+
+	/**
+	 * Gets the aggregated groups, in order of their keys: chronological for weeks, and in order
+	 * of first appearance for statuses and issue types.
+	 *
+	 * @return Resource model holding one row per group.
+	 */
+	public AggregateRestResourceModel getModel() {
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		dateFormat.setTimeZone(timeZone);
+
+		List<AggregateDataContainer> rows = new ArrayList<AggregateDataContainer>();
+		for (long key : counts.getSortedKeys()) {
+			List<String> keys = new ArrayList<String>(groupBy.size());
+			List<String> labels = new ArrayList<String>(groupBy.size());
+			for (int i = 0; i < groupBy.size(); i++) {
+				long value = (key >>> ((groupBy.size() - 1 - i) * DIMENSION_BITS)) & DIMENSION_MASK;
+				String dimension = groupBy.get(i);
+				if (WEEK.equals(dimension)) {
+					long weekStart = DateBucketer.toMillis((value - WEEK_OFFSET) * 7 - WEEK_START_SHIFT, timeZone);
+					keys.add(String.valueOf(weekStart));
+					labels.add(dateFormat.format(new Date(weekStart)));
+				} else {
+					Dictionary dictionary = ISSUE_TYPE.equals(dimension) ? issueTypes : statuses;
+					keys.add(dictionary.ids.get((int) value));
+					labels.add(dictionary.names.get((int) value));
+				}
+			}
+
+			long count = counts.get(key);
+			double value = COUNT.equals(metric) ? count : (double) durations.get(key) / count;
+			rows.add(new AggregateDataContainer(keys, labels, count, value));
+		}
+		return new AggregateRestResourceModel(groupBy, metric, rows);
+	}
+
+	/**
+	 * Packs the values of the transition's dimensions into a single key, in the order of the
+	 * requested dimensions.
+	 */
+	private long getKey(String issueTypeId, String issueTypeName, StatusTransition transition) {
+		long key = 0;
+		for (String dimension : groupBy) {
+			long value;
+			if (NEW_STATUS.equals(dimension))
+				value = statuses.getOrdinal(transition.getNewStatusId(), transition.getNewStatus());
+			else if (OLD_STATUS.equals(dimension))
+				value = statuses.getOrdinal(transition.getOldStatusId(), transition.getOldStatus());
+			else if (ISSUE_TYPE.equals(dimension))
+				value = issueTypes.getOrdinal(issueTypeId, issueTypeName);
+			else
+				value = getEpochWeek(transition.getChangeTime()) + WEEK_OFFSET;
+			key = (key << DIMENSION_BITS) | (value & DIMENSION_MASK);
+		}
+		return key;
+	}
+
+	/**
+	 * Gets the number of the Monday-based week the given time falls in, counted from the week
+	 * of 1/1/1970.
+	 */
+	private long getEpochWeek(long millis) {
+		long epochDay = DateBucketer.toEpochDay(millis, timeZone) + WEEK_START_SHIFT;
+		return epochDay >= 0 ? epochDay / 7 : (epochDay - 6) / 7;
+	}
+
+
+	/**
+	 * Assigns ordinals to the ids of a dimension, in order of first appearance.
+	 */
+	private static class Dictionary {
+		private final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+		private final List<String> ids = new ArrayList<String>();
+		private final List<String> names = new ArrayList<String>();
+
+		private int getOrdinal(String id, String name) {
+			Integer ordinal = ordinals.get(id);
+			if (ordinal == null) {
+				if (ids.size() > DIMENSION_MASK)
+					throw new IllegalStateException("Too many distinct values to aggregate.");
+				ordinal = ids.size();
+				ordinals.put(id, ordinal);
+				ids.add(id);
+				names.add(name);
+			}
+			return ordinal;
+		}
+	}
+}
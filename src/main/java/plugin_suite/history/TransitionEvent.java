@@ -0,0 +1,50 @@
+package plugin_suite.history;
+
+import net.java.ao.Entity;
+import net.java.ao.schema.Indexed;
+import net.java.ao.schema.NotNull;
+
+/**
+ * Single status transition within the plugin's transition log. Rows are appended as issues 
+ * change status, and are only rewritten when an issue moves to another project or issue type.
+ */
+public interface TransitionEvent extends Entity {
+	@NotNull
+	@Indexed
+	long getIssueId();
+	void setIssueId(long issueId);
+	
+	String getIssueKey();
+	void setIssueKey(String issueKey);
+	
+	@NotNull
+	@Indexed
+	long getProjectId();
+	void setProjectId(long projectId);
+	
+	String getIssueTypeId();
+	void setIssueTypeId(String issueTypeId);
+	
+	// Id of the change item the transition was read from
+	@NotNull
+	long getChangeItemId();
+	void setChangeItemId(long changeItemId);
+	
+	// Milliseconds since 1/1/1970
+	@NotNull
+	@Indexed
+	long getChangeTime();
+	void setChangeTime(long changeTime);
+	
+	String getOldStatusId();
+	void setOldStatusId(String oldStatusId);
+	
+	String getOldStatus();
+	void setOldStatus(String oldStatus);
+	
+	String getNewStatusId();
+	void setNewStatusId(String newStatusId);
+	
+	String getNewStatus();
+	void setNewStatus(String newStatus);
+}
@@ -0,0 +1,235 @@
+package plugin_suite.history;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import net.java.ao.DBParam;
+import net.java.ao.EntityStreamCallback;
+import net.java.ao.Query;
+
+import org.ofbiz.core.entity.GenericValue;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.project.Project;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.transaction.TransactionCallback;
+
+import plugin_suite.rollup.BackfilledStore;
+
+/**
+ * Append-only log of status transitions, indexed by project and change time. Transitions are 
+ * appended by the rollup listener as issue statuses change, and are read from the change history once 
+ * per project by a backfill job. Once a project is backfilled, its transitions can be read as a 
+ * single time-ordered range scan, without loading any change histories.
+ */
+@Named("transitionEventStore")
+public class TransitionEventStore extends BackfilledStore {
+	public static final String NAME = "transitions";
+	
+	// Number of issues whose change histories are read at once during a backfill
+	private static final int BACKFILL_BATCH_SIZE = 200;
+	
+	// Columns read by range scans, which stream read-only rows
+	private static final String SCAN_COLUMNS = "ID, ISSUE_ID, ISSUE_KEY, PROJECT_ID, ISSUE_TYPE_ID, CHANGE_ITEM_ID, "
+			+ "CHANGE_TIME, OLD_STATUS_ID, OLD_STATUS, NEW_STATUS_ID, NEW_STATUS";
+	
+	/**
+	 * Callback invoked once for every transition of a range scan.
+	 */
+	public interface TransitionVisitor {
+		void visit(TransitionEvent event);
+	}
+	
+	@Inject
+	public TransitionEventStore(@ComponentImport ActiveObjects ao) {
+		super(ao);
+	}
+	
+	public String getName() {
+		return NAME;
+	}
+	
+	/**
+	 * Appends the status transitions of a single change of an issue, as announced by an issue 
+	 * event. Changes that don't touch the status append nothing, and transitions that are 
+	 * already logged (e.g. by a backfill running meanwhile) are skipped.
+	 * 
+	 * @param issue - Issue that was changed.
+	 * @param changeLog - Change group of the change.
+	 * @param changeItems - Change items of the change.
+	 */
+	public void appendTransitions(final Issue issue, GenericValue changeLog, List<GenericValue> changeItems) {
+		final List<StatusTransition> transitions = StatusTransitionReader.getTransitions(issue.getId(), changeLog, 
+				changeItems);
+		if (transitions.isEmpty())
+			return;
+		
+		ao.executeInTransaction(new TransactionCallback<Void>() {
+			public Void doInTransaction() {
+				for (StatusTransition transition : transitions) {
+					if (ao.count(TransitionEvent.class, Query.select().where("ISSUE_ID = ? AND CHANGE_ITEM_ID = ?", 
+							issue.getId(), transition.getChangeItemId())) == 0)
+						append(issue, transition);
+				}
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Updates the project, issue type and key of the logged transitions of an issue that has 
+	 * moved.
+	 * 
+	 * @param issue - Issue that was moved.
+	 */
+	public void moveIssue(final Issue issue) {
+		ao.executeInTransaction(new TransactionCallback<Void>() {
+			public Void doInTransaction() {
+				for (TransitionEvent event : ao.find(TransitionEvent.class, Query.select().where("ISSUE_ID = ?", issue.getId()))) {
+					event.setProjectId(issue.getProjectObject().getId());
+					event.setIssueTypeId(issue.getIssueTypeId());
+					event.setIssueKey(issue.getKey());
+					event.save();
+				}
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Removes every transition of the given issue.
+	 * 
+	 * @param issueId - Id of the deleted issue.
+	 */
+	public void removeIssue(long issueId) {
+		ao.deleteWithSQL(TransitionEvent.class, "ISSUE_ID = ?", issueId);
+	}
+	
+	/**
+	 * Determines whether the transitions of the given project are complete.
+	 * 
+	 * @param projectId - Id of the project.
+	 * @return True if the project's transitions can be read in place of its change histories.
+	 */
+	public boolean isReady(long projectId) {
+		return isBackfilled(projectId);
+	}
+	
+	/**
+	 * Passes the transitions of a project to the visitor, in order of change time.
+	 * 
+	 * @param projectId - Id of the project.
+	 * @param earliestDate - Earliest allowable transition (can be null).
+	 * @param newStatusIds - Allowable new status ids (null/empty value means all statuses are 
+	 * acceptable).
+	 * @param issueTypeIds - Allowable issue type ids (null/empty value means all issue types are 
+	 * acceptable).
+	 * @param visitor - Callback receiving every matching transition.
+	 */
+	public void scan(long projectId, Date earliestDate, Collection<String> newStatusIds, 
+			Collection<String> issueTypeIds, final TransitionVisitor visitor) {
+		StringBuilder where = new StringBuilder("PROJECT_ID = ? AND CHANGE_TIME >= ?");
+		List<Object> params = new ArrayList<Object>();
+		params.add(projectId);
+		params.add(earliestDate != null ? earliestDate.getTime() : Long.MIN_VALUE);
+		appendInCondition(where, params, "NEW_STATUS_ID", newStatusIds);
+		appendInCondition(where, params, "ISSUE_TYPE_ID", issueTypeIds);
+		
+		Query query = Query.select(SCAN_COLUMNS).where(where.toString(), params.toArray())
+				.order("CHANGE_TIME ASC, CHANGE_ITEM_ID ASC");
+		ao.stream(TransitionEvent.class, query, new EntityStreamCallback<TransitionEvent, Integer>() {
+			public void onRowRead(TransitionEvent event) {
+				visitor.visit(event);
+			}
+		});
+	}
+	
+	/**
+	 * Rebuilds the transitions of a single project from the change histories of its issues.
+	 */
+	protected String backfill(Project project) throws Exception {
+		// Clears the project's rows, dropping transitions of issues deleted while the plugin was disabled
+		ao.deleteWithSQL(TransitionEvent.class, "PROJECT_ID = ?", project.getId());
+		
+		IssueManager issueManager = ComponentAccessor.getIssueManager();
+		StatusTransitionReader transitionReader = new StatusTransitionReader();
+		List<Long> issueIds = new ArrayList<Long>(issueManager.getIssueIdsForProject(project.getId()));
+		for (int start = 0; start < issueIds.size(); start += BACKFILL_BATCH_SIZE) {
+			if (Thread.currentThread().isInterrupted())
+				throw new InterruptedException("Backfill of project " + project.getKey() + " was stopped.");
+			
+			backfillBatch(issueManager, transitionReader, issueIds.subList(start, Math.min(start + BACKFILL_BATCH_SIZE, issueIds.size())));
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Replaces the transitions of a batch of issues with the ones read from their change 
+	 * histories, within a single transaction.
+	 */
+	private void backfillBatch(final IssueManager issueManager, final StatusTransitionReader transitionReader, 
+			final List<Long> issueIds) {
+		ao.executeInTransaction(new TransactionCallback<Void>() {
+			public Void doInTransaction() {
+				StringBuilder where = new StringBuilder("1 = 1");
+				List<Object> params = new ArrayList<Object>();
+				appendInCondition(where, params, "ISSUE_ID", issueIds);
+				ao.deleteWithSQL(TransitionEvent.class, where.toString(), params.toArray());
+				
+				Map<Long, Issue> issues = new HashMap<Long, Issue>();
+				for (StatusTransition transition : transitionReader.getTransitions(issueIds, null, null)) {
+					if (!issues.containsKey(transition.getIssueId()))
+						issues.put(transition.getIssueId(), issueManager.getIssueObject(transition.getIssueId()));
+					
+					Issue issue = issues.get(transition.getIssueId());
+					if (issue != null)
+						append(issue, transition);
+				}
+				return null;
+			}
+		});
+	}
+	
+	private void append(Issue issue, StatusTransition transition) {
+		ao.create(TransitionEvent.class, 
+				new DBParam("ISSUE_ID", issue.getId()), 
+				new DBParam("ISSUE_KEY", issue.getKey()), 
+				new DBParam("PROJECT_ID", issue.getProjectObject().getId()), 
+				new DBParam("ISSUE_TYPE_ID", issue.getIssueTypeId()), 
+				new DBParam("CHANGE_ITEM_ID", transition.getChangeItemId()), 
+				new DBParam("CHANGE_TIME", transition.getChangeTime()), 
+				new DBParam("OLD_STATUS_ID", transition.getOldStatusId()), 
+				new DBParam("OLD_STATUS", transition.getOldStatus()), 
+				new DBParam("NEW_STATUS_ID", transition.getNewStatusId()), 
+				new DBParam("NEW_STATUS", transition.getNewStatus()));
+	}
+	
+	/**
+	 * Appends an IN condition on the given column to a where clause, if any values are given.
+	 */
+	private static void appendInCondition(StringBuilder where, List<Object> params, String column, 
+			Collection<?> values) {
+		if (values == null || values.isEmpty())
+			return;
+		
+		where.append(" AND ").append(column).append(" IN (");
+		boolean first = true;
+		for (Object value : values) {
+			where.append(first ? "?" : ", ?");
+			params.add(value);
+			first = false;
+		}
+		where.append(")");
+	}
+}
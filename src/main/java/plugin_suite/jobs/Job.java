@@ -0,0 +1,222 @@
+package plugin_suite.jobs;
+
+import java.io.File;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single asynchronous job, along with its progress and, once it is done, the spooled file 
+ * holding its compressed result. The job is updated by the thread running it and read by any 
+ * number of polling requests, so its state is kept in volatile and atomic fields.
+ */
+public class Job {
+	/**
+	 * States of a job. Queued, running and cancelling jobs are active, the others are final. A 
+	 * running job that is cancelled keeps cancelling until its thread stops.
+	 */
+	public enum State {
+		QUEUED, RUNNING, CANCELLING, DONE, FAILED, CANCELLED
+	}
+	
+	private final String id;
+	private final String owner;
+	private final String type;
+	private final long created;
+	
+	private volatile State state;
+	private volatile long started;
+	private volatile long finished;
+	private volatile String error;
+	private volatile File result;
+	private volatile Future<?> future;
+	
+	// Issues processed so far out of the total (-1 until the total is known), and records written
+	private final AtomicInteger processed = new AtomicInteger();
+	private final AtomicInteger total = new AtomicInteger(-1);
+	private final AtomicLong records = new AtomicLong();
+	
+	/**
+	 * @param id - Id of the job.
+	 * @param owner - Key of the user who submitted the job.
+	 * @param type - Type of the job (the resource whose data it exports).
+	 */
+	public Job(String id, String owner, String type) {
+		this.id = id;
+		this.owner = owner;
+		this.type = type;
+		this.created = System.currentTimeMillis();
+		this.state = State.QUEUED;
+	}
+	
+	public String getId() {
+		return id;
+	}
+	
+	public String getOwner() {
+		return owner;
+	}
+	
+	public String getType() {
+		return type;
+	}
+	
+	public long getCreated() {
+		return created;
+	}
+	
+	public State getState() {
+		return state;
+	}
+	
+	public long getStarted() {
+		return started;
+	}
+	
+	public long getFinished() {
+		return finished;
+	}
+	
+	public String getError() {
+		return error;
+	}
+	
+	public File getResult() {
+		return result;
+	}
+	
+	public int getProcessed() {
+		return processed.get();
+	}
+	
+	public int getTotal() {
+		return total.get();
+	}
+	
+	public long getRecords() {
+		return records.get();
+	}
+	
+	public boolean isActive() {
+		State current = state;
+		return current == State.QUEUED || current == State.RUNNING || current == State.CANCELLING;
+	}
+	
+	public boolean isCancelled() {
+		State current = state;
+		return current == State.CANCELLING || current == State.CANCELLED;
+	}
+	
+	/**
+	 * Adds to the number of issues the job will process.
+	 * 
+	 * @param count - Number of issues to add.
+	 */
+	public void addTotal(int count) {
+		total.compareAndSet(-1, 0);
+		total.addAndGet(count);
+	}
+	
+	/**
+	 * Adds to the number of issues the job has processed.
+	 * 
+	 * @param count - Number of issues to add.
+	 */
+	public void addProcessed(int count) {
+		processed.addAndGet(count);
+	}
+	
+	/**
+	 * Counts a record written to the job's result.
+	 */
+	void addRecord() {
+		records.incrementAndGet();
+	}
+	
+	void setFuture(Future<?> future) {
+		this.future = future;
+	}
+	
+	/**
+	 * Marks the job as running, unless it was cancelled while queued.
+	 * 
+	 * @return True if the job should run.
+	 */
+	synchronized boolean start() {
+		if (state != State.QUEUED)
+			return false;
+		started = System.currentTimeMillis();
+		state = State.RUNNING;
+		return true;
+	}
+	
+	/**
+	 * Marks the job as done, holding the given result.
+	 * 
+	 * @param result - Spooled result file.
+	 * @return True if the result was kept, false if the job was cancelled in the meantime.
+	 */
+	synchronized boolean complete(File result) {
+		if (state != State.RUNNING)
+			return false;
+		this.result = result;
+		finish(State.DONE);
+		return true;
+	}
+	
+	/**
+	 * Marks the job as failed, unless it was cancelled in the meantime.
+	 * 
+	 * @param error - Description of the failure.
+	 */
+	synchronized void fail(String error) {
+		if (state != State.RUNNING)
+			return;
+		this.error = error;
+		finish(State.FAILED);
+	}
+	
+	/**
+	 * Cancels the job if it is still active. A queued job never starts and is cancelled at 
+	 * once, while a running job stops at the next record it writes and remains active until 
+	 * its thread has stopped (see {@link #stopped()}). The running thread isn't interrupted, 
+	 * since an interrupt during an index search or a database read can break the reader it is 
+	 * using.
+	 * 
+	 * @return True if the job was active.
+	 */
+	synchronized boolean cancel() {
+		if (!isActive())
+			return false;
+		if (state == State.QUEUED) {
+			finish(State.CANCELLED);
+			if (future != null)
+				future.cancel(false);
+		} else {
+			state = State.CANCELLING;
+		}
+		return true;
+	}
+	
+	/**
+	 * Marks a job cancelled while running as cancelled, once its thread has stopped.
+	 */
+	synchronized void stopped() {
+		if (state == State.CANCELLING)
+			finish(State.CANCELLED);
+	}
+	
+	/**
+	 * Deletes the job's result file, if any.
+	 */
+	synchronized void discard() {
+		if (result != null && !result.delete() && result.exists())
+			result.deleteOnExit();
+		result = null;
+	}
+	
+	private void finish(State finalState) {
+		finished = System.currentTimeMillis();
+		state = finalState;
+	}
+}
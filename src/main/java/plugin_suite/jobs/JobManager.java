@@ -0,0 +1,257 @@
+package plugin_suite.jobs;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.inject.Named;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import plugin_suite.concurrent.UserCallable;
+import plugin_suite.streaming.JsonRecord;
+import plugin_suite.streaming.JsonRecordWriter;
+import plugin_suite.streaming.RecordSink;
+
+/**
+ * Runs long exports as asynchronous jobs on a small, bounded pool of threads of their own, so 
+ * that large queries never hold on to the server's request threads. Every job writes its records 
+ * as a gzipped JSON array into a spooled temporary file, which is kept until it is downloaded 
+ * and deleted, or until it expires.
+ * 
+ * Each user may only have a few jobs queued or running at once, and the number of queued jobs 
+ * is bounded as well, so a burst of submissions is turned away rather than piling up.
+ */
+@Named("jobManager")
+public class JobManager implements DisposableBean {
+	// Number of jobs running at once, and number of jobs waiting for a thread
+	private static final int MAX_RUNNING_JOBS = 2;
+	private static final int MAX_QUEUED_JOBS = 20;
+	
+	// Number of jobs a single user may have queued or running at once
+	public static final int MAX_ACTIVE_JOBS_PER_USER = 2;
+	
+	// Time finished jobs and their results are kept
+	private static final long RESULT_TIME_TO_LIVE = 60 * 60 * 1000L;		// 1 hour
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * Work done by a job: writes the records of its result to the given sink, and reports its 
+	 * progress to the job as it goes.
+	 */
+	public interface Work {
+		void run(Job job, RecordSink<JsonRecord> sink) throws Exception;
+	}
+	
+	private final ThreadPoolExecutor executor;
+	private final long resultTimeToLive;
+	private final Map<String, Job> jobs = new ConcurrentHashMap<String, Job>();
+	
+	public JobManager() {
+		this(MAX_RUNNING_JOBS, MAX_QUEUED_JOBS, RESULT_TIME_TO_LIVE);
+	}
+	
+	/**
+	 * @param maxRunningJobs - Number of jobs running at once.
+	 * @param maxQueuedJobs - Number of jobs waiting for a thread.
+	 * @param resultTimeToLive - Time finished jobs and their results are kept, in milliseconds.
+	 */
+	public JobManager(int maxRunningJobs, int maxQueuedJobs, long resultTimeToLive) {
+		this.resultTimeToLive = resultTimeToLive;
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(maxRunningJobs, maxRunningJobs, 0L, TimeUnit.MILLISECONDS, 
+				new ArrayBlockingQueue<Runnable>(maxQueuedJobs), new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "plugin-suite-job-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Submits a job that runs the given work on behalf of the current user.
+	 * 
+	 * @param owner - Key of the user submitting the job.
+	 * @param type - Type of the job.
+	 * @param work - Work done by the job.
+	 * @return Queued job, or null if the user already has as many active jobs as allowed.
+	 * @throws RejectedExecutionException If the job queue is full.
+	 */
+	public synchronized Job submit(String owner, String type, final Work work) {
+		purgeExpired();
+		if (getActiveJobCount(owner) >= MAX_ACTIVE_JOBS_PER_USER)
+			return null;
+		
+		final Job job = new Job(UUID.randomUUID().toString(), owner, type);
+		jobs.put(job.getId(), job);
+		try {
+			job.setFuture(executor.submit(new UserCallable<Void>() {
+				protected Void callAsUser() {
+					run(job, work);
+					return null;
+				}
+			}));
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			throw e;
+		}
+		return job;
+	}
+	
+	/**
+	 * Gets a job of the given user.
+	 * 
+	 * @param id - Id of the job.
+	 * @param owner - Key of the user asking for the job.
+	 * @return Job, or null if there is no such job or it belongs to another user.
+	 */
+	public Job getJob(String id, String owner) {
+		purgeExpired();
+		Job job = id != null ? jobs.get(id) : null;
+		return job != null && job.getOwner().equals(owner) ? job : null;
+	}
+	
+	/**
+	 * Gets every job of the given user.
+	 * 
+	 * @param owner - Key of the user.
+	 * @return Jobs of the user, most recent first.
+	 */
+	public List<Job> getJobs(String owner) {
+		purgeExpired();
+		List<Job> ownJobs = new ArrayList<Job>();
+		for (Job job : jobs.values()) {
+			if (job.getOwner().equals(owner))
+				ownJobs.add(job);
+		}
+		Collections.sort(ownJobs, new Comparator<Job>() {
+			public int compare(Job first, Job second) {
+				return first.getCreated() > second.getCreated() ? -1 : (first.getCreated() == second.getCreated() ? 0 : 1);
+			}
+		});
+		return ownJobs;
+	}
+	
+	/**
+	 * Cancels the given job if it is still active, and otherwise removes it along with its result.
+	 * 
+	 * @param job - Job to cancel or remove.
+	 */
+	public void cancel(Job job) {
+		if (job.cancel()) {
+			// Frees the queue slot of a job cancelled before it started
+			executor.purge();
+		} else {
+			jobs.remove(job.getId());
+			job.discard();
+		}
+	}
+	
+	/**
+	 * Runs the given job, spooling its records into a compressed temporary file.
+	 */
+	private static void run(Job job, Work work) {
+		if (!job.start())
+			return;
+		
+		File file = null;
+		boolean kept = false;
+		try {
+			file = File.createTempFile("plugin-suite-job-", ".json.gz");
+			OutputStream output = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE), 
+					BUFFER_SIZE);
+			try {
+				JsonRecordWriter<JsonRecord> writer = new JsonRecordWriter<JsonRecord>(output);
+				writer.begin();
+				work.run(job, new JobRecordSink(job, writer));
+				writer.end();
+			} finally {
+				output.close();
+			}
+			kept = job.complete(file);
+		} catch (CancellationException e) {
+			// The job was cancelled, and its partial result is dropped below
+		} catch (Exception e) {
+			e.printStackTrace();
+			job.fail(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+		} finally {
+			if (!kept && file != null)
+				file.delete();
+			job.stopped();
+		}
+	}
+	
+	private int getActiveJobCount(String owner) {
+		int count = 0;
+		for (Job job : jobs.values()) {
+			if (job.isActive() && job.getOwner().equals(owner))
+				count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Removes the finished jobs that have expired, deleting their results.
+	 */
+	private void purgeExpired() {
+		long expiry = System.currentTimeMillis() - resultTimeToLive;
+		for (Job job : jobs.values()) {
+			if (!job.isActive() && job.getFinished() < expiry) {
+				jobs.remove(job.getId());
+				job.discard();
+			}
+		}
+	}
+	
+	/**
+	 * Stops every job and deletes every result once the plugin is disabled.
+	 */
+	public void destroy() throws Exception {
+		executor.shutdownNow();
+		for (Job job : jobs.values()) {
+			job.cancel();
+			job.discard();
+		}
+		jobs.clear();
+	}
+	
+	
+	/**
+	 * Sink writing the records of a job, which stops the job as soon as it is cancelled.
+	 */
+	private static class JobRecordSink implements RecordSink<JsonRecord> {
+		private final Job job;
+		private final RecordSink<JsonRecord> writer;
+		
+		private JobRecordSink(Job job, RecordSink<JsonRecord> writer) {
+			this.job = job;
+			this.writer = writer;
+		}
+		
+		public void add(JsonRecord record) {
+			if (job.isCancelled() || Thread.currentThread().isInterrupted())
+				throw new CancellationException("Job " + job.getId() + " was cancelled.");
+			writer.add(record);
+			job.addRecord();
+		}
+	}
+}
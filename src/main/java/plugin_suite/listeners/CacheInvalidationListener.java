@@ -0,0 +1,105 @@
+package plugin_suite.listeners;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.ProjectCreatedEvent;
+import com.atlassian.jira.event.ProjectDeletedEvent;
+import com.atlassian.jira.event.ProjectUpdatedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldCreatedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldDeletedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldUpdatedEvent;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+
+import plugin_suite.cache.CustomFieldRegistry;
+import plugin_suite.cache.ProjectCatalog;
+import plugin_suite.cache.ResultCache;
+
+/**
+ * Listens for Jira events that change the data behind the cached REST results, and removes 
+ * the affected entries from the plugin's result cache. Issue events are handled by the 
+ * rollup update listener instead, which invalidates the issue's project once the plugin's 
+ * stores are updated.
+ */
+@Named("cacheInvalidationListener")
+public class CacheInvalidationListener implements InitializingBean, DisposableBean {
+	private final EventPublisher eventPublisher;
+	private final ResultCache cache;
+	
+	@Inject
+	public CacheInvalidationListener(@ComponentImport EventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+		this.cache = ResultCache.getInstance();
+	}
+	
+	/**
+	 * Registers the listener once the plugin is enabled.
+	 */
+	public void afterPropertiesSet() throws Exception {
+		eventPublisher.register(this);
+	}
+	
+	/**
+	 * Unregisters the listener once the plugin is disabled.
+	 */
+	public void destroy() throws Exception {
+		eventPublisher.unregister(this);
+		cache.clear();
+		ProjectCatalog.getInstance().invalidate();
+		CustomFieldRegistry.getInstance().invalidate();
+	}
+	
+	@EventListener
+	public void onProjectCreated(ProjectCreatedEvent event) {
+		invalidateProjects();
+	}
+	
+	@EventListener
+	public void onProjectUpdated(ProjectUpdatedEvent event) {
+		invalidateProjects();
+	}
+	
+	@EventListener
+	public void onProjectDeleted(ProjectDeletedEvent event) {
+		invalidateProjects();
+	}
+	
+	@EventListener
+	public void onCustomFieldCreated(CustomFieldCreatedEvent event) {
+		invalidateCustomFields();
+	}
+	
+	@EventListener
+	public void onCustomFieldUpdated(CustomFieldUpdatedEvent event) {
+		invalidateCustomFields();
+	}
+	
+	@EventListener
+	public void onCustomFieldDeleted(CustomFieldDeletedEvent event) {
+		invalidateCustomFields();
+	}
+	
+	/**
+	 * Project names and keys are part of every issue and change history result, so all of 
+	 * them are removed along with the project catalog, which is rebuilt on its next use.
+	 */
+	private void invalidateProjects() {
+		ProjectCatalog.getInstance().invalidate();
+		cache.invalidate(ResultCache.ISSUES, null);
+		cache.invalidate(ResultCache.CHANGE_HISTORY, null);
+	}
+	
+	/**
+	 * Custom field names are used within the issue queries, so issue results are removed 
+	 * along with the custom field registry, which is rebuilt on its next use.
+	 */
+	private void invalidateCustomFields() {
+		CustomFieldRegistry.getInstance().invalidate();
+		cache.invalidate(ResultCache.ISSUES, null);
+	}
+}
@@ -0,0 +1,133 @@
+package plugin_suite.listeners;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.ofbiz.core.entity.GenericEntityException;
+import org.ofbiz.core.entity.GenericValue;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.event.issue.IssueEvent;
+import com.atlassian.jira.event.type.EventType;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+
+import plugin_suite.cache.ResultCache;
+import plugin_suite.history.TransitionEventStore;
+import plugin_suite.rollup.DailyRollupStore;
+
+/**
+ * Listens for issue events and keeps the daily issue count rollups and the status transition 
+ * log up to date, one issue at a time.
+ */
+@Named("rollupUpdateListener")
+public class RollupUpdateListener implements InitializingBean, DisposableBean {
+	private final EventPublisher eventPublisher;
+	private final DailyRollupStore rollupStore;
+	private final TransitionEventStore transitionStore;
+	
+	@Inject
+	public RollupUpdateListener(@ComponentImport EventPublisher eventPublisher, DailyRollupStore rollupStore, 
+			TransitionEventStore transitionStore) {
+		this.eventPublisher = eventPublisher;
+		this.rollupStore = rollupStore;
+		this.transitionStore = transitionStore;
+	}
+	
+	/**
+	 * Registers the listener once the plugin is enabled.
+	 */
+	public void afterPropertiesSet() throws Exception {
+		eventPublisher.register(this);
+	}
+	
+	/**
+	 * Unregisters the listener once the plugin is disabled.
+	 */
+	public void destroy() throws Exception {
+		eventPublisher.unregister(this);
+	}
+	
+	@EventListener
+	public void onIssueEvent(IssueEvent event) {
+		Issue issue = event.getIssue();
+		if (issue == null || issue.getId() == null)
+			return;
+		
+		try {
+			if (EventType.ISSUE_DELETED_ID.equals(event.getEventTypeId())) {
+				rollupStore.removeIssue(issue.getId());
+				transitionStore.removeIssue(issue.getId());
+			} else {
+				// Reloads the issue, since the event may carry the values from before the change
+				Issue current = ComponentAccessor.getIssueManager().getIssueObject(issue.getId());
+				if (current != null) {
+					List<GenericValue> changeItems = getChangeItems(event);
+					boolean moved = EventType.ISSUE_MOVED_ID.equals(event.getEventTypeId());
+					
+					// Only new issues, moves and changes of a date field or the issue type can move counts
+					if (EventType.ISSUE_CREATED_ID.equals(event.getEventTypeId()) || moved
+							|| rollupStore.isTrackedChange(current, changeItems))
+						rollupStore.updateIssue(current);
+					
+					// Logged transitions only change with a move or a new issue type, and only status 
+					// changes add transitions
+					if (moved || hasChangedField(changeItems, "issuetype"))
+						transitionStore.moveIssue(current);
+					transitionStore.appendTransitions(current, event.getChangeLog(), changeItems);
+				}
+			}
+		} catch (RuntimeException e) {
+			// Never fails the issue operation itself; a backfill repairs the project's data
+			e.printStackTrace();
+		}
+		
+		// Any issue change can affect the issue and change history results of its project, and 
+		// results may have been cached from the stores before they were updated
+		if (issue.getProjectObject() != null) {
+			ResultCache.getInstance().invalidate(ResultCache.ISSUES, issue.getProjectObject().getKey());
+			ResultCache.getInstance().invalidate(ResultCache.CHANGE_HISTORY, issue.getProjectObject().getKey());
+		}
+	}
+	
+	/**
+	 * Determines whether the given change items change a system field.
+	 * 
+	 * @param changeItems - Change items of an event.
+	 * @param field - Name of the system field (e.g. issuetype).
+	 * @return True if one of the items changes the field.
+	 */
+	private static boolean hasChangedField(List<GenericValue> changeItems, String field) {
+		for (GenericValue changeItem : changeItems) {
+			if ("jira".equalsIgnoreCase(changeItem.getString("fieldtype")) 
+					&& field.equalsIgnoreCase(changeItem.getString("field")))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the change items of the given event.
+	 * 
+	 * @param event - Issue event.
+	 * @return Change items, or an empty list if the event has no change log.
+	 */
+	private static List<GenericValue> getChangeItems(IssueEvent event) {
+		if (event.getChangeLog() == null)
+			return Collections.emptyList();
+		
+		try {
+			return event.getChangeLog().getRelated("ChildChangeItem");
+		} catch (GenericEntityException e) {
+			e.printStackTrace();
+			return Collections.emptyList();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package plugin_suite.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.*;
+
+/**
+ * Resource model for change history aggregated by one or more dimensions. Each row holds the 
+ * keys and labels of its group (in the order of the requested dimensions) and the group's 
+ * aggregated values.
+ */
+@XmlRootElement(name = "aggregate")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class AggregateRestResourceModel {
+	@XmlElement
+	private List<String> groupBy;
+	
+	@XmlElement
+	private String metric;
+	
+	@XmlElement
+	private List<AggregateDataContainer> rows;
+	
+	public AggregateRestResourceModel() {
+		this.rows = new ArrayList<AggregateDataContainer>();
+	}
+	
+	public AggregateRestResourceModel(List<String> groupBy, String metric, List<AggregateDataContainer> rows) {
+		this.groupBy = groupBy;
+		this.metric = metric;
+		this.rows = rows;
+	}
+	
+	public List<String> getGroupBy() {
+		return groupBy;
+	}
+	
+	public String getMetric() {
+		return metric;
+	}
+	
+	public List<AggregateDataContainer> getRows() {
+		return rows;
+	}
+	
+	
+	/**
+	 * Inner class that encapsulates the aggregated values of a single group.
+	 */
+	@XmlRootElement(name = "row")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class AggregateDataContainer {
+		// Keys of the group, one per dimension (status/issue type ids, or week start in ms)
+		@XmlElement
+		private List<String> keys;
+		
+		// Labels of the group, one per dimension (status/issue type names, or week start date)
+		@XmlElement
+		private List<String> labels;
+		
+		// Number of transitions (or of completed stays, for time in status)
+		@XmlElement
+		private long count;
+		
+		// Value of the metric
+		@XmlElement
+		private double value;
+		
+		public AggregateDataContainer() {
+		}
+		
+		public AggregateDataContainer(List<String> keys, List<String> labels, long count, double value) {
+			this.keys = keys;
+			this.labels = labels;
+			this.count = count;
+			this.value = value;
+		}
+		
+		public List<String> getKeys() {
+			return keys;
+		}
+		
+		public List<String> getLabels() {
+			return labels;
+		}
+		
+		public long getCount() {
+			return count;
+		}
+		
+		public double getValue() {
+			return value;
+		}
+	}
+}
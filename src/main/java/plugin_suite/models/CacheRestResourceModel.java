@@ -0,0 +1,50 @@
+package plugin_suite.models;
+
+import javax.xml.bind.annotation.*;
+
+/**
+ * Resource model for cache statistics.
+ */
+@XmlRootElement(name = "cache")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class CacheRestResourceModel {
+	@XmlElement
+	private String name;
+	
+	@XmlElement
+	private long hits;
+	
+	@XmlElement
+	private long misses;
+	
+	@XmlElement
+	private double hitRatio;
+	
+	@XmlElement
+	private long evictions;
+	
+	@XmlElement
+	private long invalidations;
+	
+	@XmlElement
+	private int size;
+	
+	// Number of records held by the result cache, number of bytes held by the chart cache
+	@XmlElement
+	private long weight;
+	
+	public CacheRestResourceModel() {
+	}
+	
+	public CacheRestResourceModel(String name, long hits, long misses, long evictions, long invalidations, 
+			int size, long weight) {
+		this.name = name;
+		this.hits = hits;
+		this.misses = misses;
+		this.hitRatio = hits + misses > 0 ? (double) hits / (hits + misses) : 0;
+		this.evictions = evictions;
+		this.invalidations = invalidations;
+		this.size = size;
+		this.weight = weight;
+	}
+}
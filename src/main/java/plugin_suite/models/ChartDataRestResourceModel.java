@@ -0,0 +1,122 @@
+package plugin_suite.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.*;
+
+/**
+ * Resource model for the data of a chart, without any rendering: the bucketed series along
+ * with the labels and the ticks of the time axis, so that the chart can be drawn by the client.
+ */
+@XmlRootElement(name = "chartData")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ChartDataRestResourceModel {
+	@XmlElement
+	private String title;
+
+	@XmlElement
+	private String timeAxisLabel;
+
+	@XmlElement
+	private String valueAxisLabel;
+
+	// Id of the time zone the axis dates start in
+	@XmlElement
+	private String timeZone;
+
+	// Whether the series are stacked as areas rather than drawn as lines
+	@XmlElement
+	private boolean stacked;
+
+	// Axis ticks, in milliseconds since 1/1/1970 (the first and last ones are the axis bounds)
+	@XmlElement
+	private List<Long> ticks;
+
+	// Series in the order they are drawn
+	@XmlElement
+	private List<SeriesDataContainer> series;
+
+	public ChartDataRestResourceModel() {
+		this.ticks = new ArrayList<Long>();
+		this.series = new ArrayList<SeriesDataContainer>();
+	}
+
+	public ChartDataRestResourceModel(String title, String timeAxisLabel, String valueAxisLabel, String timeZone,
+			boolean stacked, List<Long> ticks, List<SeriesDataContainer> series) {
+		this.title = title;
+		this.timeAxisLabel = timeAxisLabel;
+		this.valueAxisLabel = valueAxisLabel;
+		this.timeZone = timeZone;
+		this.stacked = stacked;
+		this.ticks = ticks;
+		this.series = series;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getTimeAxisLabel() {
+		return timeAxisLabel;
+	}
+
+	public String getValueAxisLabel() {
+		return valueAxisLabel;
+	}
+
+	public String getTimeZone() {
+		return timeZone;
+	}
+
+	public boolean isStacked() {
+		return stacked;
+	}
+
+	public List<Long> getTicks() {
+		return ticks;
+	}
+
+	public List<SeriesDataContainer> getSeries() {
+		return series;
+	}
+
+
+	/**
+	 * Inner class that encapsulates a single bucketed series.
+	 */
+	@XmlRootElement(name = "series")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class SeriesDataContainer {
+		@XmlElement
+		private String name;
+
+		// Axis dates holding a count, in milliseconds since 1/1/1970
+		@XmlElement
+		private List<Long> dates;
+
+		@XmlElement
+		private List<Long> counts;
+
+		public SeriesDataContainer() {
+		}
+
+		public SeriesDataContainer(String name, List<Long> dates, List<Long> counts) {
+			this.name = name;
+			this.dates = dates;
+			this.counts = counts;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<Long> getDates() {
+			return dates;
+		}
+
+		public List<Long> getCounts() {
+			return counts;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package plugin_suite.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.*;
+
+/**
+ * Resource model for a cumulative flow diagram: the number of issues in each status at the 
+ * end of every axis date.
+ */
+@XmlRootElement(name = "cumulativeFlow")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class CumulativeFlowRestResourceModel {
+	// Axis dates, in milliseconds since 1/1/1970
+	@XmlElement
+	private List<Long> dates;
+	
+	// One series per status, in workflow order
+	@XmlElement
+	private List<StatusSeriesContainer> statuses;
+	
+	public CumulativeFlowRestResourceModel() {
+		this.dates = new ArrayList<Long>();
+		this.statuses = new ArrayList<StatusSeriesContainer>();
+	}
+	
+	public CumulativeFlowRestResourceModel(List<Long> dates, List<StatusSeriesContainer> statuses) {
+		this.dates = dates;
+		this.statuses = statuses;
+	}
+	
+	public List<Long> getDates() {
+		return dates;
+	}
+	
+	public List<StatusSeriesContainer> getStatuses() {
+		return statuses;
+	}
+	
+	
+	/**
+	 * Inner class that encapsulates the occupancy of a single status.
+	 */
+	@XmlRootElement(name = "status")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class StatusSeriesContainer {
+		@XmlElement
+		private String id;
+		
+		@XmlElement
+		private String name;
+		
+		// Number of issues in the status at the end of every axis date
+		@XmlElement
+		private List<Long> counts;
+		
+		public StatusSeriesContainer() {
+		}
+		
+		public StatusSeriesContainer(String id, String name, List<Long> counts) {
+			this.id = id;
+			this.name = name;
+			this.counts = counts;
+		}
+		
+		public String getId() {
+			return id;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public List<Long> getCounts() {
+			return counts;
+		}
+	}
+}
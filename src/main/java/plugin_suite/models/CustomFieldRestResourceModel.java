@@ -1,8 +1,9 @@
 package plugin_suite.models;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import javax.xml.bind.annotation.*;
 
@@ -20,27 +21,12 @@ public class CustomFieldRestResourceModel {
 	}
 	
 	/**
-	 * Constructor that produces a single Custom Field Container and adds it to
-	 * the list.
+	 * Constructor that accepts a list of Custom Field Data Containers.
 	 * 
-	 * @param parameters - Mapping of custom field data parameters.
+	 * @param customFields - List of custom field data containers.
 	 */
-	public CustomFieldRestResourceModel(Map<String, Object> parameters) {
-		this.customFields = new ArrayList<CustomFieldDataContainer>();
-		this.customFields.add(new CustomFieldDataContainer(parameters));
-    }
-	
-	/**
-	 * Constructor that produces a list of Custom Field Data Containers.
-	 * 
-	 * @param parameterList - List of mappings of custom field data parameters.
-	 */
-	public CustomFieldRestResourceModel(List<Map<String, Object>> parameterList) {
-		this.customFields = new ArrayList<CustomFieldDataContainer>();
-		
-		for (Map<String, Object> parameters : parameterList) {
-			this.customFields.add(new CustomFieldDataContainer(parameters));
-		}
+	public CustomFieldRestResourceModel(List<CustomFieldDataContainer> customFields) {
+		this.customFields = customFields;
     }
 	
 	/**
@@ -54,11 +40,16 @@ public class CustomFieldRestResourceModel {
 	
 	
 	/**
-	 * Inner class that encapsulates the parameters of a single custom field.
+	 * Inner class that encapsulates the parameters of a single custom field. 
+	 * Attributes that were not requested are left unset, and are not serialized.
 	 */
 	@XmlRootElement(name = "customField")
 	@XmlAccessorType(XmlAccessType.FIELD)
 	public static class CustomFieldDataContainer implements Comparable<CustomFieldDataContainer> {
+		// Names of the attributes that can be requested
+		public static final List<String> ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+				"id", "name", "typeKey", "typeName", "category"));
+		
 		@XmlElement
 		private String id;
 		
@@ -71,25 +62,55 @@ public class CustomFieldRestResourceModel {
 		@XmlElement
 		private String typeName;
 		
+		// Category of the field type (date, datetime, number, user, select or other)
+		@XmlElement
+		private String category;
+		
 		public CustomFieldDataContainer() {
 		}
 		
-		public CustomFieldDataContainer(Map<String, Object> parameters) {
-			this.id = (String) parameters.get("id");
-			this.name = (String) parameters.get("name");
-			this.typeKey = (String) parameters.get("typeKey");
-			this.typeName = (String) parameters.get("typeName");
+		public CustomFieldDataContainer(FieldSet fieldSet, String id, String name, String typeKey, 
+				String typeName, String category) {
+			this.id = fieldSet.select("id", id);
+			this.name = fieldSet.select("name", name);
+			this.typeKey = fieldSet.select("typeKey", typeKey);
+			this.typeName = fieldSet.select("typeName", typeName);
+			this.category = fieldSet.select("category", category);
 	    }
 		
-		public CustomFieldDataContainer(String id, String key, String name, 
-				String typeKey, String typeName, List<String> valueList) {
-			this.id = id;
-			this.name = name;
-			this.typeKey = typeKey;
-			this.typeName = typeName;
-	    }
+		/**
+		 * Gets a copy of this custom field's data, restricted to the given attributes.
+		 * 
+		 * @param fieldSet - Attributes to fill.
+		 * @return Custom field data container holding the selected attributes.
+		 */
+		public CustomFieldDataContainer select(FieldSet fieldSet) {
+			return new CustomFieldDataContainer(fieldSet, id, name, typeKey, typeName, category);
+		}
+		
+		public String getId() {
+			return id;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public String getTypeKey() {
+			return typeKey;
+		}
+		
+		public String getTypeName() {
+			return typeName;
+		}
+		
+		public String getCategory() {
+			return category;
+		}
 		
 		public int compareTo(CustomFieldDataContainer container) {
+			if (name == null || container.name == null)
+				return 0;
 			return name.compareTo(container.name);
 		}
 	}
@@ -0,0 +1,168 @@
+package plugin_suite.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.*;
+
+/**
+ * Resource model for cycle times and times in status, summarized per issue type by their 
+ * percentiles. Every duration is given in milliseconds.
+ */
+@XmlRootElement(name = "cycleTime")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class CycleTimeRestResourceModel {
+	@XmlElement
+	private List<String> startStatusIds;
+	
+	@XmlElement
+	private List<String> endStatusIds;
+	
+	@XmlElement
+	private List<IssueTypeDataContainer> issueTypes;
+	
+	public CycleTimeRestResourceModel() {
+		this.issueTypes = new ArrayList<IssueTypeDataContainer>();
+	}
+	
+	public CycleTimeRestResourceModel(List<String> startStatusIds, List<String> endStatusIds, 
+			List<IssueTypeDataContainer> issueTypes) {
+		this.startStatusIds = startStatusIds;
+		this.endStatusIds = endStatusIds;
+		this.issueTypes = issueTypes;
+	}
+	
+	public List<String> getStartStatusIds() {
+		return startStatusIds;
+	}
+	
+	public List<String> getEndStatusIds() {
+		return endStatusIds;
+	}
+	
+	public List<IssueTypeDataContainer> getIssueTypes() {
+		return issueTypes;
+	}
+	
+	
+	/**
+	 * Inner class that encapsulates the durations of the issues of a single issue type.
+	 */
+	@XmlRootElement(name = "issueType")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class IssueTypeDataContainer {
+		@XmlElement
+		private String id;
+		
+		@XmlElement
+		private String name;
+		
+		// Number of issues with at least one transition
+		@XmlElement
+		private int issueCount;
+		
+		// Cycle times of the issues that completed a cycle (null if none did)
+		@XmlElement
+		private DurationDataContainer cycleTime;
+		
+		// Times spent in each status, over the issues that left it at least once
+		@XmlElement
+		private List<DurationDataContainer> statuses;
+		
+		public IssueTypeDataContainer() {
+		}
+		
+		public IssueTypeDataContainer(String id, String name, int issueCount, DurationDataContainer cycleTime, 
+				List<DurationDataContainer> statuses) {
+			this.id = id;
+			this.name = name;
+			this.issueCount = issueCount;
+			this.cycleTime = cycleTime;
+			this.statuses = statuses;
+		}
+		
+		public String getId() {
+			return id;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public int getIssueCount() {
+			return issueCount;
+		}
+		
+		public DurationDataContainer getCycleTime() {
+			return cycleTime;
+		}
+		
+		public List<DurationDataContainer> getStatuses() {
+			return statuses;
+		}
+	}
+	
+	
+	/**
+	 * Inner class that encapsulates the percentiles of a set of durations, one per issue.
+	 */
+	@XmlRootElement(name = "duration")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class DurationDataContainer {
+		// Id and name of the status the durations were spent in (null for cycle times)
+		@XmlElement
+		private String id;
+		
+		@XmlElement
+		private String name;
+		
+		// Number of issues the percentiles are taken over
+		@XmlElement
+		private int count;
+		
+		@XmlElement
+		private long p50;
+		
+		@XmlElement
+		private long p85;
+		
+		@XmlElement
+		private long p95;
+		
+		public DurationDataContainer() {
+		}
+		
+		public DurationDataContainer(String id, String name, int count, long p50, long p85, long p95) {
+			this.id = id;
+			this.name = name;
+			this.count = count;
+			this.p50 = p50;
+			this.p85 = p85;
+			this.p95 = p95;
+		}
+		
+		public String getId() {
+			return id;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public int getCount() {
+			return count;
+		}
+		
+		public long getP50() {
+			return p50;
+		}
+		
+		public long getP85() {
+			return p85;
+		}
+		
+		public long getP95() {
+			return p95;
+		}
+	}
+}
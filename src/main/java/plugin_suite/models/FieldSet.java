@@ -0,0 +1,99 @@
+package plugin_suite.models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Set of record attributes requested through a fields= parameter (a sparse fieldset). Records 
+ * only fill the attributes included in the set, and attributes that are left unset are not 
+ * serialized, so callers receive only what they ask for. If no known attribute is requested, 
+ * every attribute is included.
+ */
+public class FieldSet {
+	// Field set including every attribute
+	public static final FieldSet ALL = new FieldSet(null);
+	
+	private final Set<String> names;		// Null value means every attribute
+	
+	private FieldSet(Set<String> names) {
+		this.names = names;
+	}
+	
+	/**
+	 * Creates the field set for the given request parameter. Names that are not among the 
+	 * given attributes are ignored.
+	 * 
+	 * @param fields - Requested attribute names, either repeated or comma separated (can be null).
+	 * @param attributes - Names of every attribute of the record.
+	 * @return Field set.
+	 */
+	public static FieldSet forRequest(List<String> fields, Collection<String> attributes) {
+		Set<String> names = new TreeSet<String>(split(fields));		// Sorted, so equivalent requests share their key
+		names.retainAll(attributes);
+		return names.isEmpty() ? ALL : new FieldSet(Collections.unmodifiableSet(names));
+	}
+	
+	/**
+	 * Splits the given fields= parameters into distinct names, accepting both repeated and 
+	 * comma separated values.
+	 * 
+	 * @param fields - Field parameters (can be null).
+	 * @return Distinct names, in the order given.
+	 */
+	public static List<String> split(List<String> fields) {
+		Set<String> names = new LinkedHashSet<String>();
+		if (fields != null) {
+			for (String field : fields) {
+				if (field == null)
+					continue;
+				for (String name : field.split(",")) {
+					if (!name.trim().isEmpty())
+						names.add(name.trim());
+				}
+			}
+		}
+		return new ArrayList<String>(names);
+	}
+	
+	/**
+	 * Determines whether the given attribute should be filled.
+	 * 
+	 * @param name - Attribute name.
+	 * @return True if the attribute was requested, or if every attribute is included.
+	 */
+	public boolean includes(String name) {
+		return names == null || names.contains(name);
+	}
+	
+	/**
+	 * Determines whether only some attributes were requested.
+	 * 
+	 * @return True if the set doesn't include every attribute.
+	 */
+	public boolean isSparse() {
+		return names != null;
+	}
+	
+	/**
+	 * Gets the value of an attribute, or null if the attribute should not be filled.
+	 * 
+	 * @param name - Attribute name.
+	 * @param value - Attribute value.
+	 * @return The given value if the attribute is included, null otherwise.
+	 */
+	public <T> T select(String name, T value) {
+		return includes(name) ? value : null;
+	}
+	
+	/**
+	 * Gets a stable representation of the set, suitable as part of a cache key.
+	 */
+	public String toString() {
+		return names == null ? "*" : names.toString();
+	}
+}
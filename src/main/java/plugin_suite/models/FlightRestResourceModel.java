@@ -0,0 +1,39 @@
+package plugin_suite.models;
+
+import javax.xml.bind.annotation.*;
+
+/**
+ * Resource model for the statistics of coalesced requests.
+ */
+@XmlRootElement(name = "flight")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class FlightRestResourceModel {
+	@XmlElement
+	private String name;
+	
+	// Number of requests that did their work
+	@XmlElement
+	private long executed;
+	
+	// Number of requests that waited for an identical request instead
+	@XmlElement
+	private long coalesced;
+	
+	@XmlElement
+	private double coalescedRatio;
+	
+	// Number of requests currently doing their work
+	@XmlElement
+	private int running;
+	
+	public FlightRestResourceModel() {
+	}
+	
+	public FlightRestResourceModel(String name, long executed, long coalesced, int running) {
+		this.name = name;
+		this.executed = executed;
+		this.coalesced = coalesced;
+		this.coalescedRatio = executed + coalesced > 0 ? (double) coalesced / (executed + coalesced) : 0;
+		this.running = running;
+	}
+}
@@ -0,0 +1,81 @@
+package plugin_suite.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.annotation.*;
+
+/**
+ * Resource model for date-bucketed issue counts.
+ */
+@XmlRootElement(name = "histogram")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class HistogramRestResourceModel {
+
+	// List of bucket containers, sorted by axis date
+	@XmlElement(name = "buckets")
+	private List<BucketDataContainer> bucketList;
+
+	/**
+	 * Constructor that simply initializes an empty list of buckets.
+	 */
+	public HistogramRestResourceModel() {
+		this.bucketList = new ArrayList<BucketDataContainer>();
+	}
+
+	/**
+	 * Constructor that accepts a mapping of axis dates (in milliseconds since
+	 * 1/1/1970) to the number of issues falling within each one.
+	 *
+	 * @param bucketMap - Mapping of axis date > count, iterated in the order
+	 * the buckets should be returned.
+	 */
+	public HistogramRestResourceModel(Map<Long, Long> bucketMap) {
+		this.bucketList = new ArrayList<BucketDataContainer>();
+
+		for (Map.Entry<Long, Long> entry : bucketMap.entrySet()) {
+			this.bucketList.add(new BucketDataContainer(entry.getKey(), entry.getValue()));
+		}
+	}
+
+	/**
+	 * Get list of Bucket Data Container objects, with each individual one
+	 * containing the issue count for a single axis date.
+	 *
+	 * @return List of BucketDataContainer objects.
+	 */
+	public List<BucketDataContainer> getBuckets() {
+		return bucketList;
+	}
+
+
+	/**
+	 * Inner class that encapsulates the count of a single date bucket.
+	 */
+	@XmlRootElement(name = "bucket")
+	@XmlAccessorType(XmlAccessType.FIELD)
+	public static class BucketDataContainer {
+		@XmlElement
+		private long date;
+
+		@XmlElement
+		private long count;
+
+		public BucketDataContainer() {
+		}
+
+		public BucketDataContainer(long date, long count) {
+			this.date = date;
+			this.count = count;
+		}
+
+		public long getDate() {
+			return date;
+		}
+
+		public long getCount() {
+			return count;
+		}
+	}
+}
@@ -1,13 +1,19 @@
 package plugin_suite.models;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 
 import javax.xml.bind.annotation.*;
 
+import com.google.gson.stream.JsonWriter;
+
+import plugin_suite.streaming.JsonRecord;
+import plugin_suite.streaming.JsonRecordWriter;
+
 /**
  * Resource model for issue change history.
  */
@@ -27,21 +33,18 @@ public class HistoryRestResourceModel {
 	}
 	
 	/**
-	 * Constructor that accepts a list of mappings, with each mapping
-	 * linking field names to values from a single change.
+	 * Constructor that accepts a list of change data containers.
 	 * 
-	 * @param issueList - List of field > value mappings for every issue change.
+	 * @param changeList - List of change data containers.
+	 * @param sorted - True if the containers are already in order of change date, 
+	 * in which case they are not sorted again.
 	 */
-	public HistoryRestResourceModel(List<Map<String, Object>> issueList) {
-		this.changeList = new ArrayList<ChangeDataContainer>();
-		
-		// Goes through list of mappings to get change data
-		for(Map<String, Object> issueHistory : issueList) {
-			this.changeList.add(new ChangeDataContainer(issueHistory));
-		}
+	public HistoryRestResourceModel(List<ChangeDataContainer> changeList, boolean sorted) {
+		this.changeList = changeList;
 		
 		// Sorts the change list items
-		Collections.sort(this.changeList);
+		if (!sorted)
+			Collections.sort(this.changeList);
     }
 	
 	/**
@@ -66,10 +69,16 @@ public class HistoryRestResourceModel {
 	
 	
 	/**
-	 * Inner class that encapsulates the change history data for a single issue.
+	 * Inner class that encapsulates the change history data for a single issue. 
+	 * Attributes that were not requested are left unset, and are not serialized.
 	 */
 	@XmlRootElement(name = "issue")
-	public static class ChangeDataContainer implements Comparable<ChangeDataContainer> {
+	public static class ChangeDataContainer implements Comparable<ChangeDataContainer>, JsonRecord {
+		// Names of the attributes that can be requested
+		public static final List<String> ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+				"id", "key", "changeDate", "projectId", "projectKey", "projectName", "issueTypeId", 
+				"issueTypeName", "oldStatusId", "oldStatus", "newStatusId", "newStatus"));
+		
 		@XmlElement
 		private Long id;
 		
@@ -106,33 +115,67 @@ public class HistoryRestResourceModel {
 		@XmlElement
 		private String newStatus;
 		
+		// Change time used for sorting, kept even if the change date was not requested
+		@XmlTransient
+		private long changeTime;
+		
 		public ChangeDataContainer() {
 		}
 		
 		/**
-		 * Constructor that accepts a mapping of field names to values (the 
-		 * data points of a single change) and uses it to populate the 
-		 * container's parameters.
+		 * Constructor that fills the requested attributes of a single change.
 		 * 
-		 * @param dataMap - Mapping of field names > values.
+		 * @param fieldSet - Attributes to fill.
+		 * @param id - Issue id.
+		 * @param key - Issue key.
+		 * @param changeTime - Time of the change, in milliseconds since 1/1/1970.
+		 * @param projectId - Id of the issue's project.
+		 * @param projectKey - Key of the issue's project.
+		 * @param projectName - Name of the issue's project.
+		 * @param issueTypeId - Id of the issue's type.
+		 * @param issueTypeName - Name of the issue's type.
+		 * @param oldStatusId - Id of the status before the change.
+		 * @param oldStatus - Name of the status before the change.
+		 * @param newStatusId - Id of the status after the change.
+		 * @param newStatus - Name of the status after the change.
 		 */
-		public ChangeDataContainer(Map<String, Object> dataMap) {
-			this.changeDate = (Date) dataMap.get("changeDate");
-			this.id = (Long) dataMap.get("id");
-			this.key = (String) dataMap.get("key");
-			this.projectId = (Long) dataMap.get("projectId");
-			this.projectKey = (String) dataMap.get("projectKey");
-			this.projectName = (String) dataMap.get("projectName");
-			this.issueTypeId = (String) dataMap.get("issueTypeId");
-			this.issueTypeName = (String) dataMap.get("issueTypeName");
-			this.oldStatusId = (String) dataMap.get("oldStatusId");
-			this.oldStatus = (String) dataMap.get("oldStatus");
-			this.newStatusId = (String) dataMap.get("newStatusId");
-			this.newStatus = (String) dataMap.get("newStatus");
+		public ChangeDataContainer(FieldSet fieldSet, long id, String key, long changeTime, long projectId, 
+				String projectKey, String projectName, String issueTypeId, String issueTypeName, 
+				String oldStatusId, String oldStatus, String newStatusId, String newStatus) {
+			this.id = fieldSet.select("id", id);
+			this.key = fieldSet.select("key", key);
+			this.changeDate = fieldSet.includes("changeDate") ? new Date(changeTime) : null;
+			this.projectId = fieldSet.select("projectId", projectId);
+			this.projectKey = fieldSet.select("projectKey", projectKey);
+			this.projectName = fieldSet.select("projectName", projectName);
+			this.issueTypeId = fieldSet.select("issueTypeId", issueTypeId);
+			this.issueTypeName = fieldSet.select("issueTypeName", issueTypeName);
+			this.oldStatusId = fieldSet.select("oldStatusId", oldStatusId);
+			this.oldStatus = fieldSet.select("oldStatus", oldStatus);
+			this.newStatusId = fieldSet.select("newStatusId", newStatusId);
+			this.newStatus = fieldSet.select("newStatus", newStatus);
+			this.changeTime = changeTime;
+		}
+		
+		public void writeTo(JsonWriter json) throws IOException {
+			json.beginObject();
+			JsonRecordWriter.writeAttribute(json, "id", id);
+			JsonRecordWriter.writeAttribute(json, "key", key);
+			JsonRecordWriter.writeAttribute(json, "changeDate", changeDate);
+			JsonRecordWriter.writeAttribute(json, "projectId", projectId);
+			JsonRecordWriter.writeAttribute(json, "projectKey", projectKey);
+			JsonRecordWriter.writeAttribute(json, "projectName", projectName);
+			JsonRecordWriter.writeAttribute(json, "issueTypeId", issueTypeId);
+			JsonRecordWriter.writeAttribute(json, "issueTypeName", issueTypeName);
+			JsonRecordWriter.writeAttribute(json, "oldStatusId", oldStatusId);
+			JsonRecordWriter.writeAttribute(json, "oldStatus", oldStatus);
+			JsonRecordWriter.writeAttribute(json, "newStatusId", newStatusId);
+			JsonRecordWriter.writeAttribute(json, "newStatus", newStatus);
+			json.endObject();
 		}
 
 		public int compareTo(ChangeDataContainer container) {
-			return this.changeDate.compareTo(container.changeDate);
+			return this.changeTime < container.changeTime ? -1 : (this.changeTime == container.changeTime ? 0 : 1);
 		}
 	}
 }
@@ -0,0 +1,79 @@
+package plugin_suite.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.*;
+
+import plugin_suite.models.IssueRestResourceModel.IssueDataContainer;
+
+/**
+ * Resource model for a single page of issue data.
+ */
+@XmlRootElement(name = "issuePage")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class IssuePageRestResourceModel {
+	@XmlElement
+	private int startAt;
+	
+	@XmlElement
+	private int maxResults;
+	
+	@XmlElement
+	private int total;
+	
+	@XmlElement
+	private boolean hasMore;
+	
+	// Cursor for the following page (null if this is the last page)
+	@XmlElement
+	private String nextCursor;
+	
+	// List of issue data containers, in order of creation date
+	@XmlElement(name = "issues")
+	private List<IssueDataContainer> issueList;
+	
+	public IssuePageRestResourceModel() {
+		this.issueList = new ArrayList<IssueDataContainer>();
+	}
+	
+	/**
+	 * Constructor that accepts the page boundaries and the issue data containers 
+	 * of the page. The order of the list is kept as is.
+	 * 
+	 * @param startAt - Index of the first issue of the page.
+	 * @param maxResults - Maximum number of issues per page.
+	 * @param total - Total number of issues matching the query.
+	 * @param nextCursor - Cursor for the following page (null if there is none).
+	 * @param issueList - List of issue data containers for every issue on the page.
+	 */
+	public IssuePageRestResourceModel(int startAt, int maxResults, int total, String nextCursor, 
+			List<IssueDataContainer> issueList) {
+		this.startAt = startAt;
+		this.maxResults = maxResults;
+		this.total = total;
+		this.hasMore = nextCursor != null;
+		this.nextCursor = nextCursor;
+		this.issueList = issueList;
+	}
+	
+	public int getStartAt() {
+		return startAt;
+	}
+	
+	public int getTotal() {
+		return total;
+	}
+	
+	public boolean hasMore() {
+		return hasMore;
+	}
+	
+	public String getNextCursor() {
+		return nextCursor;
+	}
+	
+	public List<IssueDataContainer> getIssueDataContainers() {
+		return issueList;
+	}
+}
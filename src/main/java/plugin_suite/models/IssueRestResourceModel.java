@@ -1,6 +1,8 @@
 package plugin_suite.models;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -8,6 +10,11 @@ import java.util.Map;
 
 import javax.xml.bind.annotation.*;
 
+import com.google.gson.stream.JsonWriter;
+
+import plugin_suite.streaming.JsonRecord;
+import plugin_suite.streaming.JsonRecordWriter;
+
 /**
  * Resource model for issue data.
  */
@@ -27,21 +34,13 @@ public class IssueRestResourceModel {
 	}
 	
 	/**
-	 * Constructor that accepts a list of mappings, with each mapping
-	 * linking field names to values for a single issue.
+	 * Constructor that accepts a list of issue data containers. The order of 
+	 * the list is kept as is, since issues are read in order of creation date.
 	 * 
-	 * @param issueList - List of field > value mappings for every issue.
+	 * @param issueList - List of issue data containers.
 	 */
-	public IssueRestResourceModel(List<Map<String, Object>> issueList) {
-		this.issueList = new ArrayList<IssueDataContainer>();
-		
-		// Goes through list of mappings to get issue data
-		for(Map<String, Object> issueData : issueList) {
-			this.issueList.add(new IssueDataContainer(issueData));
-		}
-		
-		// Sorts the issues
-		Collections.sort(this.issueList);
+	public IssueRestResourceModel(List<IssueDataContainer> issueList) {
+		this.issueList = issueList;
     }
 	
 	/**
@@ -65,10 +64,16 @@ public class IssueRestResourceModel {
 	
 	
 	/**
-	 * Inner class that encapsulates the data for a single issue.
+	 * Inner class that encapsulates the data for a single issue. Attributes that 
+	 * were not requested are left unset, and are not serialized.
 	 */
 	@XmlRootElement(name = "issue")
-	public static class IssueDataContainer implements Comparable<IssueDataContainer> {
+	public static class IssueDataContainer implements Comparable<IssueDataContainer>, JsonRecord {
+		// Names of the attributes that can be requested
+		public static final List<String> ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+				"id", "key", "createdDate", "projectId", "projectKey", "projectName", "issueTypeId", 
+				"issueTypeName", "fields"));
+		
 		@XmlElement
 		private Long id;
 		
@@ -96,30 +101,58 @@ public class IssueRestResourceModel {
 		@XmlElement
 		private Map<String, Object> fields;
 		
+		// Creation time used for sorting, kept even if the creation date was not requested
+		@XmlTransient
+		private long createdTime;
+		
 		public IssueDataContainer() {
 		}
 		
 		/**
-		 * Constructor that accepts a mapping of field names to values and uses 
-		 * it to populate the container's parameters.
+		 * Constructor that fills the requested attributes of a single issue.
 		 * 
-		 * @param dataMap - Mapping of field names > values.
+		 * @param fieldSet - Attributes to fill.
+		 * @param id - Issue id.
+		 * @param key - Issue key.
+		 * @param createdDate - Creation date of the issue.
+		 * @param projectId - Id of the issue's project.
+		 * @param projectKey - Key of the issue's project.
+		 * @param projectName - Name of the issue's project.
+		 * @param issueTypeId - Id of the issue's type.
+		 * @param issueTypeName - Name of the issue's type.
+		 * @param fields - Mapping of custom field id > value.
 		 */
-		@SuppressWarnings("unchecked")
-		public IssueDataContainer(Map<String, Object> dataMap) {
-			this.id = (Long) dataMap.get("id");
-			this.key = (String) dataMap.get("key");
-			this.createdDate = (Date) dataMap.get("createdDate");
-			this.projectId = (Long) dataMap.get("projectId");
-			this.projectKey = (String) dataMap.get("projectKey");
-			this.projectName = (String) dataMap.get("projectName");
-			this.issueTypeId = (String) dataMap.get("issueTypeId");
-			this.issueTypeName = (String) dataMap.get("issueTypeName");
-			this.fields = (Map<String, Object>) dataMap.get("fields");
+		public IssueDataContainer(FieldSet fieldSet, long id, String key, Date createdDate, long projectId, 
+				String projectKey, String projectName, String issueTypeId, String issueTypeName, 
+				Map<String, Object> fields) {
+			this.id = fieldSet.select("id", id);
+			this.key = fieldSet.select("key", key);
+			this.createdDate = fieldSet.select("createdDate", createdDate);
+			this.projectId = fieldSet.select("projectId", projectId);
+			this.projectKey = fieldSet.select("projectKey", projectKey);
+			this.projectName = fieldSet.select("projectName", projectName);
+			this.issueTypeId = fieldSet.select("issueTypeId", issueTypeId);
+			this.issueTypeName = fieldSet.select("issueTypeName", issueTypeName);
+			this.fields = fieldSet.select("fields", fields);
+			this.createdTime = createdDate != null ? createdDate.getTime() : 0;
+		}
+		
+		public void writeTo(JsonWriter json) throws IOException {
+			json.beginObject();
+			JsonRecordWriter.writeAttribute(json, "id", id);
+			JsonRecordWriter.writeAttribute(json, "key", key);
+			JsonRecordWriter.writeAttribute(json, "createdDate", createdDate);
+			JsonRecordWriter.writeAttribute(json, "projectId", projectId);
+			JsonRecordWriter.writeAttribute(json, "projectKey", projectKey);
+			JsonRecordWriter.writeAttribute(json, "projectName", projectName);
+			JsonRecordWriter.writeAttribute(json, "issueTypeId", issueTypeId);
+			JsonRecordWriter.writeAttribute(json, "issueTypeName", issueTypeName);
+			JsonRecordWriter.writeAttribute(json, "fields", fields);
+			json.endObject();
 		}
 
 		public int compareTo(IssueDataContainer container) {
-			return this.createdDate.compareTo(container.createdDate);
+			return this.createdTime < container.createdTime ? -1 : (this.createdTime == container.createdTime ? 0 : 1);
 		}
 	}
 }
@@ -0,0 +1,89 @@
+package plugin_suite.models;
+
+import java.util.Date;
+
+import javax.xml.bind.annotation.*;
+
+import plugin_suite.jobs.Job;
+
+/**
+ * Resource model for the status of an asynchronous job.
+ */
+@XmlRootElement(name = "job")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class JobRestResourceModel {
+	@XmlElement
+	private String id;
+	
+	@XmlElement
+	private String type;
+	
+	// One of QUEUED, RUNNING, CANCELLING, DONE, FAILED or CANCELLED
+	@XmlElement
+	private String state;
+	
+	// Issues processed so far, out of the total (unset until the total is known)
+	@XmlElement
+	private int processed;
+	
+	@XmlElement
+	private Integer total;
+	
+	// Number of records written to the result so far
+	@XmlElement
+	private long records;
+	
+	@XmlElement
+	private Date created;
+	
+	@XmlElement
+	private Date started;
+	
+	@XmlElement
+	private Date finished;
+	
+	@XmlElement
+	private String error;
+	
+	// Size of the compressed result, in bytes, once the job is done
+	@XmlElement
+	private Long resultSize;
+	
+	public JobRestResourceModel() {
+	}
+	
+	/**
+	 * Constructor that reads the current status of the given job.
+	 * 
+	 * @param job - Job to describe.
+	 */
+	public JobRestResourceModel(Job job) {
+		this.id = job.getId();
+		this.type = job.getType();
+		this.state = job.getState().name();
+		this.total = job.getTotal() >= 0 ? job.getTotal() : null;
+		this.processed = total != null ? Math.min(job.getProcessed(), total) : job.getProcessed();
+		this.records = job.getRecords();
+		this.created = new Date(job.getCreated());
+		this.started = job.getStarted() > 0 ? new Date(job.getStarted()) : null;
+		this.finished = job.getFinished() > 0 ? new Date(job.getFinished()) : null;
+		this.error = job.getError();
+		this.resultSize = job.getResult() != null ? job.getResult().length() : null;
+	}
+	
+	public String getId() {
+		return id;
+	}
+	
+	public String getState() {
+		return state;
+	}
+	
+	public int getProcessed() {
+		return processed;
+	}
+	
+	public Integer getTotal() {
+		return total;
+	}
+}
@@ -0,0 +1,51 @@
+package plugin_suite.models;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.issuetype.IssueType;
+
+/**
+ * Per-response cache of the metadata repeated across records, such as issue type and status 
+ * names. Every record of a response refers to the same string instances, rather than to its 
+ * own copy read from the database or looked up again for every row.
+ */
+public class MetadataCache {
+	private final Map<String, String> issueTypeNames = new HashMap<String, String>();
+	private final Map<String, String> strings = new HashMap<String, String>();
+	
+	/**
+	 * Gets the name of the given issue type, looking it up only once per response.
+	 * 
+	 * @param issueTypeId - Id of the issue type.
+	 * @return Issue type name, or null if there is no such issue type.
+	 */
+	public String getIssueTypeName(String issueTypeId) {
+		if (issueTypeId == null)
+			return null;
+		if (!issueTypeNames.containsKey(issueTypeId)) {
+			IssueType issueType = ComponentAccessor.getConstantsManager().getIssueTypeObject(issueTypeId);
+			issueTypeNames.put(issueTypeId, issueType != null ? intern(issueType.getName()) : null);
+		}
+		return issueTypeNames.get(issueTypeId);
+	}
+	
+	/**
+	 * Gets the shared instance of the given string, so that equal values repeated across the 
+	 * records of a response are only held once.
+	 * 
+	 * @param value - String value (can be null).
+	 * @return Shared string instance.
+	 */
+	public String intern(String value) {
+		if (value == null)
+			return null;
+		String shared = strings.get(value);
+		if (shared == null) {
+			strings.put(value, value);
+			shared = value;
+		}
+		return shared;
+	}
+}
@@ -1,8 +1,9 @@
 package plugin_suite.models;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import javax.xml.bind.annotation.*;
 
@@ -20,28 +21,12 @@ public class ProjectRestResourceModel {
 	}
 	
 	/**
-	 * Constructor that produces a single Project Data Container and adds it to
-	 * the list.
+	 * Constructor that accepts a list of Project Data Containers.
 	 * 
-	 * @param parameters - Mapping of project data parameters.
+	 * @param projects - List of project data containers.
 	 */
-	public ProjectRestResourceModel(Map<String, Object> parameters) {
-		this.projects = new ArrayList<ProjectDataContainer>();
-		this.projects.add(new ProjectDataContainer(parameters));
-    }
-	
-	/**
-	 * Constructor that produces a list of Project Data Containers.
-	 * 
-	 * @param parameterList - List of mappings of project data parameters.
-	 */
-	public ProjectRestResourceModel(List<Map<String, Object>> parameterList) {
-		this.projects = new ArrayList<ProjectDataContainer>();
-		
-		for (Map<String, Object> parameters : parameterList) {
-			if (parameters != null && !parameters.isEmpty())
-				this.projects.add(new ProjectDataContainer(parameters));
-		}
+	public ProjectRestResourceModel(List<ProjectDataContainer> projects) {
+		this.projects = projects;
     }
 	
 	/**
@@ -55,16 +40,21 @@ public class ProjectRestResourceModel {
 	
 	
 	/**
-	 * Inner class that encapsulates the parameters of a single project.
+	 * Inner class that encapsulates the parameters of a single project. Attributes 
+	 * that were not requested are left unset, and are not serialized.
 	 */
 	@XmlRootElement(name = "project")
 	@XmlAccessorType(XmlAccessType.FIELD)
 	public static class ProjectDataContainer implements Comparable<ProjectDataContainer> {
+		// Names of the attributes that can be requested
+		public static final List<String> ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+				"key", "id", "name", "projectLead", "category"));
+		
 		@XmlElement
 		private String key;
 		
 		@XmlElement
-		private long id;
+		private Long id;
 		
 		@XmlElement
 		private String name;
@@ -78,24 +68,59 @@ public class ProjectRestResourceModel {
 		public ProjectDataContainer() {
 		}
 		
-		public ProjectDataContainer(Map<String, Object> parameters) {
-			this.key = (String) parameters.get("key");
-			this.id = (Long) parameters.get("id");
-			this.name = (String) parameters.get("name");
-			this.projectLead = (String) parameters.get("projectLead");
-			this.category = (String) parameters.get("category");
+		public ProjectDataContainer(String key, long id, String name, 
+				String projectLead, String category) {
+			this(FieldSet.ALL, key, id, name, projectLead, category);
 	    }
 		
-		public ProjectDataContainer(String key, long id, String name, 
+		public ProjectDataContainer(FieldSet fieldSet, String key, long id, String name, 
 				String projectLead, String category) {
-			this.key = key;
-			this.id = id;
-			this.name = name;
-			this.projectLead = projectLead;
-			this.category = category;
+			this.key = fieldSet.select("key", key);
+			this.id = fieldSet.select("id", id);
+			this.name = fieldSet.select("name", name);
+			this.projectLead = fieldSet.select("projectLead", projectLead);
+			this.category = fieldSet.select("category", category);
 	    }
 		
+		/**
+		 * Gets a copy of this project's data, restricted to the given attributes.
+		 * 
+		 * @param fieldSet - Attributes to fill.
+		 * @return Project data container holding the selected attributes.
+		 */
+		public ProjectDataContainer select(FieldSet fieldSet) {
+			ProjectDataContainer selected = new ProjectDataContainer();
+			selected.key = fieldSet.select("key", key);
+			selected.id = fieldSet.select("id", id);
+			selected.name = fieldSet.select("name", name);
+			selected.projectLead = fieldSet.select("projectLead", projectLead);
+			selected.category = fieldSet.select("category", category);
+			return selected;
+		}
+		
+		public String getKey() {
+			return key;
+		}
+		
+		public Long getId() {
+			return id;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public String getProjectLead() {
+			return projectLead;
+		}
+		
+		public String getCategory() {
+			return category;
+		}
+		
 		public int compareTo(ProjectDataContainer container) {
+			if (name == null || container.name == null)
+				return 0;
 			return name.compareTo(container.name);
 		}
 	}
@@ -0,0 +1,41 @@
+package plugin_suite.models;
+
+import javax.xml.bind.annotation.*;
+
+/**
+ * Resource model for the backfill state of a project within one of the backfilled stores.
+ */
+@XmlRootElement(name = "rollup")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class RollupRestResourceModel {
+	@XmlElement
+	private String store;
+	
+	@XmlElement
+	private long projectId;
+	
+	@XmlElement
+	private String projectKey;
+	
+	@XmlElement
+	private String state;
+	
+	@XmlElement
+	private String timeZoneId;
+	
+	@XmlElement
+	private long updated;
+	
+	public RollupRestResourceModel() {
+	}
+	
+	public RollupRestResourceModel(String store, long projectId, String projectKey, String state, 
+			String timeZoneId, long updated) {
+		this.store = store;
+		this.projectId = projectId;
+		this.projectKey = projectKey;
+		this.state = state;
+		this.timeZoneId = timeZoneId;
+		this.updated = updated;
+	}
+}
@@ -0,0 +1,91 @@
+package plugin_suite.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.*;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.security.Permissions;
+import com.atlassian.jira.user.ApplicationUser;
+
+import plugin_suite.cache.ChartCache;
+import plugin_suite.cache.ResultCache;
+import plugin_suite.concurrent.SingleFlight;
+import plugin_suite.models.CacheRestResourceModel;
+import plugin_suite.models.ErrorRestResourceModel;
+import plugin_suite.models.FlightRestResourceModel;
+
+/**
+ * A resource for the statistics of the plugin's caches. Only available to administrators.
+ */
+@Path("/cache")
+@Consumes({MediaType.APPLICATION_JSON})
+@Produces({MediaType.APPLICATION_JSON})
+public class CacheRestResource {
+	
+	@GET
+	@Produces({MediaType.APPLICATION_JSON})
+	public Response getCacheStats() {
+		if (!isAdministrator())
+			return Response.status(Response.Status.FORBIDDEN)
+					.entity(new ErrorRestResourceModel("Forbidden", "Only administrators can view cache statistics."))
+					.build();
+		
+		List<CacheRestResourceModel> stats = new ArrayList<CacheRestResourceModel>();
+		ResultCache resultCache = ResultCache.getInstance();
+		stats.add(new CacheRestResourceModel("results", resultCache.getHits(), resultCache.getMisses(), 
+				resultCache.getEvictions(), resultCache.getInvalidations(), resultCache.getSize(), 
+				resultCache.getWeight()));
+		ChartCache chartCache = ChartCache.getInstance();
+		stats.add(new CacheRestResourceModel("charts", chartCache.getHits(), chartCache.getMisses(), 
+				chartCache.getEvictions(), 0, chartCache.getSize(), chartCache.getBytes()));
+		
+		return Response.ok(stats).build();
+	}
+	
+	@GET
+	@Produces({MediaType.APPLICATION_JSON})
+	@Path("/flights")
+	public Response getFlightStats() {
+		if (!isAdministrator())
+			return Response.status(Response.Status.FORBIDDEN)
+					.entity(new ErrorRestResourceModel("Forbidden", "Only administrators can view cache statistics."))
+					.build();
+		
+		// Requests coalesced ahead of the resources, followed by computations coalesced within the result cache
+		List<FlightRestResourceModel> stats = new ArrayList<FlightRestResourceModel>();
+		for (SingleFlight flight : SingleFlight.getAll())
+			stats.add(new FlightRestResourceModel(flight.getName(), flight.getExecuted(), flight.getCoalesced(), 
+					flight.getRunning()));
+		ResultCache resultCache = ResultCache.getInstance();
+		stats.add(new FlightRestResourceModel("results", resultCache.getMisses(), resultCache.getCoalesced(), 
+				resultCache.getLoading()));
+		
+		return Response.ok(stats).build();
+	}
+	
+	@DELETE
+	@Produces({MediaType.APPLICATION_JSON})
+	public Response clearCaches() {
+		if (!isAdministrator())
+			return Response.status(Response.Status.FORBIDDEN)
+					.entity(new ErrorRestResourceModel("Forbidden", "Only administrators can clear caches."))
+					.build();
+		
+		ResultCache.getInstance().clear();
+		ChartCache.getInstance().clear();
+		return Response.noContent().build();
+	}
+	
+	/**
+	 * Determines whether the logged in user is a Jira administrator.
+	 * 
+	 * @return True if the user has the administer permission.
+	 */
+	private boolean isAdministrator() {
+		ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+		return user != null && ComponentAccessor.getPermissionManager().hasPermission(Permissions.ADMINISTER, user);
+	}
+}
@@ -1,21 +1,83 @@
 package plugin_suite.resources;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import javax.inject.Inject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 
+import com.atlassian.crowd.embedded.api.User;
 import com.atlassian.jira.charts.Chart;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.issuetype.IssueType;
+import com.atlassian.jira.issue.search.SearchException;
+import com.atlassian.jira.issue.status.Status;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
 
+import plugin_suite.cache.ChartCache;
+import plugin_suite.cache.ResultCache;
+import plugin_suite.charts.ChartSeries;
+import plugin_suite.charts.CumulativeFlow;
+import plugin_suite.charts.CumulativeFlowChart;
+import plugin_suite.charts.DateBucketer;
+import plugin_suite.charts.RenderedChart;
+import plugin_suite.charts.SvgChartWriter;
 import plugin_suite.charts.TimeTrendingChart;
+import plugin_suite.concurrent.AdmissionLimiter;
+import plugin_suite.concurrent.SingleFlight;
+import plugin_suite.concurrent.WorkerPool;
+import plugin_suite.history.ChangeHistoryScanner;
+import plugin_suite.history.StatusTransition;
+import plugin_suite.history.TransitionEventStore;
+import plugin_suite.models.ChartDataRestResourceModel;
 import plugin_suite.models.ChartRestResourceModel;
+import plugin_suite.models.CumulativeFlowRestResourceModel;
+import plugin_suite.models.CumulativeFlowRestResourceModel.StatusSeriesContainer;
+import plugin_suite.models.ErrorRestResourceModel;
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.HistogramRestResourceModel.BucketDataContainer;
+import plugin_suite.rollup.DailyRollupStore;
+import plugin_suite.search.IssueHistogramHelper;
+import plugin_suite.search.IssueReference;
+import plugin_suite.search.IssueSearchHelper;
+import plugin_suite.search.IssueStateCollector;
+import plugin_suite.search.PortfolioHelper;
 
 @Path("/charts")
 public class ChartRestResource {
+	// Value of the split parameter that charts every issue type as its own series
+	private static final String SPLIT_BY_ISSUE_TYPE = "issueType";
+	
+	// Output formats: a rasterized image (the default), a vector image, or the bucketed data only
+	private static final String FORMAT_PNG = "png";
+	private static final String FORMAT_SVG = "svg";
+	private static final String FORMAT_JSON = "json";
+	
+	private final DailyRollupStore rollupStore;
+	private final ChangeHistoryScanner scanner;
+	private final WorkerPool workerPool;
+	
+	@Inject
+	public ChartRestResource(DailyRollupStore rollupStore, TransitionEventStore transitionStore, WorkerPool workerPool) {
+		this.rollupStore = rollupStore;
+		this.scanner = new ChangeHistoryScanner(transitionStore);
+		this.workerPool = workerPool;
+	}
+	
 	
 	@GET
 	@Path("/generate")
-	@Produces({MediaType.APPLICATION_JSON})
+	@Produces({MediaType.APPLICATION_JSON, SvgChartWriter.MEDIA_TYPE})
 	public Response generate(
 			@QueryParam("width") @DefaultValue("600") int width,
             @QueryParam("height") @DefaultValue("300") int height,
@@ -24,14 +86,692 @@ public class ChartRestResource {
             @QueryParam("date") List<Long> dates, @QueryParam("count") List<Long> counts,
             @QueryParam("title") @DefaultValue("Date Field Trending Chart") String title,
             @QueryParam("timeAxisLabel") @DefaultValue("Dates") String timeAxisLabel,
-            @QueryParam("valueAxisLabel") @DefaultValue("Number of Issues") String valueAxisLabel) {
-		// Produces chart based on passed parameters
-		Chart chart = getChart(width, height, dateInterval, dataRange, dates, counts, 
-				title, timeAxisLabel, valueAxisLabel);
+            @QueryParam("valueAxisLabel") @DefaultValue("Number of Issues") String valueAxisLabel,
+            @QueryParam("format") String format,
+            @Context Request request,
+            @Context HttpHeaders headers) {
+		// Identical requests (e.g. from several copies of a gadget refreshing at once) share a single 
+		// render. The entity tag held by the client is part of the key, since it decides whether the 
+		// chart is sent at all.
+		String requestKey = SingleFlight.key("generate", width, height, dateInterval, dataRange, dates, counts, 
+				title, timeAxisLabel, valueAxisLabel, format, headers.getRequestHeader(HttpHeaders.IF_NONE_MATCH));
+		return getAdmittedChartResponse(requestKey, width, height, dateInterval, dataRange, 
+				Collections.singletonList(ChartSeries.fromLists(dates, counts)), title, timeAxisLabel, 
+				valueAxisLabel, format, request);
+	}
+	
+	@POST
+	@Path("/generate")
+	@Consumes({MediaType.APPLICATION_JSON})
+	@Produces({MediaType.APPLICATION_JSON, SvgChartWriter.MEDIA_TYPE})
+	public Response generateFromJson(
+			@QueryParam("width") @DefaultValue("600") int width,
+            @QueryParam("height") @DefaultValue("300") int height,
+            @QueryParam("dateInterval") int dateInterval,
+            @QueryParam("dataRange") int dataRange,
+            @QueryParam("title") @DefaultValue("Date Field Trending Chart") String title,
+            @QueryParam("timeAxisLabel") @DefaultValue("Dates") String timeAxisLabel,
+            @QueryParam("valueAxisLabel") @DefaultValue("Number of Issues") String valueAxisLabel,
+            @QueryParam("format") String format,
+            InputStream body) {
+		// Reads the series from a body of the form {"dates": [...], "counts": [...]}, or several 
+		// named series of the form {"series": [{"name": ..., "dates": [...], "counts": [...]}, ...]}
+		List<ChartSeries> series;
+		try {
+			series = ChartSeries.readJsonSeries(body);
+		} catch (IOException e) {
+			return getInvalidSeriesResponse(e);
+		} catch (IllegalStateException e) {
+			// Thrown by the JSON reader when the body has an unexpected structure
+			return getInvalidSeriesResponse(e);
+		} catch (NumberFormatException e) {
+			return getInvalidSeriesResponse(e);
+		}
+		
+		return getAdmittedChartResponse(getBodyRequestKey(width, height, dateInterval, dataRange, series, title, 
+				timeAxisLabel, valueAxisLabel, format), width, height, dateInterval, dataRange, series, title, 
+				timeAxisLabel, valueAxisLabel, format, null);
+	}
+	
+	@POST
+	@Path("/generate")
+	@Consumes({ChartSeries.BINARY_MEDIA_TYPE})
+	@Produces({MediaType.APPLICATION_JSON, SvgChartWriter.MEDIA_TYPE})
+	public Response generateFromBinary(
+			@QueryParam("width") @DefaultValue("600") int width,
+            @QueryParam("height") @DefaultValue("300") int height,
+            @QueryParam("dateInterval") int dateInterval,
+            @QueryParam("dataRange") int dataRange,
+            @QueryParam("title") @DefaultValue("Date Field Trending Chart") String title,
+            @QueryParam("timeAxisLabel") @DefaultValue("Dates") String timeAxisLabel,
+            @QueryParam("valueAxisLabel") @DefaultValue("Number of Issues") String valueAxisLabel,
+            @QueryParam("format") String format,
+            InputStream body) {
+		// Reads the series from its compact, delta encoded binary form
+		ChartSeries series;
+		try {
+			series = ChartSeries.readBinary(new BufferedInputStream(body));
+		} catch (IOException e) {
+			return getInvalidSeriesResponse(e);
+		}
+		
+		List<ChartSeries> seriesList = Collections.singletonList(series);
+		return getAdmittedChartResponse(getBodyRequestKey(width, height, dateInterval, dataRange, seriesList, title, 
+				timeAxisLabel, valueAxisLabel, format), width, height, dateInterval, dataRange, seriesList, title, 
+				timeAxisLabel, valueAxisLabel, format, null);
+	}
+	
+	@GET
+	@Path("/trend")
+	@Produces({MediaType.APPLICATION_JSON, SvgChartWriter.MEDIA_TYPE})
+	public Response generateTrend(
+			@QueryParam("project") final List<String> keys,
+			@QueryParam("categoryId") final String categoryId,
+			@QueryParam("issueTypeId") final List<String> issueTypeIds,
+			@QueryParam("dateFieldId") final List<String> dateFieldIds,
+			@QueryParam("splitBy") final String splitBy,
+			@QueryParam("dateInterval") @DefaultValue("7") final int dateInterval,
+			@QueryParam("dataRange") @DefaultValue("30") final int dataRange,
+			@QueryParam("width") @DefaultValue("600") final int width,
+			@QueryParam("height") @DefaultValue("300") final int height,
+			@QueryParam("title") final String title,
+			@QueryParam("timeAxisLabel") final String timeAxisLabel,
+			@QueryParam("valueAxisLabel") final String valueAxisLabel,
+			@QueryParam("format") final String format,
+			@Context final Request request,
+			@Context HttpHeaders headers) {
+		// Identical requests (e.g. from several copies of a gadget refreshing at once) share a single 
+		// search and render, keyed like those of the generate resource
+		String requestKey = SingleFlight.key("trend", keys, categoryId, issueTypeIds, dateFieldIds, splitBy, 
+				dateInterval, dataRange, width, height, title, timeAxisLabel, valueAxisLabel, format, 
+				headers.getRequestHeader(HttpHeaders.IF_NONE_MATCH));
+		return ResourceAdmission.admit(AdmissionLimiter.CHARTS, SingleFlight.CHARTS, requestKey, 
+				new ResourceAdmission.Call() {
+			public Response call() {
+				return getTrendResponse(keys, categoryId, issueTypeIds, dateFieldIds, splitBy, dateInterval, 
+						dataRange, width, height, title, timeAxisLabel, valueAxisLabel, format, request);
+			}
+		});
+	}
+	
+	/**
+	 * Gets the response of {@link #generateTrend}, once the request is admitted.
+	 */
+	private Response getTrendResponse(List<String> keys, String categoryId, List<String> issueTypeIds, 
+			List<String> dateFieldIds, String splitBy, final int dateInterval, final int dataRange, int width, 
+			int height, String title, String timeAxisLabel, String valueAxisLabel, String format, Request request) {
+		List<Project> projects = getProjects(keys, categoryId);
+		final List<String> fieldIds = FieldSet.split(dateFieldIds);
+		List<CustomField> fields = new ArrayList<CustomField>();
+		for (String fieldId : fieldIds) {
+			CustomField field = ComponentAccessor.getCustomFieldManager().getCustomFieldObject(fieldId);
+			if (field != null)
+				fields.add(field);
+		}
+		final boolean splitByIssueType = SPLIT_BY_ISSUE_TYPE.equals(splitBy);
+		if (projects.isEmpty())
+			return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+		else if (fields.isEmpty() || fields.size() != fieldIds.size())
+			return Response.ok(new ErrorRestResourceModel("Invalid Field", "Please provide valid date field id.")).build();
+		else if (dateInterval <= 0 || dataRange <= 0)
+			return Response.ok(new ErrorRestResourceModel("Invalid Range", 
+					"Please provide a positive date interval and data range.")).build();
+		else if (splitBy != null && !splitByIssueType)
+			return Response.ok(new ErrorRestResourceModel("Invalid Split", 
+					"Series can only be split by " + SPLIT_BY_ISSUE_TYPE + ".")).build();
+		else if (splitByIssueType && fields.size() > 1)
+			return Response.ok(new ErrorRestResourceModel("Invalid Split", 
+					"Series can either be split by issue type or by date field, but not both.")).build();
+		
+		// Gets the issue types of every series, which are all those of the projects unless given
+		final List<String> typeIds = splitByIssueType ? getIssueTypeIds(issueTypeIds, projects) : issueTypeIds;
+		int seriesCount = splitByIssueType ? typeIds.size() : fields.size();
+		if (seriesCount > ChartSeries.MAX_SERIES)
+			return Response.ok(new ErrorRestResourceModel("Invalid Split", 
+					"Chart must hold at most " + ChartSeries.MAX_SERIES + " series.")).build();
+		
+		// Searches and buckets the issues of every series in a single pass per project, reusing 
+		// the cached histograms if possible
+		List<List<List<BucketDataContainer>>> histograms;
+		if (projects.size() == 1) {
+			histograms = new ArrayList<List<List<BucketDataContainer>>>();
+			histograms.add(getCachedHistograms(projects.get(0), typeIds, fieldIds, splitByIssueType, 
+					dateInterval, dataRange));
+		} else {
+			histograms = PortfolioHelper.fanOut(workerPool, projects, 
+					new PortfolioHelper.ProjectTask<List<List<BucketDataContainer>>>() {
+				public List<List<BucketDataContainer>> run(Project project) {
+					return getCachedHistograms(project, typeIds, fieldIds, splitByIssueType, dateInterval, dataRange);
+				}
+			});
+		}
+		
+		// Adds up the buckets of every project per series by date, since each project only has 
+		// buckets for the dates it has issues on
+		List<ChartSeries> series = new ArrayList<ChartSeries>();
+		for (int i = 0; i < seriesCount; i++) {
+			List<List<BucketDataContainer>> seriesHistograms = new ArrayList<List<BucketDataContainer>>();
+			for (List<List<BucketDataContainer>> projectHistograms : histograms)
+				seriesHistograms.add(projectHistograms.get(i));
+			List<BucketDataContainer> buckets = histograms.size() == 1 
+					? seriesHistograms.get(0) : PortfolioHelper.sumBuckets(seriesHistograms);
+			
+			long[] dates = new long[buckets.size()];
+			long[] counts = new long[buckets.size()];
+			for (int j = 0; j < buckets.size(); j++) {
+				dates[j] = buckets.get(j).getDate();
+				counts[j] = buckets.get(j).getCount();
+			}
+			String name = null;
+			if (seriesCount > 1)
+				name = splitByIssueType ? getIssueTypeNames(typeIds.subList(i, i + 1)) : fields.get(i).getFieldName();
+			series.add(new ChartSeries(name, dates, counts));
+		}
+		
+		// Labels the chart the same way the trending gadget does, unless labels are given
+		if (title == null)
+			title = (projects.size() == 1 ? projects.get(0).getName() : projects.size() + " Projects") 
+					+ ": Trend Over Last " + dataRange + " Days";
+		if (timeAxisLabel == null)
+			timeAxisLabel = (fields.size() == 1 ? fields.get(0).getFieldName() : "Date") + " Times";
+		if (valueAxisLabel == null)
+			valueAxisLabel = "Number of " + getIssueTypeNames(issueTypeIds) + " Tickets";
+		
+		return getChartResponse(width, height, dateInterval, dataRange, series, title, timeAxisLabel, 
+				valueAxisLabel, format, request);
+	}
+	
+	@GET
+	@Path("/cfd")
+	@Produces({MediaType.APPLICATION_JSON, SvgChartWriter.MEDIA_TYPE})
+	public Response generateCumulativeFlow(
+			@QueryParam("project") final String key,
+			@QueryParam("issueTypeId") final List<String> issueTypeIds,
+			@QueryParam("dateInterval") @DefaultValue("1") final int dateInterval,
+			@QueryParam("dataRange") @DefaultValue("90") final int dataRange,
+			@QueryParam("width") @DefaultValue("600") final int width,
+			@QueryParam("height") @DefaultValue("300") final int height,
+			@QueryParam("title") final String title,
+			@QueryParam("timeAxisLabel") @DefaultValue("Dates") final String timeAxisLabel,
+			@QueryParam("valueAxisLabel") final String valueAxisLabel,
+			@QueryParam("format") final String format,
+			@Context final Request request,
+			@Context HttpHeaders headers) {
+		// Identical requests share a single history sweep and render (see generateTrend)
+		String requestKey = SingleFlight.key("cfd", key, issueTypeIds, dateInterval, dataRange, width, height, 
+				title, timeAxisLabel, valueAxisLabel, format, headers.getRequestHeader(HttpHeaders.IF_NONE_MATCH));
+		return ResourceAdmission.admit(AdmissionLimiter.CHARTS, SingleFlight.CHARTS, requestKey, 
+				new ResourceAdmission.Call() {
+			public Response call() {
+				return getCumulativeFlowResponse(key, issueTypeIds, dateInterval, dataRange, width, height, title, 
+						timeAxisLabel, valueAxisLabel, format, request);
+			}
+		});
+	}
+	
+	/**
+	 * Gets the response of {@link #generateCumulativeFlow}, once the request is admitted.
+	 */
+	private Response getCumulativeFlowResponse(String key, List<String> issueTypeIds, int dateInterval, 
+			int dataRange, final int width, final int height, String title, final String timeAxisLabel, 
+			String valueAxisLabel, String format, Request request) {
+		Project project = key != null ? ComponentAccessor.getProjectManager().getProjectObjByKey(key) : null;
+		if (project == null)
+			return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+		else if (dateInterval <= 0 || dataRange <= 0)
+			return Response.ok(new ErrorRestResourceModel("Invalid Range", 
+					"Please provide a positive date interval and data range.")).build();
+		else if (!isValidFormat(format))
+			return getInvalidFormatResponse();
+		
+		final DateBucketer bucketer = DateBucketer.forToday(TimeTrendingChart.getUserTimeZone(), dateInterval);
+		final CumulativeFlowRestResourceModel flow = getCachedCumulativeFlow(project, issueTypeIds, bucketer, dataRange);
+		
+		if (title == null)
+			title = project.getName() + ": Cumulative Flow Over Last " + dataRange + " Days";
+		if (valueAxisLabel == null)
+			valueAxisLabel = "Number of " + getIssueTypeNames(issueTypeIds) + " Tickets";
+		
+		// Identifies the diagram by the series of every status
+		List<ChartSeries> series = new ArrayList<ChartSeries>();
+		for (StatusSeriesContainer status : flow.getStatuses()) {
+			ChartSeries counts = ChartSeries.fromLists(flow.getDates(), status.getCounts());
+			series.add(new ChartSeries(status.getId() + ":" + status.getName(), counts.getDates(), counts.getCounts()));
+		}
+		final String fingerprint = ChartCache.fingerprint(width, height, dateInterval, dataRange, 
+				bucketer.toMillis(bucketer.getUpperBoundDay()), series, "cfd", title, timeAxisLabel, valueAxisLabel, 
+				getUserKey());
+		
+		if (FORMAT_SVG.equals(format) || FORMAT_JSON.equals(format)) {
+			CumulativeFlowChart chart = new CumulativeFlowChart(title, timeAxisLabel, valueAxisLabel);
+			return getChartDataResponse(fingerprint, format, chart.getChartData(dataRange, flow, bucketer), 
+					width, height, request);
+		}
+		
+		final String chartTitle = title;
+		final String chartValueAxisLabel = valueAxisLabel;
+		final int chartDateInterval = dateInterval;
+		final int chartDataRange = dataRange;
+		return getChartResponse(fingerprint, request, new ResultCache.Loader<RenderedChart>() {
+			public RenderedChart load() {
+				CumulativeFlowChart chart = new CumulativeFlowChart(chartTitle, timeAxisLabel, chartValueAxisLabel);
+				return toRenderedChart(fingerprint, chart.generateChart(width, height, chartDateInterval, 
+						chartDataRange, flow, bucketer), width, height);
+			}
+		});
+	}
+	
+	@GET
+	@Path("/image/{fingerprint}")
+	@Produces({"image/png", MediaType.APPLICATION_JSON})
+	public Response getImage(@PathParam("fingerprint") String fingerprint, @Context Request request) {
+		EntityTag entityTag = new EntityTag(fingerprint);
+		Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+		if (notModified != null)
+			return notModified.cacheControl(getCacheControl()).build();
+		
+		// Only charts still held by the cache can be served, and only to the user they were rendered for
+		RenderedChart chart = ChartCache.getInstance().getIfPresent(fingerprint);
+		if (chart == null || chart.getPngBytes() == null || !getUserKey().equals(chart.getOwner()))
+			return Response.status(Response.Status.NOT_FOUND)
+					.type(MediaType.APPLICATION_JSON)
+					.entity(new ErrorRestResourceModel("ChartNotFound", "No rendered chart matches the given fingerprint."))
+					.build();
+		
+		return Response.ok(chart.getPngBytes(), "image/png").tag(entityTag).cacheControl(getCacheControl()).build();
+	}
+	
+	/**
+	 * Gets the response for a chart, rendering the chart only if it isn't cached yet. 
+	 * 
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param dateInterval - Number of days between each date within the time-based axis of the chart.
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param series - Dates and counts of the chart.
+	 * @param title - Title of chart.
+	 * @param timeAxisLabel - Label for time axis (the x-axis).
+	 * @param valueAxisLabel - Label for value axis (the y-axis).
+	 * @param format - Output format (null value means a PNG image).
+	 * @param request - Request to evaluate the entity tag against (null value means the request
+	 * isn't conditional).
+	 * @return Chart response, or a not modified response if the client holds the same chart.
+	 */
+	private Response getChartResponse(int width, int height, int dateInterval, int dataRange, 
+			ChartSeries series, String title, String timeAxisLabel, String valueAxisLabel, String format, 
+			Request request) {
+		return getChartResponse(width, height, dateInterval, dataRange, Collections.singletonList(series), 
+				title, timeAxisLabel, valueAxisLabel, format, request);
+	}
+	
+	/**
+	 * Builds the key of a request whose series were sent in its body. The series are reduced to 
+	 * their fingerprint, so that the key stays short however many points they hold. Such requests 
+	 * are never conditional, so no entity tag is part of the key.
+	 */
+	private static String getBodyRequestKey(int width, int height, int dateInterval, int dataRange, 
+			List<ChartSeries> series, String title, String timeAxisLabel, String valueAxisLabel, String format) {
+		return SingleFlight.key("generate/body", ChartCache.fingerprint(width, height, dateInterval, dataRange, 0, 
+				series, title, timeAxisLabel, valueAxisLabel), format);
+	}
+	
+	/**
+	 * Gets the response for a chart whose series were sent by the client, once the request is 
+	 * admitted by the chart limiter. Identical requests running at once share a single response.
+	 * 
+	 * @param requestKey - Identifies the request by its parameters (null value means the request 
+	 * is never coalesced).
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param dateInterval - Number of days between each date within the time-based axis of the chart.
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param series - Names, dates and counts of every series, in the order they are drawn.
+	 * @param title - Title of chart.
+	 * @param timeAxisLabel - Label for time axis (the x-axis).
+	 * @param valueAxisLabel - Label for value axis (the y-axis).
+	 * @param format - Output format (null value means a PNG image).
+	 * @param request - Request to evaluate the entity tag against (null value means the request
+	 * isn't conditional).
+	 * @return Chart response, or a rejection if the request was not admitted.
+	 */
+	private Response getAdmittedChartResponse(String requestKey, final int width, final int height, 
+			final int dateInterval, final int dataRange, final List<ChartSeries> series, final String title, 
+			final String timeAxisLabel, final String valueAxisLabel, final String format, final Request request) {
+		return ResourceAdmission.admit(AdmissionLimiter.CHARTS, SingleFlight.CHARTS, requestKey, 
+				new ResourceAdmission.Call() {
+			public Response call() {
+				return getChartResponse(width, height, dateInterval, dataRange, series, title, timeAxisLabel, 
+						valueAxisLabel, format, request);
+			}
+		});
+	}
+	
+	/**
+	 * Gets the response for a chart with one line per series, rendering the chart only if it 
+	 * isn't cached yet.
+	 * 
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param dateInterval - Number of days between each date within the time-based axis of the chart.
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param series - Names, dates and counts of every series, in the order they are drawn.
+	 * @param title - Title of chart.
+	 * @param timeAxisLabel - Label for time axis (the x-axis).
+	 * @param valueAxisLabel - Label for value axis (the y-axis).
+	 * @param format - Output format (null value means a PNG image).
+	 * @param request - Request to evaluate the entity tag against (null value means the request
+	 * isn't conditional).
+	 * @return Chart response, or a not modified response if the client holds the same chart.
+	 */
+	private Response getChartResponse(int width, int height, int dateInterval, int dataRange, 
+			List<ChartSeries> series, String title, String timeAxisLabel, String valueAxisLabel, String format, 
+			Request request) {
+		if (!isValidFormat(format))
+			return getInvalidFormatResponse();
+		
+		// Identifies the chart by its data, so that unchanged charts are neither re-rendered nor re-sent. 
+		// The user is part of the fingerprint, since a rendered image is only served to its owner.
+		long upperBound = DateBucketer.startOfDay(System.currentTimeMillis(), TimeTrendingChart.getUserTimeZone());
+		String fingerprint;
+		if (series.size() == 1 && series.get(0).getName() == null)
+			fingerprint = ChartCache.fingerprint(width, height, dateInterval, dataRange, upperBound, series.get(0), 
+					title, timeAxisLabel, valueAxisLabel, getUserKey());
+		else
+			fingerprint = ChartCache.fingerprint(width, height, dateInterval, dataRange, upperBound, series, 
+					title, timeAxisLabel, valueAxisLabel, getUserKey());
+		
+		// Leaves the drawing to the client, skipping rasterization
+		if (FORMAT_SVG.equals(format) || FORMAT_JSON.equals(format)) {
+			TimeTrendingChart timeTrendingChart = new TimeTrendingChart(title, timeAxisLabel, valueAxisLabel);
+			return getChartDataResponse(fingerprint, format, timeTrendingChart.getChartData(dateInterval, dataRange, 
+					series), width, height, request);
+		}
+		
+		// Produces chart based on passed parameters, unless it was already rendered
+		return getChartResponse(fingerprint, request, getChartRenderer(fingerprint, width, height, dateInterval, 
+				dataRange, series, title, timeAxisLabel, valueAxisLabel));
+	}
+	
+	/**
+	 * Gets the response for the chart with the given fingerprint, rendering the chart only if 
+	 * it isn't cached yet.
+	 * 
+	 * @param fingerprint - Fingerprint of the chart's data and settings.
+	 * @param request - Request to evaluate the entity tag against (null value means the request
+	 * isn't conditional).
+	 * @param renderer - Renders the chart on a cache miss.
+	 * @return Chart response, or a not modified response if the client holds the same chart.
+	 */
+	private Response getChartResponse(String fingerprint, Request request, ResultCache.Loader<RenderedChart> renderer) {
+		EntityTag entityTag = new EntityTag(fingerprint);
+		if (request != null) {
+			Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+			if (notModified != null)
+				return notModified.cacheControl(getCacheControl()).build();
+		}
+		
+		RenderedChart chart = ChartCache.getInstance().get(fingerprint, renderer);
 		return Response.ok(
 			new ChartRestResourceModel(chart.getLocation(), chart.getImageMap(), chart.getImageMapName(), 
-					width, height, (String) chart.getParameters().get("base64Image"))
-		).build();
+					chart.getWidth(), chart.getHeight(), chart.getBase64Image())
+		).tag(entityTag).cacheControl(getCacheControl()).build();
+	}
+	
+	/**
+	 * Gets the response for a chart that is drawn by the client, either as its SVG image or as 
+	 * its bucketed data. Neither is cached, since producing them costs about as much as 
+	 * looking them up.
+	 * 
+	 * @param fingerprint - Fingerprint of the chart's data and settings.
+	 * @param format - Output format (svg or json).
+	 * @param chartData - Bucketed data of the chart.
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param request - Request to evaluate the entity tag against (null value means the request
+	 * isn't conditional).
+	 * @return Chart response, or a not modified response if the client holds the same chart.
+	 */
+	private static Response getChartDataResponse(String fingerprint, String format, 
+			ChartDataRestResourceModel chartData, int width, int height, Request request) {
+		EntityTag entityTag = new EntityTag(fingerprint + "-" + format);
+		if (request != null) {
+			Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+			if (notModified != null)
+				return notModified.cacheControl(getCacheControl()).build();
+		}
+		
+		Response.ResponseBuilder builder = FORMAT_SVG.equals(format) 
+				? Response.ok(SvgChartWriter.write(chartData, width, height), SvgChartWriter.MEDIA_TYPE) 
+				: Response.ok(chartData, MediaType.APPLICATION_JSON);
+		return builder.tag(entityTag).cacheControl(getCacheControl()).build();
+	}
+	
+	/**
+	 * Gets the loader that renders the time trending chart with the given fingerprint.
+	 * 
+	 * @param fingerprint - Fingerprint of the chart's data and settings.
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @param dateInterval - Number of days between each date within the time-based axis of the chart.
+	 * @param dataRange - Range of data (in days) represented by the time-based axis of the chart.
+	 * @param series - Names, dates and counts of every series of the chart.
+	 * @param title - Title of chart.
+	 * @param timeAxisLabel - Label for time axis (the x-axis).
+	 * @param valueAxisLabel - Label for value axis (the y-axis).
+	 * @return Chart renderer.
+	 */
+	private ResultCache.Loader<RenderedChart> getChartRenderer(final String fingerprint, final int width, 
+			final int height, final int dateInterval, final int dataRange, final List<ChartSeries> series, 
+			final String title, final String timeAxisLabel, final String valueAxisLabel) {
+		return new ResultCache.Loader<RenderedChart>() {
+			public RenderedChart load() {
+				TimeTrendingChart timeTrendingChart = new TimeTrendingChart(title, timeAxisLabel, valueAxisLabel);
+				return toRenderedChart(fingerprint, timeTrendingChart.generateChart(width, height, dateInterval, 
+						dataRange, series), width, height);
+			}
+		};
+	}
+	
+	/**
+	 * Keeps what is served of a generated chart, so that it can be held by the chart cache.
+	 * 
+	 * @param fingerprint - Fingerprint of the chart's data and settings.
+	 * @param chart - Generated chart.
+	 * @param width - Width of the chart.
+	 * @param height - Height of the chart.
+	 * @return Rendered chart.
+	 */
+	private static RenderedChart toRenderedChart(String fingerprint, Chart chart, int width, int height) {
+		return new RenderedChart(fingerprint, chart.getLocation(), chart.getImageMap(), 
+				chart.getImageMapName(), width, height, (String) chart.getParameters().get("base64Image"), 
+				(byte[]) chart.getParameters().get("imageBytes"), getUserKey());
+	}
+	
+	/**
+	 * Gets the key of the logged in user, or an empty value for anonymous access.
+	 */
+	private static String getUserKey() {
+		ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+		return user != null ? user.getKey() : "";
+	}
+	
+	/**
+	 * Gets the status occupancy of a project from the result cache, computing it on a miss. The 
+	 * creation date and current status of every issue are read from the index, and the whole 
+	 * change history is then swept once, since the occupancy at the start of the axis depends 
+	 * on every earlier transition.
+	 * 
+	 * @param project - Project of the diagram.
+	 * @param issueTypeIds - Ids of the issue types included (null/empty value means all issue types).
+	 * @param bucketer - Bucketer of the axis.
+	 * @param dataRange - Range of data (in days) represented by the axis.
+	 * @return Number of issues in each status at every axis date.
+	 */
+	private CumulativeFlowRestResourceModel getCachedCumulativeFlow(final Project project, 
+			final List<String> issueTypeIds, final DateBucketer bucketer, final int dataRange) {
+		return ResultCache.getInstance().get(ResultCache.CHANGE_HISTORY, project.getKey(), 
+				Arrays.asList("cfd", issueTypeIds, bucketer.getDateInterval(), dataRange, bucketer.getUpperBoundDay(), 
+						bucketer.getTimeZone().getID()), 
+				new ResultCache.Loader<CumulativeFlowRestResourceModel>() {
+			public CumulativeFlowRestResourceModel load() {
+				final CumulativeFlow flow = new CumulativeFlow(bucketer, dataRange);
+				
+				// Reads when every issue was created, and the status of those that never moved, then 
+				// sweeps the history; fails the request rather than caching a partial diagram
+				User user = ComponentAccessor.getJiraAuthenticationContext().getUser().getDirectoryUser();
+				String jqlQuery = IssueSearchHelper.buildJqlQuery(project, issueTypeIds);
+				try {
+					IssueSearchHelper.visitIssueStates(user, IssueSearchHelper.parseQuery(user, jqlQuery), 
+							new IssueStateCollector.IssueStateVisitor() {
+						public void visit(long issueId, long created, String statusId) {
+							flow.addIssue(issueId, created, statusId);
+						}
+					});
+					scanner.scanOrThrow(project, null, issueTypeIds, null, null, new ChangeHistoryScanner.TransitionHandler() {
+						public void handle(Project project, IssueReference issue, StatusTransition transition) {
+							flow.addTransition(transition);
+						}
+					});
+				} catch (SearchException e) {
+					e.printStackTrace();
+					throw new IllegalStateException("Cumulative flow computation failed.", e);
+				}
+				
+				// Orders the statuses as they are ordered in Jira, which follows the workflow
+				Map<String, String> statuses = new LinkedHashMap<String, String>();
+				for (Status status : ComponentAccessor.getConstantsManager().getStatusObjects())
+					statuses.put(status.getId(), status.getName());
+				return flow.getModel(statuses);
+			}
+		});
+	}
+	
+	/**
+	 * Gets the histograms of every series of a project's trend. A single date field reuses the 
+	 * histogram shared with the issue resource, while several series are counted together.
+	 * 
+	 * @param project - Project of the trend.
+	 * @param issueTypeIds - Ids of the issue types included (or of every series, if split by issue type).
+	 * @param dateFieldIds - Ids of the date fields counted.
+	 * @param splitByIssueType - Whether every issue type is counted as its own series.
+	 * @param dateInterval - Number of days between each date on the axis.
+	 * @param dataRange - Range of data (in days), counting back from today.
+	 * @return One list of buckets per series.
+	 */
+	private List<List<BucketDataContainer>> getCachedHistograms(Project project, List<String> issueTypeIds, 
+			List<String> dateFieldIds, boolean splitByIssueType, int dateInterval, int dataRange) {
+		if (!splitByIssueType && dateFieldIds.size() == 1)
+			return Collections.singletonList(IssueHistogramHelper.getCachedIssueHistogram(project.getKey(), 
+					issueTypeIds, dateFieldIds.get(0), dateInterval, dataRange, rollupStore));
+		
+		return IssueHistogramHelper.getCachedIssueHistograms(project.getKey(), issueTypeIds, dateFieldIds, 
+				splitByIssueType, dateInterval, dataRange, rollupStore);
+	}
+	
+	/**
+	 * Gets the issue types a trend split by issue type is charted for.
+	 * 
+	 * @param issueTypeIds - Ids of the requested issue types (null/empty value means every issue 
+	 * type of the given projects).
+	 * @param projects - Projects of the trend.
+	 * @return Distinct issue type ids.
+	 */
+	private static List<String> getIssueTypeIds(List<String> issueTypeIds, List<Project> projects) {
+		List<String> ids = FieldSet.split(issueTypeIds);
+		if (ids.isEmpty()) {
+			for (Project project : projects) {
+				for (IssueType issueType : project.getIssueTypes()) {
+					if (!ids.contains(issueType.getId()))
+						ids.add(issueType.getId());
+				}
+			}
+		}
+		return ids;
+	}
+	
+	/**
+	 * Gets the projects a trend is charted for: either a single project, as before, or every 
+	 * project selected by several keys or a project category.
+	 * 
+	 * @param keys - Project keys, either repeated or comma separated (can be null).
+	 * @param categoryId - Id of a project category whose projects are included (can be null).
+	 * @return Selected projects (empty if none is valid).
+	 */
+	private static List<Project> getProjects(List<String> keys, String categoryId) {
+		if (PortfolioHelper.isPortfolio(keys, categoryId))
+			return PortfolioHelper.getProjects(keys, categoryId);
+		
+		List<Project> projects = new ArrayList<Project>();
+		for (String key : FieldSet.split(keys)) {
+			Project project = ComponentAccessor.getProjectManager().getProjectObjByKey(key);
+			if (project != null)
+				projects.add(project);
+		}
+		return projects;
+	}
+	
+	/**
+	 * Determines whether the given output format is supported.
+	 * 
+	 * @param format - Output format (null value means a PNG image).
+	 * @return True if the format is png, svg or json.
+	 */
+	private static boolean isValidFormat(String format) {
+		return format == null || FORMAT_PNG.equals(format) || FORMAT_SVG.equals(format) || FORMAT_JSON.equals(format);
+	}
+	
+	private static Response getInvalidFormatResponse() {
+		return Response.ok(new ErrorRestResourceModel("Invalid Format", 
+				"Please provide one of the formats " + FORMAT_PNG + ", " + FORMAT_SVG + " or " + FORMAT_JSON + "."), 
+				MediaType.APPLICATION_JSON).build();
+	}
+	
+	/**
+	 * Gets the error response for a request body that doesn't hold a valid series.
+	 * 
+	 * @param e - Exception thrown while reading the series.
+	 * @return Bad request response.
+	 */
+	private static Response getInvalidSeriesResponse(Exception e) {
+		return Response.status(Response.Status.BAD_REQUEST)
+				.entity(new ErrorRestResourceModel("InvalidSeries", "Chart series couldn't be read: " + e.getMessage()))
+				.build();
+	}
+	
+	/**
+	 * Gets the names of the given issue types, for labeling charts.
+	 * 
+	 * @param issueTypeIds - Ids of the issue types (null/empty value means all issue types).
+	 * @return Comma separated issue type names, or "All" if no issue type is given.
+	 */
+	private static String getIssueTypeNames(List<String> issueTypeIds) {
+		if (issueTypeIds == null || issueTypeIds.isEmpty())
+			return "All";
+		
+		StringBuilder names = new StringBuilder();
+		for (String issueTypeId : issueTypeIds) {
+			IssueType issueType = ComponentAccessor.getConstantsManager().getIssueTypeObject(issueTypeId);
+			if (issueType == null)
+				continue;
+			if (names.length() > 0)
+				names.append(", ");
+			names.append(issueType.getName());
+		}
+		return names.length() > 0 ? names.toString() : "All";
+	}
+	
+	/**
+	 * Gets the cache control for chart responses. Clients may keep charts, but must revalidate 
+	 * them with their entity tag, since the time axis moves every day.
+	 * 
+	 * @return Cache control for chart responses.
+	 */
+	private static CacheControl getCacheControl() {
+		CacheControl cacheControl = new CacheControl();
+		cacheControl.setPrivate(true);
+		cacheControl.setMaxAge(0);
+		cacheControl.setMustRevalidate(true);
+		return cacheControl;
 	}
 	
 	/**
@@ -1,20 +1,15 @@
 package plugin_suite.resources;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 
-import com.atlassian.jira.component.ComponentAccessor;
-import com.atlassian.jira.issue.CustomFieldManager;
-import com.atlassian.jira.issue.fields.CustomField;
-
-import plugin_suite.models.CustomFieldRestResourceModel;
+import plugin_suite.cache.CustomFieldRegistry;
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.CustomFieldRestResourceModel.CustomFieldDataContainer;
 
 /**
  * A resource for custom fields.
@@ -23,100 +18,64 @@ import plugin_suite.models.CustomFieldRestResourceModel;
 @Consumes({MediaType.APPLICATION_JSON})
 @Produces({MediaType.APPLICATION_JSON})
 public class CustomFieldRestResource {
+	// Categories listed as date fields
+	private static final List<String> DATE_CATEGORIES = Arrays.asList(
+			CustomFieldRegistry.DATE, CustomFieldRegistry.DATETIME);
 	
 	@GET
 	@Produces({MediaType.APPLICATION_JSON})
-	public Response getField(@QueryParam("id") Long id) {
-        if(id != null)
-            return Response.ok(
-            	new CustomFieldRestResourceModel(getCustomFieldParamsById(id)).getFields()
-            ).build();
-        else
-            return Response.ok(
-            	new CustomFieldRestResourceModel(getCustomFieldParams(null)).getFields()
-            ).build();
+	public Response getField(
+			@QueryParam("id") Long id, 
+			@QueryParam("type") List<String> types, 
+			@QueryParam("fields") List<String> fields, 
+			@Context Request request) {
+		CustomFieldRegistry.Snapshot registry = CustomFieldRegistry.getInstance().getSnapshot();
+		FieldSet fieldSet = FieldSet.forRequest(fields, CustomFieldDataContainer.ATTRIBUTES);
+		
+		// Every response is determined by the registry's version and the request's parameters
+		EntityTag entityTag = new EntityTag(registry.getVersion());
+		Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+		if (notModified != null)
+			return notModified.cacheControl(getCacheControl()).build();
+		
+		List<CustomFieldDataContainer> customFields;
+        if (id != null) {
+        	customFields = new ArrayList<CustomFieldDataContainer>();
+        	CustomFieldDataContainer field = registry.getField(id);
+        	if (field != null)
+        		customFields.add(field.select(fieldSet));
+        } else
+        	customFields = registry.getFields(FieldSet.split(types), fieldSet);
+        
+        return Response.ok(customFields).tag(entityTag).cacheControl(getCacheControl()).build();
     }
 	
 	@GET
 	@Produces({MediaType.APPLICATION_JSON})
 	@Path("/{id}")
-	public Response getFieldFromPath(@PathParam("id") Long id) {
-		return Response.ok(
-			new CustomFieldRestResourceModel(getCustomFieldParamsById(id)).getFields()
-		).build();
+	public Response getFieldFromPath(@PathParam("id") Long id, @QueryParam("fields") List<String> fields, 
+			@Context Request request) {
+		return getField(id, null, fields, request);
     }
 	
 	@GET
 	@Produces({MediaType.APPLICATION_JSON})
 	@Path("/datefields")
-	public Response getDateFields() {
-		return Response.ok(
-			new CustomFieldRestResourceModel(getCustomFieldParams(".*Date.*")).getFields()
-		).build();
-    }
-	
-	/**
-     * Gets parameters for every custom field of the given type (or all if the list of
-     * field types is null or empty).
-     * 
-     * @param fieldTypeRegex - Regular expression for acceptable field type(s).
-     * @return List of mappings with custom field parameters.
-     */
-    private List<Map<String, Object>> getCustomFieldParams(String fieldTypeRegex) {
-    	CustomFieldManager manager = ComponentAccessor.getCustomFieldManager();
-    	
-    	// Initializes list of custom field parameter mappings
-    	List<Map<String, Object>> paramList = new ArrayList<Map<String, Object>>();
-    	
-    	// Initializes pattern for regex operations
-    	Pattern p = null;
-    	if (fieldTypeRegex != null)
-    		p = Pattern.compile(fieldTypeRegex);
-    	
-    	// Gets mappings for the desired custom fields in Jira
-    	for (CustomField field : manager.getCustomFieldObjects())
-    		if (p == null)
-    			paramList.add(getCustomFieldParamHelper(field));
-    		else {
-    			Matcher m = p.matcher(field.getCustomFieldType().getName());
-    			if (m.matches())
-    				paramList.add(getCustomFieldParamHelper(field));
-    		}
-    	
-    	return paramList;
-    }
-    
-    /**
-     * Gets parameters for a custom field with the given id.
-     * 
-     * @param id - Id of custom field.
-     * @return Mappings with the given custom field's parameters.
-     */
-    private Map<String, Object> getCustomFieldParamsById(Long id) {
-    	CustomFieldManager manager = ComponentAccessor.getCustomFieldManager();
-    	
-    	// Gets mappings for given custom field
-    	return getCustomFieldParamHelper(manager.getCustomFieldObject(id));
+	public Response getDateFields(@QueryParam("fields") List<String> fields, @Context Request request) {
+		return getField(null, DATE_CATEGORIES, fields, request);
     }
     
     /**
-     * Obtains parameters of given custom field from Jira and returns the necessary ones.
+     * Gets the cache control for custom field responses. Clients may keep the field list, but 
+     * must revalidate it with its entity tag, since custom fields can change at any time.
      * 
-     * @param field - Custom field object.
-     * @return Map with custom field parameters.
+     * @return Cache control for custom field responses.
      */
-    private Map<String, Object> getCustomFieldParamHelper(CustomField field) {
-    	// Initializes map of custom field parameter mappings
-    	Map<String, Object> map = new HashMap<String, Object>();
-    	
-    	// Sets custom field parameters
-    	if (field != null) {
-    		map.put("id", field.getId());
-    		map.put("name", field.getFieldName());
-    		map.put("typeKey", field.getCustomFieldType().getKey());
-    		map.put("typeName", field.getCustomFieldType().getName());
-    	}
-    	
-		return map;
+    private static CacheControl getCacheControl() {
+		CacheControl cacheControl = new CacheControl();
+		cacheControl.setPrivate(true);
+		cacheControl.setMaxAge(0);
+		cacheControl.setMustRevalidate(true);
+		return cacheControl;
     }
 }
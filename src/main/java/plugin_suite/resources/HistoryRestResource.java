@@ -1,32 +1,51 @@
 package plugin_suite.resources;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Inject;
 
 import com.atlassian.crowd.embedded.api.User;
 import com.atlassian.jira.component.ComponentAccessor;
-import com.atlassian.jira.issue.Issue;
-import com.atlassian.jira.issue.IssueManager;
-import com.atlassian.jira.issue.changehistory.ChangeHistory;
-import com.atlassian.jira.issue.changehistory.ChangeHistoryManager;
-import com.atlassian.jira.issue.history.ChangeItemBean;
+import com.atlassian.jira.issue.search.SearchException;
 import com.atlassian.jira.project.ProjectManager;
 import com.atlassian.jira.project.Project;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 
-import org.ofbiz.core.entity.GenericEntityException;
-
+import plugin_suite.cache.ResultCache;
+import plugin_suite.charts.TimeTrendingChart;
+import plugin_suite.concurrent.AdmissionLimiter;
+import plugin_suite.concurrent.WorkerPool;
+import plugin_suite.history.CycleTimeCalculator;
+import plugin_suite.history.ChangeHistoryScanner;
+import plugin_suite.history.StatusTransition;
+import plugin_suite.history.TransitionAggregator;
+import plugin_suite.history.TransitionEventStore;
+import plugin_suite.jobs.Job;
+import plugin_suite.models.AggregateRestResourceModel;
+import plugin_suite.models.CycleTimeRestResourceModel;
 import plugin_suite.models.ErrorRestResourceModel;
+import plugin_suite.models.FieldSet;
 import plugin_suite.models.HistoryRestResourceModel;
+import plugin_suite.models.HistoryRestResourceModel.ChangeDataContainer;
+import plugin_suite.models.MetadataCache;
+import plugin_suite.search.IssueReference;
+import plugin_suite.search.IssueSearchHelper;
+import plugin_suite.search.PortfolioHelper;
+import plugin_suite.streaming.JsonRecordWriter;
+import plugin_suite.streaming.ListRecordSink;
+import plugin_suite.streaming.RecordSink;
 
 /**
  * A resource of change history.
@@ -35,30 +54,108 @@ import plugin_suite.models.HistoryRestResourceModel;
 @Consumes({MediaType.APPLICATION_JSON})
 @Produces({MediaType.APPLICATION_JSON})
 public class HistoryRestResource {
+	private final ChangeHistoryScanner scanner;
+	private final WorkerPool workerPool;
+	
+	@Inject
+	public HistoryRestResource(TransitionEventStore transitionStore, WorkerPool workerPool) {
+		this.scanner = new ChangeHistoryScanner(transitionStore);
+		this.workerPool = workerPool;
+	}
 	
     @GET
     @Produces({MediaType.APPLICATION_JSON})
-    public Response getChangeHistory(@QueryParam("key") String key, @QueryParam("newStatusId") List<String> newStatusIds,
-    		@QueryParam("excludeStatusId") List<String> excludeCurrStatusIds, @QueryParam("issueTypeId") List<String> issueTypeIds, 
-    		@QueryParam("earliestDate") String earliestDate) {
-        if(key != null)
-        	return Response.ok(new HistoryRestResourceModel(getChangeHistoryForProject(
-        				key, newStatusIds, issueTypeIds, earliestDate, excludeCurrStatusIds)).getChangeDataContainers()).build();
-        else
-            return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+    public Response getChangeHistory(@QueryParam("key") final List<String> keys, @QueryParam("categoryId") final String categoryId, 
+    		@QueryParam("newStatusId") final List<String> newStatusIds,
+    		@QueryParam("excludeStatusId") final List<String> excludeCurrStatusIds, @QueryParam("issueTypeId") final List<String> issueTypeIds, 
+    		@QueryParam("earliestDate") final String earliestDate, @QueryParam("fields") final List<String> fields, 
+    		@QueryParam("stream") @DefaultValue("false") final boolean stream) {
+    	return ResourceAdmission.admit(AdmissionLimiter.CHANGE_HISTORY, new ResourceAdmission.Call() {
+    		public Response call() {
+    			FieldSet fieldSet = FieldSet.forRequest(fields, ChangeDataContainer.ATTRIBUTES);
+    			if (PortfolioHelper.isPortfolio(keys, categoryId))
+    				return getPortfolioChangeHistory(keys, categoryId, newStatusIds, issueTypeIds, earliestDate, 
+    						excludeCurrStatusIds, fieldSet, stream);
+    	
+    			List<String> projectKeys = FieldSet.split(keys);
+    			String key = !projectKeys.isEmpty() ? projectKeys.get(0) : null;
+    			if(key != null && stream)
+    				return Response.ok(getChangeHistoryStream(key, newStatusIds, issueTypeIds, earliestDate, excludeCurrStatusIds, 
+    						fieldSet)).build();
+    			else if(key != null)
+    				return Response.ok(getCachedChangeHistory(key, newStatusIds, issueTypeIds, earliestDate, excludeCurrStatusIds, 
+    						fieldSet)).build();
+    			else
+    				return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+    		}
+    	});
     }
     
     @GET
     @Produces({MediaType.APPLICATION_JSON})
     @Path("/{key}")
-    public Response getChangeHistoryFromPath(@PathParam("key") String key) {
-        return Response.ok(new HistoryRestResourceModel(getChangeHistoryForProject(key, null, null, null, null))
-        		.getChangeDataContainers()).build();
+    public Response getChangeHistoryFromPath(@PathParam("key") final String key, @QueryParam("fields") final List<String> fields, 
+    		@QueryParam("stream") @DefaultValue("false") final boolean stream) {
+    	return ResourceAdmission.admit(AdmissionLimiter.CHANGE_HISTORY, new ResourceAdmission.Call() {
+    		public Response call() {
+    			FieldSet fieldSet = FieldSet.forRequest(fields, ChangeDataContainer.ATTRIBUTES);
+    			if (stream)
+    				return Response.ok(getChangeHistoryStream(key, null, null, null, null, fieldSet)).build();
+    	
+    			return Response.ok(getCachedChangeHistory(key, null, null, null, null, fieldSet)).build();
+    		}
+    	});
+    }
+    
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @Path("/aggregate")
+    public Response getAggregatedChangeHistory(@QueryParam("key") final String key, @QueryParam("groupBy") final List<String> groupBy, 
+    		@QueryParam("metric") @DefaultValue(TransitionAggregator.COUNT) final String metric, 
+    		@QueryParam("newStatusId") final List<String> newStatusIds, @QueryParam("excludeStatusId") final List<String> excludeCurrStatusIds, 
+    		@QueryParam("issueTypeId") final List<String> issueTypeIds, @QueryParam("earliestDate") final String earliestDate) {
+    	return ResourceAdmission.admit(AdmissionLimiter.CHANGE_HISTORY, new ResourceAdmission.Call() {
+    		public Response call() {
+    			if (key == null)
+    				return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+    	
+    			List<String> dimensions = FieldSet.split(groupBy);
+    			if (dimensions.isEmpty() || !TransitionAggregator.DIMENSIONS.containsAll(dimensions))
+    				return Response.ok(new ErrorRestResourceModel("Invalid Grouping", 
+    						"Please group by one or more of: " + TransitionAggregator.DIMENSIONS + ".")).build();
+    			if (!TransitionAggregator.COUNT.equals(metric) && !TransitionAggregator.AVG_TIME_IN_STATUS.equals(metric))
+    				return Response.ok(new ErrorRestResourceModel("Invalid Metric", "Please provide metric " 
+    						+ TransitionAggregator.COUNT + " or " + TransitionAggregator.AVG_TIME_IN_STATUS + ".")).build();
+    	
+    			return Response.ok(getCachedAggregate(key, dimensions, metric, newStatusIds, issueTypeIds, earliestDate, 
+    					excludeCurrStatusIds)).build();
+    		}
+    	});
+    }
+    
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @Path("/cycletime")
+    public Response getCycleTime(@QueryParam("key") final String key, @QueryParam("startStatusId") final List<String> startStatusIds, 
+    		@QueryParam("endStatusId") final List<String> endStatusIds, @QueryParam("excludeStatusId") final List<String> excludeCurrStatusIds, 
+    		@QueryParam("issueTypeId") final List<String> issueTypeIds, @QueryParam("earliestDate") final String earliestDate) {
+    	return ResourceAdmission.admit(AdmissionLimiter.CHANGE_HISTORY, new ResourceAdmission.Call() {
+    		public Response call() {
+    			if (key == null)
+    				return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+    	
+    			List<String> endIds = FieldSet.split(endStatusIds);
+    			if (endIds.isEmpty())
+    				return Response.ok(new ErrorRestResourceModel("Invalid Status", "Please provide at least one end status id.")).build();
+    	
+    			return Response.ok(getCachedCycleTime(key, FieldSet.split(startStatusIds), endIds, issueTypeIds, earliestDate, 
+    					excludeCurrStatusIds)).build();
+    		}
+    	});
     }
     
     /**
-     * Obtains list of status changes in the form of a list of maps, using the 
-     * project key and various ids as filters.
+     * Gets the status changes of a given project from the result cache, computing them on a miss.
      * 
      * @param key - Project key.
      * @param newStatusIds - List of allowable new status ids from transitions (can be null).
@@ -66,98 +163,315 @@ public class HistoryRestResource {
      * @param earliestDate - Earliest allowable date for created issues (can be null). 
      * Format of parameter must be: yyyy-mm-dd.
      * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
-     * @return List of mappings with issue history parameters.
+     * @param fieldSet - Attributes to return for every change.
+     * @return List of change data containers, sorted by change date.
+     */
+    private List<ChangeDataContainer> getCachedChangeHistory(final String key, final List<String> newStatusIds, 
+    		final List<String> issueTypeIds, final String earliestDate, final List<String> excludeCurrStatusIds, 
+    		final FieldSet fieldSet) {
+    	return ResultCache.getInstance().get(ResultCache.CHANGE_HISTORY, key, 
+    			Arrays.asList(newStatusIds, issueTypeIds, earliestDate, excludeCurrStatusIds, fieldSet.toString()), 
+    			new ResultCache.Loader<List<ChangeDataContainer>>() {
+    		public List<ChangeDataContainer> load() {
+    			ListRecordSink<ChangeDataContainer> changeList = new ListRecordSink<ChangeDataContainer>();
+    			boolean sorted = getChangeHistoryForProject(key, newStatusIds, issueTypeIds, earliestDate, 
+    					excludeCurrStatusIds, fieldSet, changeList);
+    			return new HistoryRestResourceModel(changeList.getRecords(), sorted).getChangeDataContainers();
+    		}
+    	});
+    }
+    
+    /**
+     * Gets the status changes of several projects, fetching (or computing) the changes of each 
+     * project in parallel and merging them in order of change date.
+     * 
+     * @param keys - Project keys, either repeated or comma separated (can be null).
+     * @param categoryId - Id of a project category whose projects are included (can be null).
+     * @param newStatusIds - List of allowable new status ids from transitions (can be null).
+     * @param issueTypeIds - List of ids for allowable issue types (can be null).
+     * @param earliestDate - Earliest allowable date for created issues (can be null). 
+     * Format of parameter must be: yyyy-mm-dd.
+     * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
+     * @param fieldSet - Attributes to return for every change.
+     * @param stream - Whether the merged changes are written as a stream.
+     * @return Response containing the merged changes, or an error if no project is selected.
      */
-	private List<Map<String, Object>> getChangeHistoryForProject(String key, List<String> newStatusIds, 
-			List<String> issueTypeIds, String earliestDate, List<String> excludeCurrStatusIds) {
-    	List<Map<String, Object>> changeList = new ArrayList<Map<String, Object>>();
+    private Response getPortfolioChangeHistory(List<String> keys, String categoryId, final List<String> newStatusIds, 
+    		final List<String> issueTypeIds, final String earliestDate, final List<String> excludeCurrStatusIds, 
+    		final FieldSet fieldSet, boolean stream) {
+    	List<Project> projects = PortfolioHelper.getProjects(keys, categoryId);
+    	if (projects.isEmpty())
+    		return Response.ok(new ErrorRestResourceModel("Invalid Key", 
+    				"Please provide valid project keys or project category id.")).build();
     	
-    	// Sets earliest date object, if any
-    	Date date = null;
-    	if (earliestDate != null && !earliestDate.equals("")) {
-    		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    		try {
-				date = dateFormat.parse(earliestDate);
-			} catch (ParseException e) {
-				e.printStackTrace();
-			}
+    	List<ChangeDataContainer> changes = PortfolioHelper.mergeSorted(PortfolioHelper.fanOut(workerPool, projects, 
+    			new PortfolioHelper.ProjectTask<List<ChangeDataContainer>>() {
+    		public List<ChangeDataContainer> run(Project project) {
+    			return getCachedChangeHistory(project.getKey(), newStatusIds, issueTypeIds, earliestDate, 
+    					excludeCurrStatusIds, fieldSet);
+    		}
+    	}));
+    	
+    	if (stream)
+    		return Response.ok(JsonRecordWriter.stream(changes)).build();
+    	return Response.ok(changes).build();
+    }
+    
+    /**
+     * Exports the status changes of the given projects for an asynchronous job, one project
+     * after another. The issues of every project are counted up front, and an issue counts as
+     * processed once its first change is exported (or once its project is done, if none of its
+     * changes match), so that the job can report its progress.
+     *
+     * @param job - Job the changes are exported for.
+     * @param projects - Projects associated with the desired changes.
+     * @param newStatusIds - List of allowable new status ids from transitions (can be null).
+     * @param issueTypeIds - List of ids for allowable issue types (can be null).
+     * @param earliestDate - Earliest allowable date for created issues (can be null).
+     * Format of parameter must be: yyyy-mm-dd.
+     * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
+     * @param fieldSet - Attributes to return for every change.
+     * @param sink - Sink receiving the change data.
+     * @throws SearchException
+     */
+    void exportChangeHistory(final Job job, List<Project> projects, List<String> newStatusIds,
+    		List<String> issueTypeIds, String earliestDate, List<String> excludeCurrStatusIds, final FieldSet fieldSet,
+    		final RecordSink<? super ChangeDataContainer> sink) throws SearchException {
+    	User user = ComponentAccessor.getJiraAuthenticationContext().getUser().getDirectoryUser();
+    	int[] totals = new int[projects.size()];
+    	for (int i = 0; i < projects.size(); i++) {
+    		String jqlQuery = IssueSearchHelper.buildJqlQuery(projects.get(i), issueTypeIds);
+    		totals[i] = (int) IssueSearchHelper.countIssues(user, IssueSearchHelper.parseQuery(user, jqlQuery));
+    		job.addTotal(totals[i]);
     	}
+
+    	// Fails the job if the issues can't be searched, rather than exporting part of the changes
+    	final MetadataCache metadata = new MetadataCache();
+    	Date date = parseEarliestDate(earliestDate);
+    	for (int i = 0; i < projects.size(); i++) {
+    		final Set<Long> issueIds = new HashSet<Long>();
+    		scanner.scanOrThrow(projects.get(i), newStatusIds, issueTypeIds, date, excludeCurrStatusIds,
+    				new ChangeHistoryScanner.TransitionHandler() {
+    			public void handle(Project project, IssueReference issue, StatusTransition transition) {
+    				addChangeData(sink, issue, project, transition, fieldSet, metadata);
+    				if (issueIds.add(issue.getId()))
+    					job.addProcessed(1);
+    			}
+    		});
+    		job.addProcessed(Math.max(0, totals[i] - issueIds.size()));
+    	}
+    }
+
+    /**
+     * Gets the aggregated status changes of a given project from the result cache, computing
+     * them in a single pass over the project's transitions on a miss.
+     * 
+     * @param key - Project key.
+     * @param groupBy - Distinct dimensions to group by.
+     * @param metric - Metric to compute for every group.
+     * @param newStatusIds - List of allowable new status ids from transitions (can be null).
+     * @param issueTypeIds - List of ids for allowable issue types (can be null).
+     * @param earliestDate - Earliest allowable date for created issues (can be null). 
+     * Format of parameter must be: yyyy-mm-dd.
+     * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
+     * @return Aggregate resource model.
+     */
+    private AggregateRestResourceModel getCachedAggregate(final String key, final List<String> groupBy, 
+    		final String metric, final List<String> newStatusIds, final List<String> issueTypeIds, 
+    		final String earliestDate, final List<String> excludeCurrStatusIds) {
+    	final TimeZone timeZone = TimeTrendingChart.getUserTimeZone();
+    	return ResultCache.getInstance().get(ResultCache.CHANGE_HISTORY, key, 
+    			Arrays.asList("aggregate", groupBy, metric, newStatusIds, issueTypeIds, earliestDate, 
+    					excludeCurrStatusIds, timeZone.getID()), 
+    			new ResultCache.Loader<AggregateRestResourceModel>() {
+    		public AggregateRestResourceModel load() {
+    			final TransitionAggregator aggregator = new TransitionAggregator(groupBy, metric, timeZone, newStatusIds);
+    			final MetadataCache metadata = new MetadataCache();
+    			
+    			// Time in status is measured up to the following transition, whatever status it enters
+    			List<String> readStatusIds = TransitionAggregator.COUNT.equals(metric) ? newStatusIds : null;
+    			visitChangeHistory(key, readStatusIds, issueTypeIds, earliestDate, excludeCurrStatusIds, 
+    					new ChangeHistoryScanner.TransitionHandler() {
+    				public void handle(Project project, IssueReference issue, StatusTransition transition) {
+    					String issueTypeId = metadata.intern(issue.getIssueTypeId());
+    					aggregator.add(issueTypeId, metadata.getIssueTypeName(issueTypeId), transition);
+    				}
+    			});
+    			return aggregator.getModel();
+    		}
+    	});
+    }
+    
+    /**
+     * Gets the cycle times and times in status of a given project from the result cache, 
+     * measuring them on a miss. Every transition of the matching issues is read, and the 
+     * issues are then measured in parallel by the worker pool.
+     * 
+     * @param key - Project key.
+     * @param startStatusIds - Ids of the statuses that start a cycle (empty value means the 
+     * first transition starts it).
+     * @param endStatusIds - Ids of the statuses that end a cycle.
+     * @param issueTypeIds - List of ids for allowable issue types (can be null).
+     * @param earliestDate - Earliest date a measured cycle or stay may end on (can be null). 
+     * Format of parameter must be: yyyy-mm-dd.
+     * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
+     * @return Cycle time resource model.
+     */
+    private CycleTimeRestResourceModel getCachedCycleTime(final String key, final List<String> startStatusIds, 
+    		final List<String> endStatusIds, final List<String> issueTypeIds, final String earliestDate, 
+    		final List<String> excludeCurrStatusIds) {
+    	return ResultCache.getInstance().get(ResultCache.CHANGE_HISTORY, key, 
+    			Arrays.asList("cycletime", startStatusIds, endStatusIds, issueTypeIds, earliestDate, excludeCurrStatusIds), 
+    			new ResultCache.Loader<CycleTimeRestResourceModel>() {
+    		public CycleTimeRestResourceModel load() {
+    			// Reads the whole history, since a cycle ending after the earliest date may have started 
+    			// before it, and leaves the earliest date to the calculator
+    			final CycleTimeCalculator calculator = new CycleTimeCalculator(startStatusIds, endStatusIds, 
+    					parseEarliestDate(earliestDate));
+    			final MetadataCache metadata = new MetadataCache();
+    			visitChangeHistory(key, null, issueTypeIds, null, excludeCurrStatusIds, new ChangeHistoryScanner.TransitionHandler() {
+    				public void handle(Project project, IssueReference issue, StatusTransition transition) {
+    					String issueTypeId = metadata.intern(issue.getIssueTypeId());
+    					calculator.add(issueTypeId, metadata.getIssueTypeName(issueTypeId), transition);
+    				}
+    			});
+    			
+    			// Fails the request rather than caching a partial result
+    			try {
+    				return calculator.getModel(workerPool);
+    			} catch (InterruptedException e) {
+    				Thread.currentThread().interrupt();
+    				throw new IllegalStateException("Cycle time computation was interrupted.", e);
+    			} catch (ExecutionException e) {
+    				e.printStackTrace();
+    				throw new IllegalStateException("Cycle time computation failed.", e.getCause());
+    			}
+    		}
+    	});
+    }
+    
+    /**
+     * Produces a streaming entity that writes the status changes of a given project as a JSON 
+     * array, writing the changes of each batch of issues as soon as its histories are read. 
+     * Unless the project's transitions are read from the transition log, changes are grouped 
+     * by issue rather than sorted by change date across the whole project, since sorting would 
+     * require holding every change at once.
+     * 
+     * @param key - Project key.
+     * @param newStatusIds - List of allowable new status ids from transitions (can be null).
+     * @param issueTypeIds - List of ids for allowable issue types (can be null).
+     * @param earliestDate - Earliest allowable date for created issues (can be null). 
+     * Format of parameter must be: yyyy-mm-dd.
+     * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
+     * @param fieldSet - Attributes to return for every change.
+     * @return Streaming output that writes the status changes when the response is sent.
+     */
+    private StreamingOutput getChangeHistoryStream(final String key, final List<String> newStatusIds, 
+    		final List<String> issueTypeIds, final String earliestDate, final List<String> excludeCurrStatusIds, 
+    		final FieldSet fieldSet) {
+    	return new StreamingOutput() {
+			public void write(OutputStream output) throws IOException {
+				JsonRecordWriter<ChangeDataContainer> writer = new JsonRecordWriter<ChangeDataContainer>(output);
+				writer.begin();
+				getChangeHistoryForProject(key, newStatusIds, issueTypeIds, earliestDate, excludeCurrStatusIds, 
+						fieldSet, writer);
+				writer.end();
+			}
+    	};
+    }
+    
+    /**
+     * Obtains the status changes of a given project, using the project key and various ids 
+     * as filters, and passes the data of each change to the given sink. Status transitions 
+     * are read from the transition log once the project is backfilled, and otherwise from the 
+     * change histories in bounded batches of issues.
+     * 
+     * @param key - Project key.
+     * @param newStatusIds - List of allowable new status ids from transitions (can be null).
+     * @param issueTypeIds - List of ids for allowable issue types (can be null).
+     * @param earliestDate - Earliest allowable date for created issues (can be null). 
+     * Format of parameter must be: yyyy-mm-dd.
+     * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
+     * @param fieldSet - Attributes to return for every change.
+     * @param sink - Sink receiving the change data of every change.
+     * @return True if the changes were passed in order of change date.
+     */
+	private boolean getChangeHistoryForProject(String key, List<String> newStatusIds, 
+			List<String> issueTypeIds, String earliestDate, List<String> excludeCurrStatusIds, final FieldSet fieldSet, 
+			final RecordSink<ChangeDataContainer> sink) {
+    	// Shares the metadata repeated across changes within this response
+    	final MetadataCache metadata = new MetadataCache();
+    	
+    	return visitChangeHistory(key, newStatusIds, issueTypeIds, earliestDate, excludeCurrStatusIds, 
+    			new ChangeHistoryScanner.TransitionHandler() {
+    		public void handle(Project project, IssueReference issue, StatusTransition transition) {
+    			addChangeData(sink, issue, project, transition, fieldSet, metadata);
+    		}
+    	});
+	}
+	
+    /**
+     * Reads the status transitions of a given project, using the project key and various ids 
+     * as filters, and passes each of them to the given handler (see {@link ChangeHistoryScanner}).
+     * 
+     * @param key - Project key.
+     * @param newStatusIds - List of allowable new status ids from transitions (can be null).
+     * @param issueTypeIds - List of ids for allowable issue types (can be null).
+     * @param earliestDate - Earliest allowable date for created issues (can be null). 
+     * Format of parameter must be: yyyy-mm-dd.
+     * @param excludeCurrStatusIds - List of current status ids to exclude (can be null).
+     * @param handler - Handler receiving every status transition.
+     * @return True if the transitions were passed in order of change date across the project.
+     */
+	private boolean visitChangeHistory(String key, List<String> newStatusIds, List<String> issueTypeIds, 
+			String earliestDate, List<String> excludeCurrStatusIds, ChangeHistoryScanner.TransitionHandler handler) {
+    	// Sets earliest date object, if any
+    	Date date = parseEarliestDate(earliestDate);
     	
     	// Gets project object for given key
     	ProjectManager projectManager = ComponentAccessor.getProjectManager();
     	Project project = projectManager.getProjectObjByKey(key);
+    	if (project == null)
+    		return true;
     	
-    	// Gets change history manager for later use
-    	ChangeHistoryManager historyManager = ComponentAccessor.getChangeHistoryManager();
-    	
-    	// Gets current logged in user
-    	User user = ComponentAccessor.getJiraAuthenticationContext().getUser().getDirectoryUser();
-    	
-    	// Gets all issues for given project and extracts their change histories
-    	IssueManager issueManager = ComponentAccessor.getIssueManager();
-    	try {
-			Collection<Long> issueIds = issueManager.getIssueIdsForProject(project.getId());
-			List<Issue> issueList = issueManager.getIssueObjects(issueIds);
-			
-			// Removes any issues outside of the allowable date and list of issue types
-			for (Iterator<Issue> iterator = issueList.iterator(); iterator.hasNext();) {
-				Issue issue = iterator.next();
-				if ((date != null && issue.getUpdated().before(date)) 
-						|| (issueTypeIds != null && !issueTypeIds.isEmpty() && !issueTypeIds.contains(issue.getIssueTypeId()))
-						|| (excludeCurrStatusIds != null && !excludeCurrStatusIds.isEmpty() && excludeCurrStatusIds.contains(issue.getStatusId())))
-					iterator.remove();
-				
-			}
-			
-			// Efficiently extracts change history data for given list of issues
-			for (ChangeHistory history : historyManager.getChangeHistoriesForUser(issueList, user)) {
-		    	Issue issue = history.getIssue();		// Gets corresponding issue for history
-		    	updateDataMapList(changeList, issue, project, date, newStatusIds, history);
-			}
-		} catch (GenericEntityException e) {
-			e.printStackTrace();
-		}
-    	
-    	return changeList;
+    	return scanner.scan(project, newStatusIds, issueTypeIds, date, excludeCurrStatusIds, handler);
     }
 	
 	/**
-	 * Updates given change history mapping list based on change history and 
-	 * other parameters.
+	 * Parses the earliest allowable date of a request.
 	 * 
-	 * @param changeList - List of mappings for change history parameters, which 
-	 * will be updated by this function.
-	 * @param issue - Issue object associated with change history.
-	 * @param project - Project object associated with change history.
-	 * @param earliestDate - Earliest allowable transition.
-	 * @param newStatusIds - Ids of new status associated with status transition. 
-	 * If this parameter isn't null, the only transitions that will be mapped will 
-	 * be the ones whose new status ids match the given newStatusId value.
-	 * @param history - Change History object containing all the change history 
-	 * data to extract.
+	 * @param earliestDate - Date string (formatted as yyyy-MM-dd), or null/empty value.
+	 * @return Earliest date, or null if none is given or it can't be parsed.
 	 */
-	private void updateDataMapList(List<Map<String, Object>> changeList, Issue issue, Project project, 
-			Date earliestDate, List<String> newStatusIds, ChangeHistory history) {
-		// Iterates through the change history of the given issue
-		for (ChangeItemBean changeItemBean : history.getChangeItemBeans()) {
-			if (changeItemBean.getField().equals("status") && 
-					(earliestDate == null || !changeItemBean.getCreated().before(earliestDate))  &&
-					(newStatusIds == null || newStatusIds.isEmpty() || newStatusIds.contains(changeItemBean.getTo()))) {
-				Map<String, Object> map = new HashMap<String, Object>();
-				map.put("changeDate", changeItemBean.getCreated());
-				map.put("id", issue.getId());
-				map.put("key", issue.getKey());
-				map.put("projectId", project.getId());
-	    		map.put("projectKey", project.getKey());
-	   			map.put("projectName", project.getName());
-	   			map.put("issueTypeId", issue.getIssueTypeId());
-				map.put("issueTypeName", issue.getIssueTypeObject().getName());
-	   			map.put("oldStatusId", changeItemBean.getFrom());
-	   			map.put("oldStatus", changeItemBean.getFromString());
-	   			map.put("newStatusId", changeItemBean.getTo() + " " + issue.getIssueTypeId());
-	   			map.put("newStatus", changeItemBean.getToString());
-    			changeList.add(map);
-			}
+	private static Date parseEarliestDate(String earliestDate) {
+		if (earliestDate == null || earliestDate.equals(""))
+			return null;
+		try {
+			return new SimpleDateFormat("yyyy-MM-dd").parse(earliestDate);
+		} catch (ParseException e) {
+			e.printStackTrace();
+			return null;
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Passes the change data of the given status transition to the given sink.
+	 * 
+	 * @param sink - Sink receiving the change data.
+	 * @param issue - Reference to the issue associated with the transition.
+	 * @param project - Project object associated with the transition.
+	 * @param transition - Status transition to be passed.
+	 * @param fieldSet - Attributes to fill.
+	 * @param metadata - Metadata shared by the changes of the response.
+	 */
+	private void addChangeData(RecordSink<? super ChangeDataContainer> sink, IssueReference issue, Project project, 
+			StatusTransition transition, FieldSet fieldSet, MetadataCache metadata) {
+		String issueTypeId = metadata.intern(issue.getIssueTypeId());
+		sink.add(new ChangeDataContainer(fieldSet, issue.getId(), issue.getKey(), transition.getChangeTime(), 
+				project.getId(), project.getKey(), project.getName(), issueTypeId, 
+				metadata.getIssueTypeName(issueTypeId), 
+				metadata.intern(transition.getOldStatusId()), metadata.intern(transition.getOldStatus()), 
+				metadata.intern(transition.getNewStatusId() + " " + issueTypeId), 
+				metadata.intern(transition.getNewStatus())));
+	}
+}
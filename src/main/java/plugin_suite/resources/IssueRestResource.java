@@ -1,30 +1,46 @@
 package plugin_suite.resources;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import javax.inject.Inject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 
 import com.atlassian.crowd.embedded.api.User;
-import com.atlassian.jira.bc.issue.search.SearchService;
-import com.atlassian.jira.bc.issue.search.SearchService.ParseResult;
 import com.atlassian.jira.component.ComponentAccessor;
 import com.atlassian.jira.issue.CustomFieldManager;
 import com.atlassian.jira.issue.Issue;
 import com.atlassian.jira.issue.search.SearchException;
 import com.atlassian.jira.issue.search.SearchResults;
 import com.atlassian.jira.issue.fields.CustomField;
-import com.atlassian.jira.issue.issuetype.IssueType;
 import com.atlassian.jira.project.Project;
 import com.atlassian.jira.project.ProjectManager;
-import com.atlassian.jira.web.bean.PagerFilter;
+import com.atlassian.query.Query;
 
+import plugin_suite.cache.ResultCache;
+import plugin_suite.concurrent.AdmissionLimiter;
+import plugin_suite.concurrent.SingleFlight;
+import plugin_suite.concurrent.WorkerPool;
+import plugin_suite.jobs.Job;
 import plugin_suite.models.ErrorRestResourceModel;
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.IssuePageRestResourceModel;
 import plugin_suite.models.IssueRestResourceModel;
+import plugin_suite.models.IssueRestResourceModel.IssueDataContainer;
+import plugin_suite.models.MetadataCache;
+import plugin_suite.rollup.DailyRollupStore;
+import plugin_suite.search.FieldProjection;
+import plugin_suite.search.IssueHistogramHelper;
+import plugin_suite.search.IssueSearchHelper;
+import plugin_suite.search.PageCursor;
+import plugin_suite.search.PortfolioHelper;
+import plugin_suite.streaming.JsonRecordWriter;
+import plugin_suite.streaming.ListRecordSink;
+import plugin_suite.streaming.RecordSink;
 
 /**
  * A resource of issue data.
@@ -33,153 +49,478 @@ import plugin_suite.models.IssueRestResourceModel;
 @Consumes({MediaType.APPLICATION_JSON})
 @Produces({MediaType.APPLICATION_JSON})
 public class IssueRestResource {
+	// Attribute holding the custom field values of an issue
+	private static final String CUSTOM_FIELDS_ATTRIBUTE = "fields";
+	
+	private final DailyRollupStore rollupStore;
+	private final WorkerPool workerPool;
+	
+	@Inject
+	public IssueRestResource(DailyRollupStore rollupStore, WorkerPool workerPool) {
+		this.rollupStore = rollupStore;
+		this.workerPool = workerPool;
+	}
+	
 	@GET
     @Produces({MediaType.APPLICATION_JSON})
-    public Response getIssueData(@QueryParam("key") String key, 
-    		@QueryParam("issueTypeId") List<String> issueTypeIds,
-    		@QueryParam("dateFieldId") String dateFieldId,
-    		@QueryParam("earliestDate") String earliestDate) {
-        if(key != null)
-        	return Response.ok(new IssueRestResourceModel(
-        			getIssueDataFromProject(key, issueTypeIds, dateFieldId, earliestDate)
-        	).getIssueDataContainers()).build();
-        else
-            return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+    public Response getIssueData(@QueryParam("key") final List<String> keys, 
+    		@QueryParam("categoryId") final String categoryId,
+    		@QueryParam("issueTypeId") final List<String> issueTypeIds,
+    		@QueryParam("dateFieldId") final String dateFieldId,
+    		@QueryParam("earliestDate") final String earliestDate,
+    		@QueryParam("fields") final List<String> fields,
+    		@QueryParam("stream") @DefaultValue("false") final boolean stream,
+    		@QueryParam("startAt") final Integer startAt,
+    		@QueryParam("maxResults") final Integer maxResults,
+    		@QueryParam("cursor") final String cursor) {
+    	// Identical requests (e.g. from several copies of a gadget refreshing at once) share a single search
+    	String requestKey = !stream ? SingleFlight.key("issues", keys, categoryId, issueTypeIds, dateFieldId, 
+    			earliestDate, fields, startAt, maxResults, cursor) : null;
+    	return ResourceAdmission.admit(AdmissionLimiter.ISSUES, SingleFlight.ISSUES, requestKey, new ResourceAdmission.Call() {
+    		public Response call() {
+    			if (PortfolioHelper.isPortfolio(keys, categoryId)) {
+    				if (startAt != null || maxResults != null || cursor != null)
+    					return Response.ok(new ErrorRestResourceModel("Invalid Page", 
+    							"Paging is only supported for a single project.")).build();
+    				return getPortfolioIssueData(keys, categoryId, issueTypeIds, dateFieldId, earliestDate, fields, stream);
+    			}
+    	
+    			List<String> projectKeys = FieldSet.split(keys);
+    			String key = !projectKeys.isEmpty() ? projectKeys.get(0) : null;
+    			if(key != null && (startAt != null || maxResults != null || cursor != null))
+    				return getIssuePage(key, issueTypeIds, dateFieldId, earliestDate, fields, startAt, maxResults, cursor);
+    			else if(key != null && stream)
+    				return Response.ok(getIssueDataStream(key, issueTypeIds, dateFieldId, earliestDate, fields)).build();
+    			else if(key != null)
+    				return Response.ok(getCachedIssueData(key, issueTypeIds, dateFieldId, earliestDate, fields)).build();
+    			else
+    				return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+    		}
+    	});
+    }
+    
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @Path("/histogram")
+    public Response getIssueHistogram(@QueryParam("key") final String key, 
+    		@QueryParam("issueTypeId") final List<String> issueTypeIds,
+    		@QueryParam("dateFieldId") final String dateFieldId,
+    		@QueryParam("dateInterval") @DefaultValue("7") final int dateInterval,
+    		@QueryParam("dataRange") @DefaultValue("30") final int dataRange) {
+    	// Identical requests share a single search, like those of the issue data
+    	String requestKey = SingleFlight.key("histogram", key, issueTypeIds, dateFieldId, dateInterval, dataRange);
+    	return ResourceAdmission.admit(AdmissionLimiter.ISSUES, SingleFlight.ISSUES, requestKey, new ResourceAdmission.Call() {
+    		public Response call() {
+    			if (key == null)
+    				return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+    			else if (dateFieldId == null)
+    				return Response.ok(new ErrorRestResourceModel("Invalid Field", "Please provide valid date field id.")).build();
+    			else if (dateInterval <= 0 || dataRange <= 0)
+    				return Response.ok(new ErrorRestResourceModel("Invalid Range", 
+    						"Please provide a positive date interval and data range.")).build();
+    			else
+    				return Response.ok(IssueHistogramHelper.getCachedIssueHistogram(key, issueTypeIds, dateFieldId, dateInterval, dataRange, 
+    						rollupStore)).build();
+    		}
+    	});
     }
     
     @GET
     @Produces({MediaType.APPLICATION_JSON})
     @Path("/{key}")
-    public Response getIssueDataFromPath(@PathParam("key") String key) {
-    	return Response.ok(new IssueRestResourceModel(
-    			getIssueDataFromProject(key, null, null, null)
-    	).getIssueDataContainers()).build();
+    public Response getIssueDataFromPath(@PathParam("key") final String key, 
+    		@QueryParam("fields") final List<String> fields,
+    		@QueryParam("stream") @DefaultValue("false") final boolean stream,
+    		@QueryParam("startAt") final Integer startAt,
+    		@QueryParam("maxResults") final Integer maxResults,
+    		@QueryParam("cursor") final String cursor) {
+    	String requestKey = !stream ? SingleFlight.key("issues/key", key, fields, startAt, maxResults, cursor) : null;
+    	return ResourceAdmission.admit(AdmissionLimiter.ISSUES, SingleFlight.ISSUES, requestKey, new ResourceAdmission.Call() {
+    		public Response call() {
+    			if (startAt != null || maxResults != null || cursor != null)
+    				return getIssuePage(key, null, null, null, fields, startAt, maxResults, cursor);
+    			else if (stream)
+    				return Response.ok(getIssueDataStream(key, null, null, null, fields)).build();
+    	
+    			return Response.ok(getCachedIssueData(key, null, null, null, fields)).build();
+    		}
+    	});
     }
     
     /**
-     * Gets parameters for issues within a given project, and returns a list of mappings for each 
-     * significant field within the issue.
+     * Gets the issue data of a given project from the result cache, computing it on a miss.
+     * 
+     * @param key - Project key associated with the desired issue(s).
+     * @param issueTypeIds - Ids for acceptable issue types (can be null).
+     * @param dateFieldId - Id for date field containing the desired data (can be null).
+     * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest 
+     * acceptable data (can be null).
+     * @param fields - Names of the attributes and ids of the custom fields to return (see 
+     * {@link #getFieldSet(List)} and {@link #getProjection(List, CustomField)}).
+     * @return List of issue data containers, sorted by creation date.
+     */
+    private List<IssueDataContainer> getCachedIssueData(final String key, final List<String> issueTypeIds, 
+    		final String dateFieldId, final String earliestDate, final List<String> fields) {
+    	return ResultCache.getInstance().get(ResultCache.ISSUES, key, 
+    			Arrays.asList("list", issueTypeIds, dateFieldId, earliestDate, FieldSet.split(fields)), 
+    			new ResultCache.Loader<List<IssueDataContainer>>() {
+    		public List<IssueDataContainer> load() {
+    			return new IssueRestResourceModel(
+    					getIssueDataFromProject(key, issueTypeIds, dateFieldId, earliestDate, fields)
+    			).getIssueDataContainers();
+    		}
+    	});
+    }
+    
+    /**
+     * Gets the issue data of several projects, fetching (or computing) the data of each project 
+     * in parallel and merging them in order of creation date.
+     * 
+     * @param keys - Project keys, either repeated or comma separated (can be null).
+     * @param categoryId - Id of a project category whose projects are included (can be null).
+     * @param issueTypeIds - Ids for acceptable issue types (can be null).
+     * @param dateFieldId - Id for date field containing the desired data (can be null).
+     * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest 
+     * acceptable data (can be null).
+     * @param fields - Names of the attributes and ids of the custom fields to return (see 
+     * {@link #getFieldSet(List)} and {@link #getProjection(List, CustomField)}).
+     * @param stream - Whether the merged data is written as a stream.
+     * @return Response containing the merged issue data, or an error if no project is selected.
+     */
+    private Response getPortfolioIssueData(List<String> keys, String categoryId, final List<String> issueTypeIds, 
+    		final String dateFieldId, final String earliestDate, final List<String> fields, boolean stream) {
+    	List<Project> projects = PortfolioHelper.getProjects(keys, categoryId);
+    	if (projects.isEmpty())
+    		return Response.ok(new ErrorRestResourceModel("Invalid Key", 
+    				"Please provide valid project keys or project category id.")).build();
+    	
+    	List<IssueDataContainer> issueData = PortfolioHelper.mergeSorted(PortfolioHelper.fanOut(workerPool, projects, 
+    			new PortfolioHelper.ProjectTask<List<IssueDataContainer>>() {
+    		public List<IssueDataContainer> run(Project project) {
+    			return getCachedIssueData(project.getKey(), issueTypeIds, dateFieldId, earliestDate, fields);
+    		}
+    	}));
+    	
+    	if (stream)
+    		return Response.ok(JsonRecordWriter.stream(issueData)).build();
+    	return Response.ok(issueData).build();
+    }
+    
+    /**
+     * Produces a streaming entity that writes the issue data of a given project as a JSON 
+     * array, one window of issues at a time as each one is read from the index. Issues are 
+     * written in order of creation date, but are never collected into a single list, so memory 
+     * use does not grow with the number of matching issues.
+     * 
+     * @param key - Project key associated with the desired issue(s).
+     * @param issueTypeIds - Ids for acceptable issue types (can be null).
+     * @param dateFieldId - Id for date field containing the desired data (can be null).
+     * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest 
+     * acceptable data (can be null).
+     * @param fields - Names of the attributes and ids of the custom fields to return (see 
+     * {@link #getFieldSet(List)} and {@link #getProjection(List, CustomField)}).
+     * @return Streaming output that writes the issue data when the response is sent.
+     */
+    private StreamingOutput getIssueDataStream(final String key, final List<String> issueTypeIds, 
+    		final String dateFieldId, final String earliestDate, final List<String> fields) {
+    	return new StreamingOutput() {
+			public void write(OutputStream output) throws IOException {
+				JsonRecordWriter<IssueDataContainer> writer = new JsonRecordWriter<IssueDataContainer>(output);
+				writer.begin();
+				try {
+					getIssueDataFromProject(key, issueTypeIds, dateFieldId, earliestDate, fields, writer);
+				} catch (SearchException e) {
+					// Leaves the array unterminated, so the client can't mistake the issues 
+					// written so far for the whole data
+					throw new IOException("Issue search failed.", e);
+				}
+				writer.end();
+			}
+    	};
+    }
+    
+    /**
+     * Gets parameters for issues within a given project, and returns the significant fields of 
+     * each issue.
      * 
      * @param key - Project key associated with the desired issue(s).
      * @param issueTypeIds - Ids for acceptable issue types (null/empty value means all issue types 
      * are acceptable and no issues will be filtered out based on issue type).
      * @param dateFieldId - Id for date field containing the desired data. A null or empty value
-     * means every custom field will be queried for each issue.
+     * means every applicable custom field will be queried for each issue, unless fields are given.
      * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest 
      * acceptable data (based on the field associated with the dateFieldId). A null or empty 
      * value means data will not be filtered based on this date. Note that if the dateFieldId is null 
      * or empty, this field will be ignored.
-     * @return List of field mappings for every issue within a given project.
+     * @param fields - Names of the attributes and ids of the custom fields to return (see 
+     * {@link #getFieldSet(List)} and {@link #getProjection(List, CustomField)}).
+     * @return List of issue data for every issue within a given project.
+     * @throws IllegalStateException If the issues can't be searched, so that a partial list is 
+     * never cached or returned.
+     */
+    private List<IssueDataContainer> getIssueDataFromProject(String key, List<String> issueTypeIds, 
+    		String dateFieldId, String earliestDate, List<String> fields) {
+    	// Initializes issue data list
+    	ListRecordSink<IssueDataContainer> issueDataList = new ListRecordSink<IssueDataContainer>();
+    	try {
+    		getIssueDataFromProject(key, issueTypeIds, dateFieldId, earliestDate, fields, issueDataList);
+    	} catch (SearchException e) {
+    		throw new IllegalStateException("Issue search failed.", e);
+    	}
+    	return issueDataList.getRecords();
+    }
+    
+    /**
+     * Exports the issue data of the given projects for an asynchronous job, one project after
+     * another and in order of creation date within each project. The issues of every project
+     * are counted up front, so that the job can report its progress.
+     *
+     * @param job - Job the data is exported for.
+     * @param projects - Projects associated with the desired issue(s).
+     * @param issueTypeIds - Ids for acceptable issue types (can be null).
+     * @param dateFieldId - Id for date field containing the desired data (can be null).
+     * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest
+     * acceptable data (can be null).
+     * @param fields - Names of the attributes and ids of the custom fields to return (see
+     * {@link #getFieldSet(List)} and {@link #getProjection(List, CustomField)}).
+     * @param sink - Sink receiving the issue data.
+     * @throws SearchException
      */
-    private List<Map<String, Object>> getIssueDataFromProject(String key, List<String> issueTypeIds, 
-    		String dateFieldId, String earliestDate) {
-    	// Initializes issue data mapping
-    	List<Map<String, Object>> issueDataMap = new ArrayList<Map<String, Object>>();
+    void exportIssueData(final Job job, List<Project> projects, List<String> issueTypeIds, String dateFieldId,
+    		String earliestDate, List<String> fields, final RecordSink<? super IssueDataContainer> sink)
+    		throws SearchException {
+    	User user = ComponentAccessor.getJiraAuthenticationContext().getUser().getDirectoryUser();
+    	CustomField field = ComponentAccessor.getCustomFieldManager().getCustomFieldObject(dateFieldId);
+    	for (Project project : projects) {
+    		String jqlQuery = IssueSearchHelper.buildJqlQuery(project, issueTypeIds, field, earliestDate);
+    		job.addTotal((int) IssueSearchHelper.countIssues(user, IssueSearchHelper.parseQuery(user, jqlQuery)));
+    	}
+
+    	for (Project project : projects) {
+    		getIssueDataFromProject(project.getKey(), issueTypeIds, dateFieldId, earliestDate, fields,
+    				new RecordSink<IssueDataContainer>() {
+    			public void add(IssueDataContainer issueData) {
+    				sink.add(issueData);
+    				job.addProcessed(1);
+    			}
+    		});
+    	}
+    }
+
+    /**
+     * Resolves the requested page from either the explicit startAt/maxResults parameters or 
+     * a continuation cursor, and returns the corresponding page of issue data. A cursor takes 
+     * precedence over the explicit parameters, and is only accepted for the same query it was 
+     * issued for.
+     * 
+     * @param key - Project key associated with the desired issue(s).
+     * @param issueTypeIds - Ids for acceptable issue types (can be null).
+     * @param dateFieldId - Id for date field containing the desired data (can be null).
+     * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest 
+     * acceptable data (can be null).
+     * @param fields - Names of the attributes and ids of the custom fields to return (see 
+     * {@link #getFieldSet(List)} and {@link #getProjection(List, CustomField)}).
+     * @param startAt - Index of the first issue to return (defaults to 0).
+     * @param maxResults - Maximum number of issues to return (defaults to the default page size).
+     * @param cursor - Continuation cursor returned with a previous page (can be null).
+     * @return Response containing the page, or an error if the page parameters are invalid.
+     */
+    private Response getIssuePage(final String key, final List<String> issueTypeIds, final String dateFieldId, 
+    		final String earliestDate, final List<String> fields, Integer startAt, Integer maxResults, String cursor) {
+    	final List<String> projectedIds = FieldSet.split(fields);
+    	final String fingerprint = PageCursor.fingerprint(key, issueTypeIds, dateFieldId, earliestDate, projectedIds);
+    	int pageStart = startAt != null ? startAt : 0;
+    	int pageSize = maxResults != null ? maxResults : IssueSearchHelper.DEFAULT_PAGE_SIZE;
+    	
+    	// Continues from the cursor, if any
+    	if (cursor != null) {
+    		PageCursor pageCursor = PageCursor.decode(cursor);
+    		if (pageCursor == null || !pageCursor.matches(fingerprint))
+    			return Response.ok(new ErrorRestResourceModel("Invalid Cursor", 
+    					"Please provide a cursor returned by the same query.")).build();
+    		pageStart = pageCursor.getStartAt();
+    		pageSize = pageCursor.getMaxResults();
+    	}
+    	
+    	if (pageStart < 0 || pageSize <= 0)
+    		return Response.ok(new ErrorRestResourceModel("Invalid Page", 
+    				"Please provide a non-negative startAt and a positive maxResults.")).build();
+    	
+    	final int finalStart = pageStart;
+    	final int finalSize = Math.min(pageSize, IssueSearchHelper.MAX_PAGE_SIZE);
+    	return Response.ok(ResultCache.getInstance().get(ResultCache.ISSUES, key, 
+    			Arrays.asList("page", issueTypeIds, dateFieldId, earliestDate, projectedIds, finalStart, finalSize), 
+    			new ResultCache.Loader<IssuePageRestResourceModel>() {
+    		public IssuePageRestResourceModel load() {
+    			return getIssuePageFromProject(key, issueTypeIds, dateFieldId, earliestDate, projectedIds, 
+    	    			finalStart, finalSize, fingerprint);
+    		}
+    	})).build();
+    }
+    
+    /**
+     * Gets a single page of issue data within a given project, in order of creation date. Only 
+     * the issues of the requested page are loaded from the index.
+     * 
+     * @param key - Project key associated with the desired issue(s).
+     * @param issueTypeIds - Ids for acceptable issue types (can be null).
+     * @param dateFieldId - Id for date field containing the desired data (can be null).
+     * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest 
+     * acceptable data (can be null).
+     * @param fields - Names of the attributes and ids of the custom fields to return (see 
+     * {@link #getFieldSet(List)} and {@link #getProjection(List, CustomField)}).
+     * @param startAt - Index of the first issue to return.
+     * @param maxResults - Maximum number of issues to return.
+     * @param fingerprint - Fingerprint of the query, embedded in the cursor of the following page.
+     * @return Page of issue data, including whether more data remains.
+     * @throws IllegalStateException If the issues can't be searched, so that an empty page is 
+     * never cached or returned.
+     */
+    private IssuePageRestResourceModel getIssuePageFromProject(String key, List<String> issueTypeIds, 
+    		String dateFieldId, String earliestDate, List<String> fields, int startAt, int maxResults, 
+    		String fingerprint) {
+    	ListRecordSink<IssueDataContainer> issueDataList = new ListRecordSink<IssueDataContainer>();
+    	int total = 0;
     	
-    	// Obtains top level parameters responsible for querying certain important data points
     	ProjectManager projectManager = ComponentAccessor.getProjectManager();
 		CustomFieldManager customFieldManager = ComponentAccessor.getCustomFieldManager();
 		User user = ComponentAccessor.getJiraAuthenticationContext().getUser().getDirectoryUser();
-		SearchService searchService = ComponentAccessor.getComponent(SearchService.class);
 		
-		// Gets desired project based on the key passed
 		Project project = projectManager.getProjectObjByKey(key);
+		CustomField field = customFieldManager.getCustomFieldObject(dateFieldId);
+		FieldSet fieldSet = getFieldSet(fields);
+		FieldProjection projection = getProjection(fields, field);
 		
-		// Constructs the issue type portion of the JQL query
-		Collection<IssueType> issueTypes = ComponentAccessor.getConstantsManager().getAllIssueTypeObjects();
-		String issueTypeStr = "";
-		for (IssueType issueType : issueTypes) {
-			if (issueTypeIds.contains(issueType.getId())) {
-				if (issueTypeStr.equals(""))
-					issueTypeStr = getQueryStr(issueType.getName());
-				else
-					issueTypeStr += ", " + getQueryStr(issueType.getName());
-			}
+		String jqlQuery = IssueSearchHelper.buildJqlQuery(project, issueTypeIds, field, earliestDate)
+				+ " ORDER BY created ASC";
+		Query query = IssueSearchHelper.parseQuery(user, jqlQuery);
+		
+		try {
+			SearchResults searchResults = IssueSearchHelper.searchPage(user, query, startAt, maxResults);
+			total = searchResults.getTotal();
+			addIssueData(issueDataList, searchResults.getIssues(), project, fieldSet, projection, new MetadataCache());
+		} catch (SearchException e) {
+			throw new IllegalStateException("Issue search failed.", e);
 		}
 		
-		// Gets custom field associated with given date field id
-    	CustomField field = customFieldManager.getCustomFieldObject(dateFieldId);
-    	
-    	// Constructs JQL accordingly, starting with mandatory project key
-		String jqlQuery = "project = " + getQueryStr(project.getName());
+		// Issues a cursor for the following page, if any data remains
+		int nextStart = startAt + issueDataList.getRecords().size();
+		String nextCursor = null;
+		if (nextStart < total && !issueDataList.getRecords().isEmpty())
+			nextCursor = new PageCursor(nextStart, maxResults, fingerprint).encode();
 		
-		// Adds issue type(s) to query, if any
-		if (!issueTypeStr.isEmpty())
-			jqlQuery += " AND type IN (" + issueTypeStr + ")";
-			
-		// Adds field and earliest date to query, if any
-		if (field != null && earliestDate != null && !earliestDate.isEmpty())
-			jqlQuery +=  " AND " + getQueryStr(field.getFieldName()) + " >= " + earliestDate;
+		return new IssuePageRestResourceModel(startAt, maxResults, total, nextCursor, issueDataList.getRecords());
+    }
+    
+    /**
+     * Gets parameters for issues within a given project, and passes the significant fields of 
+     * each issue to the given sink, in order of creation date.
+     * 
+     * @param key - Project key associated with the desired issue(s).
+     * @param issueTypeIds - Ids for acceptable issue types (can be null).
+     * @param dateFieldId - Id for date field containing the desired data (can be null).
+     * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest 
+     * acceptable data (can be null).
+     * @param fields - Names of the attributes and ids of the custom fields to return (see 
+     * {@link #getFieldSet(List)} and {@link #getProjection(List, CustomField)}).
+     * @param sink - Sink receiving the issue data for every issue within a given project.
+     * @throws SearchException If the issues can't be searched, in which case the sink may 
+     * have received the issues of the first pages only.
+     */
+    private void getIssueDataFromProject(String key, List<String> issueTypeIds, 
+    		String dateFieldId, String earliestDate, List<String> fields, final RecordSink<IssueDataContainer> sink) 
+    		throws SearchException {
+    	// Obtains top level parameters responsible for querying certain important data points
+    	ProjectManager projectManager = ComponentAccessor.getProjectManager();
+		CustomFieldManager customFieldManager = ComponentAccessor.getCustomFieldManager();
+		User user = ComponentAccessor.getJiraAuthenticationContext().getUser().getDirectoryUser();
 		
-		// Gets the results of parsing the JQL query
-		ParseResult parseResult = searchService.parseQuery(user, jqlQuery);
+		// Gets desired project based on the key passed
+		final Project project = projectManager.getProjectObjByKey(key);
 		
-		try {
-			// Searches for issues that meet given criteria
-			SearchResults searchResults = searchService.search(user,  parseResult.getQuery(), 
-					PagerFilter.getUnlimitedFilter());
-			List<Issue> issueList = searchResults.getIssues();
-	    	
-	    	for (Issue issue : issueList)
-				updateDataMapList(issueDataMap, issue, project, field);
-		} catch (SearchException e) {
-			e.printStackTrace();
-		}
+		// Gets custom field associated with given date field id
+    	CustomField field = customFieldManager.getCustomFieldObject(dateFieldId);
+    	
+    	// Resolves the attributes and custom fields to return for every issue
+    	final FieldSet fieldSet = getFieldSet(fields);
+    	final FieldProjection projection = getProjection(fields, field);
+    	final MetadataCache metadata = new MetadataCache();
+    	
+    	// Constructs JQL accordingly, then parses it
+		String jqlQuery = IssueSearchHelper.buildJqlQuery(project, issueTypeIds, field, earliestDate)
+				+ " ORDER BY created ASC";
+		Query query = IssueSearchHelper.parseQuery(user, jqlQuery);
 		
-		return issueDataMap;
+		// Searches for issues that meet given criteria, reading field values a window at a time
+		IssueSearchHelper.visitIssuePages(user, query, IssueSearchHelper.DEFAULT_PAGE_SIZE, 
+				new IssueSearchHelper.IssuePageVisitor() {
+			public void visit(List<Issue> issues) {
+				addIssueData(sink, issues, project, fieldSet, projection, metadata);
+			}
+		});
     }
     
     /**
-     * Constructs query string based on passed value. The surrounding 
-     * quotation marks are added according.
+     * Gets the issue attributes requested by the given fields= parameter. Names of issue 
+     * attributes select those attributes only, and if none are given every attribute is 
+     * returned. Requesting custom fields along with some attributes includes the custom field 
+     * mapping as well.
      * 
-     * @param initialStr - Initial string without surrounding quotation marks.
-     * @return Initial string with surrounding quotation marks added.
+     * @param fields - Requested attribute names and custom field ids (can be null).
+     * @return Field set of issue attributes.
      */
-    private String getQueryStr(String initialStr) {
-    	return "\"" + initialStr + "\"";
+    private static FieldSet getFieldSet(List<String> fields) {
+    	FieldSet fieldSet = FieldSet.forRequest(fields, IssueDataContainer.ATTRIBUTES);
+    	if (fieldSet.isSparse() && !fieldSet.includes(CUSTOM_FIELDS_ATTRIBUTE) && !getCustomFieldIds(fields).isEmpty()) {
+    		List<String> names = FieldSet.split(fields);
+    		names.add(CUSTOM_FIELDS_ATTRIBUTE);
+    		fieldSet = FieldSet.forRequest(names, IssueDataContainer.ATTRIBUTES);
+    	}
+    	return fieldSet;
     }
     
     /**
-	 * Updates given issue data mapping list based on given parameters.
+     * Gets the custom fields requested by the given fields= parameter, which are every 
+     * requested name that is not an issue attribute. If none are given, the date field is 
+     * returned, or every applicable custom field if no date field is given either.
+     * 
+     * @param fields - Requested attribute names and custom field ids (can be null).
+     * @param dateField - Custom date field the data is filtered on (can be null).
+     * @return Field projection.
+     */
+    private static FieldProjection getProjection(List<String> fields, CustomField dateField) {
+    	return FieldProjection.forRequest(getCustomFieldIds(fields), dateField);
+    }
+    
+    private static List<String> getCustomFieldIds(List<String> fields) {
+    	List<String> customFieldIds = FieldSet.split(fields);
+    	customFieldIds.removeAll(IssueDataContainer.ATTRIBUTES);
+    	return customFieldIds;
+    }
+    
+    /**
+	 * Passes the issue data of each of the given issues to the given sink, reading the 
+	 * projected custom field values of all of them at once (unless they weren't requested).
 	 * 
-	 * @param issueList - List of mappings for issue parameters, which 
-	 * will be updated by this function.
-	 * @param issue - Issue object containing desirable data to be extracted.
-	 * @param project - Project object associated with issue.
-	 * @param dateField - Custom date field to be extracted (if null, all custom field 
-	 * data for given issue will be extracted).
+	 * @param sink - Sink receiving the issue data.
+	 * @param issues - Issue objects containing desirable data to be extracted.
+	 * @param project - Project object associated with the issues.
+	 * @param fieldSet - Attributes to fill.
+	 * @param projection - Custom fields to be extracted.
+	 * @param metadata - Metadata shared by the issues of the response.
 	 */
-	private void updateDataMapList(List<Map<String, Object>> issueList, Issue issue, Project project, 
-			CustomField dateField) {
-		Map<String, Object> map = new HashMap<String, Object>();
-		map.put("id", issue.getId());
-		map.put("key", issue.getKey());
-		map.put("createdDate", issue.getCreated());
-		map.put("projectId", project.getId());
-		map.put("projectKey", project.getKey());
-		map.put("projectName", project.getName());
-		map.put("issueTypeId", issue.getIssueTypeId());
-		map.put("issueTypeName", issue.getIssueTypeObject().getName());
+	private void addIssueData(RecordSink<IssueDataContainer> sink, List<Issue> issues, Project project, 
+			FieldSet fieldSet, FieldProjection projection, MetadataCache metadata) {
+		Map<Long, Map<String, Object>> fieldValues = null;
+		if (fieldSet.includes(CUSTOM_FIELDS_ATTRIBUTE))
+			fieldValues = projection.getFieldValues(issues);
 		
-		// Maps given custom field only, or all relevant custom field data if null
-		Map<String, Object> fields = new HashMap<String, Object>();
-		if (dateField != null) {
-			fields.put(dateField.getId(), issue.getCustomFieldValue(dateField));
-		} else {
-			List<CustomField> fieldList = ComponentAccessor.getCustomFieldManager()
-												.getCustomFieldObjects(issue);
-			Object value;
-			for (CustomField customField : fieldList) {
-				value = issue.getCustomFieldValue(customField);
-				
-				// Only maps values that aren't null or empty
-				if (value != null && value != "")
-					fields.put(customField.getId(), value);
-			}
+		for (Issue issue : issues) {
+			String issueTypeId = metadata.intern(issue.getIssueTypeId());
+			sink.add(new IssueDataContainer(fieldSet, issue.getId(), issue.getKey(), issue.getCreated(), 
+					project.getId(), project.getKey(), project.getName(), issueTypeId, 
+					metadata.getIssueTypeName(issueTypeId), 
+					fieldValues != null ? fieldValues.get(issue.getId()) : null));
 		}
-		map.put("fields", fields);
-		
-		issueList.add(map);
 	}
 }
@@ -0,0 +1,190 @@
+package plugin_suite.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.*;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+
+import plugin_suite.concurrent.WorkerPool;
+import plugin_suite.history.TransitionEventStore;
+import plugin_suite.jobs.Job;
+import plugin_suite.jobs.JobManager;
+import plugin_suite.models.ErrorRestResourceModel;
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.JobRestResourceModel;
+import plugin_suite.models.HistoryRestResourceModel.ChangeDataContainer;
+import plugin_suite.rollup.DailyRollupStore;
+import plugin_suite.search.PortfolioHelper;
+import plugin_suite.streaming.JsonRecord;
+import plugin_suite.streaming.RecordSink;
+
+/**
+ * A resource for asynchronous jobs, which export the same data as the issue and change history 
+ * resources without holding on to a request thread. A job is submitted with the parameters of 
+ * its resource, polled for its status and progress, and its result is then downloaded as a 
+ * gzipped JSON array. Every user only sees (and may only cancel) their own jobs.
+ */
+@Path("/jobs")
+@Consumes({MediaType.APPLICATION_JSON})
+@Produces({MediaType.APPLICATION_JSON})
+public class JobRestResource {
+	// Types of job, named after the resource whose data they export
+	public static final String TYPE_ISSUES = "issues";
+	public static final String TYPE_CHANGE_HISTORY = "changehistory";
+	
+	private static final String GZIP_MEDIA_TYPE = "application/gzip";
+	
+	// Status code for a user who already has as many active jobs as allowed
+	private static final int TOO_MANY_REQUESTS = 429;
+	
+	private final JobManager jobManager;
+	private final IssueRestResource issueResource;
+	private final HistoryRestResource historyResource;
+	
+	@Inject
+	public JobRestResource(JobManager jobManager, DailyRollupStore rollupStore, TransitionEventStore transitionStore, 
+			WorkerPool workerPool) {
+		this.jobManager = jobManager;
+		this.issueResource = new IssueRestResource(rollupStore, workerPool);
+		this.historyResource = new HistoryRestResource(transitionStore, workerPool);
+	}
+	
+	@POST
+	@Produces({MediaType.APPLICATION_JSON})
+	public Response submitJob(@QueryParam("type") String type, 
+			@QueryParam("key") List<String> keys, 
+			@QueryParam("categoryId") String categoryId,
+			@QueryParam("issueTypeId") final List<String> issueTypeIds,
+			@QueryParam("dateFieldId") final String dateFieldId,
+			@QueryParam("earliestDate") final String earliestDate,
+			@QueryParam("newStatusId") final List<String> newStatusIds,
+			@QueryParam("excludeStatusId") final List<String> excludeCurrStatusIds,
+			@QueryParam("fields") final List<String> fields,
+			@Context UriInfo uriInfo) {
+		String owner = getUserKey();
+		if (owner == null)
+			return getNotLoggedInResponse();
+		if (!TYPE_ISSUES.equals(type) && !TYPE_CHANGE_HISTORY.equals(type))
+			return Response.ok(new ErrorRestResourceModel("Invalid Type", 
+					"Please provide job type " + TYPE_ISSUES + " or " + TYPE_CHANGE_HISTORY + ".")).build();
+		
+		final List<Project> projects = PortfolioHelper.getProjects(keys, categoryId);
+		if (projects.isEmpty())
+			return Response.ok(new ErrorRestResourceModel("Invalid Key", 
+					"Please provide valid project keys or project category id.")).build();
+		
+		JobManager.Work work;
+		if (TYPE_ISSUES.equals(type)) {
+			work = new JobManager.Work() {
+				public void run(Job job, RecordSink<JsonRecord> sink) throws Exception {
+					issueResource.exportIssueData(job, projects, issueTypeIds, dateFieldId, earliestDate, fields, sink);
+				}
+			};
+		} else {
+			final FieldSet fieldSet = FieldSet.forRequest(fields, ChangeDataContainer.ATTRIBUTES);
+			work = new JobManager.Work() {
+				public void run(Job job, RecordSink<JsonRecord> sink) throws Exception {
+					historyResource.exportChangeHistory(job, projects, newStatusIds, issueTypeIds, earliestDate, 
+							excludeCurrStatusIds, fieldSet, sink);
+				}
+			};
+		}
+		
+		Job job;
+		try {
+			job = jobManager.submit(owner, type, work);
+		} catch (RejectedExecutionException e) {
+			return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+					.entity(new ErrorRestResourceModel("Busy", "Too many jobs are queued, please try again later."))
+					.build();
+		}
+		if (job == null)
+			return Response.status(TOO_MANY_REQUESTS)
+					.entity(new ErrorRestResourceModel("Too Many Jobs", "Please wait for one of your " 
+							+ JobManager.MAX_ACTIVE_JOBS_PER_USER + " active jobs to finish, or cancel it."))
+					.build();
+		
+		return Response.status(Response.Status.ACCEPTED).entity(new JobRestResourceModel(job))
+				.location(uriInfo.getAbsolutePathBuilder().path(job.getId()).build()).build();
+	}
+	
+	@GET
+	@Produces({MediaType.APPLICATION_JSON})
+	public Response getJobs() {
+		String owner = getUserKey();
+		if (owner == null)
+			return getNotLoggedInResponse();
+		
+		List<JobRestResourceModel> jobs = new ArrayList<JobRestResourceModel>();
+		for (Job job : jobManager.getJobs(owner))
+			jobs.add(new JobRestResourceModel(job));
+		return Response.ok(jobs).build();
+	}
+	
+	@GET
+	@Produces({MediaType.APPLICATION_JSON})
+	@Path("/{id}")
+	public Response getJob(@PathParam("id") String id) {
+		Job job = jobManager.getJob(id, getUserKey());
+		if (job == null)
+			return getNotFoundResponse();
+		return Response.ok(new JobRestResourceModel(job)).build();
+	}
+	
+	@GET
+	@Produces({GZIP_MEDIA_TYPE, MediaType.APPLICATION_JSON})
+	@Path("/{id}/result")
+	public Response getJobResult(@PathParam("id") String id) {
+		Job job = jobManager.getJob(id, getUserKey());
+		if (job == null)
+			return getNotFoundResponse();
+		
+		if (job.getState() != Job.State.DONE || job.getResult() == null)
+			return Response.status(Response.Status.CONFLICT).type(MediaType.APPLICATION_JSON_TYPE)
+					.entity(new ErrorRestResourceModel("Not Finished", "Job is " + job.getState().name() 
+							+ ", only the result of a finished job can be downloaded.")).build();
+		
+		return Response.ok(job.getResult(), GZIP_MEDIA_TYPE)
+				.header("Content-Disposition", "attachment; filename=\"" + job.getType() + "-" + job.getId() + ".json.gz\"")
+				.build();
+	}
+	
+	@DELETE
+	@Produces({MediaType.APPLICATION_JSON})
+	@Path("/{id}")
+	public Response cancelJob(@PathParam("id") String id) {
+		Job job = jobManager.getJob(id, getUserKey());
+		if (job == null)
+			return getNotFoundResponse();
+		
+		jobManager.cancel(job);
+		return Response.noContent().build();
+	}
+	
+	/**
+	 * Gets the key of the logged in user, who owns the jobs they submit.
+	 * 
+	 * @return User key, or null if nobody is logged in.
+	 */
+	private static String getUserKey() {
+		ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+		return user != null ? user.getKey() : null;
+	}
+	
+	private static Response getNotLoggedInResponse() {
+		return Response.status(Response.Status.UNAUTHORIZED)
+				.entity(new ErrorRestResourceModel("Unauthorized", "Please log in to run jobs.")).build();
+	}
+	
+	private static Response getNotFoundResponse() {
+		return Response.status(Response.Status.NOT_FOUND)
+				.entity(new ErrorRestResourceModel("Invalid Job", "Please provide the id of one of your jobs.")).build();
+	}
+}
@@ -1,19 +1,14 @@
 package plugin_suite.resources;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-
-import com.atlassian.jira.component.ComponentAccessor;
-import com.atlassian.jira.project.Project;
-import com.atlassian.jira.project.ProjectCategory;
-import com.atlassian.jira.project.ProjectManager;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 
-import plugin_suite.models.ProjectRestResourceModel;
+import plugin_suite.cache.ProjectCatalog;
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.ProjectRestResourceModel.ProjectDataContainer;
 
 /**
  * A resource for projects.
@@ -22,68 +17,89 @@ import plugin_suite.models.ProjectRestResourceModel;
 @Consumes({MediaType.APPLICATION_JSON})
 @Produces({MediaType.APPLICATION_JSON})
 public class ProjectRestResource {
-	
+	// Default and largest number of projects returned by a prefix search
+	private static final int DEFAULT_SEARCH_LIMIT = 50;
+	private static final int MAX_SEARCH_LIMIT = 1000;
+
     @GET
     @Produces({MediaType.APPLICATION_JSON})
-    public Response getProject(@QueryParam("key") String key) {
-        if(key != null)
-            return Response.ok(new ProjectRestResourceModel(getProjectParamFromKey(key)).getProjects()).build();
+    public Response getProject(
+    		@QueryParam("key") String key,
+    		@QueryParam("id") Long id,
+    		@QueryParam("q") String prefix,
+    		@QueryParam("limit") @DefaultValue("50") int limit,
+    		@QueryParam("fields") List<String> fields,
+    		@Context Request request) {
+    	ProjectCatalog.Snapshot catalog = ProjectCatalog.getInstance().getSnapshot();
+    	FieldSet fieldSet = FieldSet.forRequest(fields, ProjectDataContainer.ATTRIBUTES);
+
+    	// Every response is determined by the catalog's version and the request's parameters
+    	EntityTag entityTag = new EntityTag(catalog.getVersion());
+    	Response.ResponseBuilder notModified = request.evaluatePreconditions(entityTag);
+    	if (notModified != null)
+    		return notModified.cacheControl(getCacheControl()).build();
+
+    	List<ProjectDataContainer> projects;
+        if (key != null)
+        	projects = select(catalog.getProject(key), fieldSet);
+        else if (id != null)
+        	projects = select(catalog.getProject(id), fieldSet);
+        else if (prefix != null)
+        	projects = select(catalog.search(prefix, Math.max(0, Math.min(limit, MAX_SEARCH_LIMIT))), fieldSet);
         else
-            return Response.ok(new ProjectRestResourceModel(getAllProjectParams()).getProjects()).build();
+        	projects = catalog.getProjects(fieldSet);
+
+        return Response.ok(projects).tag(entityTag).cacheControl(getCacheControl()).build();
     }
-    
+
     @GET
     @Produces({MediaType.APPLICATION_JSON})
     @Path("/{key}")
-    public Response getProjectFromPath(@PathParam("key") String key) {
-        return Response.ok(new ProjectRestResourceModel(getProjectParamFromKey(key)).getProjects()).build();
+    public Response getProjectFromPath(@PathParam("key") String key, @QueryParam("fields") List<String> fields,
+    		@Context Request request) {
+        return getProject(key, null, null, DEFAULT_SEARCH_LIMIT, fields, request);
     }
-    
+
+    /**
+     * Restricts the given project to the requested attributes.
+     *
+     * @param project - Project data (can be null).
+     * @param fieldSet - Attributes to fill.
+     * @return List holding the project data container, or an empty list if there is no
+     * such project.
+     */
+    private static List<ProjectDataContainer> select(ProjectDataContainer project, FieldSet fieldSet) {
+    	List<ProjectDataContainer> projects = new ArrayList<ProjectDataContainer>();
+    	if (project != null)
+    		projects.add(project.select(fieldSet));
+    	return projects;
+    }
+
     /**
-     * Gets parameters for every project.
-     * 
-     * @return List of mappings with project parameters.
+     * Restricts the given projects to the requested attributes.
+     *
+     * @param projects - Project data.
+     * @param fieldSet - Attributes to fill.
+     * @return List of project data containers.
      */
-    private List<Map<String, Object>> getAllProjectParams() {
-    	ProjectManager manager = ComponentAccessor.getProjectManager();
-    	
-    	// Initializes list of project parameter mappings
-    	List<Map<String, Object>> paramList = new ArrayList<Map<String, Object>>();
-    	
-    	// Gets mappings for every project in Jira
-    	for (Project project : manager.getProjectObjects())
-    		paramList.add(getProjectParamFromKey(project.getKey()));
-    	
-    	return paramList;
+    private static List<ProjectDataContainer> select(List<ProjectDataContainer> projects, FieldSet fieldSet) {
+    	List<ProjectDataContainer> selected = new ArrayList<ProjectDataContainer>(projects.size());
+    	for (ProjectDataContainer project : projects)
+    		selected.add(project.select(fieldSet));
+    	return selected;
     }
-    
+
     /**
-     * Obtains project parameters from Jira and returns the necessary ones.
-     * 
-     * @param key - Project key.
-     * @return Map with project parameters.
+     * Gets the cache control for project responses. Clients may keep the catalog, but must
+     * revalidate it with its entity tag, since projects can change at any time.
+     *
+     * @return Cache control for project responses.
      */
-    private Map<String, Object> getProjectParamFromKey(String key) {
-    	ProjectManager manager = ComponentAccessor.getProjectManager();
-		Project project = manager.getProjectObjByKey(key);
-		
-		Map<String, Object> map = new HashMap<String, Object>();
-		
-		// Sets project parameters
-		if (project != null) {
-			map.put("key", project.getKey());
-			map.put("id", project.getId());
-			map.put("name", project.getName());
-			map.put("projectLead", project.getLeadUserName());
-			
-			// Gets project category data
-			ProjectCategory category = project.getProjectCategoryObject();
-			if (category != null)
-				map.put("category", category.getName());
-			else
-				map.put("category", "N/A");
-		}
-    	
-    	return map;
+    private static CacheControl getCacheControl() {
+		CacheControl cacheControl = new CacheControl();
+		cacheControl.setPrivate(true);
+		cacheControl.setMaxAge(0);
+		cacheControl.setMustRevalidate(true);
+		return cacheControl;
     }
-}
\ No newline at end of file
+}
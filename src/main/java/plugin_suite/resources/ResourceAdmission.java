@@ -0,0 +1,131 @@
+package plugin_suite.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.user.ApplicationUser;
+
+import plugin_suite.concurrent.AdmissionLimiter;
+import plugin_suite.concurrent.SingleFlight;
+import plugin_suite.models.ErrorRestResourceModel;
+
+/**
+ * Runs resource methods under the admission limiter of their resource (see 
+ * {@link AdmissionLimiter}), turning rejected requests into 429 or 503 responses that tell the 
+ * client when to try again. Identical requests may also be coalesced ahead of admission (see 
+ * {@link SingleFlight}), so that only one of them takes a slot.
+ */
+class ResourceAdmission {
+	// Status code for a user who already has as many requests running as allowed
+	private static final int TOO_MANY_REQUESTS = 429;
+	
+	/**
+	 * Work done by an admitted request.
+	 */
+	interface Call {
+		Response call();
+	}
+	
+	/**
+	 * Runs the given call once the request is admitted by the given limiter. A streamed 
+	 * response holds on to its slot until it has been written, since that is when its work 
+	 * is done.
+	 * 
+	 * @param limiterName - Name of the limiter of the resource.
+	 * @param call - Work done by the request.
+	 * @return Response of the call, or a rejection if the request was not admitted.
+	 */
+	static Response admit(String limiterName, Call call) {
+		AdmissionLimiter.Permit permit = AdmissionLimiter.get(limiterName).acquire(getUserKey());
+		if (!permit.isAdmitted())
+			return getRejectedResponse(permit);
+		
+		boolean released = true;
+		try {
+			Response response = call.call();
+			if (response.getEntity() instanceof StreamingOutput) {
+				released = false;
+				return Response.fromResponse(response)
+						.entity(holdUntilWritten(permit, (StreamingOutput) response.getEntity())).build();
+			}
+			return response;
+		} finally {
+			if (released)
+				permit.release();
+		}
+	}
+	
+	/**
+	 * Runs the given call once the request is admitted by the given limiter, unless an identical 
+	 * request of the same user is already running, in which case waits for that request and 
+	 * responds as it does. Waiting requests don't take a slot of the limiter.
+	 * 
+	 * @param limiterName - Name of the limiter of the resource.
+	 * @param flightName - Name of the flight of the resource.
+	 * @param requestKey - Identifies the request by its parameters (null value means the request 
+	 * is never coalesced, which is required for streamed responses, since they can only be 
+	 * written once).
+	 * @param call - Work done by the request.
+	 * @return Response of the call, or a rejection if the request was not admitted.
+	 */
+	static Response admit(final String limiterName, String flightName, String requestKey, final Call call) {
+		if (requestKey == null)
+			return admit(limiterName, call);
+		
+		Response response = SingleFlight.get(flightName).execute(SingleFlight.key(requestKey, getUserKey()), 
+				new Callable<Response>() {
+			public Response call() {
+				return admit(limiterName, call);
+			}
+		});
+		
+		// Every caller gets a response of its own, since the container may add headers to it
+		return Response.fromResponse(response).build();
+	}
+	
+	/**
+	 * Builds the response of a rejected request: 429 if the user is over their share of the 
+	 * resource, and 503 if the resource is busy. Either way, Retry-After tells the client when 
+	 * to try again.
+	 * 
+	 * @param permit - Permit of the rejected request.
+	 * @return Rejection response.
+	 */
+	static Response getRejectedResponse(AdmissionLimiter.Permit permit) {
+		AdmissionLimiter limiter = permit.getLimiter();
+		Response.ResponseBuilder builder;
+		if (permit.getDecision() == AdmissionLimiter.Decision.USER_LIMIT)
+			builder = Response.status(TOO_MANY_REQUESTS).entity(new ErrorRestResourceModel("Too Many Requests", 
+					"Please wait for your running " + limiter.getName() + " requests to finish."));
+		else
+			builder = Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(new ErrorRestResourceModel("Busy", 
+					"Too many " + limiter.getName() + " requests are running, please try again later."));
+		return builder.header("Retry-After", String.valueOf(limiter.getRetryAfterSeconds())).build();
+	}
+	
+	/**
+	 * Wraps the given streaming output so that it releases the given permit once written.
+	 */
+	private static StreamingOutput holdUntilWritten(final AdmissionLimiter.Permit permit, final StreamingOutput output) {
+		return new StreamingOutput() {
+			public void write(OutputStream stream) throws IOException, WebApplicationException {
+				try {
+					output.write(stream);
+				} finally {
+					permit.release();
+				}
+			}
+		};
+	}
+	
+	private static String getUserKey() {
+		ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+		return user != null ? user.getKey() : null;
+	}
+}
@@ -0,0 +1,113 @@
+package plugin_suite.resources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.*;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.Permissions;
+import com.atlassian.jira.user.ApplicationUser;
+
+import plugin_suite.history.TransitionEventStore;
+import plugin_suite.models.ErrorRestResourceModel;
+import plugin_suite.models.RollupRestResourceModel;
+import plugin_suite.rollup.BackfilledStore;
+import plugin_suite.rollup.DailyRollupStore;
+import plugin_suite.rollup.RollupStatus;
+
+/**
+ * A resource for the plugin's backfilled stores (the daily issue count rollups and the status 
+ * transition log): lists their backfill state and starts backfills. Only available to 
+ * administrators.
+ */
+@Path("/rollups")
+@Consumes({MediaType.APPLICATION_JSON})
+@Produces({MediaType.APPLICATION_JSON})
+public class RollupRestResource {
+	private final List<BackfilledStore> stores;
+	
+	@Inject
+	public RollupRestResource(DailyRollupStore rollupStore, TransitionEventStore transitionStore) {
+		this.stores = Arrays.<BackfilledStore>asList(rollupStore, transitionStore);
+	}
+	
+	@GET
+	@Produces({MediaType.APPLICATION_JSON})
+	public Response getRollupStatuses() {
+		if (!isAdministrator())
+			return Response.status(Response.Status.FORBIDDEN)
+					.entity(new ErrorRestResourceModel("Forbidden", "Only administrators can view rollups."))
+					.build();
+		
+		return Response.ok(getStatusModels()).build();
+	}
+	
+	@POST
+	@Path("/backfill")
+	@Produces({MediaType.APPLICATION_JSON})
+	public Response startBackfill(@QueryParam("key") String key, @QueryParam("store") String storeName) {
+		if (!isAdministrator())
+			return Response.status(Response.Status.FORBIDDEN)
+					.entity(new ErrorRestResourceModel("Forbidden", "Only administrators can backfill rollups."))
+					.build();
+		
+		// Backfills the given project, or every project if none is given
+		List<Project> projects;
+		if (key != null) {
+			Project project = ComponentAccessor.getProjectManager().getProjectObjByKey(key);
+			if (project == null)
+				return Response.ok(new ErrorRestResourceModel("Invalid Key", "Please provide valid project key.")).build();
+			projects = Collections.singletonList(project);
+		} else {
+			projects = ComponentAccessor.getProjectManager().getProjectObjects();
+		}
+		
+		// Backfills the given store, or every store if none is given
+		boolean found = false;
+		for (BackfilledStore store : stores) {
+			if (storeName == null || storeName.equals(store.getName())) {
+				store.startBackfill(projects);
+				found = true;
+			}
+		}
+		if (!found)
+			return Response.ok(new ErrorRestResourceModel("Invalid Store", "Please provide valid store name.")).build();
+		
+		return Response.status(Response.Status.ACCEPTED).entity(getStatusModels()).build();
+	}
+	
+	/**
+	 * Gets the backfill state of every project that has been backfilled at least once, for 
+	 * every store.
+	 * 
+	 * @return List of rollup models.
+	 */
+	private List<RollupRestResourceModel> getStatusModels() {
+		List<RollupRestResourceModel> models = new ArrayList<RollupRestResourceModel>();
+		for (BackfilledStore store : stores) {
+			for (RollupStatus status : store.getStatuses()) {
+				Project project = ComponentAccessor.getProjectManager().getProjectObj(status.getProjectId());
+				models.add(new RollupRestResourceModel(store.getName(), status.getProjectId(), 
+						project != null ? project.getKey() : null, status.getState(), status.getTimeZoneId(), 
+						status.getUpdated()));
+			}
+		}
+		return models;
+	}
+	
+	/**
+	 * Determines whether the logged in user is a Jira administrator.
+	 * 
+	 * @return True if the user has the administer permission.
+	 */
+	private boolean isAdministrator() {
+		ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+		return user != null && ComponentAccessor.getPermissionManager().hasPermission(Permissions.ADMINISTER, user);
+	}
+}
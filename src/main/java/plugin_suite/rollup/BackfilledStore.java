@@ -0,0 +1,129 @@
+package plugin_suite.rollup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.java.ao.DBParam;
+import net.java.ao.Query;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.jira.project.Project;
+
+/**
+ * Base class for the plugin's persistent stores that are kept current by issue events and 
+ * built for existing data by a backfill job. Tracks the backfill state of every project, so 
+ * that a store's data is only read once the project's backfill is done.
+ */
+public abstract class BackfilledStore implements DisposableBean {
+	// Backfill states of a project
+	public static final String RUNNING = "RUNNING";
+	public static final String READY = "READY";
+	public static final String FAILED = "FAILED";
+	
+	protected final ActiveObjects ao;
+	private final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor();
+	
+	protected BackfilledStore(ActiveObjects ao) {
+		this.ao = ao;
+	}
+	
+	/**
+	 * Gets the name the store's backfill states are recorded under.
+	 * 
+	 * @return Store name.
+	 */
+	public abstract String getName();
+	
+	/**
+	 * Rebuilds the store's data for a single project. Runs on the backfill thread, so it should 
+	 * stop once the thread is interrupted.
+	 * 
+	 * @param project - Project to backfill.
+	 * @return Time zone id the data was built in (null value means the data doesn't depend on 
+	 * a time zone).
+	 * @throws Exception If the backfill failed.
+	 */
+	protected abstract String backfill(Project project) throws Exception;
+	
+	/**
+	 * Stops any backfill still running once the plugin is disabled.
+	 */
+	public void destroy() throws Exception {
+		backfillExecutor.shutdownNow();
+	}
+	
+	/**
+	 * Starts rebuilding the data of the given projects in the background, one project at a 
+	 * time. The data of a project is not read until its backfill is done.
+	 * 
+	 * @param projects - Projects to backfill.
+	 */
+	public void startBackfill(Collection<Project> projects) {
+		for (final Project project : projects) {
+			setState(project.getId(), RUNNING, null);
+			backfillExecutor.execute(new Runnable() {
+				public void run() {
+					try {
+						setState(project.getId(), READY, backfill(project));
+					} catch (Exception e) {
+						e.printStackTrace();
+						setState(project.getId(), FAILED, null);
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Gets the backfill state of every project that has been backfilled at least once.
+	 * 
+	 * @return Backfill states, one per project.
+	 */
+	public List<RollupStatus> getStatuses() {
+		List<RollupStatus> statuses = new ArrayList<RollupStatus>();
+		for (RollupStatus status : ao.find(RollupStatus.class, Query.select().where("STORE = ?", getName())))
+			statuses.add(status);
+		return statuses;
+	}
+	
+	/**
+	 * Gets the backfill state of a single project.
+	 * 
+	 * @param projectId - Id of the project.
+	 * @return Backfill state, or null if the project was never backfilled.
+	 */
+	protected RollupStatus getStatus(long projectId) {
+		RollupStatus[] statuses = ao.find(RollupStatus.class, 
+				Query.select().where("STORE = ? AND PROJECT_ID = ?", getName(), projectId));
+		return statuses.length > 0 ? statuses[0] : null;
+	}
+	
+	/**
+	 * Determines whether the backfill of the given project is done.
+	 * 
+	 * @param projectId - Id of the project.
+	 * @return True if the project's data is complete.
+	 */
+	protected boolean isBackfilled(long projectId) {
+		RollupStatus status = getStatus(projectId);
+		return status != null && READY.equals(status.getState());
+	}
+	
+	private synchronized void setState(long projectId, String state, String timeZoneId) {
+		RollupStatus status = getStatus(projectId);
+		if (status == null)
+			status = ao.create(RollupStatus.class, 
+					new DBParam("STORE", getName()), 
+					new DBParam("PROJECT_ID", projectId), 
+					new DBParam("STATE", state));
+		status.setState(state);
+		status.setTimeZoneId(timeZoneId);
+		status.setUpdated(System.currentTimeMillis());
+		status.save();
+	}
+}
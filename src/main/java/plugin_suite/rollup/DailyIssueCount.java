@@ -0,0 +1,33 @@
+package plugin_suite.rollup;
+
+import net.java.ao.Entity;
+import net.java.ao.schema.Indexed;
+import net.java.ao.schema.NotNull;
+
+/**
+ * Number of issues of a project and issue type whose date field falls on a given day.
+ */
+public interface DailyIssueCount extends Entity {
+	@NotNull
+	@Indexed
+	long getProjectId();
+	void setProjectId(long projectId);
+	
+	@NotNull
+	String getIssueTypeId();
+	void setIssueTypeId(String issueTypeId);
+	
+	@NotNull
+	@Indexed
+	String getFieldId();
+	void setFieldId(String fieldId);
+	
+	// Number of days since 1/1/1970, within the rollup time zone
+	@NotNull
+	@Indexed
+	long getEpochDay();
+	void setEpochDay(long epochDay);
+	
+	long getIssueCount();
+	void setIssueCount(long issueCount);
+}
@@ -0,0 +1,431 @@
+package plugin_suite.rollup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import net.java.ao.DBParam;
+import net.java.ao.Query;
+
+import org.ofbiz.core.entity.GenericValue;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.timezone.TimeZoneManager;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.transaction.TransactionCallback;
+
+import plugin_suite.charts.DateBucketer;
+import plugin_suite.charts.DayCounter;
+
+/**
+ * Persistent, precomputed daily issue counts per (project, issue type, date field, day). Counts 
+ * are kept current one issue at a time by the rollup listener, and are built for existing 
+ * issues by a backfill job an administrator starts per project. Reads only touch one row per 
+ * day, regardless of how many issues the project holds.
+ * 
+ * Days are epoch days within Jira's default time zone, which is recorded with the backfill 
+ * state of every project, so that readers can tell whether the rollups match their time zone.
+ */
+@Named("dailyRollupStore")
+public class DailyRollupStore extends BackfilledStore {
+	public static final String NAME = "daily-counts";
+	
+	// Number of locks the issues and daily counts are spread over
+	private static final int LOCK_STRIPES = 64;
+	
+	// Updates of the same issue, and of the same daily count, exclude each other
+	private final Object[] issueLocks = createLocks();
+	private final Lock[] countLocks = createCountLocks();
+	
+	@Inject
+	public DailyRollupStore(@ComponentImport ActiveObjects ao) {
+		super(ao);
+	}
+	
+	public String getName() {
+		return NAME;
+	}
+	
+	/**
+	 * Gets the time zone new rollups are counted in.
+	 * 
+	 * @return Jira's default time zone.
+	 */
+	public TimeZone getTimeZone() {
+		TimeZoneManager timeZoneManager = ComponentAccessor.getComponent(TimeZoneManager.class);
+		TimeZone timeZone = timeZoneManager != null ? timeZoneManager.getDefaultTimezone() : null;
+		return timeZone != null ? timeZone : TimeZone.getDefault();
+	}
+	
+	/**
+	 * Determines whether a change may move any count of the issue, which is the case if it 
+	 * changes the issue's type or project, or a custom field the issue either holds a date in 
+	 * or is counted under (a date that was cleared).
+	 * 
+	 * @param issue - Issue after the change.
+	 * @param changeItems - Change items of the change.
+	 * @return True if the issue's counts need to be brought up to date.
+	 */
+	public boolean isTrackedChange(Issue issue, List<GenericValue> changeItems) {
+		Set<String> countedFieldIds = null;
+		for (GenericValue changeItem : changeItems) {
+			String field = changeItem.getString("field");
+			if ("jira".equalsIgnoreCase(changeItem.getString("fieldtype"))) {
+				if ("issuetype".equalsIgnoreCase(field) || "project".equalsIgnoreCase(field))
+					return true;
+			} else if ("custom".equalsIgnoreCase(changeItem.getString("fieldtype"))) {
+				// Change items name custom fields rather than identify them, so the name is resolved 
+				// to the current fields of that name, which are then matched by id
+				for (CustomField customField : ComponentAccessor.getCustomFieldManager().getCustomFieldObjectsByName(field)) {
+					if (issue.getCustomFieldValue(customField) instanceof Date)
+						return true;
+					if (countedFieldIds == null)
+						countedFieldIds = getCountedFieldIds(issue.getId());
+					if (countedFieldIds.contains(customField.getId()))
+						return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Brings the counts of the given issue up to date, moving each of its date fields from the 
+	 * day it was last counted under to its current day. Applying the same issue twice changes 
+	 * nothing, so events and backfills may overlap safely.
+	 * 
+	 * @param issue - Issue that was created or updated.
+	 */
+	public void updateIssue(Issue issue) {
+		long issueId = issue.getId();
+		Map<String, Long> currentDays = getDateFieldDays(issue, getTimeZone());
+		
+		synchronized (getLock(issueLocks, issueId)) {
+			IssueDateRollup[] counted = ao.find(IssueDateRollup.class, Query.select().where("ISSUE_ID = ?", issueId));
+			applyDeltas(issueId, getCountDeltas(counted, issue.getProjectObject().getId(), issue.getIssueTypeId(), 
+					currentDays));
+		}
+	}
+	
+	/**
+	 * Removes every count of the given issue.
+	 * 
+	 * @param issueId - Id of the deleted issue.
+	 */
+	public void removeIssue(long issueId) {
+		synchronized (getLock(issueLocks, issueId)) {
+			IssueDateRollup[] counted = ao.find(IssueDateRollup.class, Query.select().where("ISSUE_ID = ?", issueId));
+			applyDeltas(issueId, getCountDeltas(counted, 0, null, Collections.<String, Long>emptyMap()));
+		}
+	}
+	
+	/**
+	 * Determines how the daily counts change when an issue moves from the days it was counted 
+	 * under to its current days. A field that is still counted under the same project, issue 
+	 * type and day changes nothing.
+	 * 
+	 * @param counted - Rollups the issue is currently counted under.
+	 * @param projectId - Id of the issue's current project.
+	 * @param issueTypeId - Id of the issue's current issue type.
+	 * @param currentDays - Mapping of custom field id > epoch day, for every date field the issue 
+	 * currently holds.
+	 * @return Changes of the daily counts, with the removals first.
+	 */
+	public static List<CountDelta> getCountDeltas(IssueDateRollup[] counted, long projectId, String issueTypeId, 
+			Map<String, Long> currentDays) {
+		Map<String, Long> addedDays = new HashMap<String, Long>(currentDays);
+		List<CountDelta> deltas = new ArrayList<CountDelta>();
+		for (IssueDateRollup rollup : counted) {
+			Long currentDay = addedDays.get(rollup.getFieldId());
+			if (currentDay != null && currentDay == rollup.getEpochDay() && rollup.getProjectId() == projectId
+					&& rollup.getIssueTypeId().equals(issueTypeId)) {
+				addedDays.remove(rollup.getFieldId());		// Already counted
+			} else {
+				deltas.add(new CountDelta(rollup.getProjectId(), rollup.getIssueTypeId(), rollup.getFieldId(), 
+						rollup.getEpochDay(), rollup));
+			}
+		}
+		
+		for (Map.Entry<String, Long> entry : addedDays.entrySet())
+			deltas.add(new CountDelta(projectId, issueTypeId, entry.getKey(), entry.getValue(), null));
+		return deltas;
+	}
+	
+	/**
+	 * Determines whether the rollups of the given project are complete and were counted in a 
+	 * time zone with the same rules as the given one.
+	 * 
+	 * @param projectId - Id of the project.
+	 * @param timeZone - Time zone of the reader.
+	 * @return True if the project's rollups can be read in place of searching its issues.
+	 */
+	public boolean isReady(long projectId, TimeZone timeZone) {
+		RollupStatus status = getStatus(projectId);
+		return status != null && READY.equals(status.getState()) && status.getTimeZoneId() != null
+				&& TimeZone.getTimeZone(status.getTimeZoneId()).hasSameRules(timeZone);
+	}
+	
+	/**
+	 * Reads the daily counts of a project's date field, from the given day onwards.
+	 * 
+	 * @param projectId - Id of the project.
+	 * @param issueTypeIds - Ids for acceptable issue types (null/empty value means all issue types 
+	 * are acceptable).
+	 * @param fieldId - Id of the date field.
+	 * @param fromDay - Earliest day to read, as an epoch day.
+	 * @return Counts keyed by epoch day.
+	 */
+	public DayCounter getDailyCounts(long projectId, List<String> issueTypeIds, String fieldId, long fromDay) {
+		StringBuilder where = new StringBuilder("PROJECT_ID = ? AND FIELD_ID = ? AND EPOCH_DAY >= ?");
+		List<Object> params = new ArrayList<Object>();
+		params.add(projectId);
+		params.add(fieldId);
+		params.add(fromDay);
+		if (issueTypeIds != null && !issueTypeIds.isEmpty()) {
+			where.append(" AND ISSUE_TYPE_ID IN (");
+			for (int i = 0; i < issueTypeIds.size(); i++) {
+				where.append(i == 0 ? "?" : ", ?");
+				params.add(issueTypeIds.get(i));
+			}
+			where.append(")");
+		}
+		
+		DayCounter counter = new DayCounter();
+		for (DailyIssueCount count : ao.find(DailyIssueCount.class, Query.select().where(where.toString(), params.toArray())))
+			counter.add(count.getEpochDay(), count.getIssueCount());
+		return counter;
+	}
+	
+	/**
+	 * Rebuilds the rollups of a single project from its current issues.
+	 */
+	protected String backfill(Project project) throws Exception {
+		final long projectId = project.getId();
+		
+		// Clears the project's rows, dropping counts of issues deleted while the plugin was disabled
+		ao.executeInTransaction(new TransactionCallback<Void>() {
+			public Void doInTransaction() {
+				ao.deleteWithSQL(DailyIssueCount.class, "PROJECT_ID = ?", projectId);
+				ao.deleteWithSQL(IssueDateRollup.class, "PROJECT_ID = ?", projectId);
+				return null;
+			}
+		});
+		
+		IssueManager issueManager = ComponentAccessor.getIssueManager();
+		for (Long issueId : issueManager.getIssueIdsForProject(projectId)) {
+			if (Thread.currentThread().isInterrupted())
+				throw new InterruptedException("Backfill of project " + project.getKey() + " was stopped.");
+			
+			Issue issue = issueManager.getIssueObject(issueId);
+			if (issue != null)
+				updateIssue(issue);
+		}
+		
+		return getTimeZone().getID();
+	}
+	
+	/**
+	 * Applies every change of the daily counts of an issue, along with the rollup rows that 
+	 * record them for the issue, in a single transaction, so that a failure never leaves the 
+	 * issue removed from its old days without being added to its new ones. Only changes of the 
+	 * same daily counts exclude each other, so issues counted under different days are updated 
+	 * side by side.
+	 */
+	private void applyDeltas(final long issueId, final List<CountDelta> deltas) {
+		if (deltas.isEmpty())
+			return;
+		
+		// Locks the stripes of every changed count in a fixed order, so that issues sharing 
+		// counts never wait for each other in a cycle
+		Set<Integer> stripes = new TreeSet<Integer>();
+		for (CountDelta delta : deltas)
+			stripes.add(getStripe(delta.getProjectId(), delta.getIssueTypeId(), delta.getFieldId(), delta.getEpochDay()));
+		List<Lock> held = new ArrayList<Lock>();
+		try {
+			for (int stripe : stripes) {
+				countLocks[stripe].lock();
+				held.add(countLocks[stripe]);
+			}
+			
+			ao.executeInTransaction(new TransactionCallback<Void>() {
+				public Void doInTransaction() {
+					for (CountDelta delta : deltas) {
+						addCount(delta.getProjectId(), delta.getIssueTypeId(), delta.getFieldId(), delta.getEpochDay(), 
+								delta.getAmount());
+						if (delta.getRollup() != null)
+							ao.delete(delta.getRollup());
+						else
+							ao.create(IssueDateRollup.class, 
+									new DBParam("ISSUE_ID", issueId), 
+									new DBParam("PROJECT_ID", delta.getProjectId()), 
+									new DBParam("ISSUE_TYPE_ID", delta.getIssueTypeId()), 
+									new DBParam("FIELD_ID", delta.getFieldId()), 
+									new DBParam("EPOCH_DAY", delta.getEpochDay()));
+					}
+					return null;
+				}
+			});
+		} finally {
+			for (int i = held.size() - 1; i >= 0; i--)
+				held.get(i).unlock();
+		}
+	}
+	
+	/**
+	 * Gets the ids of the date fields the given issue is counted under.
+	 */
+	private Set<String> getCountedFieldIds(long issueId) {
+		Set<String> fieldIds = new HashSet<String>();
+		for (IssueDateRollup rollup : ao.find(IssueDateRollup.class, Query.select().where("ISSUE_ID = ?", issueId)))
+			fieldIds.add(rollup.getFieldId());
+		return fieldIds;
+	}
+	
+	/**
+	 * Adds the given amount to a daily count, creating the row on first use and deleting it 
+	 * once it drops to zero.
+	 */
+	private void addCount(long projectId, String issueTypeId, String fieldId, long epochDay, long amount) {
+		DailyIssueCount[] counts = ao.find(DailyIssueCount.class, Query.select().where(
+				"PROJECT_ID = ? AND ISSUE_TYPE_ID = ? AND FIELD_ID = ? AND EPOCH_DAY = ?", 
+				projectId, issueTypeId, fieldId, epochDay));
+		
+		if (counts.length == 0) {
+			if (amount > 0)
+				ao.create(DailyIssueCount.class, 
+						new DBParam("PROJECT_ID", projectId), 
+						new DBParam("ISSUE_TYPE_ID", issueTypeId), 
+						new DBParam("FIELD_ID", fieldId), 
+						new DBParam("EPOCH_DAY", epochDay), 
+						new DBParam("ISSUE_COUNT", amount));
+		} else if (counts[0].getIssueCount() + amount <= 0) {
+			ao.delete(counts[0]);
+		} else {
+			counts[0].setIssueCount(counts[0].getIssueCount() + amount);
+			counts[0].save();
+		}
+	}
+	
+	/**
+	 * Gets the day every date custom field of the given issue falls on.
+	 * 
+	 * @param issue - Issue to read.
+	 * @param timeZone - Time zone of the days.
+	 * @return Mapping of custom field id > epoch day, for every field holding a date.
+	 */
+	private static Map<String, Long> getDateFieldDays(Issue issue, TimeZone timeZone) {
+		Map<String, Long> days = new HashMap<String, Long>();
+		for (CustomField field : ComponentAccessor.getCustomFieldManager().getCustomFieldObjects(issue)) {
+			Object value = issue.getCustomFieldValue(field);
+			if (value instanceof Date)
+				days.put(field.getId(), DateBucketer.toEpochDay(((Date) value).getTime(), timeZone));
+		}
+		return days;
+	}
+	
+	/**
+	 * Gets the lock of the stripe the given key falls into.
+	 */
+	private static Object getLock(Object[] locks, Object... key) {
+		return locks[getStripe(key)];
+	}
+	
+	/**
+	 * Gets the stripe the given key falls into.
+	 */
+	private static int getStripe(Object... key) {
+		return (Arrays.hashCode(key) & Integer.MAX_VALUE) % LOCK_STRIPES;
+	}
+	
+	private static Object[] createLocks() {
+		Object[] locks = new Object[LOCK_STRIPES];
+		for (int i = 0; i < locks.length; i++)
+			locks[i] = new Object();
+		return locks;
+	}
+	
+	/**
+	 * Creates the locks of the daily counts, several of which are held at once by an update.
+	 */
+	private static Lock[] createCountLocks() {
+		Lock[] locks = new Lock[LOCK_STRIPES];
+		for (int i = 0; i < locks.length; i++)
+			locks[i] = new ReentrantLock();
+		return locks;
+	}
+	
+	
+	/**
+	 * Change of a single daily count by one issue: either the removal of a rollup the issue 
+	 * was counted under, or the addition of a new one.
+	 */
+	public static class CountDelta {
+		private final long projectId;
+		private final String issueTypeId;
+		private final String fieldId;
+		private final long epochDay;
+		private final IssueDateRollup rollup;
+		
+		/**
+		 * @param projectId - Id of the project of the count.
+		 * @param issueTypeId - Id of the issue type of the count.
+		 * @param fieldId - Id of the date field of the count.
+		 * @param epochDay - Day of the count.
+		 * @param rollup - Rollup row to remove (null value means the issue is added to the count).
+		 */
+		public CountDelta(long projectId, String issueTypeId, String fieldId, long epochDay, IssueDateRollup rollup) {
+			this.projectId = projectId;
+			this.issueTypeId = issueTypeId;
+			this.fieldId = fieldId;
+			this.epochDay = epochDay;
+			this.rollup = rollup;
+		}
+		
+		public long getProjectId() {
+			return projectId;
+		}
+		
+		public String getIssueTypeId() {
+			return issueTypeId;
+		}
+		
+		public String getFieldId() {
+			return fieldId;
+		}
+		
+		public long getEpochDay() {
+			return epochDay;
+		}
+		
+		public IssueDateRollup getRollup() {
+			return rollup;
+		}
+		
+		/**
+		 * Gets the amount the count changes by.
+		 * 
+		 * @return -1 if the issue is removed from the count, 1 if it is added.
+		 */
+		public long getAmount() {
+			return rollup != null ? -1 : 1;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package plugin_suite.rollup;
+
+import net.java.ao.Entity;
+import net.java.ao.schema.Indexed;
+import net.java.ao.schema.NotNull;
+
+/**
+ * Records which day an issue's date field was counted under, so that the count can be moved 
+ * when the issue changes and removed when the issue is deleted.
+ */
+public interface IssueDateRollup extends Entity {
+	@NotNull
+	@Indexed
+	long getIssueId();
+	void setIssueId(long issueId);
+	
+	@NotNull
+	@Indexed
+	long getProjectId();
+	void setProjectId(long projectId);
+	
+	@NotNull
+	String getIssueTypeId();
+	void setIssueTypeId(String issueTypeId);
+	
+	@NotNull
+	String getFieldId();
+	void setFieldId(String fieldId);
+	
+	@NotNull
+	long getEpochDay();
+	void setEpochDay(long epochDay);
+}
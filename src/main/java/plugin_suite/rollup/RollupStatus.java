@@ -0,0 +1,34 @@
+package plugin_suite.rollup;
+
+import net.java.ao.Entity;
+import net.java.ao.schema.Indexed;
+import net.java.ao.schema.NotNull;
+
+/**
+ * Backfill state of a single project within one of the plugin's stores.
+ */
+public interface RollupStatus extends Entity {
+	// Name of the store the project was backfilled in
+	@NotNull
+	@Indexed
+	String getStore();
+	void setStore(String store);
+	
+	@NotNull
+	@Indexed
+	long getProjectId();
+	void setProjectId(long projectId);
+	
+	// One of BackfilledStore.RUNNING, READY or FAILED
+	@NotNull
+	String getState();
+	void setState(String state);
+	
+	// Time zone the project's days were counted in, once the backfill is done
+	String getTimeZoneId();
+	void setTimeZoneId(String timeZoneId);
+	
+	// Time the state was last changed, in milliseconds since 1/1/1970
+	long getUpdated();
+	void setUpdated(long updated);
+}
@@ -0,0 +1,138 @@
+package plugin_suite.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ofbiz.core.entity.EntityCondition;
+import org.ofbiz.core.entity.EntityConditionList;
+import org.ofbiz.core.entity.EntityExpr;
+import org.ofbiz.core.entity.EntityOperator;
+import org.ofbiz.core.entity.GenericValue;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.ofbiz.OfBizDelegator;
+
+/**
+ * Reads custom field values straight from the custom field value store. Rather than loading
+ * every value of every issue one at a time, the values of a batch of issues are selected in a
+ * single query. Only field types whose stored value is the field's value as is (dates, numbers
+ * and text) can be read this way; every other type has to be read through its issue.
+ */
+public class CustomFieldValueReader {
+	private static final String CUSTOM_FIELD_VALUE_ENTITY = "CustomFieldValue";
+	private static final List<String> SELECTED_FIELDS = Arrays.asList(
+			"issue", "customfield", "stringvalue", "textvalue", "numbervalue", "datevalue");
+
+	// Number of fields passed to a single IN condition, well below the limits of the databases
+	// Jira supports (e.g. 1000 elements on Oracle)
+	public static final int FIELD_CHUNK_SIZE = 500;
+
+	// Keys of the system field types that store their value as is
+	private static final String TYPE_PREFIX = "com.atlassian.jira.plugin.system.customfieldtypes:";
+	private static final Set<String> DATE_TYPES = new HashSet<String>(Arrays.asList(
+			TYPE_PREFIX + "datepicker", TYPE_PREFIX + "datetime"));
+	private static final Set<String> NUMBER_TYPES = new HashSet<String>(Arrays.asList(
+			TYPE_PREFIX + "float"));
+	private static final Set<String> TEXT_TYPES = new HashSet<String>(Arrays.asList(
+			TYPE_PREFIX + "textfield", TYPE_PREFIX + "textarea", TYPE_PREFIX + "readonlyfield",
+			TYPE_PREFIX + "url"));
+
+	private final OfBizDelegator delegator;
+
+	public CustomFieldValueReader() {
+		this(ComponentAccessor.getOfBizDelegator());
+	}
+
+	public CustomFieldValueReader(OfBizDelegator delegator) {
+		this.delegator = delegator;
+	}
+
+	/**
+	 * Determines whether the values of the given field can be read by this reader.
+	 *
+	 * @param field - Custom field to check.
+	 * @return True if the field's stored value is its value as is.
+	 */
+	public static boolean canRead(CustomField field) {
+		String typeKey = getTypeKey(field);
+		return DATE_TYPES.contains(typeKey) || NUMBER_TYPES.contains(typeKey) || TEXT_TYPES.contains(typeKey);
+	}
+
+	/**
+	 * Gets the values of the given fields for the given issues.
+	 *
+	 * @param issueIds - Ids of the issues whose values are read. Callers should keep this to a
+	 * bounded batch, since the ids are passed to a single IN condition.
+	 * @param fields - Fields to read, all of which must be readable by this reader. Any number
+	 * of fields may be given, since they are read in chunks of FIELD_CHUNK_SIZE.
+	 * @return Mapping of issue id > (field id > value), holding the issues with any value only.
+	 */
+	public Map<Long, Map<String, Object>> getValues(Collection<Long> issueIds, Collection<CustomField> fields) {
+		Map<Long, Map<String, Object>> values = new HashMap<Long, Map<String, Object>>();
+		if (issueIds == null || issueIds.isEmpty() || fields == null || fields.isEmpty())
+			return values;
+
+		Map<Long, CustomField> fieldsById = new HashMap<Long, CustomField>();
+		for (CustomField field : fields)
+			fieldsById.put(field.getIdAsLong(), field);
+
+		List<Long> fieldIds = new ArrayList<Long>(fieldsById.keySet());
+		for (int start = 0; start < fieldIds.size(); start += FIELD_CHUNK_SIZE)
+			addValues(values, issueIds, fieldIds.subList(start, Math.min(start + FIELD_CHUNK_SIZE, fieldIds.size())),
+					fieldsById);
+
+		return values;
+	}
+
+	/**
+	 * Reads the values of a single chunk of fields, adding them to the given mapping.
+	 */
+	private void addValues(Map<Long, Map<String, Object>> values, Collection<Long> issueIds, List<Long> fieldIds,
+			Map<Long, CustomField> fieldsById) {
+		List<EntityCondition> conditions = new ArrayList<EntityCondition>();
+		conditions.add(new EntityExpr("issue", EntityOperator.IN, issueIds));
+		conditions.add(new EntityExpr("customfield", EntityOperator.IN, new ArrayList<Long>(fieldIds)));
+
+		List<GenericValue> rows = delegator.findByCondition(CUSTOM_FIELD_VALUE_ENTITY,
+				new EntityConditionList(conditions, EntityOperator.AND), SELECTED_FIELDS, null);
+
+		for (GenericValue row : rows) {
+			CustomField field = fieldsById.get(row.getLong("customfield"));
+			if (field == null)
+				continue;
+
+			Long issueId = row.getLong("issue");
+			Map<String, Object> issueValues = values.get(issueId);
+			if (issueValues == null) {
+				issueValues = new HashMap<String, Object>();
+				values.put(issueId, issueValues);
+			}
+			issueValues.put(field.getId(), getValue(row, getTypeKey(field)));
+		}
+	}
+
+	/**
+	 * Gets the value of a single row, from the column the given field type stores it in.
+	 */
+	private static Object getValue(GenericValue row, String typeKey) {
+		if (DATE_TYPES.contains(typeKey))
+			return row.getTimestamp("datevalue");
+		else if (NUMBER_TYPES.contains(typeKey))
+			return row.getDouble("numbervalue");
+
+		// Text is held in the limited column, or in the unlimited one if it's too long
+		String value = row.getString("stringvalue");
+		return value != null ? value : row.getString("textvalue");
+	}
+
+	private static String getTypeKey(CustomField field) {
+		return field.getCustomFieldType() != null ? field.getCustomFieldType().getKey() : null;
+	}
+}
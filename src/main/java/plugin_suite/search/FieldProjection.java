@@ -0,0 +1,155 @@
+package plugin_suite.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+
+import plugin_suite.models.FieldSet;
+
+/**
+ * Selects the custom fields returned for every issue, and reads their values for a whole page
+ * of issues at once. The fields applicable to an issue are resolved once per project and issue
+ * type, and values that are stored as is are read in a single query per page rather than one
+ * issue and field at a time.
+ *
+ * A projection either holds an explicit list of fields, whose values are always returned (even
+ * if empty), or stands for every applicable field, in which case empty values are left out. The
+ * date field the data is filtered on is always projected, even for issues it doesn't apply to.
+ */
+public class FieldProjection {
+	private final List<CustomField> requestedFields;		// Null value means every applicable field
+	private final CustomField dateField;					// Can be null
+	private final CustomFieldValueReader valueReader;
+	private final Map<String, List<CustomField>> applicableFields = new HashMap<String, List<CustomField>>();
+
+	public FieldProjection(List<CustomField> requestedFields) {
+		this(requestedFields, null);
+	}
+
+	public FieldProjection(List<CustomField> requestedFields, CustomField dateField) {
+		this(requestedFields, dateField, new CustomFieldValueReader());
+	}
+
+	public FieldProjection(List<CustomField> requestedFields, CustomField dateField,
+			CustomFieldValueReader valueReader) {
+		this.requestedFields = requestedFields;
+		this.dateField = dateField;
+		this.valueReader = valueReader;
+	}
+
+	/**
+	 * Creates the projection for the given request parameters. Explicitly requested fields take
+	 * precedence over the date field, and if neither is given every applicable field is
+	 * returned. The date field is projected in either case.
+	 *
+	 * @param fieldIds - Ids of the requested custom fields, either repeated or comma separated
+	 * (can be null). Unknown ids are ignored.
+	 * @param dateField - Custom date field the data is filtered on (can be null).
+	 * @return Field projection.
+	 */
+	public static FieldProjection forRequest(List<String> fieldIds, CustomField dateField) {
+		List<String> ids = parseFieldIds(fieldIds);
+		if (!ids.isEmpty()) {
+			CustomFieldManager customFieldManager = ComponentAccessor.getCustomFieldManager();
+			List<CustomField> fields = new ArrayList<CustomField>();
+			for (String id : ids) {
+				CustomField field = customFieldManager.getCustomFieldObject(id);
+				if (field != null)
+					fields.add(field);
+			}
+			return new FieldProjection(fields, dateField);
+		} else if (dateField != null) {
+			return new FieldProjection(Collections.singletonList(dateField), dateField);
+		}
+		return new FieldProjection(null);
+	}
+
+	/**
+	 * Splits the given field id parameters into distinct ids, accepting both repeated and comma
+	 * separated values.
+	 *
+	 * @param fieldIds - Field id parameters (can be null).
+	 * @return Distinct field ids, in the order given.
+	 */
+	public static List<String> parseFieldIds(List<String> fieldIds) {
+		return FieldSet.split(fieldIds);
+	}
+
+	/**
+	 * Gets the projected field values of the given issues. Values that are stored as is are read
+	 * for every issue in a single query; any others are read through their issue.
+	 *
+	 * @param issues - Issues whose values are read (typically one page of search results).
+	 * @return Mapping of issue id > (field id > value), with an entry for every given issue.
+	 */
+	public Map<Long, Map<String, Object>> getFieldValues(List<Issue> issues) {
+		// Collects the fields of every issue, and the ones among them that can be read in bulk
+		Map<Long, List<CustomField>> issueFields = new HashMap<Long, List<CustomField>>();
+		Set<CustomField> readableFields = new LinkedHashSet<CustomField>();
+		for (Issue issue : issues) {
+			List<CustomField> fields = getFields(issue);
+			issueFields.put(issue.getId(), fields);
+			for (CustomField field : fields) {
+				if (CustomFieldValueReader.canRead(field))
+					readableFields.add(field);
+			}
+		}
+
+		Map<Long, Map<String, Object>> storedValues = valueReader.getValues(issueFields.keySet(), readableFields);
+
+		Map<Long, Map<String, Object>> values = new HashMap<Long, Map<String, Object>>();
+		for (Issue issue : issues) {
+			Map<String, Object> issueStoredValues = storedValues.get(issue.getId());
+			Map<String, Object> fieldValues = new HashMap<String, Object>();
+			for (CustomField field : issueFields.get(issue.getId())) {
+				Object value;
+				if (readableFields.contains(field))
+					value = issueStoredValues != null ? issueStoredValues.get(field.getId()) : null;
+				else
+					value = issue.getCustomFieldValue(field);
+
+				// Only maps values that aren't null or empty, unless the field was requested
+				if (requestedFields != null || (value != null && !"".equals(value)))
+					fieldValues.put(field.getId(), value);
+			}
+			values.put(issue.getId(), fieldValues);
+		}
+		return values;
+	}
+
+	/**
+	 * Gets the projected fields that apply to the given issue, resolving the fields of each
+	 * project and issue type only once.
+	 *
+	 * @param issue - Issue to get the fields of.
+	 * @return List of custom fields.
+	 */
+	public List<CustomField> getFields(Issue issue) {
+		String scope = issue.getProjectId() + ":" + issue.getIssueTypeId();
+		List<CustomField> fields = applicableFields.get(scope);
+		if (fields == null) {
+			List<CustomField> inScope = ComponentAccessor.getCustomFieldManager()
+					.getCustomFieldObjects(issue.getProjectId(), issue.getIssueTypeId());
+			if (requestedFields == null) {
+				fields = new ArrayList<CustomField>(inScope);
+			} else {
+				fields = new ArrayList<CustomField>(requestedFields);
+				fields.retainAll(inScope);
+			}
+			// The date field is kept even where it doesn't apply, as the data is filtered on it
+			if (dateField != null && !fields.contains(dateField))
+				fields.add(dateField);
+			applicableFields.put(scope, fields);
+		}
+		return fields;
+	}
+}
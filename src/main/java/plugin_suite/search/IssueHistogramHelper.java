@@ -0,0 +1,268 @@
+package plugin_suite.search;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.search.SearchException;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.query.Query;
+
+import plugin_suite.cache.ResultCache;
+import plugin_suite.charts.DateBucketer;
+import plugin_suite.charts.DayCounter;
+import plugin_suite.charts.TimeTrendingChart;
+import plugin_suite.models.HistogramRestResourceModel;
+import plugin_suite.models.HistogramRestResourceModel.BucketDataContainer;
+import plugin_suite.rollup.DailyRollupStore;
+
+/**
+ * Helper for counting the issues of a project by the value of a date field, grouped into the 
+ * axis dates of the time trending chart. Shared by the issue histogram and the one-shot trend 
+ * chart, so both produce the same buckets from the same cached result.
+ */
+public class IssueHistogramHelper {
+	
+	/**
+	 * Gets the date histogram of a given project from the result cache, computing it on a miss.
+	 * 
+	 * @param key - Project key associated with the desired issue(s).
+	 * @param issueTypeIds - Ids for acceptable issue types (can be null).
+	 * @param dateFieldId - Id for date field containing the dates to be counted.
+	 * @param dateInterval - Number of days between each date on the axis.
+	 * @param dataRange - Range of data (in days), counting back from today.
+	 * @param rollupStore - Precomputed daily counts, read in place of searching when available 
+	 * (can be null).
+	 * @return List of bucket containers, sorted by axis date.
+	 */
+	public static List<BucketDataContainer> getCachedIssueHistogram(final String key, 
+			final List<String> issueTypeIds, final String dateFieldId, final int dateInterval, 
+			final int dataRange, final DailyRollupStore rollupStore) {
+		return ResultCache.getInstance().get(ResultCache.ISSUES, key, 
+				Arrays.asList("histogram", issueTypeIds, dateFieldId, dateInterval, dataRange, 
+						getTodayKey(TimeTrendingChart.getUserTimeZone())), 
+				new ResultCache.Loader<List<BucketDataContainer>>() {
+			public List<BucketDataContainer> load() {
+				return new HistogramRestResourceModel(
+						getIssueHistogram(key, issueTypeIds, dateFieldId, dateInterval, dataRange, rollupStore)
+				).getBuckets();
+			}
+		});
+	}
+	
+	/**
+	 * Gets the date histograms of several series of a given project from the result cache, 
+	 * computing all of them in a single pass over the project's issues on a miss. Each series 
+	 * either counts a different date field, or (if split by issue type) a different issue type 
+	 * by the same date field.
+	 * 
+	 * @param key - Project key associated with the desired issue(s).
+	 * @param issueTypeIds - Ids for acceptable issue types (can be null, unless split by issue type).
+	 * @param dateFieldIds - Ids for date fields containing the dates to be counted.
+	 * @param splitByIssueType - Whether every issue type is counted as its own series, by the 
+	 * first date field, rather than every date field.
+	 * @param dateInterval - Number of days between each date on the axis.
+	 * @param dataRange - Range of data (in days), counting back from today.
+	 * @param rollupStore - Precomputed daily counts, read in place of searching when available 
+	 * (can be null).
+	 * @return One list of bucket containers per series, each sorted by axis date.
+	 */
+	public static List<List<BucketDataContainer>> getCachedIssueHistograms(final String key, 
+			final List<String> issueTypeIds, final List<String> dateFieldIds, final boolean splitByIssueType, 
+			final int dateInterval, final int dataRange, final DailyRollupStore rollupStore) {
+		return ResultCache.getInstance().get(ResultCache.ISSUES, key, 
+				Arrays.asList("histograms", issueTypeIds, dateFieldIds, splitByIssueType, dateInterval, dataRange, 
+						getTodayKey(TimeTrendingChart.getUserTimeZone())), 
+				new ResultCache.Loader<List<List<BucketDataContainer>>>() {
+			public List<List<BucketDataContainer>> load() {
+				List<List<BucketDataContainer>> histograms = new ArrayList<List<BucketDataContainer>>();
+				for (Map<Long, Long> bucketMap : getIssueHistograms(key, issueTypeIds, dateFieldIds, 
+						splitByIssueType, dateInterval, dataRange, rollupStore))
+					histograms.add(new HistogramRestResourceModel(bucketMap).getBuckets());
+				return histograms;
+			}
+		});
+	}
+	
+	/**
+	 * Gets the part of a cache key that identifies today's date in the given time zone, so that 
+	 * histograms are recomputed once the axis moves to the next day.
+	 * 
+	 * @param timeZone - Time zone of the chart.
+	 * @return Time zone id and epoch day of today.
+	 */
+	public static String getTodayKey(TimeZone timeZone) {
+		return timeZone.getID() + ":" + DateBucketer.toEpochDay(System.currentTimeMillis(), timeZone);
+	}
+	
+	/**
+	 * Counts the issues within a given project by the value of a date field, grouping every 
+	 * date into the same axis date that the trending chart uses for it. Only the counts are 
+	 * kept, so the issues themselves are never collected into a list. If the project's daily 
+	 * rollups can be used, the counts are read from them instead, one row per day.
+	 * 
+	 * @param key - Project key associated with the desired issue(s).
+	 * @param issueTypeIds - Ids for acceptable issue types (null/empty value means all issue types 
+	 * are acceptable).
+	 * @param dateFieldId - Id for date field containing the dates to be counted.
+	 * @param dateInterval - Number of days between each date on the axis.
+	 * @param dataRange - Range of data (in days), counting back from today.
+	 * @param rollupStore - Precomputed daily counts (can be null).
+	 * @return Mapping of axis dates (in milliseconds since 1/1/1970) to counts, sorted by date.
+	 */
+	public static Map<Long, Long> getIssueHistogram(String key, List<String> issueTypeIds, 
+			String dateFieldId, int dateInterval, int dataRange, DailyRollupStore rollupStore) {
+		return getIssueHistograms(key, issueTypeIds, Collections.singletonList(dateFieldId), false, 
+				dateInterval, dataRange, rollupStore).get(0);
+	}
+	
+	/**
+	 * Counts the issues within a given project for several series at once. Every issue is 
+	 * visited only once, and each of its dates is counted under the axis date of its series.
+	 * If the project's daily rollups can be used, the counts are read from them instead.
+	 * 
+	 * @param key - Project key associated with the desired issue(s).
+	 * @param issueTypeIds - Ids for acceptable issue types (null/empty value means all issue types 
+	 * are acceptable, unless split by issue type).
+	 * @param dateFieldIds - Ids for date fields containing the dates to be counted.
+	 * @param splitByIssueType - Whether every issue type is counted as its own series, by the 
+	 * first date field, rather than every date field.
+	 * @param dateInterval - Number of days between each date on the axis.
+	 * @param dataRange - Range of data (in days), counting back from today.
+	 * @param rollupStore - Precomputed daily counts (can be null).
+	 * @return One mapping of axis dates (in milliseconds since 1/1/1970) to counts per series, 
+	 * each sorted by date. Every mapping is empty if the project or any field is unknown.
+	 */
+	public static List<Map<Long, Long>> getIssueHistograms(String key, List<String> issueTypeIds, 
+			List<String> dateFieldIds, boolean splitByIssueType, int dateInterval, int dataRange, 
+			DailyRollupStore rollupStore) {
+		int seriesCount = splitByIssueType ? issueTypeIds.size() : dateFieldIds.size();
+		DayCounter[] counters = new DayCounter[seriesCount];
+		for (int i = 0; i < seriesCount; i++)
+			counters[i] = new DayCounter();
+		
+		ApplicationUser applicationUser = ComponentAccessor.getJiraAuthenticationContext().getUser();
+		User user = applicationUser.getDirectoryUser();
+		Project project = ComponentAccessor.getProjectManager().getProjectObjByKey(key);
+		List<CustomField> fields = new ArrayList<CustomField>();
+		for (String dateFieldId : dateFieldIds) {
+			CustomField field = ComponentAccessor.getCustomFieldManager().getCustomFieldObject(dateFieldId);
+			if (field != null)
+				fields.add(field);
+		}
+		
+		// Gets bucketer for the axis (ending today) and the earliest date within the data range
+		TimeZone timeZone = TimeTrendingChart.getUserTimeZone();
+		DateBucketer bucketer = DateBucketer.forToday(timeZone, dateInterval);
+		long earliestDay = bucketer.getUpperBoundDay() - dataRange;
+		
+		if (project != null && !fields.isEmpty() && fields.size() == dateFieldIds.size()) {
+			if (splitByIssueType)
+				fields = fields.subList(0, 1);
+			
+			// Counts every date under its corresponding axis day
+			if (canUseRollups(rollupStore, project, applicationUser, timeZone)) {
+				for (int i = 0; i < seriesCount; i++) {
+					List<String> seriesIssueTypeIds = splitByIssueType 
+							? Collections.singletonList(issueTypeIds.get(i)) : issueTypeIds;
+					String fieldId = fields.get(splitByIssueType ? 0 : i).getId();
+					DayCounter dailyCounts = rollupStore.getDailyCounts(project.getId(), seriesIssueTypeIds, 
+							fieldId, earliestDay);
+					for (long day : dailyCounts.getSortedKeys())
+						counters[i].add(bucketer.getAxisDay(day), dailyCounts.get(day));
+				}
+			} else {
+				SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+				dateFormat.setTimeZone(timeZone);
+				String earliestDate = dateFormat.format(new Date(bucketer.toMillis(earliestDay)));
+				String jqlQuery = IssueSearchHelper.buildJqlQuery(project, issueTypeIds, fields, earliestDate);
+				countIssues(user, IssueSearchHelper.parseQuery(user, jqlQuery), fields, 
+						splitByIssueType ? issueTypeIds : null, earliestDay, bucketer, counters);
+			}
+		}
+		
+		// Initializes bucket mappings, which are kept sorted by axis date
+		List<Map<Long, Long>> bucketMaps = new ArrayList<Map<Long, Long>>();
+		for (DayCounter counter : counters) {
+			Map<Long, Long> bucketMap = new LinkedHashMap<Long, Long>();
+			for (long axisDay : counter.getSortedKeys())
+				bucketMap.put(bucketer.toMillis(axisDay), counter.get(axisDay));
+			bucketMaps.add(bucketMap);
+		}
+		return bucketMaps;
+	}
+	
+	/**
+	 * Counts the issues matching the given query under the axis day of their date fields, 
+	 * visiting every issue only once.
+	 * 
+	 * @param user - User performing the search.
+	 * @param query - Query to run.
+	 * @param fields - Date fields to count by, one per series (or the single field of every 
+	 * series, if split by issue type).
+	 * @param issueTypeIds - Issue type of every series, if split by issue type (can be null).
+	 * @param earliestDay - Earliest day counted, as an epoch day.
+	 * @param bucketer - Bucketer of the chart's axis.
+	 * @param counters - Counter of every series, receiving the counts.
+	 */
+	private static void countIssues(User user, Query query, final List<CustomField> fields, 
+			final List<String> issueTypeIds, final long earliestDay, final DateBucketer bucketer, 
+			final DayCounter[] counters) {
+		final TimeZone timeZone = bucketer.getTimeZone();
+		try {
+			IssueSearchHelper.visitIssues(user, query, IssueSearchHelper.DEFAULT_PAGE_SIZE, 
+					new IssueSearchHelper.IssueVisitor() {
+				public void visit(Issue issue) {
+					if (issueTypeIds != null) {
+						int series = issueTypeIds.indexOf(issue.getIssueTypeId());
+						if (series >= 0)
+							count(issue.getCustomFieldValue(fields.get(0)), counters[series]);
+					} else {
+						for (int i = 0; i < fields.size(); i++)
+							count(issue.getCustomFieldValue(fields.get(i)), counters[i]);
+					}
+				}
+				
+				// Issues may match by another field, so dates before the range are skipped here
+				private void count(Object value, DayCounter counter) {
+					if (value instanceof Date 
+							&& DateBucketer.toEpochDay(((Date) value).getTime(), timeZone) >= earliestDay)
+						counter.add(bucketer.getAxisDayOf((Date) value), 1);
+				}
+			});
+		} catch (SearchException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Determines whether a histogram can be read from the daily rollups. The rollups have to be 
+	 * complete and counted in the user's time zone, and since they aren't filtered by 
+	 * permissions, they are only used if the user can browse the project and the project has 
+	 * no issue security scheme hiding individual issues.
+	 * 
+	 * @param rollupStore - Precomputed daily counts (can be null).
+	 * @param project - Project of the histogram.
+	 * @param user - User requesting the histogram.
+	 * @param timeZone - User's time zone.
+	 * @return True if the rollups can be read in place of searching.
+	 */
+	private static boolean canUseRollups(DailyRollupStore rollupStore, Project project, ApplicationUser user, 
+			TimeZone timeZone) {
+		if (rollupStore == null || !rollupStore.isReady(project.getId(), timeZone))
+			return false;
+		
+		return IssueSearchHelper.canSeeAllIssues(project, user);
+	}
+}
@@ -0,0 +1,28 @@
+package plugin_suite.search;
+
+/**
+ * Lightweight reference to an issue, holding only the values read straight from the index.
+ */
+public class IssueReference {
+	private final long id;
+	private final String key;
+	private final String issueTypeId;
+	
+	public IssueReference(long id, String key, String issueTypeId) {
+		this.id = id;
+		this.key = key;
+		this.issueTypeId = issueTypeId;
+	}
+	
+	public long getId() {
+		return id;
+	}
+	
+	public String getKey() {
+		return key;
+	}
+	
+	public String getIssueTypeId() {
+		return issueTypeId;
+	}
+}
@@ -0,0 +1,64 @@
+package plugin_suite.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+
+import com.atlassian.jira.issue.index.DocumentConstants;
+
+/**
+ * Lucene collector that only reads the id, key and issue type of every hit, so that a search 
+ * can identify candidate issues without loading any issue objects.
+ */
+public class IssueReferenceCollector extends Collector {
+	// Loads nothing but the id, key and issue type fields of each document
+	private static final FieldSelector REFERENCE_SELECTOR = new MapFieldSelector(
+			DocumentConstants.ISSUE_ID, DocumentConstants.ISSUE_KEY, DocumentConstants.ISSUE_TYPE);
+
+	private final List<IssueReference> references;
+	private IndexReader reader;
+
+	public IssueReferenceCollector() {
+		this.references = new ArrayList<IssueReference>();
+	}
+
+	@Override
+	public void setScorer(Scorer scorer) throws IOException {
+		// Scores are not needed
+	}
+
+	@Override
+	public void collect(int doc) throws IOException {
+		Document document = reader.document(doc, REFERENCE_SELECTOR);
+		String issueId = document.get(DocumentConstants.ISSUE_ID);
+		if (issueId != null)
+			references.add(new IssueReference(Long.parseLong(issueId), 
+					document.get(DocumentConstants.ISSUE_KEY), document.get(DocumentConstants.ISSUE_TYPE)));
+	}
+
+	@Override
+	public void setNextReader(IndexReader reader, int docBase) throws IOException {
+		this.reader = reader;
+	}
+
+	@Override
+	public boolean acceptsDocsOutOfOrder() {
+		return true;
+	}
+
+	/**
+	 * Gets the references of every issue collected so far, in index order.
+	 *
+	 * @return List of issue references.
+	 */
+	public List<IssueReference> getReferences() {
+		return references;
+	}
+}
@@ -0,0 +1,316 @@
+package plugin_suite.search;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.atlassian.crowd.embedded.api.User;
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.bc.issue.search.SearchService.ParseResult;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.issuetype.IssueType;
+import com.atlassian.jira.issue.search.SearchException;
+import com.atlassian.jira.issue.search.SearchProvider;
+import com.atlassian.jira.issue.search.SearchResults;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.Permissions;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.web.bean.PagerFilter;
+import com.atlassian.query.Query;
+
+import org.ofbiz.core.entity.GenericEntityException;
+
+/**
+ * Helper for building and running the JQL searches shared by the issue-based resources.
+ */
+public class IssueSearchHelper {
+	// Number of issues loaded from the index per search window
+	public static final int DEFAULT_PAGE_SIZE = 500;
+	
+	// Largest page a caller may request at once
+	public static final int MAX_PAGE_SIZE = 1000;
+
+	/**
+	 * Callback invoked once for every issue returned by a search.
+	 */
+	public interface IssueVisitor {
+		void visit(Issue issue);
+	}
+	
+	/**
+	 * Callback invoked once for every window of issues returned by a search.
+	 */
+	public interface IssuePageVisitor {
+		void visit(List<Issue> issues);
+	}
+
+	/**
+	 * Constructs the JQL query for the issues of a project, optionally filtered by issue type.
+	 *
+	 * @param project - Project containing the desired issues.
+	 * @param issueTypeIds - Ids for acceptable issue types (null/empty value means all issue types
+	 * are acceptable).
+	 * @return JQL query string.
+	 */
+	public static String buildJqlQuery(Project project, List<String> issueTypeIds) {
+		return buildJqlQuery(project, issueTypeIds, (List<CustomField>) null, null);
+	}
+
+	/**
+	 * Constructs the JQL query for the issues of a project, optionally filtered by issue type
+	 * and by the earliest acceptable value of a date field.
+	 *
+	 * @param project - Project containing the desired issues.
+	 * @param issueTypeIds - Ids for acceptable issue types (null/empty value means all issue types
+	 * are acceptable).
+	 * @param field - Custom date field to filter on (can be null).
+	 * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest
+	 * acceptable value of the given field (can be null).
+	 * @return JQL query string.
+	 */
+	public static String buildJqlQuery(Project project, List<String> issueTypeIds, CustomField field,
+			String earliestDate) {
+		List<CustomField> fields = field != null ? Collections.singletonList(field) : null;
+		return buildJqlQuery(project, issueTypeIds, fields, earliestDate);
+	}
+
+	/**
+	 * Constructs the JQL query for the issues of a project, optionally filtered by issue type
+	 * and by the earliest acceptable value of any of several date fields.
+	 *
+	 * @param project - Project containing the desired issues.
+	 * @param issueTypeIds - Ids for acceptable issue types (null/empty value means all issue types
+	 * are acceptable).
+	 * @param fields - Custom date fields to filter on, any of which may hold an acceptable value
+	 * (can be null).
+	 * @param earliestDate - Date string (formatted as yyyy-MM-dd) representing the earliest
+	 * acceptable value of the given fields (can be null).
+	 * @return JQL query string.
+	 */
+	public static String buildJqlQuery(Project project, List<String> issueTypeIds, List<CustomField> fields,
+			String earliestDate) {
+		// Constructs the issue type portion of the JQL query
+		String issueTypeStr = "";
+		if (issueTypeIds != null && !issueTypeIds.isEmpty()) {
+			Collection<IssueType> issueTypes = ComponentAccessor.getConstantsManager().getAllIssueTypeObjects();
+			for (IssueType issueType : issueTypes) {
+				if (issueTypeIds.contains(issueType.getId())) {
+					if (issueTypeStr.equals(""))
+						issueTypeStr = getQueryStr(issueType.getName());
+					else
+						issueTypeStr += ", " + getQueryStr(issueType.getName());
+				}
+			}
+		}
+
+		// Constructs JQL accordingly, starting with mandatory project key
+		String jqlQuery = "project = " + getQueryStr(project.getName());
+
+		// Adds issue type(s) to query, if any
+		if (!issueTypeStr.isEmpty())
+			jqlQuery += " AND type IN (" + issueTypeStr + ")";
+
+		// Adds field(s) and earliest date to query, if any
+		if (fields != null && !fields.isEmpty() && earliestDate != null && !earliestDate.isEmpty()) {
+			String fieldStr = "";
+			for (CustomField field : fields) {
+				if (!fieldStr.isEmpty())
+					fieldStr += " OR ";
+				fieldStr += getQueryStr(field.getFieldName()) + " >= " + earliestDate;
+			}
+			jqlQuery += fields.size() == 1 ? " AND " + fieldStr : " AND (" + fieldStr + ")";
+		}
+
+		return jqlQuery;
+	}
+
+	/**
+	 * Parses the given JQL query on behalf of the given user.
+	 *
+	 * @param user - User performing the search.
+	 * @param jqlQuery - JQL query string.
+	 * @return Parsed query object.
+	 */
+	public static Query parseQuery(User user, String jqlQuery) {
+		ParseResult parseResult = getSearchService().parseQuery(user, jqlQuery);
+		return parseResult.getQuery();
+	}
+
+	/**
+	 * Runs the given query and passes each matching issue to the visitor. The index is read in
+	 * fixed-size windows, so only one window of issues is held in memory at any time.
+	 *
+	 * @param user - User performing the search.
+	 * @param query - Query to run.
+	 * @param pageSize - Number of issues loaded per window.
+	 * @param visitor - Callback receiving every matching issue.
+	 * @return Total number of issues visited.
+	 * @throws SearchException
+	 */
+	public static int visitIssues(User user, Query query, int pageSize, final IssueVisitor visitor)
+			throws SearchException {
+		return visitIssuePages(user, query, pageSize, new IssuePageVisitor() {
+			public void visit(List<Issue> issues) {
+				for (Issue issue : issues)
+					visitor.visit(issue);
+			}
+		});
+	}
+
+	/**
+	 * Runs the given query and passes each window of matching issues to the visitor, so that 
+	 * data can be loaded for a whole window at once. Only one window of issues is held in 
+	 * memory at any time.
+	 *
+	 * @param user - User performing the search.
+	 * @param query - Query to run.
+	 * @param pageSize - Number of issues loaded per window.
+	 * @param visitor - Callback receiving every window of matching issues.
+	 * @return Total number of issues visited.
+	 * @throws SearchException
+	 */
+	public static int visitIssuePages(User user, Query query, int pageSize, IssuePageVisitor visitor)
+			throws SearchException {
+		SearchService searchService = getSearchService();
+		int start = 0;
+		int visited = 0;
+		int total;
+		do {
+			SearchResults searchResults = searchService.search(user, query, new PagerFilter(start, pageSize));
+			List<Issue> issueList = searchResults.getIssues();
+			if (!issueList.isEmpty())
+				visitor.visit(issueList);
+			visited += issueList.size();
+
+			total = searchResults.getTotal();
+			start += pageSize;
+
+			// Stops early if the index returned less than expected (e.g. issues deleted mid-search)
+			if (issueList.isEmpty())
+				break;
+		} while (start < total);
+
+		return visited;
+	}
+
+	/**
+	 * Runs the given query against the index and returns only the id, key and issue type of
+	 * the matching issues, without loading any issue objects.
+	 *
+	 * @param user - User performing the search.
+	 * @param query - Query to run.
+	 * @return References to the matching issues, sorted by ascending issue id.
+	 * @throws SearchException
+	 */
+	public static List<IssueReference> searchIssueReferences(User user, Query query) throws SearchException {
+		IssueReferenceCollector collector = new IssueReferenceCollector();
+		ComponentAccessor.getComponent(SearchProvider.class).search(query, user, collector);
+
+		List<IssueReference> references = collector.getReferences();
+		Collections.sort(references, new Comparator<IssueReference>() {
+			public int compare(IssueReference first, IssueReference second) {
+				return first.getId() < second.getId() ? -1 : (first.getId() == second.getId() ? 0 : 1);
+			}
+		});
+		return references;
+	}
+
+	/**
+	 * Runs the given query against the index and passes the id, creation date and current 
+	 * status of every matching issue to the visitor, without loading any issue objects.
+	 *
+	 * @param user - User performing the search.
+	 * @param query - Query to run.
+	 * @param visitor - Callback receiving the state of every matching issue, in index order.
+	 * @throws SearchException
+	 */
+	public static void visitIssueStates(User user, Query query, IssueStateCollector.IssueStateVisitor visitor) 
+			throws SearchException {
+		ComponentAccessor.getComponent(SearchProvider.class).search(query, user, new IssueStateCollector(visitor));
+	}
+
+	/**
+	 * Constructs the JQL list of the given constant ids (e.g. status ids), leaving numeric ids
+	 * unquoted so that they are resolved as ids rather than names.
+	 *
+	 * @param ids - Ids to list.
+	 * @return Comma separated ids, without surrounding brackets.
+	 */
+	public static String getIdListStr(Collection<String> ids) {
+		StringBuilder builder = new StringBuilder();
+		for (String id : ids) {
+			if (builder.length() > 0)
+				builder.append(", ");
+			builder.append(id.matches("\\d+") ? id : getQueryStr(id));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Runs the given query and returns a single page of its results.
+	 *
+	 * @param user - User performing the search.
+	 * @param query - Query to run.
+	 * @param startAt - Index of the first issue to return.
+	 * @param maxResults - Maximum number of issues to return (capped at MAX_PAGE_SIZE).
+	 * @return Search results holding the requested page and the total number of matches.
+	 * @throws SearchException
+	 */
+	public static SearchResults searchPage(User user, Query query, int startAt, int maxResults)
+			throws SearchException {
+		return getSearchService().search(user, query, 
+				new PagerFilter(Math.max(startAt, 0), Math.min(maxResults, MAX_PAGE_SIZE)));
+	}
+
+	/**
+	 * Counts the issues matching the given query, without loading any of them.
+	 *
+	 * @param user - User performing the search.
+	 * @param query - Query to run.
+	 * @return Number of matching issues.
+	 * @throws SearchException
+	 */
+	public static long countIssues(User user, Query query) throws SearchException {
+		return getSearchService().searchCount(user, query);
+	}
+
+	/**
+	 * Determines whether the given user can see every issue of a project, which is the case if 
+	 * the user can browse the project and the project has no issue security scheme hiding 
+	 * individual issues. Data that isn't filtered by permissions (such as the plugin's own 
+	 * stores) may only be served as is when this holds.
+	 * 
+	 * @param project - Project to check.
+	 * @param user - User to check.
+	 * @return True if no issue of the project is hidden from the user.
+	 */
+	public static boolean canSeeAllIssues(Project project, ApplicationUser user) {
+		if (!ComponentAccessor.getPermissionManager().hasPermission(Permissions.BROWSE, project, user))
+			return false;
+		
+		try {
+			return ComponentAccessor.getIssueSecuritySchemeManager().getSchemes(project.getGenericValue()).isEmpty();
+		} catch (GenericEntityException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	/**
+	 * Constructs query string based on passed value. The surrounding
+	 * quotation marks are added according.
+	 *
+	 * @param initialStr - Initial string without surrounding quotation marks.
+	 * @return Initial string with surrounding quotation marks added.
+	 */
+	public static String getQueryStr(String initialStr) {
+		return "\"" + initialStr + "\"";
+	}
+
+	private static SearchService getSearchService() {
+		return ComponentAccessor.getComponent(SearchService.class);
+	}
+}
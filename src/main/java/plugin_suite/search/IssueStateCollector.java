@@ -0,0 +1,67 @@
+package plugin_suite.search;
+
+import java.io.IOException;
+import java.util.Date;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+
+import com.atlassian.jira.issue.index.DocumentConstants;
+import com.atlassian.jira.util.LuceneUtils;
+
+/**
+ * Lucene collector that only reads the id, creation date and current status of every hit, and 
+ * passes them straight to a visitor, so that the state of every issue of a project can be read 
+ * without loading any issue objects or holding a list of hits.
+ */
+public class IssueStateCollector extends Collector {
+	// Loads nothing but the id, creation date and status fields of each document
+	private static final FieldSelector STATE_SELECTOR = new MapFieldSelector(
+			DocumentConstants.ISSUE_ID, DocumentConstants.ISSUE_CREATED, DocumentConstants.ISSUE_STATUS);
+
+	/**
+	 * Callback invoked once for every hit.
+	 */
+	public interface IssueStateVisitor {
+		void visit(long issueId, long created, String statusId);
+	}
+
+	private final IssueStateVisitor visitor;
+	private IndexReader reader;
+
+	public IssueStateCollector(IssueStateVisitor visitor) {
+		this.visitor = visitor;
+	}
+
+	@Override
+	public void setScorer(Scorer scorer) throws IOException {
+		// Scores are not needed
+	}
+
+	@Override
+	public void collect(int doc) throws IOException {
+		Document document = reader.document(doc, STATE_SELECTOR);
+		String issueId = document.get(DocumentConstants.ISSUE_ID);
+		String created = document.get(DocumentConstants.ISSUE_CREATED);
+		if (issueId == null || created == null)
+			return;
+		
+		Date createdDate = LuceneUtils.stringToDate(created);
+		if (createdDate != null)
+			visitor.visit(Long.parseLong(issueId), createdDate.getTime(), document.get(DocumentConstants.ISSUE_STATUS));
+	}
+
+	@Override
+	public void setNextReader(IndexReader reader, int docBase) throws IOException {
+		this.reader = reader;
+	}
+
+	@Override
+	public boolean acceptsDocsOutOfOrder() {
+		return true;
+	}
+}
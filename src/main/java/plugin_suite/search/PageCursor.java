@@ -0,0 +1,103 @@
+package plugin_suite.search;
+
+import java.nio.charset.Charset;
+
+/**
+ * Opaque continuation cursor for paged searches. A cursor records where the next page starts,
+ * the page size and a fingerprint of the query it was issued for, so that it cannot be
+ * replayed against a different query. It is encoded as hexadecimal text, which is URL-safe.
+ */
+public class PageCursor {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String VERSION = "1";
+	private static final String SEPARATOR = ":";
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final int startAt;
+	private final int maxResults;
+	private final String fingerprint;
+
+	public PageCursor(int startAt, int maxResults, String fingerprint) {
+		this.startAt = startAt;
+		this.maxResults = maxResults;
+		this.fingerprint = fingerprint;
+	}
+
+	public int getStartAt() {
+		return startAt;
+	}
+
+	public int getMaxResults() {
+		return maxResults;
+	}
+
+	/**
+	 * Determines whether this cursor was issued for the query with the given fingerprint.
+	 *
+	 * @param otherFingerprint - Fingerprint of the current query.
+	 * @return True if the fingerprints match.
+	 */
+	public boolean matches(String otherFingerprint) {
+		return fingerprint.equals(otherFingerprint);
+	}
+
+	/**
+	 * Encodes the cursor as opaque, URL-safe text.
+	 *
+	 * @return Encoded cursor.
+	 */
+	public String encode() {
+		String raw = VERSION + SEPARATOR + startAt + SEPARATOR + maxResults + SEPARATOR + fingerprint;
+		byte[] bytes = raw.getBytes(UTF8);
+		char[] encoded = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			encoded[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+			encoded[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+		}
+		return new String(encoded);
+	}
+
+	/**
+	 * Decodes a cursor previously produced by {@link #encode()}.
+	 *
+	 * @param cursor - Encoded cursor.
+	 * @return Decoded cursor, or null if the given text is not a valid cursor.
+	 */
+	public static PageCursor decode(String cursor) {
+		if (cursor == null || cursor.isEmpty() || cursor.length() % 2 != 0)
+			return null;
+
+		try {
+			byte[] bytes = new byte[cursor.length() / 2];
+			for (int i = 0; i < bytes.length; i++)
+				bytes[i] = (byte) Integer.parseInt(cursor.substring(2 * i, 2 * i + 2), 16);
+
+			String[] parts = new String(bytes, UTF8).split(SEPARATOR, 4);
+			if (parts.length != 4 || !parts[0].equals(VERSION))
+				return null;
+
+			int startAt = Integer.parseInt(parts[1]);
+			int maxResults = Integer.parseInt(parts[2]);
+			if (startAt < 0 || maxResults <= 0)
+				return null;
+
+			return new PageCursor(startAt, maxResults, parts[3]);
+		} catch (NumberFormatException e) {
+			// Malformed hexadecimal text or numbers
+			return null;
+		}
+	}
+
+	/**
+	 * Computes a fingerprint of the given query parameters.
+	 *
+	 * @param parameters - Parameters identifying the query (can contain nulls).
+	 * @return Fingerprint text.
+	 */
+	public static String fingerprint(Object... parameters) {
+		StringBuilder builder = new StringBuilder();
+		for (Object parameter : parameters)
+			builder.append(parameter).append('\u0000');
+		return Integer.toHexString(builder.toString().hashCode());
+	}
+}
@@ -0,0 +1,186 @@
+package plugin_suite.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.jira.security.Permissions;
+import com.atlassian.jira.user.ApplicationUser;
+
+import plugin_suite.concurrent.UserCallable;
+import plugin_suite.concurrent.WorkerPool;
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.HistogramRestResourceModel.BucketDataContainer;
+
+/**
+ * Helper for the resources that serve several projects at once (such as every project of a 
+ * category). The work of each project runs as a task of its own on the worker pool, so a 
+ * request takes about as long as its slowest project rather than the total of all of them.
+ */
+public class PortfolioHelper {
+	/**
+	 * Work done for a single project of a portfolio.
+	 */
+	public interface ProjectTask<T> {
+		T run(Project project);
+	}
+	
+	/**
+	 * Determines whether the given request parameters select more than one project.
+	 * 
+	 * @param keys - Project keys, either repeated or comma separated (can be null).
+	 * @param categoryId - Id of a project category (can be null).
+	 * @return True if the request is for a portfolio rather than a single project.
+	 */
+	public static boolean isPortfolio(List<String> keys, String categoryId) {
+		return categoryId != null || FieldSet.split(keys).size() > 1;
+	}
+	
+	/**
+	 * Gets the projects selected by the given keys and category that the current user can 
+	 * browse. Unknown keys are ignored.
+	 * 
+	 * @param keys - Project keys, either repeated or comma separated (can be null).
+	 * @param categoryId - Id of a project category whose projects are added (can be null).
+	 * @return Distinct projects, those given by key first.
+	 */
+	public static List<Project> getProjects(List<String> keys, String categoryId) {
+		ProjectManager projectManager = ComponentAccessor.getProjectManager();
+		ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+		
+		List<Project> candidates = new ArrayList<Project>();
+		for (String key : FieldSet.split(keys)) {
+			Project project = projectManager.getProjectObjByKey(key);
+			if (project != null)
+				candidates.add(project);
+		}
+		if (categoryId != null && categoryId.trim().matches("\\d+")) {
+			Collection<Project> categoryProjects = projectManager.getProjectObjectsFromProjectCategory(
+					Long.valueOf(categoryId.trim()));
+			if (categoryProjects != null)
+				candidates.addAll(categoryProjects);
+		}
+		
+		List<Project> projects = new ArrayList<Project>();
+		for (Project project : candidates) {
+			if (!projects.contains(project) 
+					&& ComponentAccessor.getPermissionManager().hasPermission(Permissions.BROWSE, project, user))
+				projects.add(project);
+		}
+		return projects;
+	}
+	
+	/**
+	 * Runs the given task for every project on the worker pool, on behalf of the current user, 
+	 * and waits for all of them.
+	 * 
+	 * @param workerPool - Pool running the tasks.
+	 * @param projects - Projects to run the task for.
+	 * @param task - Work done for a single project.
+	 * @return Results of the task, in the order of the given projects.
+	 */
+	public static <T> List<T> fanOut(WorkerPool workerPool, List<Project> projects, final ProjectTask<T> task) {
+		List<UserCallable<T>> callables = new ArrayList<UserCallable<T>>();
+		for (final Project project : projects) {
+			callables.add(new UserCallable<T>() {
+				protected T callAsUser() {
+					return task.run(project);
+				}
+			});
+		}
+		
+		try {
+			return workerPool.invokeAll(callables);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Portfolio request was interrupted.", e);
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			throw new IllegalStateException("Portfolio request failed.", e.getCause());
+		}
+	}
+	
+	/**
+	 * Merges lists that are each sorted into a single sorted list. Elements that compare as 
+	 * equal keep the order of their lists.
+	 * 
+	 * @param lists - Sorted lists to merge.
+	 * @return Merged list.
+	 */
+	public static <T extends Comparable<? super T>> List<T> mergeSorted(List<? extends List<T>> lists) {
+		int size = 0;
+		PriorityQueue<MergeCursor<T>> heads = new PriorityQueue<MergeCursor<T>>();
+		for (int i = 0; i < lists.size(); i++) {
+			size += lists.get(i).size();
+			if (!lists.get(i).isEmpty())
+				heads.add(new MergeCursor<T>(lists.get(i), i));
+		}
+		
+		List<T> merged = new ArrayList<T>(size);
+		while (!heads.isEmpty()) {
+			MergeCursor<T> head = heads.poll();
+			merged.add(head.current());
+			if (head.advance())
+				heads.add(head);
+		}
+		return merged;
+	}
+	
+	/**
+	 * Adds up the histograms of several projects by date. A project's histogram only holds 
+	 * the dates it has issues on, so the buckets of different projects can't be added up by 
+	 * their position.
+	 * 
+	 * @param histograms - Histogram of every project.
+	 * @return Buckets of every date found in any histogram, sorted by date.
+	 */
+	public static List<BucketDataContainer> sumBuckets(List<List<BucketDataContainer>> histograms) {
+		Map<Long, Long> counts = new TreeMap<Long, Long>();
+		for (List<BucketDataContainer> histogram : histograms) {
+			for (BucketDataContainer bucket : histogram) {
+				Long count = counts.get(bucket.getDate());
+				counts.put(bucket.getDate(), (count != null ? count : 0) + bucket.getCount());
+			}
+		}
+		
+		List<BucketDataContainer> buckets = new ArrayList<BucketDataContainer>(counts.size());
+		for (Map.Entry<Long, Long> entry : counts.entrySet())
+			buckets.add(new BucketDataContainer(entry.getKey(), entry.getValue()));
+		return buckets;
+	}
+	
+	
+	/**
+	 * Position within one of the lists being merged.
+	 */
+	private static class MergeCursor<T extends Comparable<? super T>> implements Comparable<MergeCursor<T>> {
+		private final List<T> list;
+		private final int order;
+		private int index;
+		
+		private MergeCursor(List<T> list, int order) {
+			this.list = list;
+			this.order = order;
+		}
+		
+		private T current() {
+			return list.get(index);
+		}
+		
+		private boolean advance() {
+			return ++index < list.size();
+		}
+		
+		public int compareTo(MergeCursor<T> cursor) {
+			int comparison = current().compareTo(cursor.current());
+			return comparison != 0 ? comparison : (order < cursor.order ? -1 : (order == cursor.order ? 0 : 1));
+		}
+	}
+}
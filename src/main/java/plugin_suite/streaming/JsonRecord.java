@@ -0,0 +1,20 @@
+package plugin_suite.streaming;
+
+import java.io.IOException;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Record that can write itself as a JSON object, so that it can be streamed without going 
+ * through the REST layer's serializer.
+ */
+public interface JsonRecord {
+	
+	/**
+	 * Writes the record as a single JSON object, leaving out any attributes that are not set.
+	 * 
+	 * @param json - Writer to write the record to.
+	 * @throws IOException
+	 */
+	void writeTo(JsonWriter json) throws IOException;
+}
@@ -0,0 +1,131 @@
+package plugin_suite.streaming;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Record sink that writes every record straight to an output stream as an element of a
+ * JSON array, so that no record is kept in memory once it has been written.
+ *
+ * Values are written the same way the REST layer serializes the resource models: dates
+ * as milliseconds since 1/1/1970, numbers and booleans as is, maps as objects, collections
+ * as arrays and everything else by its string representation. Unset attributes are left 
+ * out, as the REST layer does.
+ */
+public class JsonRecordWriter<T extends JsonRecord> implements RecordSink<T> {
+	private final JsonWriter json;
+
+	public JsonRecordWriter(OutputStream output) {
+		this.json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(output, Charset.forName("UTF-8"))));
+	}
+
+	/**
+	 * Opens the top level array. Must be called before any record is added.
+	 *
+	 * @throws IOException
+	 */
+	public void begin() throws IOException {
+		json.beginArray();
+	}
+
+	/**
+	 * Closes the top level array and flushes everything written so far.
+	 *
+	 * @throws IOException
+	 */
+	public void end() throws IOException {
+		json.endArray();
+		json.flush();
+	}
+
+	/**
+	 * Writes the given record as a JSON object. Write failures (typically the client
+	 * disconnecting) are rethrown unchecked so that the producer stops immediately.
+	 */
+	public void add(T record) {
+		try {
+			record.writeTo(json);
+		} catch (IOException e) {
+			throw new WebApplicationException(e);
+		}
+	}
+
+	/**
+	 * Produces a streaming entity that writes records already held in memory (such as results 
+	 * merged from several projects) as a JSON array.
+	 *
+	 * @param records - Records to write.
+	 * @return Streaming output that writes the records when the response is sent.
+	 */
+	public static <T extends JsonRecord> StreamingOutput stream(final List<T> records) {
+		return new StreamingOutput() {
+			public void write(OutputStream output) throws IOException {
+				JsonRecordWriter<T> writer = new JsonRecordWriter<T>(output);
+				writer.begin();
+				for (T record : records)
+					writer.add(record);
+				writer.end();
+			}
+		};
+	}
+
+	/**
+	 * Writes a named attribute of a record, unless its value is null.
+	 *
+	 * @param json - Writer the record is written to.
+	 * @param name - Attribute name.
+	 * @param value - Attribute value (can be null).
+	 * @throws IOException
+	 */
+	public static void writeAttribute(JsonWriter json, String name, Object value) throws IOException {
+		if (value == null)
+			return;
+		json.name(name);
+		writeValue(json, value);
+	}
+
+	/**
+	 * Writes a single value, recursing into maps and collections.
+	 *
+	 * @param json - Writer the value is written to.
+	 * @param value - Value to write (can be null).
+	 * @throws IOException
+	 */
+	public static void writeValue(JsonWriter json, Object value) throws IOException {
+		if (value == null) {
+			json.nullValue();
+		} else if (value instanceof Date) {
+			json.value(((Date) value).getTime());
+		} else if (value instanceof Number) {
+			json.value((Number) value);
+		} else if (value instanceof Boolean) {
+			json.value(((Boolean) value).booleanValue());
+		} else if (value instanceof Map) {
+			json.beginObject();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				json.name(String.valueOf(entry.getKey()));
+				writeValue(json, entry.getValue());
+			}
+			json.endObject();
+		} else if (value instanceof Collection) {
+			json.beginArray();
+			for (Object element : (Collection<?>) value)
+				writeValue(json, element);
+			json.endArray();
+		} else {
+			json.value(value.toString());
+		}
+	}
+}
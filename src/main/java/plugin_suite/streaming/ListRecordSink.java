@@ -0,0 +1,28 @@
+package plugin_suite.streaming;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Record sink that simply collects every record into a list.
+ */
+public class ListRecordSink<T> implements RecordSink<T> {
+	private final List<T> records;
+	
+	public ListRecordSink() {
+		this.records = new ArrayList<T>();
+	}
+	
+	public void add(T record) {
+		records.add(record);
+	}
+	
+	/**
+	 * Gets every record collected so far, in the order they were added.
+	 * 
+	 * @return List of records.
+	 */
+	public List<T> getRecords() {
+		return records;
+	}
+}
@@ -0,0 +1,16 @@
+package plugin_suite.streaming;
+
+/**
+ * Destination for the records produced by a resource, one typed record at a time. Allows the 
+ * same extraction code to either collect records into a list or write them out as soon as 
+ * they are produced.
+ */
+public interface RecordSink<T> {
+	
+	/**
+	 * Accepts a single record.
+	 * 
+	 * @param record - Record to accept.
+	 */
+	void add(T record);
+}
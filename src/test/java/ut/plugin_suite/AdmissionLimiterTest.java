@@ -0,0 +1,131 @@
+package ut.plugin_suite;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import plugin_suite.concurrent.AdmissionLimiter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionLimiterTest
+{
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    private Future<AdmissionLimiter.Permit> acquireLater(final AdmissionLimiter limiter, final String user)
+    {
+        return executor.submit(new Callable<AdmissionLimiter.Permit>()
+        {
+            public AdmissionLimiter.Permit call()
+            {
+                return limiter.acquire(user);
+            }
+        });
+    }
+
+    private static void awaitQueued(AdmissionLimiter limiter, int queued) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (limiter.getQueued() != queued && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        assertEquals(queued, limiter.getQueued());
+    }
+
+    @Test
+    public void requestsBeyondTheQueueAreRejected()
+    {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", 1, 0, 5, 1000);
+
+        AdmissionLimiter.Permit first = limiter.acquire("first");
+        AdmissionLimiter.Permit second = limiter.acquire("second");
+
+        assertTrue(first.isAdmitted());
+        assertEquals(AdmissionLimiter.Decision.QUEUE_FULL, second.getDecision());
+        assertEquals(1, limiter.getRejected());
+
+        // Releasing twice must not free a second slot
+        first.release();
+        first.release();
+        assertEquals(0, limiter.getRunning());
+        assertTrue(limiter.acquire("second").isAdmitted());
+    }
+
+    @Test
+    public void userIsLimitedToTheirShare()
+    {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", 4, 4, 1, 1000);
+
+        assertTrue(limiter.acquire("user").isAdmitted());
+        assertEquals(AdmissionLimiter.Decision.USER_LIMIT, limiter.acquire("user").getDecision());
+        assertTrue("Other users should still be admitted!", limiter.acquire("other").isAdmitted());
+    }
+
+    @Test
+    public void waitingRequestTimesOut()
+    {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", 1, 1, 5, 10);
+
+        limiter.acquire("first");
+        assertEquals(AdmissionLimiter.Decision.TIMED_OUT, limiter.acquire("second").getDecision());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void waitingRequestsDoNotCountTowardTheUsersShare() throws Exception
+    {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", 1, 4, 2, 10000);
+        AdmissionLimiter.Permit other = limiter.acquire("other");
+
+        Future<AdmissionLimiter.Permit> first = acquireLater(limiter, "user");
+        Future<AdmissionLimiter.Permit> second = acquireLater(limiter, "user");
+        awaitQueued(limiter, 2);
+        Future<AdmissionLimiter.Permit> third = acquireLater(limiter, "user");
+        awaitQueued(limiter, 3);
+        assertEquals(0, limiter.getRejected());
+
+        other.release();
+        first.get(10, TimeUnit.SECONDS).release();
+        second.get(10, TimeUnit.SECONDS).release();
+        assertTrue(third.get(10, TimeUnit.SECONDS).isAdmitted());
+    }
+
+    @Test
+    public void freedSlotGoesToAWaitingRequestThatMayTakeIt() throws Exception
+    {
+        AdmissionLimiter limiter = new AdmissionLimiter("test", 2, 4, 1, 10000);
+        AdmissionLimiter.Permit first = limiter.acquire("first");
+        AdmissionLimiter.Permit second = limiter.acquire("second");
+
+        // One of the user's requests takes the first freed slot, and the other then waits for it
+        Future<AdmissionLimiter.Permit> userFirst = acquireLater(limiter, "user");
+        Future<AdmissionLimiter.Permit> userSecond = acquireLater(limiter, "user");
+        awaitQueued(limiter, 2);
+        first.release();
+        awaitQueued(limiter, 1);
+        Future<AdmissionLimiter.Permit> other = acquireLater(limiter, "other");
+        awaitQueued(limiter, 2);
+
+        second.release();
+        assertTrue("The waiting request of another user should take the slot!",
+                other.get(5, TimeUnit.SECONDS).isAdmitted());
+        assertEquals(1, limiter.getQueued());
+
+        AdmissionLimiter.Permit admitted = userFirst.isDone() ? userFirst.get() : userSecond.get();
+        admitted.release();
+        assertTrue(userFirst.get(5, TimeUnit.SECONDS).isAdmitted());
+        assertTrue(userSecond.get(5, TimeUnit.SECONDS).isAdmitted());
+    }
+}
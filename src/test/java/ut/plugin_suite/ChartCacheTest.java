@@ -0,0 +1,66 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import plugin_suite.cache.ChartCache;
+import plugin_suite.cache.ResultCache;
+import plugin_suite.charts.ChartSeries;
+import plugin_suite.charts.RenderedChart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ChartCacheTest
+{
+    private static ResultCache.Loader<RenderedChart> loaderOf(final String fingerprint, final int bytes)
+    {
+        return new ResultCache.Loader<RenderedChart>()
+        {
+            public RenderedChart load()
+            {
+                return new RenderedChart(fingerprint, null, "", "map", 600, 300, null, new byte[bytes], "user");
+            }
+        };
+    }
+
+    @Test
+    public void fingerprintIgnoresPointOrder()
+    {
+        String first = ChartCache.fingerprint(600, 300, 7, 30, 0L,
+                ChartSeries.fromLists(Arrays.asList(1L, 2L, 1L), Arrays.asList(3L, 4L, 5L)), "Title", "Dates", "Issues");
+        String second = ChartCache.fingerprint(600, 300, 7, 30, 0L,
+                ChartSeries.fromLists(Arrays.asList(2L, 1L), Arrays.asList(4L, 8L)), "Title", "Dates", "Issues");
+
+        assertEquals("Equivalent series should share a fingerprint!", first, second);
+    }
+
+    @Test
+    public void fingerprintDependsOnSettings()
+    {
+        String first = ChartCache.fingerprint(600, 300, 7, 30, 0L,
+                ChartSeries.fromLists(Arrays.asList(1L), Arrays.asList(3L)), "Title", "Dates", "Issues");
+        String second = ChartCache.fingerprint(600, 300, 14, 30, 0L,
+                ChartSeries.fromLists(Arrays.asList(1L), Arrays.asList(3L)), "Title", "Dates", "Issues");
+
+        assertEquals(false, first.equals(second));
+    }
+
+    @Test
+    public void memoryCapEvictsLeastRecentlyUsed()
+    {
+        ChartCache cache = new ChartCache(10, 250);
+
+        cache.get("a", loaderOf("a", 100));
+        cache.get("b", loaderOf("b", 100));
+        cache.get("a", loaderOf("a", 100));
+        cache.get("c", loaderOf("c", 100));
+
+        assertNotNull(cache.getIfPresent("a"));
+        assertNull("Least recently used chart should be evicted!", cache.getIfPresent("b"));
+        assertEquals(200, cache.getBytes());
+        assertEquals(1, cache.getEvictions());
+    }
+}
@@ -0,0 +1,108 @@
+package ut.plugin_suite;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+
+import plugin_suite.concurrent.SingleFlight;
+import plugin_suite.models.ErrorRestResourceModel;
+import plugin_suite.resources.ChartRestResource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ChartRestResourceTest
+{
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final ChartRestResource resource = new ChartRestResource(null, null, null);
+
+    @Before
+    public void setUp()
+    {
+        // Looking up the project stands for the search, and waits until the test releases it
+        ProjectManager projectManager = mock(ProjectManager.class);
+        when(projectManager.getProjectObjByKey("TEST")).thenAnswer(new Answer<Project>()
+        {
+            public Project answer(InvocationOnMock invocation) throws Throwable
+            {
+                lookups.incrementAndGet();
+                release.await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        });
+
+        ComponentAccessor.Worker worker = mock(ComponentAccessor.Worker.class);
+        when(worker.getComponent(JiraAuthenticationContext.class)).thenReturn(mock(JiraAuthenticationContext.class));
+        when(worker.getComponent(ProjectManager.class)).thenReturn(projectManager);
+        when(worker.getComponent(CustomFieldManager.class)).thenReturn(mock(CustomFieldManager.class));
+        ComponentAccessor.initialiseWorker(worker);
+    }
+
+    @After
+    public void tearDown()
+    {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    private Future<Response> generateTrendLater()
+    {
+        final HttpHeaders headers = mock(HttpHeaders.class);
+        return executor.submit(new Callable<Response>()
+        {
+            public Response call()
+            {
+                return resource.generateTrend(Collections.singletonList("TEST"), null, null,
+                        Collections.singletonList("customfield_10000"), null, 7, 30, 600, 300, null, null, null,
+                        null, null, headers);
+            }
+        });
+    }
+
+    @Test
+    public void identicalTrendRequestsShareOneSearch() throws Exception
+    {
+        SingleFlight flight = SingleFlight.get(SingleFlight.CHARTS);
+        long coalesced = flight.getCoalesced();
+
+        Future<Response> first = generateTrendLater();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (lookups.get() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        Future<Response> second = generateTrendLater();
+        while (flight.getCoalesced() == coalesced && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        release.countDown();
+
+        Response firstResponse = first.get(10, TimeUnit.SECONDS);
+        Response secondResponse = second.get(10, TimeUnit.SECONDS);
+        assertEquals("Identical requests should only search once!", 1, lookups.get());
+        assertEquals(coalesced + 1, flight.getCoalesced());
+        assertTrue(firstResponse.getEntity() instanceof ErrorRestResourceModel);
+        assertTrue(secondResponse.getEntity() instanceof ErrorRestResourceModel);
+    }
+}
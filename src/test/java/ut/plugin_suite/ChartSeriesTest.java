@@ -0,0 +1,81 @@
+package ut.plugin_suite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import plugin_suite.charts.ChartSeries;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ChartSeriesTest
+{
+    @Test
+    public void binaryEncodingRoundTrips() throws IOException
+    {
+        long[] dates = { 1420070400000L, 1420156800000L, 1419984000000L };
+        long[] counts = { 4L, 0L, 12L };
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ChartSeries(dates, counts).writeBinary(output);
+        ChartSeries decoded = ChartSeries.readBinary(new ByteArrayInputStream(output.toByteArray()));
+
+        assertArrayEquals(dates, decoded.getDates());
+        assertArrayEquals(counts, decoded.getCounts());
+    }
+
+    @Test
+    public void jsonBodyIsReadIntoPrimitiveArrays() throws IOException
+    {
+        String json = "{\"title\": \"ignored\", \"dates\": [3, 1], \"counts\": [5, 7, 9]}";
+        ChartSeries series = ChartSeries.readJson(new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+        assertArrayEquals(new long[] { 3L, 1L }, series.getDates());
+        assertArrayEquals(new long[] { 5L, 7L }, series.getCounts());
+    }
+
+    @Test
+    public void namedSeriesAreReadInOrder() throws IOException
+    {
+        String json = "{\"series\": [{\"name\": \"Bug\", \"dates\": [1, 2], \"counts\": [3, 4]},"
+                + " {\"name\": \"Task\", \"dates\": [2], \"counts\": [6]}]}";
+        List<ChartSeries> series = ChartSeries.readJsonSeries(new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+        assertEquals(2, series.size());
+        assertEquals("Bug", series.get(0).getName());
+        assertArrayEquals(new long[] { 3L, 4L }, series.get(0).getCounts());
+        assertEquals("Task", series.get(1).getName());
+        assertArrayEquals(new long[] { 2L }, series.get(1).getDates());
+    }
+
+    @Test
+    public void singleSeriesBodyIsReadAsUnnamedSeries() throws IOException
+    {
+        String json = "{\"dates\": [1], \"counts\": [5]}";
+        List<ChartSeries> series = ChartSeries.readJsonSeries(new ByteArrayInputStream(json.getBytes("UTF-8")));
+
+        assertEquals(1, series.size());
+        assertNull(series.get(0).getName());
+        assertArrayEquals(new long[] { 5L }, series.get(0).getCounts());
+    }
+
+    @Test
+    public void normalizeSortsAndMergesDates()
+    {
+        ChartSeries series = new ChartSeries(new long[] { 2L, 1L, 2L }, new long[] { 1L, 4L, 3L }).normalize();
+
+        assertArrayEquals(new long[] { 1L, 2L }, series.getDates());
+        assertArrayEquals(new long[] { 4L, 4L }, series.getCounts());
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedBinaryIsRejected() throws IOException
+    {
+        ChartSeries.readBinary(new ByteArrayInputStream(new byte[] { 2, 10 }));
+    }
+}
@@ -0,0 +1,55 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import plugin_suite.charts.CumulativeFlow;
+import plugin_suite.charts.DateBucketer;
+import plugin_suite.history.StatusTransition;
+import plugin_suite.models.CumulativeFlowRestResourceModel;
+import plugin_suite.models.CumulativeFlowRestResourceModel.StatusSeriesContainer;
+
+import static org.junit.Assert.assertEquals;
+
+public class CumulativeFlowTest
+{
+    private static final long DAY = DateBucketer.MILLIS_PER_DAY;
+    private static final long TODAY = 20000;
+
+    @Test
+    public void issuesAreCountedInTheirStatusOnEveryDay()
+    {
+        CumulativeFlow flow = new CumulativeFlow(new DateBucketer(TimeZone.getTimeZone("UTC"), TODAY, 1), 4);
+        flow.addIssue(1, (TODAY - 10) * DAY, "6");
+        flow.addIssue(2, (TODAY - 3) * DAY + 5, "3");
+        flow.addIssue(3, (TODAY - 1) * DAY, "1");
+        flow.addTransition(new StatusTransition(1, 1, (TODAY - 5) * DAY, "1", "Open", "3", "In Progress"));
+        flow.addTransition(new StatusTransition(1, 2, (TODAY - 2) * DAY, "3", "In Progress", "6", "Closed"));
+        flow.addTransition(new StatusTransition(2, 3, (TODAY - 2) * DAY + 7, "1", "Open", "3", "In Progress"));
+
+        Map<String, String> statuses = new LinkedHashMap<String, String>();
+        statuses.put("1", "Open");
+        statuses.put("3", "In Progress");
+        statuses.put("4", "Reopened");
+        statuses.put("6", "Closed");
+        CumulativeFlowRestResourceModel model = flow.getModel(statuses);
+
+        assertEquals(5, model.getDates().size());
+        assertEquals((TODAY - 4) * DAY, (long) model.getDates().get(0));
+
+        // Statuses that were never occupied are left out
+        List<StatusSeriesContainer> series = model.getStatuses();
+        assertEquals(3, series.size());
+        assertEquals("Open", series.get(0).getName());
+        assertEquals(Arrays.asList(0L, 1L, 0L, 1L, 1L), series.get(0).getCounts());
+        assertEquals("In Progress", series.get(1).getName());
+        assertEquals(Arrays.asList(1L, 1L, 1L, 1L, 1L), series.get(1).getCounts());
+        assertEquals("Closed", series.get(2).getName());
+        assertEquals(Arrays.asList(0L, 0L, 1L, 1L, 1L), series.get(2).getCounts());
+    }
+}
@@ -0,0 +1,109 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import plugin_suite.cache.CustomFieldRegistry;
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.CustomFieldRestResourceModel.CustomFieldDataContainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CustomFieldRegistryTest
+{
+    private static final String TYPES = "com.atlassian.jira.plugin.system.customfieldtypes:";
+
+    private static CustomFieldDataContainer field(String id, String name, String typeKey, String typeName)
+    {
+        return new CustomFieldDataContainer(FieldSet.ALL, id, name, typeKey, typeName,
+                CustomFieldRegistry.getCategory(typeKey, typeName));
+    }
+
+    private static CustomFieldRegistry.Snapshot snapshot()
+    {
+        return new CustomFieldRegistry.Snapshot("1", Arrays.asList(
+                field("customfield_10002", "Start", TYPES + "datetime", "Date Time Picker"),
+                field("customfield_10001", "Due", TYPES + "datepicker", "Date Picker"),
+                field("customfield_10003", "Points", TYPES + "float", "Number Field"),
+                field("customfield_10004", "Reviewer", TYPES + "userpicker", "User Picker (single user)"),
+                field("customfield_10005", "Launch", "com.example:launch", "Launch Date"),
+                field("customfield_10006", "Notes", TYPES + "textarea", "Free Text Field")));
+    }
+
+    @Test
+    public void typesAreCategorized()
+    {
+        CustomFieldRegistry.Snapshot snapshot = snapshot();
+
+        assertEquals(CustomFieldRegistry.DATETIME, snapshot.getField("customfield_10002").getCategory());
+        assertEquals(CustomFieldRegistry.NUMBER, snapshot.getField(10003L).getCategory());
+        assertEquals(CustomFieldRegistry.USER, snapshot.getField(10004L).getCategory());
+        // Other types are dates if their name says so
+        assertEquals(CustomFieldRegistry.DATE, snapshot.getField(10005L).getCategory());
+        assertEquals(CustomFieldRegistry.OTHER, snapshot.getField(10006L).getCategory());
+        assertNull(snapshot.getField(10007L));
+    }
+
+    @Test
+    public void fieldsAreLookedUpByCategoryAndTypeKey()
+    {
+        CustomFieldRegistry.Snapshot snapshot = snapshot();
+
+        // Fields of every type are listed in name order, and a field is only listed once
+        List<CustomFieldDataContainer> dates = snapshot.getFields(Arrays.asList(
+                CustomFieldRegistry.DATE, CustomFieldRegistry.DATETIME, TYPES + "datepicker"), FieldSet.ALL);
+        assertEquals(3, dates.size());
+        assertEquals("Due", dates.get(0).getName());
+        assertEquals("Launch", dates.get(1).getName());
+        assertEquals("Start", dates.get(2).getName());
+
+        assertEquals(1, snapshot.getFields(Collections.singletonList(TYPES + "float"), FieldSet.ALL).size());
+        assertEquals(0, snapshot.getFields(Collections.singletonList("unknown"), FieldSet.ALL).size());
+        assertEquals(6, snapshot.getFields(null, FieldSet.ALL).size());
+    }
+
+    @Test
+    public void projectionsAreBuiltOnce()
+    {
+        CustomFieldRegistry.Snapshot snapshot = snapshot();
+        FieldSet fieldSet = FieldSet.forRequest(Arrays.asList("name"), CustomFieldDataContainer.ATTRIBUTES);
+        List<String> types = Collections.singletonList(CustomFieldRegistry.DATE);
+
+        List<CustomFieldDataContainer> names = snapshot.getFields(types, fieldSet);
+        assertSame(names, snapshot.getFields(types, fieldSet));
+        assertEquals("Due", names.get(0).getName());
+        assertNull(names.get(0).getId());
+    }
+
+    @Test
+    public void fieldsOfSeveralTypesAreSortedByName()
+    {
+        List<CustomFieldDataContainer> dates = snapshot().getFields(Arrays.asList(
+                CustomFieldRegistry.DATETIME, CustomFieldRegistry.NUMBER, CustomFieldRegistry.DATE), FieldSet.ALL);
+
+        assertEquals(4, dates.size());
+        assertEquals("Due", dates.get(0).getName());
+        assertEquals("Launch", dates.get(1).getName());
+        assertEquals("Points", dates.get(2).getName());
+        assertEquals("Start", dates.get(3).getName());
+    }
+
+    @Test
+    public void unknownTypesShareTheProjectionOfTheKnownOnes()
+    {
+        CustomFieldRegistry.Snapshot snapshot = snapshot();
+
+        List<CustomFieldDataContainer> dates = snapshot.getFields(Collections.singletonList(CustomFieldRegistry.DATE),
+                FieldSet.ALL);
+        assertSame(dates, snapshot.getFields(Arrays.asList("unknown1", CustomFieldRegistry.DATE), FieldSet.ALL));
+        assertSame(dates, snapshot.getFields(Arrays.asList(CustomFieldRegistry.DATE, "unknown2",
+                CustomFieldRegistry.DATE), FieldSet.ALL));
+        assertSame(snapshot.getFields(Collections.singletonList("unknown1"), FieldSet.ALL),
+                snapshot.getFields(Collections.singletonList("unknown2"), FieldSet.ALL));
+    }
+}
@@ -0,0 +1,104 @@
+package ut.plugin_suite;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.ofbiz.core.entity.EntityCondition;
+import org.ofbiz.core.entity.GenericValue;
+
+import com.atlassian.jira.issue.customfields.CustomFieldType;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.ofbiz.OfBizDelegator;
+
+import plugin_suite.search.CustomFieldValueReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CustomFieldValueReaderTest
+{
+    private static final String TYPE_PREFIX = "com.atlassian.jira.plugin.system.customfieldtypes:";
+
+    private static CustomField fieldOf(long id, String typeName)
+    {
+        CustomFieldType type = mock(CustomFieldType.class);
+        when(type.getKey()).thenReturn(TYPE_PREFIX + typeName);
+        CustomField field = mock(CustomField.class);
+        when(field.getIdAsLong()).thenReturn(id);
+        when(field.getId()).thenReturn("customfield_" + id);
+        when(field.getCustomFieldType()).thenReturn(type);
+        return field;
+    }
+
+    private static GenericValue rowOf(long issueId, long fieldId)
+    {
+        GenericValue row = mock(GenericValue.class);
+        when(row.getLong("issue")).thenReturn(issueId);
+        when(row.getLong("customfield")).thenReturn(fieldId);
+        return row;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static OfBizDelegator delegatorReturning(List<GenericValue> rows, List<GenericValue>... moreRows)
+    {
+        OfBizDelegator delegator = mock(OfBizDelegator.class);
+        when(delegator.findByCondition(eq("CustomFieldValue"), any(EntityCondition.class),
+                any(Collection.class), any(List.class))).thenReturn(rows, moreRows);
+        return delegator;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void valuesAreReadFromTheirTypesColumn()
+    {
+        GenericValue date = rowOf(1, 10);
+        when(date.getTimestamp("datevalue")).thenReturn(new Timestamp(86400000L));
+        GenericValue number = rowOf(1, 11);
+        when(number.getDouble("numbervalue")).thenReturn(2.5);
+        GenericValue shortText = rowOf(1, 12);
+        when(shortText.getString("stringvalue")).thenReturn("short");
+        GenericValue longText = rowOf(2, 12);
+        when(longText.getString("textvalue")).thenReturn("long");
+        OfBizDelegator delegator = delegatorReturning(Arrays.asList(date, number, shortText, longText));
+
+        Map<Long, Map<String, Object>> values = new CustomFieldValueReader(delegator).getValues(Arrays.asList(1L, 2L),
+                Arrays.asList(fieldOf(10, "datepicker"), fieldOf(11, "float"), fieldOf(12, "textarea")));
+
+        assertEquals(new Timestamp(86400000L), values.get(1L).get("customfield_10"));
+        assertEquals(2.5, values.get(1L).get("customfield_11"));
+        assertEquals("short", values.get(1L).get("customfield_12"));
+        assertEquals("Long text should be read from the unlimited column!", "long", values.get(2L).get("customfield_12"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void manyFieldsAreReadInChunks()
+    {
+        List<CustomField> fields = new ArrayList<CustomField>();
+        for (long id = 1; id <= CustomFieldValueReader.FIELD_CHUNK_SIZE + 1; id++)
+            fields.add(fieldOf(id, "textfield"));
+        GenericValue first = rowOf(1, 1);
+        when(first.getString("stringvalue")).thenReturn("first");
+        GenericValue last = rowOf(1, CustomFieldValueReader.FIELD_CHUNK_SIZE + 1);
+        when(last.getString("stringvalue")).thenReturn("last");
+        OfBizDelegator delegator = delegatorReturning(Collections.singletonList(first), Collections.singletonList(last));
+
+        Map<Long, Map<String, Object>> values = new CustomFieldValueReader(delegator).getValues(
+                Collections.singletonList(1L), fields);
+
+        verify(delegator, times(2)).findByCondition(eq("CustomFieldValue"), any(EntityCondition.class),
+                any(Collection.class), any(List.class));
+        assertEquals("Rows of every chunk should be merged!", 2, values.get(1L).size());
+    }
+}
@@ -0,0 +1,104 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import plugin_suite.concurrent.WorkerPool;
+import plugin_suite.history.CycleTimeCalculator;
+import plugin_suite.history.StatusTransition;
+import plugin_suite.models.CycleTimeRestResourceModel.DurationDataContainer;
+import plugin_suite.models.CycleTimeRestResourceModel.IssueTypeDataContainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CycleTimeCalculatorTest
+{
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private final WorkerPool workerPool = new WorkerPool(2);
+
+    @After
+    public void tearDown() throws Exception
+    {
+        workerPool.destroy();
+    }
+
+    @Test
+    public void cycleTimesAreSummarizedPerIssueType() throws Exception
+    {
+        CycleTimeCalculator calculator = new CycleTimeCalculator(Collections.singletonList("3"),
+                Collections.singletonList("6"));
+        for (int issue = 1; issue <= 20; issue++)
+        {
+            calculator.add("1", "Bug", transition(issue, 0, "1", "3"));
+            calculator.add("1", "Bug", transition(issue, issue * HOUR, "3", "6"));
+        }
+        calculator.add("2", "Task", transition(21, 0, "1", "3"));
+
+        List<IssueTypeDataContainer> issueTypes = calculator.getModel(workerPool).getIssueTypes();
+        assertEquals(2, issueTypes.size());
+
+        DurationDataContainer cycleTime = issueTypes.get(0).getCycleTime();
+        assertEquals(20, cycleTime.getCount());
+        assertEquals(10 * HOUR, cycleTime.getP50());
+        assertEquals(17 * HOUR, cycleTime.getP85());
+        assertEquals(19 * HOUR, cycleTime.getP95());
+
+        assertEquals("Task", issueTypes.get(1).getName());
+        assertEquals(1, issueTypes.get(1).getIssueCount());
+        assertNull("Open cycles should not be counted!", issueTypes.get(1).getCycleTime());
+    }
+
+    @Test
+    public void timeInStatusIsSummedOverEveryStay() throws Exception
+    {
+        CycleTimeCalculator calculator = new CycleTimeCalculator(null, Arrays.asList("6"));
+        calculator.add("1", "Bug", transition(1, 0, "1", "3"));
+        calculator.add("1", "Bug", transition(1, 2 * HOUR, "3", "4"));
+        calculator.add("1", "Bug", transition(1, 3 * HOUR, "4", "3"));
+        calculator.add("1", "Bug", transition(1, 4 * HOUR, "3", "6"));
+
+        IssueTypeDataContainer issueType = calculator.getModel(workerPool).getIssueTypes().get(0);
+        assertEquals(4 * HOUR, issueType.getCycleTime().getP50());
+        assertEquals(2, issueType.getStatuses().size());
+        assertEquals("3", issueType.getStatuses().get(0).getId());
+        assertEquals(3 * HOUR, issueType.getStatuses().get(0).getP50());
+        assertEquals(HOUR, issueType.getStatuses().get(1).getP50());
+    }
+
+    @Test
+    public void cyclesAreMeasuredByTheirEndDate() throws Exception
+    {
+        CycleTimeCalculator calculator = new CycleTimeCalculator(Collections.singletonList("3"),
+                Collections.singletonList("6"), new Date(10 * HOUR));
+        // Started before the earliest date and ended after it
+        calculator.add("1", "Bug", transition(1, 0, "1", "3"));
+        calculator.add("1", "Bug", transition(1, 12 * HOUR, "3", "6"));
+        // Ended before the earliest date
+        calculator.add("1", "Bug", transition(2, 0, "1", "3"));
+        calculator.add("1", "Bug", transition(2, 2 * HOUR, "3", "6"));
+        calculator.add("1", "Bug", transition(2, 11 * HOUR, "6", "7"));
+        // No transition since the earliest date
+        calculator.add("2", "Task", transition(3, 0, "1", "3"));
+
+        List<IssueTypeDataContainer> issueTypes = calculator.getModel(workerPool).getIssueTypes();
+        assertEquals(1, issueTypes.size());
+        assertEquals(2, issueTypes.get(0).getIssueCount());
+
+        DurationDataContainer cycleTime = issueTypes.get(0).getCycleTime();
+        assertEquals(1, cycleTime.getCount());
+        assertEquals(12 * HOUR, cycleTime.getP50());
+    }
+
+    private static StatusTransition transition(long issueId, long changeTime, String oldStatusId, String newStatusId)
+    {
+        return new StatusTransition(issueId, changeTime, changeTime, oldStatusId, "Status " + oldStatusId,
+                newStatusId, "Status " + newStatusId);
+    }
+}
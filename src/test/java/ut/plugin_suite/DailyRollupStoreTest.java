@@ -0,0 +1,177 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.java.ao.Query;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ofbiz.core.entity.GenericValue;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.sal.api.transaction.TransactionCallback;
+
+import plugin_suite.rollup.DailyIssueCount;
+import plugin_suite.rollup.DailyRollupStore;
+import plugin_suite.rollup.DailyRollupStore.CountDelta;
+import plugin_suite.rollup.IssueDateRollup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DailyRollupStoreTest
+{
+    private static IssueDateRollup rollupOf(long projectId, String issueTypeId, String fieldId, long epochDay)
+    {
+        IssueDateRollup rollup = mock(IssueDateRollup.class);
+        when(rollup.getProjectId()).thenReturn(projectId);
+        when(rollup.getIssueTypeId()).thenReturn(issueTypeId);
+        when(rollup.getFieldId()).thenReturn(fieldId);
+        when(rollup.getEpochDay()).thenReturn(epochDay);
+        return rollup;
+    }
+
+    private static ActiveObjects activeObjectsWith(IssueDateRollup... counted)
+    {
+        ActiveObjects ao = mock(ActiveObjects.class);
+        when(ao.find(eq(IssueDateRollup.class), any(Query.class))).thenReturn(counted);
+        when(ao.find(eq(DailyIssueCount.class), any(Query.class))).thenReturn(new DailyIssueCount[0]);
+        when(ao.executeInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>()
+        {
+            public Object answer(InvocationOnMock invocation) throws Throwable
+            {
+                return ((TransactionCallback<?>) invocation.getArguments()[0]).doInTransaction();
+            }
+        });
+        return ao;
+    }
+
+    private static GenericValue customChangeOf(String fieldName)
+    {
+        GenericValue changeItem = mock(GenericValue.class);
+        when(changeItem.getString("fieldtype")).thenReturn("custom");
+        when(changeItem.getString("field")).thenReturn(fieldName);
+        return changeItem;
+    }
+
+    private static CustomField customFieldNamed(String id, String name)
+    {
+        CustomField field = mock(CustomField.class);
+        when(field.getId()).thenReturn(id);
+        when(field.getFieldName()).thenReturn(name);
+        CustomFieldManager customFieldManager = mock(CustomFieldManager.class);
+        when(customFieldManager.getCustomFieldObjectsByName(name)).thenReturn(Collections.singletonList(field));
+        when(customFieldManager.getCustomFieldObjectsByName("Summary notes")).thenReturn(Collections.<CustomField>emptyList());
+        ComponentAccessor.components.put(CustomFieldManager.class, customFieldManager);
+        return field;
+    }
+
+    @Test
+    public void unchangedIssueChangesNoCount()
+    {
+        IssueDateRollup[] counted = {rollupOf(1, "10", "customfield_1", 100)};
+
+        List<CountDelta> deltas = DailyRollupStore.getCountDeltas(counted, 1, "10",
+                Collections.singletonMap("customfield_1", 100L));
+
+        assertTrue("Applying the same issue twice should change nothing!", deltas.isEmpty());
+    }
+
+    @Test
+    public void movedDateMovesCountToNewDay()
+    {
+        IssueDateRollup old = rollupOf(1, "10", "customfield_1", 100);
+        Map<String, Long> currentDays = new HashMap<String, Long>();
+        currentDays.put("customfield_1", 105L);
+
+        List<CountDelta> deltas = DailyRollupStore.getCountDeltas(new IssueDateRollup[] {old}, 1, "10", currentDays);
+
+        assertEquals(2, deltas.size());
+        assertEquals(100, deltas.get(0).getEpochDay());
+        assertEquals(-1, deltas.get(0).getAmount());
+        assertSame(old, deltas.get(0).getRollup());
+        assertEquals(105, deltas.get(1).getEpochDay());
+        assertEquals(1, deltas.get(1).getAmount());
+    }
+
+    @Test
+    public void changedIssueTypeMovesEveryCount()
+    {
+        IssueDateRollup[] counted = {rollupOf(1, "10", "customfield_1", 100)};
+
+        List<CountDelta> deltas = DailyRollupStore.getCountDeltas(counted, 1, "20",
+                Collections.singletonMap("customfield_1", 100L));
+
+        assertEquals(2, deltas.size());
+        assertEquals("10", deltas.get(0).getIssueTypeId());
+        assertEquals(-1, deltas.get(0).getAmount());
+        assertEquals("20", deltas.get(1).getIssueTypeId());
+        assertEquals(1, deltas.get(1).getAmount());
+    }
+
+    @Test
+    public void clearedDateIsOnlyRemoved()
+    {
+        IssueDateRollup[] counted = {rollupOf(1, "10", "customfield_1", 100), rollupOf(1, "10", "customfield_2", 90)};
+
+        List<CountDelta> deltas = DailyRollupStore.getCountDeltas(counted, 1, "10",
+                Collections.singletonMap("customfield_2", 90L));
+
+        assertEquals(1, deltas.size());
+        assertEquals("customfield_1", deltas.get(0).getFieldId());
+        assertEquals(-1, deltas.get(0).getAmount());
+    }
+
+    @Test
+    public void removedIssueChangesEveryCountInOneTransaction()
+    {
+        ActiveObjects ao = activeObjectsWith(rollupOf(1, "10", "customfield_1", 100), rollupOf(1, "10", "customfield_2", 90));
+
+        new DailyRollupStore(ao).removeIssue(7);
+
+        verify(ao, times(1)).executeInTransaction(any(TransactionCallback.class));
+        verify(ao, times(2)).find(eq(DailyIssueCount.class), any(Query.class));
+    }
+
+    @Test
+    public void renamedDateFieldIsTrackedById()
+    {
+        CustomField field = customFieldNamed("customfield_1", "Due again");
+        Issue issue = mock(Issue.class);
+        when(issue.getId()).thenReturn(7L);
+        when(issue.getCustomFieldValue(field)).thenReturn(new Date());
+        DailyRollupStore store = new DailyRollupStore(activeObjectsWith());
+
+        assertTrue(store.isTrackedChange(issue, Arrays.asList(customChangeOf("Due again"))));
+        assertFalse(store.isTrackedChange(issue, Arrays.asList(customChangeOf("Summary notes"))));
+    }
+
+    @Test
+    public void clearedDateFieldIsTrackedIfTheIssueIsCountedUnderIt()
+    {
+        customFieldNamed("customfield_1", "Due");
+        Issue issue = mock(Issue.class);
+        when(issue.getId()).thenReturn(7L);
+        DailyRollupStore store = new DailyRollupStore(activeObjectsWith(rollupOf(1, "10", "customfield_1", 100)));
+
+        assertTrue(store.isTrackedChange(issue, Arrays.asList(customChangeOf("Due"))));
+    }
+}
@@ -0,0 +1,65 @@
+package ut.plugin_suite;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import plugin_suite.charts.DateBucketer;
+
+import static org.junit.Assert.assertEquals;
+
+public class DateBucketerTest
+{
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    private static long millisOf(int year, int month, int day, int hour, TimeZone timeZone)
+    {
+        Calendar calendar = new GregorianCalendar(timeZone);
+        calendar.clear();
+        calendar.set(year, month, day, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void dayStartsAtLocalMidnightAcrossDaylightSaving()
+    {
+        // Daylight saving time starts on 2015-03-08 in New York
+        long morning = millisOf(2015, Calendar.MARCH, 9, 1, NEW_YORK);
+        long day = DateBucketer.toEpochDay(morning, NEW_YORK);
+
+        assertEquals(millisOf(2015, Calendar.MARCH, 9, 0, NEW_YORK), DateBucketer.toMillis(day, NEW_YORK));
+        assertEquals(1, day - DateBucketer.toEpochDay(millisOf(2015, Calendar.MARCH, 8, 23, NEW_YORK), NEW_YORK));
+    }
+
+    @Test
+    public void axisTicksEndAtUpperBound()
+    {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        DateBucketer bucketer = new DateBucketer(utc, 100, 7);
+
+        // A range of 30 days is extended to 35, the next multiple of the interval
+        assertEquals(65, bucketer.getLowerBoundDay(30));
+        assertEquals(6, bucketer.getAxisTicks(30).size());
+        assertEquals(DateBucketer.toMillis(65, utc), (long) bucketer.getAxisTicks(30).get(0));
+        assertEquals(DateBucketer.toMillis(100, utc), (long) bucketer.getAxisTicks(30).get(5));
+    }
+
+    @Test
+    public void instantsBeforeEpochRoundDown()
+    {
+        assertEquals(-1, DateBucketer.toEpochDay(-1, TimeZone.getTimeZone("UTC")));
+    }
+
+    @Test
+    public void axisDaysAreAlignedToUpperBound()
+    {
+        DateBucketer bucketer = new DateBucketer(NEW_YORK, 100, 7);
+
+        assertEquals(100, bucketer.getAxisDay(100));
+        assertEquals(100, bucketer.getAxisDay(94));
+        assertEquals(93, bucketer.getAxisDay(93));
+        assertEquals(93, bucketer.getAxisDay(87));
+    }
+}
@@ -0,0 +1,35 @@
+package ut.plugin_suite;
+
+import org.junit.Test;
+
+import plugin_suite.charts.DayCounter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DayCounterTest
+{
+    @Test
+    public void countsAreSummedPerKeyAcrossResizes()
+    {
+        DayCounter counter = new DayCounter();
+        for (int i = 0; i < 1000; i++)
+            counter.add(i % 300 - 150, 2);
+
+        assertEquals(300, counter.size());
+        assertEquals(8, counter.get(-150));
+        assertEquals(6, counter.get(149));
+        assertEquals("Keys never counted should be 0!", 0, counter.get(500));
+    }
+
+    @Test
+    public void keysAreSorted()
+    {
+        DayCounter counter = new DayCounter();
+        counter.add(16500, 1);
+        counter.add(-3, 1);
+        counter.add(42, 1);
+
+        assertArrayEquals(new long[] { -3, 42, 16500 }, counter.getSortedKeys());
+    }
+}
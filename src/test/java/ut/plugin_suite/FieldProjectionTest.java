@@ -0,0 +1,73 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+
+import plugin_suite.search.FieldProjection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FieldProjectionTest
+{
+    private static Issue issueOf(long projectId, String issueTypeId, CustomField... applicableFields)
+    {
+        Issue issue = mock(Issue.class);
+        when(issue.getProjectId()).thenReturn(projectId);
+        when(issue.getIssueTypeId()).thenReturn(issueTypeId);
+        CustomFieldManager customFieldManager = mock(CustomFieldManager.class);
+        when(customFieldManager.getCustomFieldObjects(projectId, issueTypeId)).thenReturn(Arrays.asList(applicableFields));
+        ComponentAccessor.components.put(CustomFieldManager.class, customFieldManager);
+        return issue;
+    }
+
+    @Test
+    public void repeatedAndCommaSeparatedIdsAreMerged()
+    {
+        assertEquals(Arrays.asList("customfield_10000", "customfield_10001", "customfield_10002"),
+                FieldProjection.parseFieldIds(Arrays.asList("customfield_10000, customfield_10001",
+                        "customfield_10002", "customfield_10000")));
+    }
+
+    @Test
+    public void missingOrBlankIdsAreIgnored()
+    {
+        assertTrue(FieldProjection.parseFieldIds(null).isEmpty());
+        assertTrue(FieldProjection.parseFieldIds(Collections.<String>singletonList(null)).isEmpty());
+        assertTrue(FieldProjection.parseFieldIds(Arrays.asList("", " , ")).isEmpty());
+    }
+
+    @Test
+    public void dateFieldIsKeptWhereItDoesNotApply()
+    {
+        CustomField dateField = mock(CustomField.class);
+        CustomField requested = mock(CustomField.class);
+        CustomField other = mock(CustomField.class);
+        Issue issue = issueOf(1, "10", requested, other);
+
+        FieldProjection projection = new FieldProjection(Arrays.asList(requested), dateField, null);
+
+        assertEquals(Arrays.asList(requested, dateField), projection.getFields(issue));
+    }
+
+    @Test
+    public void inapplicableRequestedFieldsAreDropped()
+    {
+        CustomField requested = mock(CustomField.class);
+        CustomField other = mock(CustomField.class);
+        Issue issue = issueOf(1, "10", other);
+
+        FieldProjection projection = new FieldProjection(Arrays.asList(requested, other), null, null);
+
+        assertEquals(Arrays.asList(other), projection.getFields(issue));
+    }
+}
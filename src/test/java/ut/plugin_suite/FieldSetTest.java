@@ -0,0 +1,45 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import plugin_suite.models.FieldSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FieldSetTest
+{
+    private static final java.util.List<String> ATTRIBUTES = Arrays.asList("id", "key", "name");
+
+    @Test
+    public void onlyRequestedAttributesAreIncluded()
+    {
+        FieldSet fieldSet = FieldSet.forRequest(Arrays.asList("key,unknown", "id"), ATTRIBUTES);
+
+        assertTrue(fieldSet.isSparse());
+        assertTrue(fieldSet.includes("id"));
+        assertFalse(fieldSet.includes("name"));
+        assertEquals("KEY-1", fieldSet.select("key", "KEY-1"));
+        assertNull(fieldSet.select("name", "Name"));
+    }
+
+    @Test
+    public void everyAttributeIsIncludedIfNoneIsKnown()
+    {
+        assertSame(FieldSet.ALL, FieldSet.forRequest(null, ATTRIBUTES));
+        assertSame(FieldSet.ALL, FieldSet.forRequest(Arrays.asList("customfield_10000"), ATTRIBUTES));
+        assertTrue(FieldSet.ALL.includes("name"));
+    }
+
+    @Test
+    public void equivalentRequestsShareTheirKey()
+    {
+        assertEquals(FieldSet.forRequest(Arrays.asList("id", "key"), ATTRIBUTES).toString(),
+                FieldSet.forRequest(Arrays.asList("key,id"), ATTRIBUTES).toString());
+    }
+}
@@ -0,0 +1,230 @@
+package ut.plugin_suite;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.google.gson.stream.JsonWriter;
+
+import plugin_suite.jobs.Job;
+import plugin_suite.jobs.JobManager;
+import plugin_suite.streaming.JsonRecord;
+import plugin_suite.streaming.RecordSink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JobManagerTest
+{
+    private static final long ONE_HOUR = 60 * 60 * 1000L;
+
+    private static final JsonRecord RECORD = new JsonRecord()
+    {
+        public void writeTo(JsonWriter json) throws IOException
+        {
+            json.beginObject();
+            json.endObject();
+        }
+    };
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private JobManager jobManager;
+
+    /**
+     * Work that waits until the test releases it.
+     */
+    private final JobManager.Work blockingWork = new JobManager.Work()
+    {
+        public void run(Job job, RecordSink<JsonRecord> sink) throws Exception
+        {
+            release.await(10, TimeUnit.SECONDS);
+        }
+    };
+
+    @Before
+    public void setUp()
+    {
+        ComponentAccessor.Worker worker = mock(ComponentAccessor.Worker.class);
+        when(worker.getComponent(JiraAuthenticationContext.class)).thenReturn(mock(JiraAuthenticationContext.class));
+        ComponentAccessor.initialiseWorker(worker);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        release.countDown();
+        if (jobManager != null)
+            jobManager.destroy();
+    }
+
+    private static void awaitState(Job job, Job.State state) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (job.getState() != state && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        assertEquals(state, job.getState());
+    }
+
+    @Test
+    public void userMayOnlyHaveTwoActiveJobs()
+    {
+        jobManager = new JobManager(2, 20, ONE_HOUR);
+
+        assertNotNull(jobManager.submit("alice", "issues", blockingWork));
+        assertNotNull(jobManager.submit("alice", "issues", blockingWork));
+        assertNull("A third active job should be turned away!", jobManager.submit("alice", "issues", blockingWork));
+        assertNotNull("Other users should not be limited!", jobManager.submit("bob", "issues", blockingWork));
+        assertEquals(2, jobManager.getJobs("alice").size());
+    }
+
+    @Test
+    public void submissionIsRejectedOnceTheQueueIsFull()
+    {
+        jobManager = new JobManager(1, 1, ONE_HOUR);
+        jobManager.submit("alice", "issues", blockingWork);
+        jobManager.submit("bob", "issues", blockingWork);
+
+        try {
+            jobManager.submit("carol", "issues", blockingWork);
+            fail("A job should not be queued beyond the queue's capacity!");
+        } catch (RejectedExecutionException e) {
+            assertTrue(jobManager.getJobs("carol").isEmpty());
+        }
+    }
+
+    @Test
+    public void cancelledQueuedJobNeverRunsAndFreesItsSlot() throws Exception
+    {
+        jobManager = new JobManager(1, 1, ONE_HOUR);
+        final AtomicBoolean ran = new AtomicBoolean();
+        Job running = jobManager.submit("alice", "issues", blockingWork);
+        Job queued = jobManager.submit("bob", "issues", new JobManager.Work()
+        {
+            public void run(Job job, RecordSink<JsonRecord> sink)
+            {
+                ran.set(true);
+            }
+        });
+
+        jobManager.cancel(queued);
+        assertEquals(Job.State.CANCELLED, queued.getState());
+        assertNotNull("The cancelled job's queue slot should be free!", jobManager.submit("carol", "issues", blockingWork));
+
+        release.countDown();
+        awaitState(running, Job.State.DONE);
+        assertFalse(ran.get());
+    }
+
+    @Test
+    public void cancelledRunningJobStopsWithoutBeingInterrupted() throws Exception
+    {
+        jobManager = new JobManager(1, 1, ONE_HOUR);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        Job job = jobManager.submit("alice", "issues", new JobManager.Work()
+        {
+            public void run(Job job, RecordSink<JsonRecord> sink) throws Exception
+            {
+                started.countDown();
+                try {
+                    while (true) {
+                        sink.add(RECORD);
+                        interrupted.compareAndSet(false, Thread.currentThread().isInterrupted());
+                        Thread.sleep(1);
+                    }
+                } finally {
+                    stopped.countDown();
+                }
+            }
+        });
+
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        jobManager.cancel(job);
+        assertTrue("The job should stop at its next record!", stopped.await(10, TimeUnit.SECONDS));
+
+        awaitState(job, Job.State.CANCELLED);
+        assertFalse(interrupted.get());
+        assertNull(job.getResult());
+    }
+
+    @Test
+    public void cancelledRunningJobStaysActiveUntilItStops() throws Exception
+    {
+        jobManager = new JobManager(2, 20, ONE_HOUR);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        Job job = jobManager.submit("alice", "issues", new JobManager.Work()
+        {
+            public void run(Job job, RecordSink<JsonRecord> sink) throws Exception
+            {
+                started.countDown();
+                proceed.await(10, TimeUnit.SECONDS);
+                sink.add(RECORD);
+            }
+        });
+        jobManager.submit("alice", "issues", blockingWork);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        jobManager.cancel(job);
+        assertEquals(Job.State.CANCELLING, job.getState());
+        assertNull("A job still cancelling should count as active!", jobManager.submit("alice", "issues", blockingWork));
+
+        proceed.countDown();
+        awaitState(job, Job.State.CANCELLED);
+        assertNotNull("The stopped job's slot should be free!", jobManager.submit("alice", "issues", blockingWork));
+    }
+
+    @Test
+    public void failedWorkFailsTheJob() throws Exception
+    {
+        jobManager = new JobManager(1, 1, ONE_HOUR);
+        Job job = jobManager.submit("alice", "issues", new JobManager.Work()
+        {
+            public void run(Job job, RecordSink<JsonRecord> sink)
+            {
+                sink.add(RECORD);
+                throw new IllegalStateException("Search failed");
+            }
+        });
+
+        awaitState(job, Job.State.FAILED);
+        assertEquals("Search failed", job.getError());
+        assertNull("A partial result should not be kept!", job.getResult());
+    }
+
+    @Test
+    public void finishedJobExpiresWithItsResult() throws Exception
+    {
+        jobManager = new JobManager(1, 1, 1);
+        Job job = jobManager.submit("alice", "issues", new JobManager.Work()
+        {
+            public void run(Job job, RecordSink<JsonRecord> sink)
+            {
+                sink.add(RECORD);
+            }
+        });
+        awaitState(job, Job.State.DONE);
+        File result = job.getResult();
+        assertTrue(result.exists());
+
+        Thread.sleep(10);
+        assertNull(jobManager.getJob(job.getId(), "alice"));
+        assertFalse("The result of an expired job should be deleted!", result.exists());
+    }
+}
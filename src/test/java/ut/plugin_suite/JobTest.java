@@ -0,0 +1,43 @@
+package ut.plugin_suite;
+
+import org.junit.Test;
+
+import plugin_suite.jobs.Job;
+import plugin_suite.models.JobRestResourceModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JobTest
+{
+    @Test
+    public void newJobIsQueued()
+    {
+        Job job = new Job("1", "alice", "issues");
+
+        assertTrue(job.isActive());
+        assertFalse(job.isCancelled());
+        assertEquals(Job.State.QUEUED, job.getState());
+        assertNull(job.getResult());
+        assertEquals(0, job.getStarted());
+    }
+
+    @Test
+    public void progressIsUnknownUntilTotalIsAdded()
+    {
+        Job job = new Job("1", "alice", "issues");
+        assertNull(new JobRestResourceModel(job).getTotal());
+
+        job.addTotal(40);
+        job.addTotal(2);
+        job.addProcessed(50);
+
+        // Processed issues never exceed the total
+        JobRestResourceModel model = new JobRestResourceModel(job);
+        assertEquals(Integer.valueOf(42), model.getTotal());
+        assertEquals(42, model.getProcessed());
+        assertEquals("QUEUED", model.getState());
+    }
+}
@@ -0,0 +1,43 @@
+package ut.plugin_suite;
+
+import org.junit.Test;
+
+import plugin_suite.search.PageCursor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+
+public class PageCursorTest
+{
+    @Test
+    public void cursorRoundTrips()
+    {
+        String fingerprint = PageCursor.fingerprint("TEST", "10000", null);
+        PageCursor cursor = PageCursor.decode(new PageCursor(500, 250, fingerprint).encode());
+
+        assertEquals("Wrong start!", 500, cursor.getStartAt());
+        assertEquals("Wrong page size!", 250, cursor.getMaxResults());
+        assertTrue("Fingerprint should match!", cursor.matches(fingerprint));
+    }
+    
+    @Test
+    public void cursorRejectsOtherQuery()
+    {
+        String fingerprint = PageCursor.fingerprint("TEST", "10000", null);
+        PageCursor cursor = PageCursor.decode(new PageCursor(0, 100, fingerprint).encode());
+
+        assertFalse("Fingerprint should not match!", cursor.matches(PageCursor.fingerprint("OTHER", "10000", null)));
+    }
+    
+    @Test
+    public void malformedCursorIsNull()
+    {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(""));
+        assertNull(PageCursor.decode("abc"));
+        assertNull(PageCursor.decode("zz"));
+        assertNull(PageCursor.decode("313a2d313a313a6162"));
+    }
+}
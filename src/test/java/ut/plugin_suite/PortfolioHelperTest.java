@@ -0,0 +1,78 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.HistogramRestResourceModel.BucketDataContainer;
+import plugin_suite.models.IssueRestResourceModel.IssueDataContainer;
+import plugin_suite.search.PortfolioHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PortfolioHelperTest
+{
+    private static IssueDataContainer issueOf(FieldSet fieldSet, String key, long created)
+    {
+        return new IssueDataContainer(fieldSet, 1, key, new Date(created), 1, "ABC", "Project", "1", "Bug", null);
+    }
+
+    @Test
+    public void sortedListsAreMergedInOrder()
+    {
+        List<List<Integer>> lists = Arrays.asList(Arrays.asList(1, 4, 9), Collections.<Integer>emptyList(),
+                Arrays.asList(2, 4, 5, 10), Arrays.asList(0));
+        assertEquals(Arrays.asList(0, 1, 2, 4, 4, 5, 9, 10), PortfolioHelper.mergeSorted(lists));
+    }
+
+    @Test
+    public void issuesAreMergedByCreationDateEvenIfItIsNotRequested()
+    {
+        FieldSet keyOnly = FieldSet.forRequest(Arrays.asList("key"), IssueDataContainer.ATTRIBUTES);
+        List<IssueDataContainer> first = Arrays.asList(issueOf(keyOnly, "ABC-1", 100), issueOf(keyOnly, "ABC-2", 300));
+        List<IssueDataContainer> second = Arrays.asList(issueOf(keyOnly, "DEF-1", 200));
+
+        @SuppressWarnings("unchecked")
+        List<IssueDataContainer> merged = PortfolioHelper.mergeSorted(Arrays.asList(first, second));
+
+        assertSame(first.get(0), merged.get(0));
+        assertSame(second.get(0), merged.get(1));
+        assertSame(first.get(1), merged.get(2));
+    }
+
+    @Test
+    public void severalKeysOrACategorySelectAPortfolio()
+    {
+        assertFalse(PortfolioHelper.isPortfolio(null, null));
+        assertFalse(PortfolioHelper.isPortfolio(Arrays.asList("ABC"), null));
+        assertFalse(PortfolioHelper.isPortfolio(Arrays.asList("ABC, ABC"), null));
+        assertTrue(PortfolioHelper.isPortfolio(Arrays.asList("ABC,DEF"), null));
+        assertTrue(PortfolioHelper.isPortfolio(Arrays.asList("ABC", "DEF"), null));
+        assertTrue(PortfolioHelper.isPortfolio(null, "10000"));
+    }
+
+    @Test
+    public void sparseHistogramsAreSummedByDate()
+    {
+        List<BucketDataContainer> first = Arrays.asList(new BucketDataContainer(100, 1), new BucketDataContainer(300, 2));
+        List<BucketDataContainer> second = Arrays.asList(new BucketDataContainer(200, 4), new BucketDataContainer(300, 8));
+
+        @SuppressWarnings("unchecked")
+        List<BucketDataContainer> buckets = PortfolioHelper.sumBuckets(Arrays.asList(first, second));
+
+        assertEquals(3, buckets.size());
+        assertEquals(100, buckets.get(0).getDate());
+        assertEquals(1, buckets.get(0).getCount());
+        assertEquals(200, buckets.get(1).getDate());
+        assertEquals(4, buckets.get(1).getCount());
+        assertEquals(300, buckets.get(2).getDate());
+        assertEquals("Counts of the same date should be added up!", 10, buckets.get(2).getCount());
+    }
+}
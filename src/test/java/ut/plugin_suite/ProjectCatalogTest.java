@@ -0,0 +1,60 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import plugin_suite.cache.ProjectCatalog;
+import plugin_suite.models.FieldSet;
+import plugin_suite.models.ProjectRestResourceModel.ProjectDataContainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ProjectCatalogTest
+{
+    private static ProjectCatalog.Snapshot snapshot()
+    {
+        return new ProjectCatalog.Snapshot("1", Arrays.asList(
+                new ProjectDataContainer("PAY", 10200L, "Payments", "alice", "N/A"),
+                new ProjectDataContainer("ADM", 10100L, "Admin Portal", "bob", "Internal"),
+                new ProjectDataContainer("PORT", 10300L, "Portal", "carol", "Internal")));
+    }
+
+    @Test
+    public void projectsAreIndexedByKeyAndId()
+    {
+        ProjectCatalog.Snapshot snapshot = snapshot();
+
+        assertEquals("Payments", snapshot.getProject("PAY").getName());
+        assertEquals("Portal", snapshot.getProject(10300L).getName());
+        assertNull(snapshot.getProject("NONE"));
+    }
+
+    @Test
+    public void prefixSearchMatchesKeysAndNamesOnce()
+    {
+        List<ProjectDataContainer> matches = snapshot().search("p", 10);
+
+        // "Portal" matches by key and by name, but is only listed once; results are sorted by name
+        assertEquals(2, matches.size());
+        assertEquals("Payments", matches.get(0).getName());
+        assertEquals("Portal", matches.get(1).getName());
+        assertEquals(1, snapshot().search("ADM", 10).size());
+        assertEquals(1, snapshot().search("p", 1).size());
+    }
+
+    @Test
+    public void projectionsAreBuiltOnce()
+    {
+        ProjectCatalog.Snapshot snapshot = snapshot();
+        FieldSet fieldSet = FieldSet.forRequest(Arrays.asList("key"), ProjectDataContainer.ATTRIBUTES);
+        List<ProjectDataContainer> projects = snapshot.getProjects(fieldSet);
+
+        assertSame(projects, snapshot.getProjects(fieldSet));
+        assertEquals("ADM", projects.get(0).getKey());
+        assertNull(projects.get(0).getName());
+    }
+}
@@ -0,0 +1,224 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import plugin_suite.cache.ResultCache;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResultCacheTest
+{
+    private static class CountingLoader implements ResultCache.Loader<List<String>>
+    {
+        private int loads = 0;
+
+        public List<String> load()
+        {
+            loads++;
+            return Arrays.asList("a", "b");
+        }
+    }
+
+    @Test
+    public void identicalRequestsAreServedFromCache()
+    {
+        ResultCache cache = new ResultCache(10, 100, 60000);
+        CountingLoader loader = new CountingLoader();
+
+        cache.get(ResultCache.ISSUES, "TEST", "user", Arrays.asList("list", Arrays.asList("2", "1")), loader);
+        cache.get(ResultCache.ISSUES, "TEST", "user", Arrays.asList("list", Arrays.asList("1", "2")), loader);
+
+        assertEquals("Loader should only run once!", 1, loader.loads);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void permissionContextIsPartOfKey()
+    {
+        ResultCache cache = new ResultCache(10, 100, 60000);
+        CountingLoader loader = new CountingLoader();
+
+        cache.get(ResultCache.ISSUES, "TEST", "first", Collections.emptyList(), loader);
+        cache.get(ResultCache.ISSUES, "TEST", "second", Collections.emptyList(), loader);
+
+        assertEquals("Each user should get their own entry!", 2, loader.loads);
+    }
+
+    @Test
+    public void invalidationRemovesProjectEntries()
+    {
+        ResultCache cache = new ResultCache(10, 100, 60000);
+        CountingLoader loader = new CountingLoader();
+
+        cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(), loader);
+        cache.get(ResultCache.ISSUES, "OTHER", "user", Collections.emptyList(), loader);
+        cache.invalidate(ResultCache.ISSUES, "TEST");
+        cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(), loader);
+        cache.get(ResultCache.ISSUES, "OTHER", "user", Collections.emptyList(), loader);
+
+        assertEquals("Only the invalidated project should reload!", 3, loader.loads);
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted()
+    {
+        ResultCache cache = new ResultCache(2, 100, 60000);
+        CountingLoader loader = new CountingLoader();
+
+        cache.get(ResultCache.ISSUES, "A", "user", Collections.emptyList(), loader);
+        cache.get(ResultCache.ISSUES, "B", "user", Collections.emptyList(), loader);
+        cache.get(ResultCache.ISSUES, "A", "user", Collections.emptyList(), loader);
+        cache.get(ResultCache.ISSUES, "C", "user", Collections.emptyList(), loader);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+
+        // B was the least recently used entry, so A should still be cached
+        cache.get(ResultCache.ISSUES, "A", "user", Collections.emptyList(), loader);
+        assertEquals(3, loader.loads);
+    }
+
+    @Test
+    public void entryHeavierThanCacheIsNotKept()
+    {
+        ResultCache cache = new ResultCache(10, 3, 60000);
+        CountingLoader loader = new CountingLoader();
+        ResultCache.Loader<List<String>> heavyLoader = new ResultCache.Loader<List<String>>()
+        {
+            public List<String> load()
+            {
+                return Arrays.asList("a", "b", "c", "d");
+            }
+        };
+
+        cache.get(ResultCache.ISSUES, "SMALL", "user", Collections.emptyList(), loader);
+        List<String> heavy = cache.get(ResultCache.ISSUES, "LARGE", "user", Collections.emptyList(), heavyLoader);
+
+        assertEquals("The heavy result should still be returned!", 4, heavy.size());
+        assertEquals(1, cache.getSize());
+        assertEquals(0, cache.getEvictions());
+
+        // The small entry should have survived
+        cache.get(ResultCache.ISSUES, "SMALL", "user", Collections.emptyList(), loader);
+        assertEquals(1, loader.loads);
+    }
+
+    @Test
+    public void expiredEntriesAreReloaded()
+    {
+        ResultCache cache = new ResultCache(10, 100, -1);
+        CountingLoader loader = new CountingLoader();
+
+        cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(), loader);
+        cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(), loader);
+
+        assertEquals(2, loader.loads);
+    }
+
+    @Test
+    public void concurrentMissesAreComputedOnce() throws Exception
+    {
+        final ResultCache cache = new ResultCache(10, 100, 60000);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingLoader loader = new CountingLoader();
+
+        Thread first = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(),
+                        new ResultCache.Loader<List<String>>()
+                {
+                    public List<String> load()
+                    {
+                        started.countDown();
+                        try
+                        {
+                            release.await();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        return loader.load();
+                    }
+                });
+            }
+        });
+        first.start();
+        started.await();
+
+        Thread second = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(), loader);
+            }
+        });
+        second.start();
+        while (cache.getCoalesced() == 0)
+            Thread.sleep(1);
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals("Loader should only run once!", 1, loader.loads);
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void invalidatingAnotherProjectKeepsResultBeingComputed()
+    {
+        final ResultCache cache = new ResultCache(10, 100, 60000);
+        final CountingLoader loader = new CountingLoader();
+
+        cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(), new ResultCache.Loader<List<String>>()
+        {
+            public List<String> load()
+            {
+                cache.invalidate(ResultCache.ISSUES, "OTHER");
+                cache.invalidate(ResultCache.CHANGE_HISTORY, "TEST");
+                return loader.load();
+            }
+        });
+        cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(), loader);
+
+        assertEquals("Only the same region and project should discard the result!", 1, loader.loads);
+    }
+
+    @Test
+    public void invalidatingTheSameProjectDiscardsResultBeingComputed()
+    {
+        final ResultCache cache = new ResultCache(10, 100, 60000);
+        final CountingLoader loader = new CountingLoader();
+
+        cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(), new ResultCache.Loader<List<String>>()
+        {
+            public List<String> load()
+            {
+                cache.invalidate(ResultCache.ISSUES, "TEST");
+                return loader.load();
+            }
+        });
+        cache.get(ResultCache.ISSUES, null, "user", Collections.emptyList(), new ResultCache.Loader<List<String>>()
+        {
+            public List<String> load()
+            {
+                cache.invalidate(ResultCache.ISSUES, "OTHER");
+                return loader.load();
+            }
+        });
+        cache.get(ResultCache.ISSUES, "TEST", "user", Collections.emptyList(), loader);
+        cache.get(ResultCache.ISSUES, null, "user", Collections.emptyList(), loader);
+
+        assertEquals("Stale results should not be cached!", 4, loader.loads);
+        assertEquals(0, cache.getLoading());
+    }
+}
@@ -0,0 +1,101 @@
+package ut.plugin_suite;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import plugin_suite.concurrent.SingleFlight;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SingleFlightTest
+{
+    @Test
+    public void identicalRequestsShareOneExecution() throws Exception
+    {
+        final SingleFlight flight = new SingleFlight("test");
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        final String[] results = new String[2];
+
+        final Callable<String> work = new Callable<String>()
+        {
+            public String call() throws Exception
+            {
+                runs.incrementAndGet();
+                release.await();
+                return "chart";
+            }
+        };
+
+        Thread first = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                results[0] = flight.execute("key", work);
+            }
+        });
+        first.start();
+        while (flight.getRunning() == 0)
+            Thread.sleep(1);
+
+        Thread second = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                results[1] = flight.execute("key", work);
+            }
+        });
+        second.start();
+        while (flight.getCoalesced() == 0)
+            Thread.sleep(1);
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals("Work should only run once!", 1, runs.get());
+        assertEquals("chart", results[0]);
+        assertEquals("chart", results[1]);
+        assertEquals(1, flight.getExecuted());
+        assertEquals(0, flight.getRunning());
+    }
+
+    @Test
+    public void finishedRequestsAreNotShared() throws Exception
+    {
+        SingleFlight flight = new SingleFlight("test");
+        final AtomicInteger runs = new AtomicInteger();
+        Callable<Integer> work = new Callable<Integer>()
+        {
+            public Integer call()
+            {
+                return runs.incrementAndGet();
+            }
+        };
+
+        assertEquals(Integer.valueOf(1), flight.execute("key", work));
+        assertEquals(Integer.valueOf(2), flight.execute("key", work));
+        assertEquals(0, flight.getCoalesced());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failureIsRethrown()
+    {
+        new SingleFlight("test").execute("key", new Callable<String>()
+        {
+            public String call()
+            {
+                throw new IllegalArgumentException("Invalid series");
+            }
+        });
+    }
+
+    @Test
+    public void keyKeepsPartsApart()
+    {
+        assertFalse(SingleFlight.key(null, "a").equals(SingleFlight.key("a", null)));
+    }
+}
@@ -0,0 +1,47 @@
+package ut.plugin_suite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import plugin_suite.charts.DateBucketer;
+import plugin_suite.charts.SvgChartWriter;
+import plugin_suite.models.ChartDataRestResourceModel;
+import plugin_suite.models.ChartDataRestResourceModel.SeriesDataContainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SvgChartWriterTest
+{
+    @Test
+    public void valueStepsAreRound()
+    {
+        assertEquals(1, SvgChartWriter.getValueStep(0));
+        assertEquals(2, SvgChartWriter.getValueStep(6));
+        assertEquals(20, SvgChartWriter.getValueStep(99));
+        assertEquals(500, SvgChartWriter.getValueStep(1234));
+    }
+
+    @Test
+    public void legendIsOnlyDrawnForSeveralSeries()
+    {
+        List<Long> ticks = new DateBucketer(TimeZone.getTimeZone("UTC"), 20000, 7).getAxisTicks(30);
+        List<SeriesDataContainer> series = new ArrayList<SeriesDataContainer>();
+        series.add(new SeriesDataContainer("Bugs & Tasks", ticks.subList(0, 3), Arrays.asList(3L, 7L, 2L)));
+
+        String single = SvgChartWriter.write(
+                new ChartDataRestResourceModel("Trend", "Dates", "Issues", "UTC", false, ticks, series), 600, 300);
+        assertTrue(single.startsWith("<svg") && single.endsWith("</svg>"));
+        assertFalse(single.contains("Bugs &amp; Tasks"));
+
+        series.add(new SeriesDataContainer("Stories", ticks.subList(0, 3), Arrays.asList(1L, 4L, 12L)));
+        String multiple = SvgChartWriter.write(
+                new ChartDataRestResourceModel("Trend", "Dates", "Issues", "UTC", false, ticks, series), 600, 300);
+        assertTrue(multiple.contains("Bugs &amp; Tasks"));
+    }
+}
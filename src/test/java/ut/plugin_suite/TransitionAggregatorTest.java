@@ -0,0 +1,73 @@
+package ut.plugin_suite;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import plugin_suite.history.StatusTransition;
+import plugin_suite.history.TransitionAggregator;
+import plugin_suite.models.AggregateRestResourceModel;
+import plugin_suite.models.AggregateRestResourceModel.AggregateDataContainer;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransitionAggregatorTest
+{
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    // Monday 2015-06-01 00:00 UTC
+    private static final long MONDAY = 1433116800000L;
+
+    @Test
+    public void transitionsAreCountedPerStatusAndWeek()
+    {
+        TransitionAggregator aggregator = new TransitionAggregator(
+                Arrays.asList(TransitionAggregator.WEEK, TransitionAggregator.NEW_STATUS),
+                TransitionAggregator.COUNT, UTC, null);
+        aggregator.add("1", "Bug", transition(1, MONDAY + HOUR, "1", "Open", "3", "In Progress"));
+        aggregator.add("1", "Bug", transition(2, MONDAY + 6 * 24 * HOUR, "1", "Open", "3", "In Progress"));
+        aggregator.add("1", "Bug", transition(1, MONDAY + 7 * 24 * HOUR, "3", "In Progress", "6", "Closed"));
+
+        List<AggregateDataContainer> rows = aggregator.getModel().getRows();
+        assertEquals(2, rows.size());
+        assertEquals(Arrays.asList(String.valueOf(MONDAY), "3"), rows.get(0).getKeys());
+        assertEquals(Arrays.asList("2015-06-01", "In Progress"), rows.get(0).getLabels());
+        assertEquals(2, rows.get(0).getCount());
+        assertEquals(Arrays.asList("2015-06-08", "Closed"), rows.get(1).getLabels());
+        assertEquals(1.0, rows.get(1).getValue(), 0);
+    }
+
+    @Test
+    public void timeInStatusIsAveragedOverCompletedStays()
+    {
+        TransitionAggregator aggregator = new TransitionAggregator(
+                Collections.singletonList(TransitionAggregator.NEW_STATUS),
+                TransitionAggregator.AVG_TIME_IN_STATUS, UTC, Collections.singletonList("3"));
+        aggregator.add("1", "Bug", transition(1, MONDAY, "1", "Open", "3", "In Progress"));
+        aggregator.add("1", "Bug", transition(2, MONDAY, "1", "Open", "3", "In Progress"));
+        aggregator.add("1", "Bug", transition(1, MONDAY + 2 * HOUR, "3", "In Progress", "6", "Closed"));
+        aggregator.add("1", "Bug", transition(2, MONDAY + 4 * HOUR, "3", "In Progress", "6", "Closed"));
+        aggregator.add("1", "Bug", transition(3, MONDAY, "1", "Open", "3", "In Progress"));
+
+        AggregateRestResourceModel model = aggregator.getModel();
+        assertEquals("Only the filtered status should be aggregated!", 1, model.getRows().size());
+        assertEquals("Open stays should not be counted!", 2, model.getRows().get(0).getCount());
+        assertEquals(3 * HOUR, model.getRows().get(0).getValue(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDimensionsAreRejected()
+    {
+        new TransitionAggregator(Arrays.asList("resolution"), TransitionAggregator.COUNT, UTC, null);
+    }
+
+    private static StatusTransition transition(long issueId, long changeTime, String oldStatusId, String oldStatus,
+            String newStatusId, String newStatus)
+    {
+        return new StatusTransition(issueId, changeTime, changeTime, oldStatusId, oldStatus, newStatusId, newStatus);
+    }
+}
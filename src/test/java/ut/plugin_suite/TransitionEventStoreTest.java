@@ -0,0 +1,107 @@
+package ut.plugin_suite;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+
+import net.java.ao.DBParam;
+import net.java.ao.Query;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ofbiz.core.entity.GenericValue;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.project.Project;
+import com.atlassian.sal.api.transaction.TransactionCallback;
+
+import plugin_suite.history.TransitionEvent;
+import plugin_suite.history.TransitionEventStore;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TransitionEventStoreTest
+{
+    private ActiveObjects ao;
+    private Issue issue;
+    private GenericValue changeLog;
+
+    private static GenericValue changeItemOf(long id, String fieldType, String field)
+    {
+        GenericValue changeItem = mock(GenericValue.class);
+        when(changeItem.getLong("id")).thenReturn(id);
+        when(changeItem.getString("fieldtype")).thenReturn(fieldType);
+        when(changeItem.getString("field")).thenReturn(field);
+        return changeItem;
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp()
+    {
+        ao = mock(ActiveObjects.class);
+        when(ao.executeInTransaction(any(TransactionCallback.class))).thenAnswer(new Answer<Object>()
+        {
+            public Object answer(InvocationOnMock invocation)
+            {
+                return ((TransactionCallback<?>) invocation.getArguments()[0]).doInTransaction();
+            }
+        });
+
+        Project project = mock(Project.class);
+        when(project.getId()).thenReturn(1L);
+        issue = mock(Issue.class);
+        when(issue.getId()).thenReturn(10000L);
+        when(issue.getKey()).thenReturn("TEST-1");
+        when(issue.getIssueTypeId()).thenReturn("1");
+        when(issue.getProjectObject()).thenReturn(project);
+
+        changeLog = mock(GenericValue.class);
+        when(changeLog.getTimestamp("created")).thenReturn(new Timestamp(1000L));
+    }
+
+    @Test
+    public void editWithoutStatusChangeAppendsNothing()
+    {
+        TransitionEventStore store = new TransitionEventStore(ao);
+
+        store.appendTransitions(issue, changeLog, Arrays.asList(changeItemOf(1, "jira", "summary"),
+                changeItemOf(2, "custom", "Start Date")));
+
+        verify(ao, never()).executeInTransaction(any(TransactionCallback.class));
+        verify(ao, never()).create(eq(TransitionEvent.class), Matchers.<DBParam>anyVararg());
+        verify(ao, never()).find(eq(TransitionEvent.class), any(Query.class));
+    }
+
+    @Test
+    public void statusChangeAppendsOneRow()
+    {
+        TransitionEventStore store = new TransitionEventStore(ao);
+
+        store.appendTransitions(issue, changeLog, Arrays.asList(changeItemOf(1, "jira", "summary"),
+                changeItemOf(2, "jira", "status")));
+
+        verify(ao, times(1)).create(eq(TransitionEvent.class), Matchers.<DBParam>anyVararg());
+        verify(ao, never()).find(eq(TransitionEvent.class), any(Query.class));
+    }
+
+    @Test
+    public void noChangeLogAppendsNothing()
+    {
+        TransitionEventStore store = new TransitionEventStore(ao);
+
+        store.appendTransitions(issue, null, Collections.<GenericValue>emptyList());
+
+        verify(ao, never()).create(eq(TransitionEvent.class), Matchers.<DBParam>anyVararg());
+    }
+}